@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.rendercontext;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.render.block.BlockRenderManager;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Matrix3f;
+import net.minecraft.util.math.Matrix4f;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockRenderView;
+
+import net.fabricmc.fabric.api.renderer.v1.RendererAccess;
+import net.fabricmc.fabric.api.renderer.v1.material.RenderMaterial;
+import net.fabricmc.fabric.api.renderer.v1.mesh.MutableQuadView;
+import net.fabricmc.fabric.api.renderer.v1.mesh.QuadEmitter;
+import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
+import net.fabricmc.fabric.api.renderer.v1.render.RenderContext;
+
+import grondag.canvas.bench.ClientBenchmarkLauncher;
+import grondag.canvas.bench.SyntheticSectionSource;
+import grondag.canvas.bench.SyntheticSectionSource.Profile;
+import grondag.canvas.terrain.region.input.InputRegion;
+import grondag.canvas.terrain.region.input.PackedInputRegion;
+import grondag.canvas.terrain.region.input.SignalInputRegion;
+import grondag.canvas.terrain.util.RenderRegionStateIndexer;
+
+/**
+ * {@link TerrainRenderContext#renderBlock} for every visible block of one synthetic region,
+ * using the same loop as a region build. Each invocation moves to the next non-empty region
+ * of a 4x4 chunk area and includes claim, prepare and occlusion, so subtract
+ * {@code RegionCaptureBenchmark.claimPrepareAndOcclude} for the cost of block rendering.
+ *
+ * <p>Needs mixins, the loaded block atlas and baked models, so it only runs inside the dev client:
+ * {@code ./gradlew runClient -PclientJmhArgs="TerrainRenderBlock"}
+ *
+ * <p>{@code BAKED} renders the models the client loaded for each block state. {@code CUBE}
+ * replaces the model lookup with a six-quad cube using each state's particle sprite, so
+ * scores don't move with resource pack or model changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerrainRenderBlockBenchmark {
+	@Param({"FLAT_STONE", "CAVES", "DENSE_FOLIAGE", "WATER_OCEAN", "REDSTONE_BASE"})
+	public Profile profile;
+
+	@Param({"BAKED", "CUBE"})
+	public String models;
+
+	private SyntheticSectionSource source;
+	private BlockPos[] origins;
+	private int nextOrigin;
+
+	private TerrainRenderContext context;
+	private BlockRenderManager blockRenderManager;
+	private final Map<BlockState, CubeModel> cubeModels = new IdentityHashMap<>();
+	private RenderMaterial cubeMaterial;
+	private final MatrixStack matrixStack = new MatrixStack();
+
+	@Setup
+	public void setup() {
+		blockRenderManager = ClientBenchmarkLauncher.requireClient().getBlockRenderManager();
+		cubeMaterial = RendererAccess.INSTANCE.getRenderer().materialFinder().find();
+		context = new TerrainRenderContext();
+		source = new SyntheticSectionSource(profile, 42);
+		final List<BlockPos> found = new ArrayList<>();
+
+		// only regions with blocks - empty regions never reach renderBlock
+		for (int x = 0; x < 4; ++x) {
+			for (int z = 0; z < 4; ++z) {
+				for (int y = 0; y < SyntheticSectionSource.SECTION_COUNT; ++y) {
+					final BlockPos origin = new BlockPos(x << 4, y << 4, z << 4);
+					final PackedInputRegion region = PackedInputRegion.claim(source, origin);
+
+					if (region != SignalInputRegion.EMPTY) {
+						found.add(origin);
+						region.release();
+					}
+				}
+			}
+		}
+
+		origins = found.toArray(new BlockPos[found.size()]);
+
+		// first pass assigns material and sprite indices, which later builds only look up
+		for (int i = 0; i < origins.length; ++i) {
+			renderRegion();
+		}
+	}
+
+	@Benchmark
+	public int renderRegion() {
+		final BlockPos origin = origins[nextOrigin];
+		nextOrigin = (nextOrigin + 1) % origins.length;
+
+		final PackedInputRegion packed = PackedInputRegion.claim(source, origin);
+		context.prepareForRegion(packed);
+		packed.release();
+
+		final InputRegion region = context.region;
+		region.occlusion.build(false);
+
+		final BlockPos.Mutable searchPos = context.searchPos;
+		final Matrix4f modelMatrix = matrixStack.peek().getModel();
+		final Matrix3f normalMatrix = matrixStack.peek().getNormal();
+		final boolean bakedModels = "BAKED".equals(models);
+		int renderedBlockCount = 0;
+
+		for (int i = 0; i < RenderRegionStateIndexer.INTERIOR_STATE_COUNT; i++) {
+			if ((region.stateFlags(i) & InputRegion.FLAG_HAS_MODEL) != 0 && region.occlusion.shouldRender(i)) {
+				final BlockState blockState = region.getLocalBlockState(i);
+				final int x = i & 0xF;
+				final int y = (i >> 4) & 0xF;
+				final int z = (i >> 8) & 0xF;
+				searchPos.set(origin.getX() + x, origin.getY() + y, origin.getZ() + z);
+
+				modelMatrix.loadIdentity();
+				modelMatrix.multiplyByTranslation(x, y, z);
+				normalMatrix.loadIdentity();
+
+				if (blockState.getBlock().getOffsetType() != Block.OffsetType.NONE) {
+					final Vec3d vec3d = blockState.getModelOffset(region, searchPos);
+
+					if (vec3d != Vec3d.ZERO) {
+						modelMatrix.multiplyByTranslation((float) vec3d.x, (float) vec3d.y, (float) vec3d.z);
+					}
+				}
+
+				final BakedModel model = blockRenderManager.getModel(blockState);
+
+				if (bakedModels) {
+					context.renderBlock(blockState, searchPos, model.useAmbientOcclusion(), (FabricBakedModel) model, matrixStack);
+				} else {
+					final CubeModel cube = cubeModels.computeIfAbsent(blockState, s -> new CubeModel(cubeMaterial, model.getSprite()));
+					context.renderBlock(blockState, searchPos, true, cube, matrixStack);
+				}
+
+				++renderedBlockCount;
+			}
+		}
+
+		context.collectors.clear();
+		return renderedBlockCount;
+	}
+
+	/** Stands in for the model lookup: one full quad per face, culled like a solid block. */
+	private static class CubeModel implements FabricBakedModel {
+		private final RenderMaterial material;
+		private final Sprite sprite;
+
+		private CubeModel(RenderMaterial material, Sprite sprite) {
+			this.material = material;
+			this.sprite = sprite;
+		}
+
+		@Override
+		public boolean isVanillaAdapter() {
+			return false;
+		}
+
+		@Override
+		public void emitBlockQuads(BlockRenderView blockView, BlockState state, BlockPos pos, Supplier<Random> randomSupplier, RenderContext context) {
+			final QuadEmitter qe = context.getEmitter();
+
+			for (final Direction face : Direction.values()) {
+				qe.material(material)
+					.square(face, 0, 0, 1, 1, 0)
+					.cullFace(face)
+					.colorIndex(-1)
+					.spriteBake(0, sprite, MutableQuadView.BAKE_LOCK_UV)
+					.spriteColor(0, -1, -1, -1, -1)
+					.emit();
+			}
+		}
+
+		@Override
+		public void emitItemQuads(ItemStack stack, Supplier<Random> randomSupplier, RenderContext context) {
+			// not used
+		}
+	}
+}
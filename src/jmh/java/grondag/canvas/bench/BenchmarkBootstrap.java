@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.bench;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+
+/**
+ * Initializes vanilla registries so block states can be used outside a running client.
+ * Call from each benchmark's setup before touching any game class.
+ */
+public abstract class BenchmarkBootstrap {
+	private static boolean initialized = false;
+
+	public static synchronized void init() {
+		if (!initialized) {
+			SharedConstants.createGameVersion();
+			Bootstrap.initialize();
+			initialized = true;
+		}
+	}
+}
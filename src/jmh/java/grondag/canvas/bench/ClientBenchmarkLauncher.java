@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.bench;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.minecraft.client.MinecraftClient;
+
+import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+
+import grondag.canvas.CanvasMod;
+
+/**
+ * Runs benchmarks that need mixins, baked models or loaded atlases inside the dev client.
+ * Only active when {@code canvas.clientJmhArgs} is set, which the build does for
+ * {@code ./gradlew runClient -PclientJmhArgs="..."}.
+ *
+ * <p>Waits for the initial resource reload, then runs JMH in this JVM, on the client thread
+ * so the game doesn't render while measuring, and exits. Forks are disabled because a forked
+ * JVM would not have the game's class loader.
+ */
+public class ClientBenchmarkLauncher implements ClientModInitializer, ClientTickEvents.EndTick {
+	public static final String ARGS_PROPERTY = "canvas.clientJmhArgs";
+
+	private String args;
+
+	@Override
+	public void onInitializeClient() {
+		args = System.getProperty(ARGS_PROPERTY);
+
+		if (args != null) {
+			ClientTickEvents.END_CLIENT_TICK.register(this);
+		}
+	}
+
+	@Override
+	public void onEndTick(MinecraftClient client) {
+		// still loading resources
+		if (args == null || client.getOverlay() != null) {
+			return;
+		}
+
+		final String[] jmhArgs = args.trim().split(" ");
+		args = null;
+
+		try {
+			new Runner(new OptionsBuilder().parent(new CommandLineOptions(jmhArgs)).forks(0).build()).run();
+		} catch (final Exception e) {
+			CanvasMod.LOG.error("Unable to run client benchmarks due to error:", e);
+		}
+
+		client.scheduleStop();
+	}
+
+	/** Fails benchmark setup with a useful message when run through the plain jmh task. */
+	public static MinecraftClient requireClient() {
+		if (System.getProperty(ARGS_PROPERTY) == null || MinecraftClient.getInstance() == null) {
+			throw new IllegalStateException("Client benchmarks must be run with ./gradlew runClient -PclientJmhArgs=\"...\"");
+		}
+
+		return MinecraftClient.getInstance();
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.bench;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
+
+import java.util.Random;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+
+/**
+ * Deterministic block state arrays laid out in render region index order,
+ * including the two-block exterior padding.
+ */
+public enum RegionStatesFixture {
+	AIR,
+	SOLID,
+	SURFACE,
+	SCATTERED;
+
+	public BlockState[] create(long seed) {
+		final BlockState air = Blocks.AIR.getDefaultState();
+		final BlockState stone = Blocks.STONE.getDefaultState();
+		final BlockState dirt = Blocks.DIRT.getDefaultState();
+		final BlockState grass = Blocks.GRASS_BLOCK.getDefaultState();
+		final BlockState[] result = new BlockState[TOTAL_STATE_COUNT];
+		final Random r = new Random(seed);
+
+		for (int x = -2; x < 18; ++x) {
+			for (int y = -2; y < 18; ++y) {
+				for (int z = -2; z < 18; ++z) {
+					final int i = regionIndex(x, y, z);
+
+					if (i == -1) {
+						continue;
+					}
+
+					switch (this) {
+						case SOLID:
+							result[i] = stone;
+							break;
+						case SURFACE:
+							result[i] = y < 6 ? stone : y < 8 ? dirt : y == 8 ? grass : air;
+							break;
+						case SCATTERED:
+							result[i] = r.nextInt(3) == 0 ? stone : air;
+							break;
+						case AIR:
+						default:
+							result[i] = air;
+							break;
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+}
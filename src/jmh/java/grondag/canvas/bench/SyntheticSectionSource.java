@@ -0,0 +1,340 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.bench;
+
+import java.util.Collections;
+import java.util.Map;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.ChunkSection;
+
+import grondag.canvas.terrain.region.input.RegionSectionSource;
+
+/**
+ * Deterministic in-memory terrain for capture and rebuild benchmarks. Sections are generated
+ * on first access from the profile and seed and cached, so the same seed always yields the
+ * same blocks regardless of access order.
+ *
+ * <p>Height is {@link #SECTION_COUNT} sections from y = 0. Sea level / ground is at y = 64.
+ * No profile places block entities.
+ */
+public class SyntheticSectionSource implements RegionSectionSource {
+	public static final int SECTION_COUNT = 8;
+	public static final int GROUND_Y = 64;
+
+	private static final BlockState AIR = Blocks.AIR.getDefaultState();
+	private static final BlockState CAVE_AIR = Blocks.CAVE_AIR.getDefaultState();
+	private static final BlockState STONE = Blocks.STONE.getDefaultState();
+	private static final BlockState DEEPSLATE = Blocks.DEEPSLATE.getDefaultState();
+	private static final BlockState BEDROCK = Blocks.BEDROCK.getDefaultState();
+	private static final BlockState DIRT = Blocks.DIRT.getDefaultState();
+	private static final BlockState GRASS_BLOCK = Blocks.GRASS_BLOCK.getDefaultState();
+	private static final BlockState GRASS = Blocks.GRASS.getDefaultState();
+	private static final BlockState POPPY = Blocks.POPPY.getDefaultState();
+	private static final BlockState DANDELION = Blocks.DANDELION.getDefaultState();
+	private static final BlockState OAK_LOG = Blocks.OAK_LOG.getDefaultState();
+	private static final BlockState OAK_LEAVES = Blocks.OAK_LEAVES.getDefaultState();
+	private static final BlockState COAL_ORE = Blocks.COAL_ORE.getDefaultState();
+	private static final BlockState IRON_ORE = Blocks.IRON_ORE.getDefaultState();
+	private static final BlockState WATER = Blocks.WATER.getDefaultState();
+	private static final BlockState SAND = Blocks.SAND.getDefaultState();
+	private static final BlockState GRAVEL = Blocks.GRAVEL.getDefaultState();
+	private static final BlockState SEAGRASS = Blocks.SEAGRASS.getDefaultState();
+	private static final BlockState KELP_PLANT = Blocks.KELP_PLANT.getDefaultState();
+	private static final BlockState STONE_BRICKS = Blocks.STONE_BRICKS.getDefaultState();
+	private static final BlockState GLASS = Blocks.GLASS.getDefaultState();
+	private static final BlockState REDSTONE_WIRE = Blocks.REDSTONE_WIRE.getDefaultState();
+	private static final BlockState REPEATER = Blocks.REPEATER.getDefaultState();
+	private static final BlockState REDSTONE_TORCH = Blocks.REDSTONE_TORCH.getDefaultState();
+	private static final BlockState REDSTONE_LAMP = Blocks.REDSTONE_LAMP.getDefaultState();
+	private static final BlockState REDSTONE_BLOCK = Blocks.REDSTONE_BLOCK.getDefaultState();
+	private static final BlockState PISTON = Blocks.PISTON.getDefaultState();
+	private static final BlockState OBSERVER = Blocks.OBSERVER.getDefaultState();
+
+	public enum Profile {
+		/** Solid stone to ground level, nothing above. Mostly empty or fully occluded regions. */
+		FLAT_STONE,
+		/** Stone and deepslate carved by 3D noise, with ores. Many small interior cavities. */
+		CAVES,
+		/** Rolling grass with trees, leaf canopy, tall grass and flowers. Lots of cutout, non-full blocks. */
+		DENSE_FOLIAGE,
+		/** Sand and gravel floor under deep water with seagrass and kelp. Fluid-heavy. */
+		WATER_OCEAN,
+		/** Flat ground covered by dense redstone circuitry, lamps and glass. Many small model blocks. */
+		REDSTONE_BASE
+	}
+
+	private final Profile profile;
+	private final long seed;
+	private final Long2ObjectOpenHashMap<ChunkSection[]> columns = new Long2ObjectOpenHashMap<>();
+
+	public SyntheticSectionSource(Profile profile, long seed) {
+		BenchmarkBootstrap.init();
+		this.profile = profile;
+		this.seed = seed;
+	}
+
+	public Profile profile() {
+		return profile;
+	}
+
+	@Override
+	public int bottomY() {
+		return 0;
+	}
+
+	@Override
+	public ChunkSection[] sectionArray(int chunkX, int chunkZ) {
+		return columns.computeIfAbsent(ChunkPos.toLong(chunkX, chunkZ), k -> generate(chunkX, chunkZ));
+	}
+
+	@Override
+	public Map<BlockPos, BlockEntity> blockEntities(int chunkX, int chunkZ) {
+		return Collections.emptyMap();
+	}
+
+	private ChunkSection[] generate(int chunkX, int chunkZ) {
+		final ChunkSection[] sections = new ChunkSection[SECTION_COUNT];
+
+		for (int s = 0; s < SECTION_COUNT; ++s) {
+			sections[s] = new ChunkSection(s << 4);
+		}
+
+		final int baseX = chunkX << 4;
+		final int baseZ = chunkZ << 4;
+
+		for (int x = 0; x < 16; ++x) {
+			for (int z = 0; z < 16; ++z) {
+				final int worldX = baseX + x;
+				final int worldZ = baseZ + z;
+
+				for (int y = 0; y < SECTION_COUNT * 16; ++y) {
+					final BlockState state = blockState(worldX, y, worldZ);
+
+					if (state != AIR) {
+						sections[y >> 4].setBlockState(x, y & 15, z, state);
+					}
+				}
+			}
+		}
+
+		return sections;
+	}
+
+	private BlockState blockState(int x, int y, int z) {
+		if (y == 0) {
+			return BEDROCK;
+		}
+
+		switch (profile) {
+			case FLAT_STONE:
+				return y < GROUND_Y ? STONE : AIR;
+			case CAVES:
+				return caves(x, y, z);
+			case DENSE_FOLIAGE:
+				return foliage(x, y, z);
+			case WATER_OCEAN:
+				return ocean(x, y, z);
+			case REDSTONE_BASE:
+				return redstone(x, y, z);
+			default:
+				return AIR;
+		}
+	}
+
+	private BlockState caves(int x, int y, int z) {
+		if (y >= GROUND_Y + 32) {
+			return AIR;
+		}
+
+		if (noise(x, y, z, 3, 0) > 0.62f) {
+			return CAVE_AIR;
+		}
+
+		final int h = hash(x, y, z, 1) & 0xFF;
+
+		if (h < 4) {
+			return COAL_ORE;
+		} else if (h < 6) {
+			return IRON_ORE;
+		}
+
+		return y < 24 ? DEEPSLATE : STONE;
+	}
+
+	private BlockState foliage(int x, int y, int z) {
+		final int ground = GROUND_Y + (int) (noise(x, 0, z, 4, 2) * 8);
+
+		if (y < ground - 3) {
+			return STONE;
+		} else if (y < ground) {
+			return DIRT;
+		} else if (y == ground) {
+			return GRASS_BLOCK;
+		}
+
+		// trees on a jittered 5x5 grid, canopy may cross chunk and region boundaries
+		final int cellX = Math.floorDiv(x, 5);
+		final int cellZ = Math.floorDiv(z, 5);
+
+		for (int cx = cellX - 1; cx <= cellX + 1; ++cx) {
+			for (int cz = cellZ - 1; cz <= cellZ + 1; ++cz) {
+				final int th = hash(cx, 0, cz, 3);
+				final int tx = cx * 5 + (th & 3);
+				final int tz = cz * 5 + ((th >> 2) & 3);
+				final int tBase = GROUND_Y + (int) (noise(tx, 0, tz, 4, 2) * 8) + 1;
+				final int tTop = tBase + 4 + ((th >> 4) & 3);
+
+				if (x == tx && z == tz && y >= tBase && y < tTop) {
+					return OAK_LOG;
+				}
+
+				final int dx = x - tx;
+				final int dy = y - tTop;
+				final int dz = z - tz;
+
+				if (dy >= -2 && dy <= 1 && dx * dx + dz * dz + dy * dy <= 6) {
+					return OAK_LEAVES;
+				}
+			}
+		}
+
+		if (y == ground + 1) {
+			final int h = hash(x, y, z, 4) & 0xF;
+
+			if (h < 8) {
+				return GRASS;
+			} else if (h == 8) {
+				return POPPY;
+			} else if (h == 9) {
+				return DANDELION;
+			}
+		}
+
+		return AIR;
+	}
+
+	private BlockState ocean(int x, int y, int z) {
+		final int floor = 36 + (int) (noise(x, 0, z, 4, 5) * 10);
+
+		if (y < floor - 4) {
+			return STONE;
+		} else if (y < floor) {
+			return (hash(x, y, z, 6) & 3) == 0 ? GRAVEL : SAND;
+		} else if (y >= GROUND_Y) {
+			return AIR;
+		}
+
+		final int h = hash(x, 0, z, 7) & 0xF;
+
+		if (h == 0) {
+			// kelp columns of varying height
+			return y < floor + 4 + (hash(x, 0, z, 8) & 0xF) ? KELP_PLANT : WATER;
+		} else if (h < 5 && y == floor) {
+			return SEAGRASS;
+		}
+
+		return WATER;
+	}
+
+	private BlockState redstone(int x, int y, int z) {
+		if (y < GROUND_Y) {
+			return STONE;
+		} else if (y == GROUND_Y) {
+			return STONE_BRICKS;
+		}
+
+		// stacked circuit floors on a 4-block pitch with glass separators
+		final int layer = y - GROUND_Y - 1;
+
+		if (layer >= 24) {
+			return AIR;
+		}
+
+		final int ly = layer & 3;
+
+		if (ly == 3) {
+			return ((x & 7) == 0 || (z & 7) == 0) ? STONE_BRICKS : GLASS;
+		}
+
+		if (ly != 0) {
+			return ly == 1 && (x & 3) == 2 && (z & 3) == 2 ? REDSTONE_TORCH : AIR;
+		}
+
+		switch (hash(x, layer, z, 9) & 7) {
+			case 0:
+			case 1:
+			case 2:
+				return REDSTONE_WIRE;
+			case 3:
+				return REPEATER;
+			case 4:
+				return REDSTONE_LAMP;
+			case 5:
+				return PISTON;
+			case 6:
+				return OBSERVER;
+			default:
+				return REDSTONE_BLOCK;
+		}
+	}
+
+	private int hash(int x, int y, int z, int salt) {
+		long h = seed ^ (salt * 0x9E3779B97F4A7C15L);
+		h ^= x * 0xC2B2AE3D27D4EB4FL;
+		h = Long.rotateLeft(h, 31) * 0x165667B19E3779F9L;
+		h ^= y * 0x27D4EB2F165667C5L;
+		h = Long.rotateLeft(h, 27) * 0x94D049BB133111EBL;
+		h ^= z * 0xBF58476D1CE4E5B9L;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/** Trilinear value noise in 0..1 with lattice spacing of 1 << shift. */
+	private float noise(int x, int y, int z, int shift, int salt) {
+		final int scale = 1 << shift;
+		final int x0 = x >> shift;
+		final int y0 = y >> shift;
+		final int z0 = z >> shift;
+		final float fx = (float) (x & (scale - 1)) / scale;
+		final float fy = (float) (y & (scale - 1)) / scale;
+		final float fz = (float) (z & (scale - 1)) / scale;
+
+		final float c00 = lerp(fx, lattice(x0, y0, z0, salt), lattice(x0 + 1, y0, z0, salt));
+		final float c10 = lerp(fx, lattice(x0, y0 + 1, z0, salt), lattice(x0 + 1, y0 + 1, z0, salt));
+		final float c01 = lerp(fx, lattice(x0, y0, z0 + 1, salt), lattice(x0 + 1, y0, z0 + 1, salt));
+		final float c11 = lerp(fx, lattice(x0, y0 + 1, z0 + 1, salt), lattice(x0 + 1, y0 + 1, z0 + 1, salt));
+
+		return lerp(fz, lerp(fy, c00, c10), lerp(fy, c01, c11));
+	}
+
+	private float lattice(int x, int y, int z, int salt) {
+		return (hash(x, y, z, salt) & 0xFFFF) / 65535f;
+	}
+
+	private static float lerp(float t, float a, float b) {
+		return a + t * (b - a);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.encoding;
+
+import static grondag.canvas.buffer.format.CanvasVertexFormats.MATERIAL_INT_QUAD_STRIDE;
+import static grondag.canvas.buffer.format.CanvasVertexFormats.MATERIAL_INT_VERTEX_STRIDE;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collector side of quad encoding: allocation, growth and copy-in of
+ * prebuilt vertex data in the terrain material format, plus translucent resort.
+ * No quad encoder runs here - see {@code QuadEncoderBenchmark} for that.
+ *
+ * <p>Quad contents are synthetic. A new collector is created for each
+ * invocation, the same as a region build, so growth cost is included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayVertexCollectorBenchmark {
+	@Param({"256", "4096", "32768"})
+	public int quadCount;
+
+	private int[] quadData;
+	private ArrayVertexCollector sortCollector;
+	private int[] sortState;
+
+	@Setup
+	public void setup() {
+		final Random r = new Random(42);
+		quadData = new int[quadCount * MATERIAL_INT_QUAD_STRIDE];
+
+		for (int q = 0; q < quadCount; ++q) {
+			final float x = r.nextInt(16);
+			final float y = r.nextInt(16);
+			final float z = r.nextInt(16);
+
+			for (int v = 0; v < 4; ++v) {
+				final int i = q * MATERIAL_INT_QUAD_STRIDE + v * MATERIAL_INT_VERTEX_STRIDE;
+				quadData[i] = Float.floatToRawIntBits(x + (v & 1));
+				quadData[i + 1] = Float.floatToRawIntBits(y);
+				quadData[i + 2] = Float.floatToRawIntBits(z + (v >> 1));
+
+				for (int k = 3; k < MATERIAL_INT_VERTEX_STRIDE; ++k) {
+					quadData[i + k] = r.nextInt();
+				}
+			}
+		}
+
+		// render state is only consulted when drawing
+		sortCollector = new ArrayVertexCollector(null);
+		copyQuads(sortCollector);
+		sortState = sortCollector.saveState(null);
+	}
+
+	private void copyQuads(ArrayVertexCollector collector) {
+		final int[] quadData = this.quadData;
+
+		for (int q = 0; q < quadCount; ++q) {
+			final int k = collector.allocate(MATERIAL_INT_QUAD_STRIDE);
+			System.arraycopy(quadData, q * MATERIAL_INT_QUAD_STRIDE, collector.data(), k, MATERIAL_INT_QUAD_STRIDE);
+		}
+	}
+
+	@Benchmark
+	public int allocateAndCopy() {
+		final ArrayVertexCollector collector = new ArrayVertexCollector(null);
+		copyQuads(collector);
+		return collector.integerSize();
+	}
+
+	@Benchmark
+	public boolean sortQuads() {
+		sortCollector.loadState(sortState);
+		return sortCollector.sortQuads(8.5f, 20f, 8.5f);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.encoding;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.texture.SpriteAtlasTexture;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Direction;
+
+import net.fabricmc.fabric.api.renderer.v1.material.BlendMode;
+import net.fabricmc.fabric.api.renderer.v1.mesh.MutableQuadView;
+
+import grondag.canvas.apiimpl.Canvas;
+import grondag.canvas.bench.ClientBenchmarkLauncher;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
+import grondag.canvas.material.state.RenderMaterialImpl;
+
+/**
+ * Quad encoding through {@link VertexCollectorList.Consumer#emit()}: the shipping {@link QuadEncoder}
+ * for the format, material index lookup and collector writes. {@code TERRAIN} uses the terrain
+ * format and encoder selected by the current config, {@code MATERIAL} the one used outside terrain.
+ *
+ * <p>Quads are synthetic full faces at seeded positions in a region, with block atlas sprites.
+ * Collectors are cleared after each invocation, the same as a region build, so growth cost is included.
+ *
+ * <p>Material indexing needs the loaded block atlas, so this only runs inside the dev client:
+ * {@code ./gradlew runClient -PclientJmhArgs="QuadEncoder"}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadEncoderBenchmark {
+	private static final String[] SPRITES = {"block/stone", "block/dirt", "block/grass_block_top", "block/oak_planks", "block/cobblestone", "block/sand"};
+
+	@Param({"256", "4096", "32768"})
+	public int quadCount;
+
+	@Param({"TERRAIN", "MATERIAL"})
+	public String format;
+
+	private VertexCollectorList collectors;
+	private RenderMaterialImpl material;
+	private Direction[] faces;
+	private float[] origins;
+	private Sprite[] sprites;
+	private int[] lightmaps;
+
+	@Setup
+	public void setup() {
+		final MinecraftClient client = ClientBenchmarkLauncher.requireClient();
+		collectors = "TERRAIN".equals(format)
+			? new VertexCollectorList(CanvasVertexFormats.TERRAIN_FORMAT, CanvasVertexFormats.TERRAIN_ENCODER)
+			: new VertexCollectorList();
+
+		material = Canvas.INSTANCE.materialFinder().blendMode(BlendMode.SOLID).find();
+		final Random r = new Random(42);
+		faces = new Direction[quadCount];
+		origins = new float[quadCount * 3];
+		sprites = new Sprite[quadCount];
+		lightmaps = new int[quadCount];
+
+		for (int q = 0; q < quadCount; ++q) {
+			faces[q] = Direction.values()[r.nextInt(6)];
+			origins[q * 3] = r.nextInt(16);
+			origins[q * 3 + 1] = r.nextInt(16);
+			origins[q * 3 + 2] = r.nextInt(16);
+			sprites[q] = client.getSpriteAtlas(SpriteAtlasTexture.BLOCK_ATLAS_TEXTURE).apply(new Identifier(SPRITES[r.nextInt(SPRITES.length)]));
+			lightmaps[q] = (r.nextInt(16) << 20) | (r.nextInt(16) << 4);
+		}
+
+		// first pass assigns material and sprite indices, which later passes only look up
+		encode();
+	}
+
+	@Benchmark
+	public int encode() {
+		final VertexCollectorList.Consumer quad = collectors.consumer;
+		final float[] origins = this.origins;
+
+		for (int q = 0; q < quadCount; ++q) {
+			quad.material(material);
+			quad.square(faces[q], 0, 0, 1, 1, 0);
+			quad.spriteBake(sprites[q], MutableQuadView.BAKE_LOCK_UV);
+
+			// square() places the face in a unit cube at the origin - move it after UVs are locked
+			for (int v = 0; v < 4; ++v) {
+				quad.pos(v, quad.x(v) + origins[q * 3], quad.y(v) + origins[q * 3 + 1], quad.z(v) + origins[q * 3 + 2]);
+				quad.vertexColor(v, -1);
+				quad.lightmap(v, lightmaps[q]);
+			}
+
+			quad.emit();
+		}
+
+		final int result = collectors.totalBytes(false);
+		collectors.clear();
+		return result;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.material.state;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collector index lookups from concurrent terrain workers, as done by
+ * {@link CollectorIndexMap#indexFromKey(long)} when quads are routed to collectors.
+ *
+ * <p>{@code indexFromKey} drives the shipping {@link CollectorIndexMap}. Keys are added
+ * in setup through the same slow path, with no render states because creating
+ * them needs a running client. Lookups of existing keys never touch render states,
+ * so the measured steady state is the real one.
+ *
+ * <p>{@code synchronizedBaseline} is NOT shipping code. It is a copy of the previous
+ * implementation, a synchronized lookup on a shared map, kept only as a reference point.
+ *
+ * <p>Nested classes fix the worker count, for example:
+ * {@code ./gradlew jmh -PjmhArgs="CollectorIndexContention"}
+ */
+public class CollectorIndexContentionBenchmark {
+	static final int KEY_COUNT = 256;
+	static final int LOOKUPS = 4096;
+
+	static long key(int i) {
+		// spread like real collector keys - mostly high render state bits
+		return (i * 0x9E3779B97F4A7C15L) >>> 8;
+	}
+
+	@State(Scope.Benchmark)
+	public static class SharedIndex {
+		final Long2IntOpenHashMap baselineMap = new Long2IntOpenHashMap(256, Hash.VERY_FAST_LOAD_FACTOR);
+		int baselineNextIndex;
+
+		@Setup
+		public void setup() {
+			baselineMap.defaultReturnValue(-1);
+
+			for (int i = 0; i < KEY_COUNT; ++i) {
+				CollectorIndexMap.indexFromKey(key(i), k -> null);
+				synchronizedBaseline(key(i));
+			}
+		}
+
+		/** Previous implementation, for comparison only. */
+		synchronized int synchronizedBaseline(long collectorKey) {
+			int result = baselineMap.get(collectorKey);
+
+			if (result == -1) {
+				result = baselineNextIndex++;
+				baselineMap.put(collectorKey, result);
+			}
+
+			return result;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class WorkerKeys {
+		final long[] keys = new long[LOOKUPS];
+
+		@Setup
+		public void setup() {
+			final Random r = new Random(Thread.currentThread().getId());
+
+			// runs of the same collector, like consecutive quads of one material
+			for (int i = 0; i < LOOKUPS; ) {
+				final long key = key(r.nextInt(KEY_COUNT));
+				final int run = 1 + r.nextInt(12);
+
+				for (int j = 0; j < run && i < LOOKUPS; ++j) {
+					keys[i++] = key;
+				}
+			}
+		}
+	}
+
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(1)
+	public abstract static class AbstractContention {
+		/** Takes the shared state so its setup adds the keys first. */
+		@Benchmark
+		public int indexFromKey(SharedIndex index, WorkerKeys worker) {
+			final long[] keys = worker.keys;
+			int result = 0;
+
+			for (int i = 0; i < LOOKUPS; ++i) {
+				result += CollectorIndexMap.indexFromKey(keys[i]);
+			}
+
+			return result;
+		}
+
+		@Benchmark
+		public int synchronizedBaseline(SharedIndex index, WorkerKeys worker) {
+			final long[] keys = worker.keys;
+			int result = 0;
+
+			for (int i = 0; i < LOOKUPS; ++i) {
+				result += index.synchronizedBaseline(keys[i]);
+			}
+
+			return result;
+		}
+	}
+
+	@Threads(1)
+	public static class Threads1 extends AbstractContention { }
+
+	@Threads(4)
+	public static class Threads4 extends AbstractContention { }
+
+	@Threads(8)
+	public static class Threads8 extends AbstractContention { }
+}
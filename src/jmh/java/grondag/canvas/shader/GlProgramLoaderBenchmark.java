@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.Identifier;
+
+import grondag.canvas.shader.ShaderPreprocessor.Defines;
+import grondag.canvas.varia.GFX;
+
+/**
+ * CPU side of loading a pipeline's shaders after a reload, with GL calls going to
+ * the headless recorder. Sources come from a synthetic include graph in memory.
+ *
+ * <p>{@code serial} is the previous path - each shader is assembled, compiled and its
+ * status queried in turn on one thread. {@code batched} is {@link GlProgramLoader} -
+ * sources are assembled in parallel, then compiles are issued with no status queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcanvas.headlessGfx=true")
+public class GlProgramLoaderBenchmark {
+	static final int HEADER_COUNT = 40;
+	static final int ROOT_COUNT = 8;
+
+	@Param({"16", "64"})
+	public int shaderCount;
+
+	private final HashMap<Identifier, String> sources = new HashMap<>();
+	private final ObjectArrayList<Shader> shaders = new ObjectArrayList<>();
+	private ShaderPreprocessor preprocessor;
+
+	@Setup
+	public void setup() {
+		final Random r = new Random(42);
+
+		for (int i = 0; i < HEADER_COUNT; ++i) {
+			final StringBuilder src = new StringBuilder();
+
+			for (int j = 0; j < 3 && i > 0; ++j) {
+				src.append("#include bench:shaders/header").append(r.nextInt(i)).append(".glsl\n");
+			}
+
+			src.append("#define HEADER_").append(i).append(" 1\n");
+			appendBody(src, r, 40);
+			sources.put(new Identifier("bench:shaders/header" + i + ".glsl"), src.toString());
+		}
+
+		final Identifier[] roots = new Identifier[ROOT_COUNT];
+
+		for (int i = 0; i < ROOT_COUNT; ++i) {
+			final StringBuilder src = new StringBuilder("#version 330\n#define VERTEX_SHADER\n#define VARIANT 0\n");
+
+			for (int j = 0; j < 12; ++j) {
+				src.append("#include bench:shaders/header").append(r.nextInt(HEADER_COUNT)).append(".glsl\n");
+			}
+
+			appendBody(src, r, 80);
+			roots[i] = new Identifier("bench:shaders/root" + i + ".vert");
+			sources.put(roots[i], src.toString());
+		}
+
+		// every shader is a distinct root and define combination, as after a reload
+		for (int i = 0; i < shaderCount; ++i) {
+			final Defines defines = Defines.builder().define("VARIANT", Integer.toString(i)).build();
+			shaders.add(new BenchShader(roots[i % ROOT_COUNT], defines));
+		}
+	}
+
+	private static void appendBody(StringBuilder src, Random r, int lines) {
+		for (int k = 0; k < lines; ++k) {
+			src.append("vec4 fn").append(r.nextInt(100000)).append("(vec4 x) { return x * ").append(r.nextFloat()).append("; }\n");
+		}
+	}
+
+	private void reload() {
+		preprocessor = new ShaderPreprocessor(sources::get);
+
+		for (final Shader shader : shaders) {
+			shader.forceReload();
+		}
+	}
+
+	@Benchmark
+	public int serial() {
+		reload();
+		int result = 0;
+
+		for (final Shader shader : shaders) {
+			shader.prepare();
+			shader.compile();
+			result += shader.checkStatus() ? 1 : 0;
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int batched() {
+		reload();
+		GlProgramLoader.prepare(shaders);
+
+		for (final Shader shader : shaders) {
+			shader.compile();
+		}
+
+		return shaders.size();
+	}
+
+	private class BenchShader implements Shader {
+		private final Identifier root;
+		private final Defines defines;
+		private String source;
+		private int glId = -1;
+		private boolean needsLoad = true;
+
+		BenchShader(Identifier root, Defines defines) {
+			this.root = root;
+			this.defines = defines;
+		}
+
+		@Override
+		public void forceReload() {
+			needsLoad = true;
+			source = null;
+		}
+
+		@Override
+		public void prepare() {
+			if (source == null) {
+				source = preprocessor.process(preprocessor.source(root), defines);
+			}
+		}
+
+		@Override
+		public void compile() {
+			if (needsLoad) {
+				needsLoad = false;
+				prepare();
+
+				if (glId <= 0) {
+					glId = GFX.createShader(GFX.GL_VERTEX_SHADER);
+				}
+
+				GFX.compileShader(glId);
+			}
+		}
+
+		@Override
+		public boolean attach(int program) {
+			compile();
+			GFX.attachShader(program, glId);
+			return true;
+		}
+
+		@Override
+		public boolean checkStatus() {
+			compile();
+			return GFX.getShader(glId, GFX.GL_COMPILE_STATUS) == GFX.GL_TRUE;
+		}
+
+		@Override
+		public String getSource() {
+			prepare();
+			return source;
+		}
+
+		@Override
+		public boolean containsUniformSpec(String type, String name) {
+			return false;
+		}
+
+		@Override
+		public Identifier getShaderSourceId() {
+			return root;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.Identifier;
+
+import grondag.canvas.shader.ShaderPreprocessor.Defines;
+
+/**
+ * Source assembly for a set of shader variants from a synthetic include graph held
+ * in memory - no resource manager or GL needed.
+ *
+ * <p>{@code legacy} is the previous regex and string replace approach in {@code GlShader}.
+ * {@code cold} uses a new {@link ShaderPreprocessor} each invocation, as after a reload.
+ * {@code warm} reuses one, as when many programs share sources and variants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShaderPreprocessorBenchmark {
+	static final int HEADER_COUNT = 40;
+	static final Pattern INCLUDE = Pattern.compile("^#include\\s+(\\\"*[\\w]+:[\\w/\\.]+)[ \\t]*.*", Pattern.MULTILINE);
+
+	@Param({"8", "64"})
+	public int variantCount;
+
+	private final HashMap<Identifier, String> sources = new HashMap<>();
+	private Identifier[] roots;
+	private Defines[] defines;
+	private ShaderPreprocessor warm;
+
+	@Setup
+	public void setup() {
+		final Random r = new Random(42);
+
+		for (int i = 0; i < HEADER_COUNT; ++i) {
+			final StringBuilder src = new StringBuilder();
+
+			// headers include some earlier headers, like frex api files
+			for (int j = 0; j < 3 && i > 0; ++j) {
+				src.append("#include bench:shaders/header").append(r.nextInt(i)).append(".glsl\n");
+			}
+
+			src.append("#define HEADER_").append(i).append(" 1\n");
+			appendBody(src, r, 40);
+			sources.put(new Identifier("bench:shaders/header" + i + ".glsl"), src.toString());
+		}
+
+		// a few roots shared by many program types, as pipeline passes are
+		roots = new Identifier[4];
+
+		for (int i = 0; i < roots.length; ++i) {
+			final StringBuilder src = new StringBuilder("#version 330\n#define VERTEX_SHADER\n#define SHADOW_MAP_SIZE 1024\n");
+
+			for (int j = 0; j < 12; ++j) {
+				src.append("#include bench:shaders/header").append(r.nextInt(HEADER_COUNT)).append(".glsl\n");
+			}
+
+			appendBody(src, r, 80);
+			roots[i] = new Identifier("bench:shaders/root" + i + ".vert");
+			sources.put(roots[i], src.toString());
+		}
+
+		defines = new Defines[variantCount];
+
+		for (int i = 0; i < variantCount; ++i) {
+			final Defines.Builder builder = Defines.builder();
+
+			if ((i & 1) == 1) {
+				builder.replace("VERTEX_SHADER", "#define FRAGMENT_SHADER");
+			}
+
+			builder.define("SHADOW_MAP_SIZE", Integer.toString(1024 << (i & 3)));
+			defines[i] = builder.build();
+		}
+
+		warm = new ShaderPreprocessor(sources::get);
+	}
+
+	private static void appendBody(StringBuilder src, Random r, int lines) {
+		for (int k = 0; k < lines; ++k) {
+			src.append("vec4 fn").append(r.nextInt(100000)).append("(vec4 x) { return x * ").append(r.nextFloat()).append("; }\n");
+		}
+	}
+
+	@Benchmark
+	public int legacy() {
+		int result = 0;
+
+		for (int v = 0; v < variantCount; ++v) {
+			for (final Identifier root : roots) {
+				String src = legacyIncludes(sources.get(root), new HashSet<>());
+
+				if ((v & 1) == 1) {
+					src = StringUtils.replace(src, "#define VERTEX_SHADER", "#define FRAGMENT_SHADER");
+				}
+
+				src = StringUtils.replace(src, "#define SHADOW_MAP_SIZE 1024", "#define SHADOW_MAP_SIZE " + (1024 << (v & 3)));
+				result += src.length();
+			}
+		}
+
+		return result;
+	}
+
+	private String legacyIncludes(String source, HashSet<String> included) {
+		final Matcher m = INCLUDE.matcher(source);
+
+		while (m.find()) {
+			final String id = StringUtils.replace(m.group(1), "\"", "");
+
+			if (included.contains(id)) {
+				source = StringUtils.replace(source, m.group(0), "");
+			} else {
+				included.add(id);
+				final String src = legacyIncludes(sources.get(new Identifier(id)), included);
+				source = StringUtils.replace(source, m.group(0), src, 1);
+			}
+		}
+
+		return source;
+	}
+
+	@Benchmark
+	public int cold() {
+		return assemble(new ShaderPreprocessor(sources::get));
+	}
+
+	@Benchmark
+	public int warm() {
+		return assemble(warm);
+	}
+
+	private int assemble(ShaderPreprocessor preprocessor) {
+		int result = 0;
+
+		for (int v = 0; v < variantCount; ++v) {
+			for (final Identifier root : roots) {
+				result += preprocessor.process(preprocessor.source(root), defines[v]).length();
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.block.BlockState;
+
+import grondag.canvas.bench.BenchmarkBootstrap;
+import grondag.canvas.bench.RegionStatesFixture;
+
+/**
+ * Occlusion prepare + build for one region. Scores are per block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionOcclusionBenchmark {
+	@Param({"AIR", "SOLID", "SURFACE", "SCATTERED"})
+	public RegionStatesFixture fixture;
+
+	private BlockState[] states;
+
+	private final RegionOcclusionCalculator calculator = new RegionOcclusionCalculator() {
+		@Override
+		protected BlockState blockStateAtIndex(int regionIndex) {
+			return states[regionIndex];
+		}
+
+		@Override
+		protected boolean closedAtRelativePos(BlockState blockState, int regionIndex) {
+			return blockState.isOpaque();
+		}
+	};
+
+	@Setup
+	public void setup() {
+		BenchmarkBootstrap.init();
+		states = fixture.create(42);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(4096)
+	public int[] prepareAndBuild() {
+		calculator.prepare();
+		return calculator.build(false);
+	}
+}
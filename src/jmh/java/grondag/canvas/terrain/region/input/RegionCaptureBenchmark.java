@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.terrain.region.input;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.math.BlockPos;
+
+import grondag.canvas.bench.SyntheticSectionSource;
+import grondag.canvas.bench.SyntheticSectionSource.Profile;
+
+/**
+ * Main-thread capture and worker-side expansion of one region from synthetic terrain.
+ * Each invocation moves to the next region of a 4x4 chunk area, all sections, so scores
+ * are averages that include empty regions in the proportion the profile produces them.
+ *
+ * <p>Subtract {@code claim} from {@code claimAndPrepare} for the cost of {@code InputRegion.prepare}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionCaptureBenchmark {
+	@Param({"FLAT_STONE", "CAVES", "DENSE_FOLIAGE", "WATER_OCEAN", "REDSTONE_BASE"})
+	public Profile profile;
+
+	private SyntheticSectionSource source;
+	private BlockPos[] origins;
+	private int nextOrigin;
+
+	// render context isn't touched by prepare or occlusion
+	private final InputRegion inputRegion = new InputRegion(null);
+
+	@Setup
+	public void setup() {
+		source = new SyntheticSectionSource(profile, 42);
+		origins = new BlockPos[4 * 4 * SyntheticSectionSource.SECTION_COUNT];
+		int i = 0;
+
+		for (int x = 0; x < 4; ++x) {
+			for (int z = 0; z < 4; ++z) {
+				for (int y = 0; y < SyntheticSectionSource.SECTION_COUNT; ++y) {
+					origins[i++] = new BlockPos(x << 4, y << 4, z << 4);
+				}
+			}
+		}
+
+		// generate all columns up front so generation isn't measured
+		for (int x = -1; x <= 4; ++x) {
+			for (int z = -1; z <= 4; ++z) {
+				source.sectionArray(x, z);
+			}
+		}
+	}
+
+	private BlockPos nextOrigin() {
+		final BlockPos result = origins[nextOrigin];
+		nextOrigin = (nextOrigin + 1) % origins.length;
+		return result;
+	}
+
+	@Benchmark
+	public PackedInputRegion claim() {
+		final PackedInputRegion region = PackedInputRegion.claim(source, nextOrigin());
+		region.release();
+		return region;
+	}
+
+	@Benchmark
+	public InputRegion claimAndPrepare() {
+		final PackedInputRegion region = PackedInputRegion.claim(source, nextOrigin());
+
+		if (region != SignalInputRegion.EMPTY) {
+			inputRegion.prepare(region);
+			region.release();
+		}
+
+		return inputRegion;
+	}
+
+	@Benchmark
+	public int[] claimPrepareAndOcclude() {
+		final PackedInputRegion region = PackedInputRegion.claim(source, nextOrigin());
+
+		if (region == SignalInputRegion.EMPTY) {
+			return null;
+		}
+
+		inputRegion.prepare(region);
+		region.release();
+		return inputRegion.occlusion.build(false);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.texture;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.client.texture.MissingSprite;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.texture.SpriteAtlasTexture;
+import net.minecraft.util.Identifier;
+
+import grondag.canvas.bench.BenchmarkBootstrap;
+
+/**
+ * Sprite index lookups from concurrent terrain workers through the atlas provider's
+ * {@link MaterialIndexer}, as done for every quad during region builds.
+ *
+ * <p>{@code indexer} drives the shipping {@code MaterialIndexProvider} indexer. All
+ * sprites are indexed in setup, through the same slow path, so the measured lookups
+ * are the steady state. Each invocation looks up one region's worth of sprites.
+ *
+ * <p>{@code lockedBaseline} is NOT shipping code. It is a copy of the previous
+ * implementation, a synchronized {@code computeIfAbsent} on a shared map, kept only
+ * as a reference point.
+ *
+ * <p>Nested classes fix the worker count. Compare scores across
+ * {@code Threads1}, {@code Threads4} and {@code Threads8}, for example:
+ * {@code ./gradlew jmh -PjmhArgs="MaterialIndexContention"}
+ */
+public class MaterialIndexContentionBenchmark {
+	static final int SPRITE_COUNT = 2048;
+	static final int LOOKUPS = 4096;
+
+	@State(Scope.Benchmark)
+	public static class SharedIndex {
+		MaterialIndexer indexer;
+
+		final Object baselineSync = new Object();
+		final Int2IntOpenHashMap baselineMap = new Int2IntOpenHashMap(64, Hash.VERY_FAST_LOAD_FACTOR);
+		int baselineNextIndex;
+
+		@Setup
+		public void setup() {
+			BenchmarkBootstrap.init();
+			final Identifier atlasId = new Identifier("canvas", "textures/atlas/benchmark.png");
+			// index data only reads the sprite bounds, so one sprite serves every id
+			final Sprite sprite = MissingSprite.getMissingSprite(new SpriteAtlasTexture(atlasId), 0, 1024, 1024, 0, 0);
+			indexer = new MaterialIndexProvider.AtlasIndexProvider(atlasId).getIndexer(1, 2, 0, 0, id -> sprite);
+
+			for (int i = 0; i < SPRITE_COUNT; ++i) {
+				indexer.index(i);
+				lockedBaseline(i);
+			}
+		}
+
+		/** Previous implementation, for comparison only. */
+		int lockedBaseline(int spriteId) {
+			synchronized (baselineSync) {
+				return baselineMap.computeIfAbsent(spriteId, k -> baselineNextIndex++);
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class WorkerSprites {
+		final int[] spriteIds = new int[LOOKUPS];
+
+		@Setup
+		public void setup() {
+			final Random r = new Random(Thread.currentThread().getId());
+
+			// runs of the same sprite, like adjacent faces of one block
+			for (int i = 0; i < LOOKUPS; ) {
+				final int sprite = r.nextInt(SPRITE_COUNT);
+				final int run = 1 + r.nextInt(6);
+
+				for (int j = 0; j < run && i < LOOKUPS; ++j) {
+					spriteIds[i++] = sprite;
+				}
+			}
+		}
+	}
+
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	@Fork(1)
+	public abstract static class AbstractContention {
+		@Benchmark
+		public int indexer(SharedIndex index, WorkerSprites worker) {
+			final MaterialIndexer indexer = index.indexer;
+			final int[] spriteIds = worker.spriteIds;
+			int result = 0;
+
+			for (int i = 0; i < LOOKUPS; ++i) {
+				result += indexer.index(spriteIds[i]);
+			}
+
+			return result;
+		}
+
+		@Benchmark
+		public int lockedBaseline(SharedIndex index, WorkerSprites worker) {
+			final int[] spriteIds = worker.spriteIds;
+			int result = 0;
+
+			for (int i = 0; i < LOOKUPS; ++i) {
+				result += index.lockedBaseline(spriteIds[i]);
+			}
+
+			return result;
+		}
+	}
+
+	@Threads(1)
+	public static class Threads1 extends AbstractContention { }
+
+	@Threads(4)
+	public static class Threads4 extends AbstractContention { }
+
+	@Threads(8)
+	public static class Threads8 extends AbstractContention { }
+}
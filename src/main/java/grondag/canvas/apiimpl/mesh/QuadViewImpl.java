@@ -44,6 +44,7 @@ import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
 
 import grondag.canvas.apiimpl.util.GeometryHelper;
 import grondag.canvas.apiimpl.util.NormalHelper;
+import grondag.canvas.buffer.format.RegionRelativePosition;
 import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.mixinterface.Matrix4fExt;
 import grondag.frex.api.mesh.QuadView;
@@ -435,6 +436,30 @@ public class QuadViewImpl implements QuadView {
 		target[targetIndex + 2] = Float.floatToRawIntBits(zOut);
 	}
 
+	/** Packs the transformed position in two words, see {@link RegionRelativePosition}. */
+	public void transformAndAppendRegionVertex(final int vertexIndex, final Matrix4fExt matrix, int[] target, int targetIndex) {
+		final int[] data = this.data;
+		final int index = baseIndex + vertexIndex * BASE_VERTEX_STRIDE + VERTEX_X;
+		final float x = Float.intBitsToFloat(data[index]);
+		final float y = Float.intBitsToFloat(data[index + 1]);
+		final float z = Float.intBitsToFloat(data[index + 2]);
+
+		final float xOut = matrix.a00() * x + matrix.a01() * y + matrix.a02() * z + matrix.a03();
+		final float yOut = matrix.a10() * x + matrix.a11() * y + matrix.a12() * z + matrix.a13();
+		final float zOut = matrix.a20() * x + matrix.a21() * y + matrix.a22() * z + matrix.a23();
+
+		target[targetIndex] = RegionRelativePosition.packXY(xOut, yOut);
+		target[targetIndex + 1] = RegionRelativePosition.packZW(zOut);
+	}
+
+	/** Packs the untransformed position in two words, see {@link RegionRelativePosition}. */
+	public void appendRegionVertex(final int vertexIndex, int[] target, int targetIndex) {
+		final int[] data = this.data;
+		final int index = baseIndex + vertexIndex * BASE_VERTEX_STRIDE + VERTEX_X;
+		target[targetIndex] = RegionRelativePosition.packXY(Float.intBitsToFloat(data[index]), Float.intBitsToFloat(data[index + 1]));
+		target[targetIndex + 1] = RegionRelativePosition.packZW(Float.intBitsToFloat(data[index + 2]));
+	}
+
 	public void appendVertex(final int vertexIndex, int[] target, int targetIndex) {
 		final int[] data = this.data;
 		final int index = baseIndex + vertexIndex * BASE_VERTEX_STRIDE + VERTEX_X;
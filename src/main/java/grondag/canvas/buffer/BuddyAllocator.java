@@ -0,0 +1,220 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.IntRBTreeSet;
+
+/**
+ * Power-of-two buddy allocator over an abstract range of units.
+ * Knows nothing about GL - callers map units to bytes.
+ *
+ * <p>Always hands out the lowest free address that fits, and freed blocks
+ * merge with their buddy when it is also free. Fragmentation that merging
+ * can't fix is removed by {@link #compact(Relocator)}.
+ */
+public class BuddyAllocator {
+	private final int maxOrder;
+	private final int capacity;
+	/** Free block offsets by order. */
+	private final IntRBTreeSet[] freeBlocks;
+	/** Order of the allocated block starting at each unit, or -1. */
+	private final byte[] blockOrder;
+	private int usedUnits = 0;
+	private int blockCount = 0;
+
+	public BuddyAllocator(int maxOrder) {
+		assert maxOrder >= 0 && maxOrder < 31;
+		this.maxOrder = maxOrder;
+		capacity = 1 << maxOrder;
+		freeBlocks = new IntRBTreeSet[maxOrder + 1];
+
+		for (int i = 0; i <= maxOrder; ++i) {
+			freeBlocks[i] = new IntRBTreeSet();
+		}
+
+		blockOrder = new byte[capacity];
+		clear();
+	}
+
+	private void clear() {
+		for (final IntRBTreeSet set : freeBlocks) {
+			set.clear();
+		}
+
+		freeBlocks[maxOrder].add(0);
+		Arrays.fill(blockOrder, (byte) -1);
+		usedUnits = 0;
+		blockCount = 0;
+	}
+
+	/** Smallest order with a block of at least {@code units}. */
+	public static int orderOf(int units) {
+		return units <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(units - 1);
+	}
+
+	/**
+	 * Claims a block of at least {@code units}, rounded up to a power of two.
+	 * Returns the unit offset of the block, or -1 if no free block is large enough.
+	 */
+	public int allocate(int units) {
+		final int order = orderOf(units);
+
+		if (order > maxOrder) {
+			return -1;
+		}
+
+		int o = order;
+
+		while (o <= maxOrder && freeBlocks[o].isEmpty()) {
+			++o;
+		}
+
+		if (o > maxOrder) {
+			return -1;
+		}
+
+		final int offset = freeBlocks[o].firstInt();
+		freeBlocks[o].remove(offset);
+
+		// split, keeping the low half and freeing the high half
+		while (o > order) {
+			--o;
+			freeBlocks[o].add(offset + (1 << o));
+		}
+
+		blockOrder[offset] = (byte) order;
+		usedUnits += 1 << order;
+		++blockCount;
+		return offset;
+	}
+
+	/** Frees a block previously returned by {@link #allocate(int)}. */
+	public void free(int offset) {
+		int order = blockOrder[offset];
+
+		if (order < 0) {
+			throw new IllegalStateException("No block allocated at " + offset);
+		}
+
+		blockOrder[offset] = -1;
+		usedUnits -= 1 << order;
+		--blockCount;
+
+		while (order < maxOrder) {
+			final int buddy = offset ^ (1 << order);
+
+			if (!freeBlocks[order].remove(buddy)) {
+				break;
+			}
+
+			offset = Math.min(offset, buddy);
+			++order;
+		}
+
+		freeBlocks[order].add(offset);
+	}
+
+	/** Size in units of the block allocated at {@code offset}, or 0 if none. */
+	public int blockSize(int offset) {
+		final int order = blockOrder[offset];
+		return order < 0 ? 0 : 1 << order;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public int usedUnits() {
+		return usedUnits;
+	}
+
+	public int freeUnits() {
+		return capacity - usedUnits;
+	}
+
+	public int blockCount() {
+		return blockCount;
+	}
+
+	public boolean isEmpty() {
+		return blockCount == 0;
+	}
+
+	public int largestFreeBlock() {
+		for (int o = maxOrder; o >= 0; --o) {
+			if (!freeBlocks[o].isEmpty()) {
+				return 1 << o;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Share of free space that can't be used by the largest possible request.
+	 * Zero when compacted or full.
+	 */
+	public float fragmentation() {
+		final int free = freeUnits();
+		return free == 0 ? 0 : 1f - (float) largestFreeBlock() / Integer.highestOneBit(free);
+	}
+
+	/**
+	 * Repacks all blocks from offset zero, largest first, so that free space is
+	 * one contiguous range at the end. Reports each block that moves.
+	 *
+	 * @return number of blocks moved
+	 */
+	public int compact(Relocator relocator) {
+		final int count = blockCount;
+		final long[] blocks = new long[count];
+		int n = 0;
+
+		for (int offset = 0; offset < capacity; ++offset) {
+			final int order = blockOrder[offset];
+
+			if (order >= 0) {
+				// largest first, then lowest address - keeps blocks that are already packed in place
+				blocks[n++] = ((long) (maxOrder - order) << 32) | offset;
+			}
+		}
+
+		Arrays.sort(blocks);
+		clear();
+		int moved = 0;
+
+		for (final long block : blocks) {
+			final int oldOffset = (int) block;
+			final int units = 1 << (maxOrder - (int) (block >>> 32));
+			final int newOffset = allocate(units);
+
+			if (newOffset != oldOffset) {
+				relocator.move(oldOffset, newOffset, units);
+				++moved;
+			}
+		}
+
+		return moved;
+	}
+
+	@FunctionalInterface
+	public interface Relocator {
+		void move(int oldOffset, int newOffset, int units);
+	}
+}
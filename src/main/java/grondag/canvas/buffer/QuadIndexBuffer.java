@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import grondag.canvas.varia.GFX;
+
+/**
+ * Element buffer that draws quads of a vertex buffer in a given order.
+ * Translucent regions are resorted by uploading one of these - six ints
+ * per quad - while their vertex data stays put.
+ */
+public class QuadIndexBuffer {
+	public final int quadCount;
+	private final int byteCount;
+	private ByteBuffer uploadBuffer;
+	private int glBufferId = -1;
+	private boolean isClosed = false;
+
+	/**
+	 * Indices are relative to the first vertex of the draw and use the same
+	 * triangle winding as the vanilla sequential quad buffer.
+	 */
+	public QuadIndexBuffer(int[] quadOrder, int quadCount) {
+		this.quadCount = quadCount;
+		byteCount = quadCount * 6 * 4;
+		uploadBuffer = TransferBufferAllocator.claim(byteCount);
+		final IntBuffer ints = uploadBuffer.asIntBuffer();
+
+		for (int k = 0; k < quadCount; ++k) {
+			final int v = quadOrder[k] * 4;
+			ints.put(v);
+			ints.put(v + 1);
+			ints.put(v + 2);
+			ints.put(v + 2);
+			ints.put(v + 3);
+			ints.put(v);
+		}
+	}
+
+	/**
+	 * Call from render thread. Uploads through the array buffer binding so that
+	 * element buffer state of whatever VAO is bound isn't disturbed.
+	 */
+	public void upload() {
+		final ByteBuffer uploadBuffer = this.uploadBuffer;
+
+		if (uploadBuffer != null) {
+			uploadBuffer.position(0);
+			uploadBuffer.limit(byteCount);
+			glBufferId = GlBufferAllocator.claimBuffer(byteCount);
+			GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, glBufferId);
+			GFX.bufferData(GFX.GL_ARRAY_BUFFER, uploadBuffer, GFX.GL_STATIC_DRAW);
+			GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, 0);
+			TransferBufferAllocator.release(uploadBuffer);
+			this.uploadBuffer = null;
+		}
+	}
+
+	/**
+	 * Binds as element buffer for the currently bound VAO.
+	 * Assumes {@link #upload()} has been called.
+	 */
+	public void bind() {
+		assert glBufferId != -1;
+		GFX.bindBuffer(GFX.GL_ELEMENT_ARRAY_BUFFER, glBufferId);
+	}
+
+	public void close() {
+		if (RenderSystem.isOnRenderThread()) {
+			onClose();
+		} else {
+			RenderSystem.recordRenderCall(this::onClose);
+		}
+	}
+
+	private void onClose() {
+		if (!isClosed) {
+			isClosed = true;
+
+			if (glBufferId != -1) {
+				GlBufferAllocator.releaseBuffer(glBufferId, byteCount);
+				glBufferId = -1;
+			}
+
+			final ByteBuffer uploadBuffer = this.uploadBuffer;
+
+			if (uploadBuffer != null) {
+				TransferBufferAllocator.release(uploadBuffer);
+				this.uploadBuffer = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer;
+
+import java.nio.ByteBuffer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import grondag.canvas.buffer.format.CanvasVertexFormat;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Large vertex buffer shared by many terrain regions.
+ *
+ * <p>Regions claim space through a {@link BuddyAllocator} instead of each owning a
+ * buffer and VAO, so consecutive region draws from the same arena need no buffer
+ * or VAO changes and release doesn't return buffers to the driver.
+ *
+ * <p>Blocks are a whole number of vertices so every allocation maps to a base vertex.
+ * When no arena has a large enough free block but one has enough free space, that
+ * arena is compacted into new storage before another arena is created. Render thread only.
+ */
+public class TerrainArena {
+	private static final CanvasVertexFormat FORMAT = CanvasVertexFormats.TERRAIN_FORMAT;
+	private static final int ORDER = 11;
+	private static final int BLOCK_VERTICES = 256;
+	private static final int BLOCK_BYTES = BLOCK_VERTICES * FORMAT.vertexStrideBytes;
+	private static final int CAPACITY_BYTES = BLOCK_BYTES << ORDER;
+
+	private static final ObjectArrayList<TerrainArena> ARENAS = new ObjectArrayList<>();
+	private static int compactionCount = 0;
+	private static int nextId = 1;
+
+	private final BuddyAllocator allocator = new BuddyAllocator(ORDER);
+	/** Live allocations by block offset. */
+	private final Allocation[] allocations = new Allocation[1 << ORDER];
+	private int glBufferId;
+	private final int vaoId;
+	/** Unique for the session and never zero, for grouping draws by arena. */
+	public final int id = nextId++;
+
+	private TerrainArena() {
+		glBufferId = createStorage();
+		vaoId = GFX.genVertexArray();
+		bindAttributes();
+	}
+
+	private static int createStorage() {
+		final int result = GFX.genBuffer();
+		GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, result);
+		GFX.bufferData(GFX.GL_ARRAY_BUFFER, CAPACITY_BYTES, GFX.GL_STATIC_DRAW);
+		GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, 0);
+		return result;
+	}
+
+	private void bindAttributes() {
+		GFX.bindVertexArray(vaoId);
+		GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, glBufferId);
+		FORMAT.enableAttributes();
+		FORMAT.bindAttributeLocations(0);
+		GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, 0);
+		GFX.bindVertexArray(0);
+	}
+
+	public void bind() {
+		GFX.bindVertexArray(vaoId);
+	}
+
+	/**
+	 * Claims arena space for vertex data of the given size, or null if
+	 * the data is too large to share an arena.
+	 */
+	@Nullable
+	public static Allocation allocate(int bytes) {
+		assert RenderSystem.isOnRenderThread();
+
+		final int blocks = (bytes + BLOCK_BYTES - 1) / BLOCK_BYTES;
+
+		if (blocks > (1 << ORDER) / 2) {
+			return null;
+		}
+
+		final int limit = ARENAS.size();
+		TerrainArena compactCandidate = null;
+
+		for (int i = 0; i < limit; ++i) {
+			final TerrainArena arena = ARENAS.get(i);
+			final Allocation result = arena.tryAllocate(bytes, blocks);
+
+			if (result != null) {
+				return result;
+			}
+
+			if (arena.allocator.freeUnits() >= (1 << BuddyAllocator.orderOf(blocks))
+					&& (compactCandidate == null || arena.allocator.freeUnits() > compactCandidate.allocator.freeUnits())) {
+				compactCandidate = arena;
+			}
+		}
+
+		if (compactCandidate != null) {
+			compactCandidate.compact();
+			final Allocation result = compactCandidate.tryAllocate(bytes, blocks);
+
+			if (result != null) {
+				return result;
+			}
+		}
+
+		final TerrainArena arena = new TerrainArena();
+		ARENAS.add(arena);
+		return arena.tryAllocate(bytes, blocks);
+	}
+
+	@Nullable
+	private Allocation tryAllocate(int bytes, int blocks) {
+		final int offset = allocator.allocate(blocks);
+
+		if (offset == -1) {
+			return null;
+		}
+
+		final Allocation result = new Allocation(this, offset, bytes);
+		allocations[offset] = result;
+		return result;
+	}
+
+	private void release(Allocation allocation) {
+		assert allocations[allocation.blockOffset] == allocation;
+		allocations[allocation.blockOffset] = null;
+		allocator.free(allocation.blockOffset);
+
+		// keep one arena around even if empty to avoid churn
+		if (allocator.isEmpty() && ARENAS.size() > 1) {
+			ARENAS.remove(this);
+			GFX.deleteVertexArray(vaoId);
+			GFX.deleteBuffers(glBufferId);
+			glBufferId = 0;
+		}
+	}
+
+	/**
+	 * Repacks live allocations into new storage. Copying into a fresh buffer
+	 * means moved ranges can't overlap the ranges they are copied from.
+	 */
+	private void compact() {
+		final Allocation[] prior = allocations.clone();
+		allocator.compact((from, to, units) -> prior[from].blockOffset = to);
+
+		final int oldBufferId = glBufferId;
+		glBufferId = createStorage();
+		GFX.bindBuffer(GFX.GL_COPY_READ_BUFFER, oldBufferId);
+		GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, glBufferId);
+
+		for (int i = 0; i < prior.length; ++i) {
+			final Allocation a = prior[i];
+			allocations[i] = null;
+
+			if (a != null) {
+				GFX.copyBufferSubData(GFX.GL_COPY_READ_BUFFER, GFX.GL_COPY_WRITE_BUFFER, (long) i * BLOCK_BYTES, a.byteOffset(), a.bytes);
+			}
+		}
+
+		for (final Allocation a : prior) {
+			if (a != null) {
+				allocations[a.blockOffset] = a;
+			}
+		}
+
+		GFX.bindBuffer(GFX.GL_COPY_READ_BUFFER, 0);
+		GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, 0);
+		GFX.deleteBuffers(oldBufferId);
+		bindAttributes();
+		++compactionCount;
+	}
+
+	public static String debugString() {
+		int used = 0;
+		float fragmentation = 0;
+		final int limit = ARENAS.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final BuddyAllocator allocator = ARENAS.get(i).allocator;
+			used += allocator.usedUnits();
+			fragmentation = Math.max(fragmentation, allocator.fragmentation());
+		}
+
+		return String.format("Terrain arenas: %d @ %dMB, %dMB used, max frag %.2f, %d compactions",
+				limit, (long) limit * CAPACITY_BYTES / 0x100000, (long) used * BLOCK_BYTES / 0x100000, fragmentation, compactionCount);
+	}
+
+	/**
+	 * Vertex data for one drawable. Offsets can change when the arena is compacted,
+	 * so read them at draw time.
+	 */
+	public static class Allocation {
+		public final TerrainArena arena;
+		private final int bytes;
+		private int blockOffset;
+		private boolean isReleased = false;
+
+		private Allocation(TerrainArena arena, int blockOffset, int bytes) {
+			this.arena = arena;
+			this.blockOffset = blockOffset;
+			this.bytes = bytes;
+		}
+
+		public long byteOffset() {
+			return (long) blockOffset * BLOCK_BYTES;
+		}
+
+		/** Index of the first vertex of this allocation within the arena. */
+		public int baseVertex() {
+			return blockOffset * BLOCK_VERTICES;
+		}
+
+		/** Writes staged data from client memory, starting at the current position. */
+		public void write(ByteBuffer data) {
+			GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, arena.glBufferId);
+			GFX.bufferSubData(GFX.GL_COPY_WRITE_BUFFER, byteOffset(), data);
+			GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, 0);
+		}
+
+		/** Copies staged data from the upload ring. */
+		public void write(UploadRing.Slice slice) {
+			GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, arena.glBufferId);
+			slice.copyTo(GFX.GL_COPY_WRITE_BUFFER, byteOffset());
+			GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, 0);
+		}
+
+		public void release() {
+			assert RenderSystem.isOnRenderThread();
+
+			if (!isReleased) {
+				isReleased = true;
+				arena.release(this);
+			}
+		}
+	}
+}
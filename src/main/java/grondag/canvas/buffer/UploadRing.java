@@ -0,0 +1,274 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.config.Configurator;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Persistently mapped staging buffer for terrain uploads.
+ *
+ * <p>Workers write finished vertex data directly into ring memory claimed here.
+ * The render thread then only issues a buffer-to-buffer copy instead of
+ * allocating a transfer buffer and sending client memory through glBufferData.
+ *
+ * <p>Space is reclaimed in claim order once a fence shows the GPU has finished
+ * the copy. When the ring is full, not yet created or not supported, claims
+ * return null and callers fall back to {@link TransferBufferAllocator}.
+ */
+public class UploadRing {
+	private static final int CAPACITY = 0x2000000;
+	private static final int MAX_CLAIM = CAPACITY / 8;
+	private static final int ALIGN_MASK = 63;
+	private static final int FLAGS = GFX.GL_MAP_WRITE_BIT | GFX.GL_MAP_PERSISTENT_BIT | GFX.GL_MAP_COHERENT_BIT;
+
+	private static final int CLAIMED = 0;
+	private static final int COPIED = 1;
+	private static final int FREE = 2;
+
+	private static final ArrayDeque<Slice> SLICES = new ArrayDeque<>();
+	private static final ArrayDeque<Fence> FENCES = new ArrayDeque<>();
+
+	private static volatile ByteBuffer mapped = null;
+	private static int glBufferId = 0;
+	private static boolean unsupported = false;
+	/** Total bytes ever claimed. Ring offset is the low bits. */
+	private static long head = 0;
+	/** Everything claimed before this is free. */
+	private static long tail = 0;
+	/** Collects copies issued since the last fence. Render thread only. */
+	private static Fence pendingFence = null;
+	private static int claimCount = 0;
+	private static int fallbackCount = 0;
+
+	/**
+	 * Claims ring space for an upload of the given size. Any thread.
+	 * Returns null if the caller should use a transfer buffer instead.
+	 */
+	@Nullable
+	public static synchronized Slice claim(int bytes) {
+		final ByteBuffer mapped = UploadRing.mapped;
+
+		if (mapped == null || !Configurator.persistentUploadRing || bytes > MAX_CLAIM) {
+			++fallbackCount;
+			return null;
+		}
+
+		final int size = (bytes + ALIGN_MASK) & ~ALIGN_MASK;
+		int offset = (int) (head & (CAPACITY - 1));
+		// claims are contiguous - skip the remainder at the end of the ring if too small
+		final int padding = offset + size > CAPACITY ? CAPACITY - offset : 0;
+
+		if (head + padding + size - tail > CAPACITY) {
+			++fallbackCount;
+			return null;
+		}
+
+		if (padding != 0) {
+			final Slice skip = new Slice(head, padding, null);
+			skip.state = FREE;
+			SLICES.addLast(skip);
+			head += padding;
+			offset = 0;
+		}
+
+		final Slice result = new Slice(head, size, mapped.slice(offset, bytes).order(ByteOrder.nativeOrder()));
+		SLICES.addLast(result);
+		head += size;
+		++claimCount;
+		return result;
+	}
+
+	/**
+	 * Call from render thread before running uploads. Creates the ring
+	 * the first time and reclaims space the GPU is finished with.
+	 */
+	public static void beginUploads() {
+		assert RenderSystem.isOnRenderThread();
+
+		if (mapped == null) {
+			if (!unsupported && Configurator.persistentUploadRing) {
+				create();
+			}
+
+			return;
+		}
+
+		// GPU completes fences in order so stop at the first one not yet signaled
+		while (!FENCES.isEmpty() && FENCES.peekFirst().poll()) {
+			FENCES.removeFirst();
+		}
+
+		reclaim();
+	}
+
+	/**
+	 * Call from render thread after running uploads. Fences all copies issued
+	 * since the last call, including any from main-thread rebuilds.
+	 */
+	public static void endUploads() {
+		assert RenderSystem.isOnRenderThread();
+
+		final Fence fence = pendingFence;
+
+		if (fence != null) {
+			fence.sync = GFX.fenceSync(GFX.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+			FENCES.addLast(fence);
+			pendingFence = null;
+		}
+	}
+
+	private static synchronized void reclaim() {
+		while (!SLICES.isEmpty()) {
+			final Slice slice = SLICES.peekFirst();
+
+			if (slice.state == FREE || (slice.state == COPIED && slice.fence.signaled)) {
+				tail = slice.start + slice.size;
+				SLICES.removeFirst();
+			} else {
+				break;
+			}
+		}
+	}
+
+	private static synchronized void setState(Slice slice, int state) {
+		slice.state = state;
+	}
+
+	private static void create() {
+		if (!GFX.HEADLESS) {
+			final GLCapabilities caps = GL.getCapabilities();
+
+			if (!caps.OpenGL44 && !caps.GL_ARB_buffer_storage) {
+				unsupported = true;
+				CanvasMod.LOG.info("Persistent buffer mapping not supported. Terrain uploads will use transfer buffers.");
+				return;
+			}
+		}
+
+		final int bufferId = GFX.genBuffer();
+		GFX.bindBuffer(GFX.GL_COPY_READ_BUFFER, bufferId);
+		GFX.bufferStorage(GFX.GL_COPY_READ_BUFFER, CAPACITY, FLAGS);
+		final ByteBuffer buffer = GFX.mapBufferRange(GFX.GL_COPY_READ_BUFFER, 0, CAPACITY, FLAGS);
+		GFX.bindBuffer(GFX.GL_COPY_READ_BUFFER, 0);
+
+		if (buffer == null) {
+			unsupported = true;
+			GFX.deleteBuffers(bufferId);
+			CanvasMod.LOG.warn("Unable to map terrain upload ring. Terrain uploads will use transfer buffers.");
+			return;
+		}
+
+		glBufferId = bufferId;
+		mapped = buffer;
+	}
+
+	public static String debugString() {
+		if (mapped == null) {
+			return "Upload ring: inactive";
+		}
+
+		final long used;
+
+		synchronized (UploadRing.class) {
+			used = head - tail;
+		}
+
+		return String.format("Upload ring: %dMB used, %d claims, %d fallbacks", used / 0x100000, claimCount, fallbackCount);
+	}
+
+	private static class Fence {
+		private long sync;
+		private boolean signaled = false;
+
+		private boolean poll() {
+			final int result = GFX.clientWaitSync(sync, 0, 0);
+
+			if (result == GFX.GL_ALREADY_SIGNALED || result == GFX.GL_CONDITION_SATISFIED) {
+				GFX.deleteSync(sync);
+				signaled = true;
+			}
+
+			return signaled;
+		}
+	}
+
+	/**
+	 * Ring space holding one upload. Written by the claiming thread, then either
+	 * copied or released on the render thread.
+	 */
+	public static class Slice {
+		private final long start;
+		private final int size;
+		private final ByteBuffer buffer;
+		private Fence fence;
+		private int state = CLAIMED;
+
+		private Slice(long start, int size, ByteBuffer buffer) {
+			this.start = start;
+			this.size = size;
+			this.buffer = buffer;
+		}
+
+		/** Mapped memory for this upload, in native byte order. */
+		public ByteBuffer buffer() {
+			return buffer;
+		}
+
+		/**
+		 * Copies slice content to the buffer bound to {@code writeTarget}.
+		 * Space is reclaimed after the GPU completes the copy. Render thread only.
+		 */
+		public void copyTo(int writeTarget, long writeOffset) {
+			assert RenderSystem.isOnRenderThread();
+			assert state == CLAIMED;
+
+			GFX.bindBuffer(GFX.GL_COPY_READ_BUFFER, glBufferId);
+			GFX.copyBufferSubData(GFX.GL_COPY_READ_BUFFER, writeTarget, start & (CAPACITY - 1), writeOffset, buffer.capacity());
+			GFX.bindBuffer(GFX.GL_COPY_READ_BUFFER, 0);
+
+			Fence fence = pendingFence;
+
+			if (fence == null) {
+				fence = new Fence();
+				pendingFence = fence;
+			}
+
+			this.fence = fence;
+			setState(this, COPIED);
+		}
+
+		/** Gives up the slice without copying. Render thread only. */
+		public void release() {
+			assert RenderSystem.isOnRenderThread();
+
+			if (state == CLAIMED) {
+				setState(this, FREE);
+			}
+		}
+	}
+}
@@ -20,8 +20,11 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import org.jetbrains.annotations.Nullable;
 
 import grondag.canvas.buffer.format.CanvasVertexFormat;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
+import grondag.canvas.config.Configurator;
 import grondag.canvas.varia.GFX;
 
 public class VboBuffer {
@@ -29,6 +32,11 @@ public class VboBuffer {
 	public final CanvasVertexFormat format;
 	private final int byteCount;
 	ByteBuffer uploadBuffer;
+	/** Non-null when content is staged in the upload ring instead of a transfer buffer. */
+	private UploadRing.Slice ringSlice;
+	private final boolean isTerrain;
+	/** Non-null when content lives in a shared terrain arena instead of a buffer of its own. */
+	private TerrainArena.Allocation arenaAllocation;
 	private int glBufferId = -1;
 	private boolean isClosed = false;
 	/**
@@ -37,15 +45,50 @@ public class VboBuffer {
 	private int vaoBufferId = VAO_NONE;
 
 	public VboBuffer(int bytes, CanvasVertexFormat format) {
-		uploadBuffer = TransferBufferAllocator.claim(bytes);
+		this(bytes, format, false);
+	}
+
+	/**
+	 * @param isTerrain if true, stage content in the {@link UploadRing} and store it
+	 * in a shared {@link TerrainArena} when those are enabled and have room
+	 */
+	public VboBuffer(int bytes, CanvasVertexFormat format, boolean isTerrain) {
+		assert !isTerrain || format == CanvasVertexFormats.TERRAIN_FORMAT;
+		this.isTerrain = isTerrain;
+		ringSlice = isTerrain ? UploadRing.claim(bytes) : null;
+		uploadBuffer = ringSlice == null ? TransferBufferAllocator.claim(bytes) : ringSlice.buffer();
 		this.format = format;
 		byteCount = bytes;
 	}
 
 	public void upload() {
 		final ByteBuffer uploadBuffer = this.uploadBuffer;
+		final UploadRing.Slice ringSlice = this.ringSlice;
+
+		if (isTerrain && Configurator.terrainVertexArenas && (ringSlice != null || uploadBuffer != null)) {
+			arenaAllocation = TerrainArena.allocate(byteCount);
+		}
+
+		if (arenaAllocation != null) {
+			if (ringSlice != null) {
+				arenaAllocation.write(ringSlice);
+				this.ringSlice = null;
+			} else {
+				uploadBuffer.position(0);
+				uploadBuffer.limit(byteCount);
+				arenaAllocation.write(uploadBuffer);
+				TransferBufferAllocator.release(uploadBuffer);
+			}
 
-		if (uploadBuffer != null) {
+			this.uploadBuffer = null;
+		} else if (ringSlice != null) {
+			GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, glBufferId());
+			GFX.bufferData(GFX.GL_COPY_WRITE_BUFFER, byteCount, GFX.GL_STATIC_DRAW);
+			ringSlice.copyTo(GFX.GL_COPY_WRITE_BUFFER, 0);
+			GFX.bindBuffer(GFX.GL_COPY_WRITE_BUFFER, 0);
+			this.ringSlice = null;
+			this.uploadBuffer = null;
+		} else if (uploadBuffer != null) {
 			uploadBuffer.rewind();
 			GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, glBufferId());
 			GFX.bufferData(GFX.GL_ARRAY_BUFFER, uploadBuffer, GFX.GL_STATIC_DRAW);
@@ -69,7 +112,28 @@ public class VboBuffer {
 		return result;
 	}
 
+	/**
+	 * Index of the first vertex of this buffer's content within the bound vertex buffer.
+	 * Non-zero when content lives in a shared terrain arena.
+	 */
+	public int baseVertex() {
+		return arenaAllocation == null ? 0 : arenaAllocation.baseVertex();
+	}
+
+	/**
+	 * Shared terrain arena holding this buffer's content, or null if it has a buffer of its own.
+	 */
+	@Nullable
+	public TerrainArena arena() {
+		return arenaAllocation == null ? null : arenaAllocation.arena;
+	}
+
 	public void bind() {
+		if (arenaAllocation != null) {
+			arenaAllocation.arena.bind();
+			return;
+		}
+
 		final CanvasVertexFormat format = this.format;
 
 		if (vaoBufferId == VAO_NONE) {
@@ -112,6 +176,19 @@ public class VboBuffer {
 				this.glBufferId = -1;
 			}
 
+			if (arenaAllocation != null) {
+				arenaAllocation.release();
+				arenaAllocation = null;
+			}
+
+			final UploadRing.Slice ringSlice = this.ringSlice;
+
+			if (ringSlice != null) {
+				ringSlice.release();
+				this.ringSlice = null;
+				this.uploadBuffer = null;
+			}
+
 			final ByteBuffer uploadBuffer = this.uploadBuffer;
 
 			if (uploadBuffer != null) {
@@ -16,40 +16,58 @@
 
 package grondag.canvas.buffer.encoding;
 
-import static grondag.canvas.buffer.format.CanvasVertexFormats.MATERIAL_INT_QUAD_STRIDE;
-import static grondag.canvas.buffer.format.CanvasVertexFormats.MATERIAL_INT_VERTEX_STRIDE;
-
 import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import it.unimi.dsi.fastutil.Swapper;
-import it.unimi.dsi.fastutil.ints.IntComparator;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import net.minecraft.util.math.MathHelper;
 
+import grondag.canvas.buffer.format.CanvasVertexFormat;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
+import grondag.canvas.buffer.format.RegionRelativePosition;
 import grondag.canvas.material.state.RenderState;
 
 public class ArrayVertexCollector implements VertexCollector {
-	private int capacity = 1024;
-	private int[] vertexData = new int[capacity];
-	private float[] perQuadDistance = new float[512];
+	private static final int[] EMPTY = new int[0];
+	/** Claimed from {@link CollectorArrayPool} on first use and returned when cleared. */
+	private int capacity = 0;
+	private int[] vertexData = EMPTY;
 	/** also the index of the first vertex when used in VertexConsumer mode. */
 	private int integerSize = 0;
 
 	public final RenderState renderState;
+	public final CanvasVertexFormat format;
+	private final int vertexStrideInts;
+	private final int quadStrideInts;
+	private final boolean regionRelativePosition;
 
 	public ArrayVertexCollector(RenderState renderState) {
+		this(renderState, CanvasVertexFormats.MATERIAL_FORMAT);
+	}
+
+	public ArrayVertexCollector(RenderState renderState, CanvasVertexFormat format) {
 		this.renderState = renderState;
+		this.format = format;
+		vertexStrideInts = format.vertexStrideInts;
+		quadStrideInts = format.quadStrideInts;
+		regionRelativePosition = CanvasVertexFormats.hasRegionRelativePosition(format);
+		swapData = new int[quadStrideInts];
 		arrayCount.incrementAndGet();
-		arryBytes.addAndGet(capacity);
 	}
 
 	protected void grow(int newSize) {
 		if (newSize > capacity) {
-			final int newCapacity = MathHelper.smallestEncompassingPowerOfTwo(newSize);
-			final int[] newData = new int[newCapacity];
-			System.arraycopy(vertexData, 0, newData, 0, capacity);
+			// start at the size recent builds of this render state needed
+			final int[] newData = CollectorArrayPool.claim(Math.max(newSize, CollectorArrayPool.expectedSize(renderState)));
+			final int newCapacity = newData.length;
+
+			if (capacity != 0) {
+				System.arraycopy(vertexData, 0, newData, 0, integerSize);
+				CollectorArrayPool.release(vertexData);
+			}
+
 			arryBytes.addAndGet(newCapacity - capacity);
 			capacity = newCapacity;
 			vertexData = newData;
@@ -65,7 +83,7 @@ public class ArrayVertexCollector implements VertexCollector {
 	}
 
 	public int vertexCount() {
-		return integerSize / MATERIAL_INT_VERTEX_STRIDE;
+		return integerSize / vertexStrideInts;
 	}
 
 	public int quadCount() {
@@ -101,86 +119,192 @@ public class ArrayVertexCollector implements VertexCollector {
 		intBuffer.put(vertexData, 0, integerSize);
 	}
 
+	/** Also returns the backing array to the pool - prior results of {@link #data()} must not be used. */
 	public void clear() {
+		if (capacity != 0) {
+			CollectorArrayPool.recordSize(renderState, integerSize);
+			CollectorArrayPool.release(vertexData);
+			arryBytes.addAndGet(-capacity);
+			vertexData = EMPTY;
+			capacity = 0;
+		}
+
 		integerSize = 0;
 	}
 
 	public boolean sortQuads(float x, float y, float z) {
-		final int quadCount = vertexCount() / 4;
+		final int quadCount = quadCount();
+		return quadCount > 1 && permute(sortKeys(x, y, z, quadCount), quadCount, vertexData, quadStrideInts, swapData);
+	}
+
+	/**
+	 * Sorts like {@link #sortQuads(float, float, float)} but leaves vertex data in place.
+	 * The draw order is written to {@code quadOrder} instead: entry {@code k} is the index
+	 * of the quad drawn at position {@code k}.
+	 *
+	 * @param quadOrder must hold at least {@link #quadCount()} entries, prior content is the current order
+	 * @return true if the order changed
+	 */
+	public boolean sortQuadOrder(float x, float y, float z, int[] quadOrder) {
+		final int quadCount = quadCount();
 
-		if (perQuadDistance.length < quadCount) {
-			perQuadDistance = new float[MathHelper.smallestEncompassingPowerOfTwo(quadCount)];
+		if (quadCount < 2) {
+			return false;
 		}
 
+		final long[] keys = sortKeys(x, y, z, quadCount);
+		boolean didChange = false;
+
+		for (int k = 0; k < quadCount; ++k) {
+			final int quad = (int) keys[k];
+
+			if (quadOrder[k] != quad) {
+				quadOrder[k] = quad;
+				didChange = true;
+			}
+		}
+
+		return didChange;
+	}
+
+	/**
+	 * Sorted keys for the first {@code quadCount} quads, farthest first.
+	 * Low bits of each key hold the quad index. Result is a reused array.
+	 */
+	private long[] sortKeys(float x, float y, float z, int quadCount) {
+		if (sortKeys.length < quadCount) {
+			final int size = MathHelper.smallestEncompassingPowerOfTwo(quadCount);
+			sortKeys = new long[size];
+			sortScratch = new long[size];
+		}
+
+		final long[] keys = sortKeys;
+		final int[] counts = radixCounts;
+		Arrays.fill(counts, 0);
+
+		// Squared distances are never negative, so their raw bits order the same as the floats.
+		// Inverting the bits puts the farthest quad first. Quad index in the low bits keeps
+		// the sort stable - equal distances stay in their current order.
 		for (int j = 0; j < quadCount; ++j) {
-			perQuadDistance[j] = getDistanceSq(x, y, z, MATERIAL_INT_VERTEX_STRIDE, j);
+			final int dist = ~Float.floatToRawIntBits(getDistanceSq(x, y, z, j));
+			keys[j] = ((long) dist << 32) | j;
+			countKeyBytes(counts, dist);
 		}
 
-		didSwap = false;
+		return sortKeys(keys, sortScratch, counts, quadCount);
+	}
+
+	/** Adds the bytes of a key's high half to the histograms {@link #sortKeys(long[], long[], int[], int)} needs. */
+	static void countKeyBytes(int[] counts, int dist) {
+		++counts[dist & 0xFF];
+		++counts[0x100 | ((dist >>> 8) & 0xFF)];
+		++counts[0x200 | ((dist >>> 16) & 0xFF)];
+		++counts[0x300 | (dist >>> 24)];
+	}
 
-		// sort the indexes by distance - farthest first
-		// mergesort is important here - quicksort causes problems
-		// PERF: consider sorting primitive packed long array with distance in high bits
-		// and then use result to reorder the array. Will need to copy vertex data.
-		it.unimi.dsi.fastutil.Arrays.mergeSort(0, quadCount, comparator, swapper);
+	/**
+	 * Stable sort of the first {@code count} keys by their high half, compared unsigned.
+	 * Low halves must already be in order.
+	 *
+	 * @param counts 1024 entries filled by {@link #countKeyBytes(int[], int)} for each key, consumed
+	 * @return {@code keys} or {@code scratch}, whichever holds the result
+	 */
+	static long[] sortKeys(long[] keys, long[] scratch, int[] counts, int count) {
+		// LSD radix sort on the distance bytes only - index bits are already in order
+		for (int pass = 0; pass < 4; ++pass) {
+			final int shift = 32 + pass * 8;
+			final int base = pass << 8;
 
-		return didSwap;
+			// every key has the same byte - nothing to move
+			if (counts[base | ((int) (keys[0] >>> shift) & 0xFF)] == count) continue;
+
+			int sum = 0;
+
+			for (int b = 0; b < 256; ++b) {
+				final int c = counts[base | b];
+				counts[base | b] = sum;
+				sum += c;
+			}
+
+			for (int j = 0; j < count; ++j) {
+				final long k = keys[j];
+				scratch[counts[base | ((int) (k >>> shift) & 0xFF)]++] = k;
+			}
+
+			final long[] swap = keys;
+			keys = scratch;
+			scratch = swap;
+		}
+
+		return keys;
 	}
 
-	private final IntComparator comparator = new IntComparator() {
-		@Override
-		public int compare(int a, int b) {
-			return Float.compare(perQuadDistance[b], perQuadDistance[a]);
+	/**
+	 * Moves each quad to its sorted position, following permutation cycles so every
+	 * quad is copied once. Low bits of each key hold the index of the quad that
+	 * belongs at that position. Keys are consumed.
+	 *
+	 * @param swapData holds at least one quad
+	 */
+	static boolean permute(long[] keys, int quadCount, int[] vertexData, int quadStride, int[] swapData) {
+		boolean didMove = false;
+
+		for (int start = 0; start < quadCount; ++start) {
+			if ((int) keys[start] == start) continue;
+
+			didMove = true;
+			System.arraycopy(vertexData, start * quadStride, swapData, 0, quadStride);
+			int target = start;
+
+			while (true) {
+				final int source = (int) keys[target];
+				keys[target] = target;
+
+				if (source == start) {
+					System.arraycopy(swapData, 0, vertexData, target * quadStride, quadStride);
+					break;
+				}
+
+				System.arraycopy(vertexData, source * quadStride, vertexData, target * quadStride, quadStride);
+				target = source;
+			}
 		}
-	};
-
-	private final int[] swapData = new int[MATERIAL_INT_QUAD_STRIDE * 2];
-	private boolean didSwap = false;
-
-	private final Swapper swapper = new Swapper() {
-		@Override
-		public void swap(int a, int b) {
-			didSwap = true;
-			final float distSwap = perQuadDistance[a];
-			perQuadDistance[a] = perQuadDistance[b];
-			perQuadDistance[b] = distSwap;
-
-			final int aIndex = a * MATERIAL_INT_QUAD_STRIDE;
-			final int bIndex = b * MATERIAL_INT_QUAD_STRIDE;
-
-			System.arraycopy(vertexData, aIndex, swapData, 0, MATERIAL_INT_QUAD_STRIDE);
-			System.arraycopy(vertexData, bIndex, swapData, MATERIAL_INT_QUAD_STRIDE, MATERIAL_INT_QUAD_STRIDE);
-			System.arraycopy(swapData, 0, vertexData, bIndex, MATERIAL_INT_QUAD_STRIDE);
-			System.arraycopy(swapData, MATERIAL_INT_QUAD_STRIDE, vertexData, aIndex, MATERIAL_INT_QUAD_STRIDE);
+
+		return didMove;
+	}
+
+	private long[] sortKeys = new long[512];
+	private long[] sortScratch = new long[512];
+	private final int[] radixCounts = new int[1024];
+	private final int[] swapData;
+
+	private float getDistanceSq(float x, float y, float z, int quadIndex) {
+		final int integerStride = vertexStrideInts;
+		int i = quadIndex * quadStrideInts;
+		float sx = 0, sy = 0, sz = 0;
+
+		// sum vertex coordinates
+		if (regionRelativePosition) {
+			for (int v = 0; v < 4; ++v) {
+				final int xy = vertexData[i];
+				sx += RegionRelativePosition.unpackX(xy);
+				sy += RegionRelativePosition.unpackY(xy);
+				sz += RegionRelativePosition.unpackZ(vertexData[i + 1]);
+				i += integerStride;
+			}
+		} else {
+			for (int v = 0; v < 4; ++v) {
+				sx += Float.intBitsToFloat(vertexData[i]);
+				sy += Float.intBitsToFloat(vertexData[i + 1]);
+				sz += Float.intBitsToFloat(vertexData[i + 2]);
+				i += integerStride;
+			}
 		}
-	};
-
-	private float getDistanceSq(float x, float y, float z, int integerStride, int vertexIndex) {
-		// unpack vertex coordinates
-		int i = vertexIndex * integerStride * 4;
-		final float x0 = Float.intBitsToFloat(vertexData[i]);
-		final float y0 = Float.intBitsToFloat(vertexData[i + 1]);
-		final float z0 = Float.intBitsToFloat(vertexData[i + 2]);
-
-		i += integerStride;
-		final float x1 = Float.intBitsToFloat(vertexData[i]);
-		final float y1 = Float.intBitsToFloat(vertexData[i + 1]);
-		final float z1 = Float.intBitsToFloat(vertexData[i + 2]);
-
-		i += integerStride;
-		final float x2 = Float.intBitsToFloat(vertexData[i]);
-		final float y2 = Float.intBitsToFloat(vertexData[i + 1]);
-		final float z2 = Float.intBitsToFloat(vertexData[i + 2]);
-
-		i += integerStride;
-		final float x3 = Float.intBitsToFloat(vertexData[i]);
-		final float y3 = Float.intBitsToFloat(vertexData[i + 1]);
-		final float z3 = Float.intBitsToFloat(vertexData[i + 2]);
 
 		// compute average distance by component
-		final float dx = (x0 + x1 + x2 + x3) * 0.25f - x;
-		final float dy = (y0 + y1 + y2 + y3) * 0.25f - y;
-		final float dz = (z0 + z1 + z2 + z3) * 0.25f - z;
+		final float dx = sx * 0.25f - x;
+		final float dy = sy * 0.25f - y;
+		final float dz = sz * 0.25f - z;
 
 		return dx * dx + dy * dy + dz * dz;
 	}
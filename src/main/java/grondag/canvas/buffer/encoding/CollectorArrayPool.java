@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.encoding;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.minecraft.util.math.MathHelper;
+
+import grondag.canvas.material.state.RenderState;
+
+/**
+ * Shared power-of-two size classes of int arrays for {@link ArrayVertexCollector}.
+ *
+ * <p>Collectors return their array when cleared and claim one again on first use,
+ * so arrays move between build contexts and materials instead of being pinned by
+ * one collector or dropped to the GC. Each render state remembers how large its
+ * recent collectors grew, so a new claim starts at that size and doesn't copy its
+ * way up through every smaller class.
+ */
+public class CollectorArrayPool {
+	private static final int MIN_BITS = 10;
+	private static final int MAX_BITS = 24;
+	private static final long MAX_RETAINED_BYTES = 0x4000000;
+
+	@SuppressWarnings("unchecked")
+	private static final ConcurrentLinkedQueue<int[]>[] POOLS = new ConcurrentLinkedQueue[MAX_BITS - MIN_BITS + 1];
+	private static final AtomicLong RETAINED_BYTES = new AtomicLong();
+	private static final AtomicInteger HITS = new AtomicInteger();
+	private static final AtomicInteger MISSES = new AtomicInteger();
+
+	/**
+	 * Recent peak integer size by render state index. Decays by 1/8 with each
+	 * smaller build so sizes follow the world being built. Races only lose a sample.
+	 */
+	private static final int[] EXPECTED_SIZE = new int[RenderState.MAX_COUNT];
+
+	static {
+		for (int i = 0; i < POOLS.length; ++i) {
+			POOLS[i] = new ConcurrentLinkedQueue<>();
+		}
+	}
+
+	/** Array of at least {@code minSize} ints. Content is undefined. */
+	public static int[] claim(int minSize) {
+		final int size = MathHelper.smallestEncompassingPowerOfTwo(Math.max(minSize, 1 << MIN_BITS));
+		final int bits = Integer.numberOfTrailingZeros(size);
+
+		if (bits <= MAX_BITS) {
+			final int[] result = POOLS[bits - MIN_BITS].poll();
+
+			if (result != null) {
+				RETAINED_BYTES.addAndGet(-4L * size);
+				HITS.incrementAndGet();
+				return result;
+			}
+		}
+
+		MISSES.incrementAndGet();
+		return new int[size];
+	}
+
+	/** Makes an array from {@link #claim(int)} available for reuse. Caller must not retain it. */
+	public static void release(int[] array) {
+		final int size = array.length;
+		final int bits = Integer.numberOfTrailingZeros(size);
+
+		if (bits < MIN_BITS || bits > MAX_BITS || Integer.bitCount(size) != 1) {
+			return;
+		}
+
+		final long bytes = 4L * size;
+
+		if (RETAINED_BYTES.addAndGet(bytes) > MAX_RETAINED_BYTES) {
+			RETAINED_BYTES.addAndGet(-bytes);
+		} else {
+			POOLS[bits - MIN_BITS].offer(array);
+		}
+	}
+
+	/** Integer size a new collector for the given render state is likely to need. */
+	public static int expectedSize(RenderState renderState) {
+		return renderState == null ? 0 : EXPECTED_SIZE[renderState.index];
+	}
+
+	/** Call with the final size of a collector before it is cleared. */
+	public static void recordSize(RenderState renderState, int integerSize) {
+		if (renderState != null) {
+			final int index = renderState.index;
+			final int expected = EXPECTED_SIZE[index];
+			EXPECTED_SIZE[index] = Math.max(integerSize, expected - (expected >> 3));
+		}
+	}
+
+	public static String debugString() {
+		final int hits = HITS.get();
+		final int total = hits + MISSES.get();
+		return String.format("Collector array pool: %d%% hits, %dMB retained", total == 0 ? 0 : hits * 100 / total, RETAINED_BYTES.get() / 0x100000);
+	}
+}
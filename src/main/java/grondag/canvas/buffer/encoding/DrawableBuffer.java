@@ -80,8 +80,7 @@ public class DrawableBuffer implements AutoCloseable {
 				final RenderState state = states[i];
 				final int vertexCount = counts[i];
 
-				if (state.castShadows || !isShadow) {
-					state.enable();
+				if ((state.castShadows || !isShadow) && state.enable()) {
 					final int elementCount = vertexCount / 4 * 6;
 					final RenderSystem.IndexBuffer indexBuffer = RenderSystem.getSequentialBuffer(state.primitive, elementCount);
 					GFX.bindBuffer(GFX.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getId());
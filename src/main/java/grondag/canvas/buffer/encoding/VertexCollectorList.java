@@ -26,6 +26,7 @@ import net.minecraft.client.render.VertexConsumer;
 import grondag.canvas.apiimpl.Canvas;
 import grondag.canvas.apiimpl.mesh.MeshEncodingHelper;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
+import grondag.canvas.buffer.format.CanvasVertexFormat;
 import grondag.canvas.buffer.format.CanvasVertexFormats;
 import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.material.state.RenderState;
@@ -38,6 +39,21 @@ public class VertexCollectorList {
 	private final ObjectArrayList<ArrayVertexCollector> active = new ObjectArrayList<>();
 	private final ArrayVertexCollector[] collectors = new ArrayVertexCollector[RenderState.MAX_COUNT];
 	private final ObjectArrayList<ArrayVertexCollector> drawList = new ObjectArrayList<>();
+	private final CanvasVertexFormat format;
+	private final QuadEncoder encoder;
+
+	public VertexCollectorList() {
+		this(CanvasVertexFormats.MATERIAL_FORMAT, CanvasVertexFormats.MATERIAL_ENCODER);
+	}
+
+	/**
+	 * @param format vertex format of every collector in this list
+	 * @param encoder must write {@code format}, used for mesh quads emitted to {@link #consumer}
+	 */
+	public VertexCollectorList(CanvasVertexFormat format, QuadEncoder encoder) {
+		this.format = format;
+		this.encoder = encoder;
+	}
 
 	/**
 	 * Where we handle all pre-buffer coloring, lighting, transformation, etc.
@@ -55,7 +71,7 @@ public class VertexCollectorList {
 
 			if (mat.condition.compute()) {
 				complete();
-				CanvasVertexFormats.MATERIAL_ENCODER.encode(this, get(mat));
+				encoder.encode(this, get(mat));
 			}
 
 			clear();
@@ -101,7 +117,7 @@ public class VertexCollectorList {
 		}
 
 		if (result == null) {
-			result = new ArrayVertexCollector(materialState.renderState);
+			result = new ArrayVertexCollector(materialState.renderState, format);
 			collectors[index] = result;
 			active.add(result);
 		}
@@ -170,8 +186,5 @@ public class VertexCollectorList {
 		return drawList;
 	}
 
-	private static final Comparator<ArrayVertexCollector> DRAW_SORT = (a, b) -> {
-		// note reverse argument order - higher priority wins
-		return Long.compare(b.renderState.drawPriority, a.renderState.drawPriority);
-	};
+	private static final Comparator<ArrayVertexCollector> DRAW_SORT = (a, b) -> RenderState.DRAW_ORDER.compare(a.renderState, b.renderState);
 }
@@ -87,6 +87,17 @@ public class CanvasVertexFormat {
 		}
 	}
 
+	/** Attribute names in binding order, for keying cached program binaries. */
+	public String attributeBindings() {
+		final StringBuilder result = new StringBuilder();
+
+		for (final CanvasVertexFormatElement e : elements) {
+			result.append(e.attributeName).append(';');
+		}
+
+		return result.toString();
+	}
+
 	public int attributeCount() {
 		return elements.length;
 	}
@@ -22,6 +22,10 @@ public class CanvasVertexFormatElement {
 	public static final CanvasVertexFormatElement POSITION_3F = new CanvasVertexFormatElement(
 		VertexFormatElement.DataType.FLOAT, 3, "in_vertex", true, false);
 
+	/** Region-relative fixed point position, see {@link RegionRelativePosition}. */
+	public static final CanvasVertexFormatElement POSITION_4S = new CanvasVertexFormatElement(
+		VertexFormatElement.DataType.SHORT, 4, "in_vertex", false, false);
+
 	public static final CanvasVertexFormatElement BASE_RGBA_4UB = new CanvasVertexFormatElement(
 		VertexFormatElement.DataType.UBYTE, 4, "in_color", true, false);
 
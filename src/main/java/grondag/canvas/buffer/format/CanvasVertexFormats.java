@@ -24,6 +24,7 @@ import static grondag.canvas.buffer.format.CanvasVertexFormatElement.LIGHTMAPS_2
 import static grondag.canvas.buffer.format.CanvasVertexFormatElement.MATERIAL_1US;
 import static grondag.canvas.buffer.format.CanvasVertexFormatElement.NORMAL_3B;
 import static grondag.canvas.buffer.format.CanvasVertexFormatElement.POSITION_3F;
+import static grondag.canvas.buffer.format.CanvasVertexFormatElement.POSITION_4S;
 
 import net.fabricmc.fabric.api.renderer.v1.material.BlendMode;
 
@@ -148,6 +149,108 @@ public final class CanvasVertexFormats {
 		}
 	};
 
+	/**
+	 * Same as {@link #COMPACT_MATERIAL} but position is four shorts relative to the
+	 * region origin - see {@link RegionRelativePosition}. 24 bytes instead of 28.
+	 *
+	 * <p>Only valid when the model matrix places vertices relative to the region,
+	 * as it does during terrain builds.
+	 */
+	private static final CanvasVertexFormat COMPACT_TERRAIN = new CanvasVertexFormat(POSITION_4S, BASE_RGBA_4UB, BASE_TEX_2US, LIGHTMAPS_2UB, MATERIAL_1US, NORMAL_3B, AO_1UB);
+
+	private static final int COMPACT_TERRAIN_QUAD_STRIDE = COMPACT_TERRAIN.quadStrideInts;
+
+	private static final QuadEncoder COMPACT_TERRAIN_ENCODER = (quad, buff) -> {
+		final RenderMaterialImpl mat = quad.material();
+
+		int packedNormal = 0;
+		final boolean useNormals = quad.hasVertexNormals();
+
+		if (useNormals) {
+			quad.populateMissingNormals();
+		} else {
+			packedNormal = quad.packedFaceNormal();
+		}
+
+		final int material = mat.dongle().index(quad.spriteId()) << 16;
+
+		int k = buff.allocate(COMPACT_TERRAIN_QUAD_STRIDE);
+		final int[] target = buff.data();
+
+		for (int i = 0; i < 4; i++) {
+			quad.appendRegionVertex(i, target, k);
+			k += 2;
+
+			target[k++] = quad.vertexColor(i);
+			target[k++] = quad.spriteBufferU(i) | (quad.spriteBufferV(i) << 16);
+
+			final int packedLight = quad.lightmap(i);
+			final int blockLight = (packedLight & 0xFF);
+			final int skyLight = ((packedLight >> 16) & 0xFF);
+			target[k++] = blockLight | (skyLight << 8) | material;
+
+			if (useNormals) {
+				packedNormal = quad.packedNormal(i);
+			}
+
+			target[k++] = packedNormal | 0xFF000000;
+		}
+	};
+
+	private static final QuadTranscoder COMPACT_TERRAIN_TRANSCODER = (quad, context, buff) -> {
+		final Matrix4fExt matrix = (Matrix4fExt) (Object) context.matrix();
+		final Matrix3fExt normalMatrix = context.normalMatrix();
+		final int overlay = context.overlay();
+
+		quad.overlay(overlay);
+
+		final float[] aoData = quad.ao;
+		final RenderMaterialImpl mat = quad.material();
+
+		assert mat.blendMode != BlendMode.DEFAULT;
+
+		int packedNormal = 0;
+		int transformedNormal = 0;
+		final boolean useNormals = quad.hasVertexNormals();
+
+		if (useNormals) {
+			quad.populateMissingNormals();
+		} else {
+			packedNormal = quad.packedFaceNormal();
+			transformedNormal = normalMatrix.canvas_transform(packedNormal);
+		}
+
+		final int material = mat.dongle().index(quad.spriteId()) << 16;
+
+		int k = buff.allocate(COMPACT_TERRAIN_QUAD_STRIDE);
+		final int[] target = buff.data();
+
+		for (int i = 0; i < 4; i++) {
+			quad.transformAndAppendRegionVertex(i, matrix, target, k);
+			k += 2;
+
+			target[k++] = quad.vertexColor(i);
+			target[k++] = quad.spriteBufferU(i) | (quad.spriteBufferV(i) << 16);
+
+			final int packedLight = quad.lightmap(i);
+			final int blockLight = (packedLight & 0xFF);
+			final int skyLight = ((packedLight >> 16) & 0xFF);
+			final int ao = aoData == null ? 255 : (Math.round(aoData[i] * 255));
+			target[k++] = blockLight | (skyLight << 8) | material;
+
+			if (useNormals) {
+				final int p = quad.packedNormal(i);
+
+				if (p != packedNormal) {
+					packedNormal = p;
+					transformedNormal = normalMatrix.canvas_transform(packedNormal);
+				}
+			}
+
+			target[k++] = transformedNormal | (ao << 24);
+		}
+	};
+
 	// FEAT: new UNLIT format - no lightmaps on vertex
 	// Position 3F
 	// Color    4UB
@@ -160,4 +263,14 @@ public final class CanvasVertexFormats {
 	public static final int MATERIAL_INT_QUAD_STRIDE = MATERIAL_FORMAT.quadStrideInts;
 	public static final QuadTranscoder MATERIAL_TRANSCODER = COMPACT_TRANSCODER;
 	public static final QuadEncoder MATERIAL_ENCODER = COMPACT_ENCODER;
+
+	/** Format of terrain region buffers. Fixed at startup because built regions and arenas depend on it. */
+	public static final CanvasVertexFormat TERRAIN_FORMAT = Configurator.compactTerrainVertices ? COMPACT_TERRAIN : COMPACT_MATERIAL;
+	public static final QuadTranscoder TERRAIN_TRANSCODER = Configurator.compactTerrainVertices ? COMPACT_TERRAIN_TRANSCODER : COMPACT_TRANSCODER;
+	public static final QuadEncoder TERRAIN_ENCODER = Configurator.compactTerrainVertices ? COMPACT_TERRAIN_ENCODER : COMPACT_ENCODER;
+
+	/** True if positions in {@code format} are packed by {@link RegionRelativePosition}. */
+	public static boolean hasRegionRelativePosition(CanvasVertexFormat format) {
+		return format == COMPACT_TERRAIN;
+	}
 }
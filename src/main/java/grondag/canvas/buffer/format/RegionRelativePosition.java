@@ -0,0 +1,74 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.format;
+
+/**
+ * Packs terrain vertex positions as signed 16-bit fixed point values relative
+ * to the region origin, for {@link CanvasVertexFormatElement#POSITION_4S}.
+ *
+ * <p>The fourth component holds {@link #SCALE} so the shader recovers the
+ * position with {@code in_vertex.xyz / in_vertex.w}. Float formats leave w
+ * at the GL default of 1 and decode the same way.
+ *
+ * <p>Scale is a power of two, so every encoded value decodes exactly and
+ * positions on a 1/1024 block grid survive the round trip unchanged.
+ * Region vertices normally fall within 0-16 plus a small margin for
+ * offsets and oversized models. Anything beyond {@link #MIN} - {@link #MAX}
+ * is clamped.
+ */
+public final class RegionRelativePosition {
+	private RegionRelativePosition() { }
+
+	public static final int SCALE = 1024;
+	public static final float INV_SCALE = 1f / SCALE;
+	public static final float MIN = Short.MIN_VALUE * INV_SCALE;
+	public static final float MAX = Short.MAX_VALUE * INV_SCALE;
+	/** Largest error of any unclamped coordinate after a round trip. */
+	public static final float PRECISION = 0.5f * INV_SCALE;
+
+	/** Signed fixed-point value of a coordinate, clamped to short range. */
+	public static int encode(float coordinate) {
+		final int result = Math.round(coordinate * SCALE);
+		return result < Short.MIN_VALUE ? Short.MIN_VALUE : result > Short.MAX_VALUE ? Short.MAX_VALUE : result;
+	}
+
+	public static float decode(int encoded) {
+		return (short) encoded * INV_SCALE;
+	}
+
+	/** First vertex word: x in the low half, y in the high half. */
+	public static int packXY(float x, float y) {
+		return (encode(x) & 0xFFFF) | (encode(y) << 16);
+	}
+
+	/** Second vertex word: z in the low half, scale divisor in the high half. */
+	public static int packZW(float z) {
+		return (encode(z) & 0xFFFF) | (SCALE << 16);
+	}
+
+	public static float unpackX(int xy) {
+		return decode(xy);
+	}
+
+	public static float unpackY(int xy) {
+		return decode(xy >> 16);
+	}
+
+	public static float unpackZ(int zw) {
+		return decode(zw);
+	}
+}
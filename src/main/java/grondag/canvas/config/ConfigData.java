@@ -53,6 +53,24 @@ class ConfigData {
 	boolean fixLuminousBlockShading = true;
 	@Comment("Terrain setup done off the main render thread. Increases FPS when moving. May see occasional flashes of blank chunks")
 	boolean terrainSetupOffThread = true;
+	@Comment("Copy block states for region rebuilds on worker threads instead of the render thread. Reduces frame time at high render distance.")
+	boolean captureOffThread = true;
+	@Comment("Resort translucent terrain by uploading only a new index buffer. Vertex data stays on the GPU. Reduces upload bandwidth near water and glass.")
+	boolean indexedTranslucentSort = true;
+	@Comment("Workers write terrain vertex data into a persistently mapped ring buffer. Reduces render thread upload time while chunks load. Requires OpenGL 4.4.")
+	boolean persistentUploadRing = true;
+	@Comment("Pack terrain vertex data for many regions into a few large shared buffers. Reduces buffer and VAO changes while drawing terrain.")
+	boolean terrainVertexArenas = true;
+	@Comment("Store terrain vertex positions as 16-bit values relative to the region origin. Smaller vertices, less upload bandwidth. Requires restart.")
+	boolean compactTerrainVertices = true;
+	@Comment("Draw solid terrain for all regions grouped by render state instead of region by region. Fewer GL state changes.")
+	boolean sortTerrainDrawsByState = true;
+	@Comment("Draw grouped terrain with one multi-draw per render state and shared buffer where the driver supports shader draw parameters. Experimental - turned off automatically if shaders fail to build.")
+	boolean multiDrawTerrain = false;
+	@Comment("Save linked shader programs to disk and reuse them on later launches. Skips most shader compiling at startup. Disable if shaders render incorrectly after a driver update.")
+	boolean programBinaryCache = true;
+	@Comment("Skip pipeline passes whose output is never used and let short-lived pipeline images share texture memory. Disable if a pipeline renders incorrectly.")
+	boolean optimizePipelineGraph = true;
 	@Comment("Use more efficient entity culling. Improves framerate in most scenes.")
 	boolean cullEntityRender = true;
 	@Comment("When true, render thread does not yield to other threads every frame. Vanilla behavior is false (yields).")
@@ -67,6 +85,8 @@ class ConfigData {
 	int dynamicFrustumPadding = 20;
 	@Comment("Culls particles that are not in view. Should always be faster.")
 	boolean cullParticles = true;
+	@Comment("Max render thread time per frame for capturing regions to rebuild and urgent rebuilds. In microseconds. Values 500 to 16000.")
+	int regionRebuildBudgetMicros = 3000;
 
 	// DEBUG
 	@Comment("Output runtime per-material shader source. For shader development debugging.")
@@ -91,6 +111,8 @@ class ConfigData {
 	boolean debugOcclusionBoxes = false;
 	@Comment("White stained glass occludes terrain. Use to debug terrain occlusion.")
 	boolean renderWhiteGlassAsOccluder = false;
+	@Comment("Use the original block-at-a-time flood fill for terrain occlusion. Slower. Use to debug terrain occlusion.")
+	boolean scalarOcclusionFill = false;
 	@Comment("Log clipping or other non-critical failures detected by terrain occluder. May spam the log.")
 	boolean traceOcclusionEdgeCases = false;
 	@Comment("Log uniforms not found in shaders. Sometimes useful for shader debug. Will spam the log.")
@@ -19,7 +19,9 @@ package grondag.canvas.config;
 import static grondag.canvas.config.ConfigManager.DEFAULTS;
 import static grondag.canvas.config.ConfigManager.parse;
 import static grondag.canvas.config.Configurator.blendFluidColors;
+import static grondag.canvas.config.Configurator.captureOffThread;
 import static grondag.canvas.config.Configurator.clampExteriorVertices;
+import static grondag.canvas.config.Configurator.compactTerrainVertices;
 import static grondag.canvas.config.Configurator.conciseErrors;
 import static grondag.canvas.config.Configurator.cullEntityRender;
 import static grondag.canvas.config.Configurator.cullParticles;
@@ -33,25 +35,34 @@ import static grondag.canvas.config.Configurator.enableLifeCycleDebug;
 import static grondag.canvas.config.Configurator.fixLuminousBlockShading;
 import static grondag.canvas.config.Configurator.forceJmxModelLoading;
 import static grondag.canvas.config.Configurator.greedyRenderThread;
+import static grondag.canvas.config.Configurator.indexedTranslucentSort;
 import static grondag.canvas.config.Configurator.lightSmoothing;
 import static grondag.canvas.config.Configurator.logGlStateChanges;
 import static grondag.canvas.config.Configurator.logMachineInfo;
 import static grondag.canvas.config.Configurator.logMaterials;
 import static grondag.canvas.config.Configurator.logMissingUniforms;
 import static grondag.canvas.config.Configurator.logRenderLagSpikes;
+import static grondag.canvas.config.Configurator.multiDrawTerrain;
+import static grondag.canvas.config.Configurator.optimizePipelineGraph;
+import static grondag.canvas.config.Configurator.persistentUploadRing;
 import static grondag.canvas.config.Configurator.pipelineId;
 import static grondag.canvas.config.Configurator.preventDepthFighting;
 import static grondag.canvas.config.Configurator.profilerDetailLevel;
 import static grondag.canvas.config.Configurator.profilerOverlayScale;
+import static grondag.canvas.config.Configurator.programBinaryCache;
 import static grondag.canvas.config.Configurator.reduceResolutionOnMac;
+import static grondag.canvas.config.Configurator.regionRebuildBudgetMicros;
 import static grondag.canvas.config.Configurator.reload;
 import static grondag.canvas.config.Configurator.renderLagSpikeFps;
 import static grondag.canvas.config.Configurator.renderWhiteGlassAsOccluder;
 import static grondag.canvas.config.Configurator.safeNativeMemoryAllocation;
+import static grondag.canvas.config.Configurator.scalarOcclusionFill;
 import static grondag.canvas.config.Configurator.semiFlatLighting;
 import static grondag.canvas.config.Configurator.shaderDebug;
+import static grondag.canvas.config.Configurator.sortTerrainDrawsByState;
 import static grondag.canvas.config.Configurator.staticFrustumPadding;
 import static grondag.canvas.config.Configurator.terrainSetupOffThread;
+import static grondag.canvas.config.Configurator.terrainVertexArenas;
 import static grondag.canvas.config.Configurator.traceOcclusionEdgeCases;
 import static grondag.canvas.config.Configurator.wavyGrass;
 
@@ -70,6 +81,7 @@ import net.minecraft.util.Identifier;
 
 import grondag.canvas.apiimpl.Canvas;
 import grondag.canvas.perf.Timekeeper;
+import grondag.canvas.pipeline.Pipeline;
 import grondag.canvas.pipeline.config.PipelineConfig;
 import grondag.canvas.pipeline.config.PipelineDescription;
 import grondag.canvas.pipeline.config.PipelineLoader;
@@ -250,6 +262,80 @@ public class ConfigGui {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.capture_off_thread"), captureOffThread)
+				.setDefaultValue(DEFAULTS.captureOffThread)
+				.setTooltip(parse("config.canvas.help.capture_off_thread"))
+				.setSaveConsumer(b -> {
+					captureOffThread = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.indexed_translucent_sort"), indexedTranslucentSort)
+				.setDefaultValue(DEFAULTS.indexedTranslucentSort)
+				.setTooltip(parse("config.canvas.help.indexed_translucent_sort"))
+				.setSaveConsumer(b -> indexedTranslucentSort = b)
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.persistent_upload_ring"), persistentUploadRing)
+				.setDefaultValue(DEFAULTS.persistentUploadRing)
+				.setTooltip(parse("config.canvas.help.persistent_upload_ring"))
+				.setSaveConsumer(b -> persistentUploadRing = b)
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.terrain_vertex_arenas"), terrainVertexArenas)
+				.setDefaultValue(DEFAULTS.terrainVertexArenas)
+				.setTooltip(parse("config.canvas.help.terrain_vertex_arenas"))
+				.setSaveConsumer(b -> terrainVertexArenas = b)
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.compact_terrain_vertices"), compactTerrainVertices)
+				.setDefaultValue(DEFAULTS.compactTerrainVertices)
+				.setTooltip(parse("config.canvas.help.compact_terrain_vertices"))
+				.setSaveConsumer(b -> compactTerrainVertices = b)
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.sort_terrain_draws_by_state"), sortTerrainDrawsByState)
+				.setDefaultValue(DEFAULTS.sortTerrainDrawsByState)
+				.setTooltip(parse("config.canvas.help.sort_terrain_draws_by_state"))
+				.setSaveConsumer(b -> sortTerrainDrawsByState = b)
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.multi_draw_terrain"), multiDrawTerrain)
+				.setDefaultValue(DEFAULTS.multiDrawTerrain)
+				.setTooltip(parse("config.canvas.help.multi_draw_terrain"))
+				.setSaveConsumer(b -> {
+					reload |= multiDrawTerrain != b;
+					multiDrawTerrain = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.program_binary_cache"), programBinaryCache)
+				.setDefaultValue(DEFAULTS.programBinaryCache)
+				.setTooltip(parse("config.canvas.help.program_binary_cache"))
+				.setSaveConsumer(b -> programBinaryCache = b)
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.optimize_pipeline_graph"), optimizePipelineGraph)
+				.setDefaultValue(DEFAULTS.optimizePipelineGraph)
+				.setTooltip(parse("config.canvas.help.optimize_pipeline_graph"))
+				.setSaveConsumer(b -> {
+					if (optimizePipelineGraph != b) {
+						Pipeline.reload();
+					}
+
+					optimizePipelineGraph = b;
+				})
+				.build());
+
 		tweaks.addEntry(ENTRY_BUILDER
 				.startBooleanToggle(new TranslatableText("config.canvas.value.safe_native_allocation"), safeNativeMemoryAllocation)
 				.setDefaultValue(DEFAULTS.safeNativeMemoryAllocation)
@@ -320,6 +406,15 @@ public class ConfigGui {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startIntSlider(new TranslatableText("config.canvas.value.region_rebuild_budget"), regionRebuildBudgetMicros, 500, 16000)
+				.setDefaultValue(DEFAULTS.regionRebuildBudgetMicros)
+				.setTooltip(parse("config.canvas.help.region_rebuild_budget"))
+				.setSaveConsumer(b -> {
+					regionRebuildBudgetMicros = b;
+				})
+				.build());
+
 		// DEBUG
 		final ConfigCategory debug = builder.getOrCreateCategory(new TranslatableText("config.canvas.category.debug"));
 
@@ -389,6 +484,13 @@ public class ConfigGui {
 				})
 				.build());
 
+		debug.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.scalar_occlusion_fill"), scalarOcclusionFill)
+				.setDefaultValue(DEFAULTS.scalarOcclusionFill)
+				.setTooltip(parse("config.canvas.help.scalar_occlusion_fill"))
+				.setSaveConsumer(b -> scalarOcclusionFill = b)
+				.build());
+
 		debug.addEntry(ENTRY_BUILDER
 				.startBooleanToggle(new TranslatableText("config.canvas.value.trace_occlusion_edge_cases"), traceOcclusionEdgeCases)
 				.setDefaultValue(DEFAULTS.traceOcclusionEdgeCases)
@@ -39,6 +39,15 @@ public class Configurator {
 	public static boolean clampExteriorVertices = DEFAULTS.clampExteriorVertices;
 	public static boolean fixLuminousBlockShading = DEFAULTS.fixLuminousBlockShading;
 	public static boolean terrainSetupOffThread = DEFAULTS.terrainSetupOffThread;
+	public static boolean captureOffThread = DEFAULTS.captureOffThread;
+	public static boolean indexedTranslucentSort = DEFAULTS.indexedTranslucentSort;
+	public static boolean persistentUploadRing = DEFAULTS.persistentUploadRing;
+	public static boolean terrainVertexArenas = DEFAULTS.terrainVertexArenas;
+	public static boolean compactTerrainVertices = DEFAULTS.compactTerrainVertices;
+	public static boolean sortTerrainDrawsByState = DEFAULTS.sortTerrainDrawsByState;
+	public static boolean multiDrawTerrain = DEFAULTS.multiDrawTerrain;
+	public static boolean programBinaryCache = DEFAULTS.programBinaryCache;
+	public static boolean optimizePipelineGraph = DEFAULTS.optimizePipelineGraph;
 	public static boolean cullEntityRender = DEFAULTS.cullEntityRender;
 	public static boolean greedyRenderThread = DEFAULTS.greedyRenderThread;
 	public static boolean forceJmxModelLoading = DEFAULTS.forceJmxModelLoading;
@@ -46,6 +55,7 @@ public class Configurator {
 	public static int staticFrustumPadding = DEFAULTS.staticFrustumPadding;
 	public static int dynamicFrustumPadding = DEFAULTS.dynamicFrustumPadding;
 	public static boolean cullParticles = DEFAULTS.cullParticles;
+	public static int regionRebuildBudgetMicros = DEFAULTS.regionRebuildBudgetMicros;
 	public static boolean shaderDebug = DEFAULTS.shaderDebug;
 	// public static boolean lightmapDebug = DEFAULTS.lightmapDebug;
 	public static boolean conciseErrors = DEFAULTS.conciseErrors;
@@ -57,6 +67,7 @@ public class Configurator {
 	public static boolean debugOcclusionRaster = DEFAULTS.debugOcclusionRaster;
 	public static boolean debugOcclusionBoxes = DEFAULTS.debugOcclusionBoxes;
 	public static boolean renderWhiteGlassAsOccluder = DEFAULTS.renderWhiteGlassAsOccluder;
+	public static boolean scalarOcclusionFill = DEFAULTS.scalarOcclusionFill;
 	public static boolean traceOcclusionEdgeCases = DEFAULTS.traceOcclusionEdgeCases;
 	public static boolean enableBufferDebug = DEFAULTS.enableBufferDebug;
 	public static boolean enableLifeCycleDebug = DEFAULTS.enableLifeCycleDebug;
@@ -107,6 +118,15 @@ public class Configurator {
 		clampExteriorVertices = config.clampExteriorVertices;
 		fixLuminousBlockShading = config.fixLuminousBlockShading;
 		terrainSetupOffThread = config.terrainSetupOffThread;
+		captureOffThread = config.captureOffThread;
+		indexedTranslucentSort = config.indexedTranslucentSort;
+		persistentUploadRing = config.persistentUploadRing;
+		terrainVertexArenas = config.terrainVertexArenas;
+		compactTerrainVertices = config.compactTerrainVertices;
+		sortTerrainDrawsByState = config.sortTerrainDrawsByState;
+		multiDrawTerrain = config.multiDrawTerrain;
+		programBinaryCache = config.programBinaryCache;
+		optimizePipelineGraph = config.optimizePipelineGraph;
 		safeNativeMemoryAllocation = config.safeNativeMemoryAllocation;
 		cullEntityRender = config.cullEntityRender;
 		greedyRenderThread = config.greedyRenderThread;
@@ -115,6 +135,7 @@ public class Configurator {
 		dynamicFrustumPadding = MathHelper.clamp(config.dynamicFrustumPadding, 0, 20);
 		staticFrustumPadding = MathHelper.clamp(config.staticFrustumPadding, 0, 30);
 		cullParticles = config.cullParticles;
+		regionRebuildBudgetMicros = MathHelper.clamp(config.regionRebuildBudgetMicros, 500, 16000);
 
 		// lightmapDebug = config.lightmapDebug;
 		conciseErrors = config.conciseErrors;
@@ -125,6 +146,7 @@ public class Configurator {
 		debugOcclusionBoxes = config.debugOcclusionBoxes;
 		debugOcclusionRaster = config.debugOcclusionRaster;
 		renderWhiteGlassAsOccluder = config.renderWhiteGlassAsOccluder;
+		scalarOcclusionFill = config.scalarOcclusionFill;
 		traceOcclusionEdgeCases = config.traceOcclusionEdgeCases;
 		enableBufferDebug = config.enableBufferDebug;
 		enableLifeCycleDebug = config.enableLifeCycleDebug;
@@ -155,6 +177,15 @@ public class Configurator {
 		config.clampExteriorVertices = clampExteriorVertices;
 		config.fixLuminousBlockShading = fixLuminousBlockShading;
 		config.terrainSetupOffThread = terrainSetupOffThread;
+		config.captureOffThread = captureOffThread;
+		config.indexedTranslucentSort = indexedTranslucentSort;
+		config.persistentUploadRing = persistentUploadRing;
+		config.terrainVertexArenas = terrainVertexArenas;
+		config.compactTerrainVertices = compactTerrainVertices;
+		config.sortTerrainDrawsByState = sortTerrainDrawsByState;
+		config.multiDrawTerrain = multiDrawTerrain;
+		config.programBinaryCache = programBinaryCache;
+		config.optimizePipelineGraph = optimizePipelineGraph;
 		config.safeNativeMemoryAllocation = safeNativeMemoryAllocation;
 		config.cullEntityRender = cullEntityRender;
 		config.greedyRenderThread = greedyRenderThread;
@@ -163,6 +194,7 @@ public class Configurator {
 		config.staticFrustumPadding = staticFrustumPadding;
 		config.dynamicFrustumPadding = dynamicFrustumPadding;
 		config.cullParticles = cullParticles;
+		config.regionRebuildBudgetMicros = regionRebuildBudgetMicros;
 
 		// config.lightmapDebug = lightmapDebug;
 		config.conciseErrors = conciseErrors;
@@ -173,6 +205,7 @@ public class Configurator {
 		config.debugOcclusionBoxes = debugOcclusionBoxes;
 		config.debugOcclusionRaster = debugOcclusionRaster;
 		config.renderWhiteGlassAsOccluder = renderWhiteGlassAsOccluder;
+		config.scalarOcclusionFill = scalarOcclusionFill;
 		config.traceOcclusionEdgeCases = traceOcclusionEdgeCases;
 		config.enableBufferDebug = enableBufferDebug;
 		config.enableLifeCycleDebug = enableLifeCycleDebug;
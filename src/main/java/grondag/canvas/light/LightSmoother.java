@@ -16,6 +16,8 @@
 
 package grondag.canvas.light;
 
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.REGION_PADDING;
+
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
@@ -51,9 +53,11 @@ public class LightSmoother {
 		for (int x = 0; x < POS_DIAMETER; x++) {
 			for (int y = 0; y < POS_DIAMETER; y++) {
 				for (int z = 0; z < POS_DIAMETER; z++) {
-					final int bx = x + minX;
-					final int by = y + minY;
-					final int bz = z + minZ;
+					// Blur margin extends past the captured region. Repeat edge values there
+					// so workers never read the world.
+					final int bx = clampToRegion(x) + minX;
+					final int by = clampToRegion(y) + minY;
+					final int bz = clampToRegion(z) + minZ;
 					smoothPos.set(bx, by, bz);
 
 					final BlockState state = region.getBlockState(bx, by, bz);
@@ -107,6 +111,10 @@ public class LightSmoother {
 		}
 	}
 
+	private static int clampToRegion(int i) {
+		return MathHelper.clamp(i, MARGIN - REGION_PADDING, MARGIN + 15 + REGION_PADDING);
+	}
+
 	private static int index(int x, int y, int z) {
 		return x + y * Y_INC + z * Z_INC;
 	}
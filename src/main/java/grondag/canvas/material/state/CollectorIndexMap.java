@@ -16,8 +16,9 @@
 
 package grondag.canvas.material.state;
 
+import java.util.function.LongFunction;
+
 import it.unimi.dsi.fastutil.Hash;
-import it.unimi.dsi.fastutil.longs.Long2IntFunction;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 
 public class CollectorIndexMap {
@@ -26,17 +27,47 @@ public class CollectorIndexMap {
 
 	private static final long[] KEYS_BY_INDEX = new long[MAX_COLLECTOR_COUNT];
 	private static final RenderState[] RENDER_STATES = new RenderState[MAX_COLLECTOR_COUNT];
-	static final Long2IntOpenHashMap MAP = new Long2IntOpenHashMap(256, Hash.VERY_FAST_LOAD_FACTOR);
 
-	private static final Long2IntFunction FUNC = key -> {
-		final int result = nextIndex++;
-		RENDER_STATES[result] = RenderStateFinder.threadLocal().fromBits(key);
-		KEYS_BY_INDEX[result] = key;
+	/**
+	 * Read-only once published. New keys are rare, so they replace the whole map
+	 * instead of locking every lookup. Writes to the arrays above happen before
+	 * the volatile publish and are visible to any reader that finds the key.
+	 */
+	private static volatile Long2IntOpenHashMap map = newMap(null);
+
+	private static final LongFunction<RenderState> RENDER_STATE_FACTORY = k -> RenderStateFinder.threadLocal().fromBits(k);
+
+	public static int indexFromKey(long collectorKey) {
+		return indexFromKey(collectorKey, RENDER_STATE_FACTORY);
+	}
+
+	/** Lets benchmarks add keys without creating render states. */
+	static int indexFromKey(long collectorKey, LongFunction<RenderState> renderStateFactory) {
+		final int result = map.get(collectorKey);
+		return result == -1 ? addKey(collectorKey, renderStateFactory) : result;
+	}
+
+	private static synchronized int addKey(long collectorKey, LongFunction<RenderState> renderStateFactory) {
+		int result = map.get(collectorKey);
+
+		if (result == -1) {
+			result = nextIndex++;
+			RENDER_STATES[result] = renderStateFactory.apply(collectorKey);
+			KEYS_BY_INDEX[result] = collectorKey;
+
+			// copy after the render state exists in case creating it added other keys
+			final Long2IntOpenHashMap newMap = newMap(map);
+			newMap.put(collectorKey, result);
+			map = newMap;
+		}
+
 		return result;
-	};
+	}
 
-	public static synchronized int indexFromKey(long collectorKey) {
-		return MAP.computeIfAbsent(collectorKey, FUNC);
+	private static Long2IntOpenHashMap newMap(Long2IntOpenHashMap from) {
+		final Long2IntOpenHashMap result = from == null ? new Long2IntOpenHashMap(256, Hash.VERY_FAST_LOAD_FACTOR) : new Long2IntOpenHashMap(from, Hash.VERY_FAST_LOAD_FACTOR);
+		result.defaultReturnValue(-1);
+		return result;
 	}
 
 	public static long keyFromIndex(int index) {
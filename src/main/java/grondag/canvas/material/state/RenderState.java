@@ -16,6 +16,8 @@
 
 package grondag.canvas.material.state;
 
+import java.util.Comparator;
+
 import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.Hash;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -76,11 +78,43 @@ public final class RenderState extends AbstractRenderState {
 
 	public final long drawPriority;
 
+	/**
+	 * Orders states with equal {@link #drawPriority} so those sharing GL state are adjacent.
+	 * Most significant first: target, program, texture, blend, depth test, fog, then the
+	 * remaining flags. State index in the low bits makes every key unique.
+	 */
+	public final long stateGroupKey;
+
 	protected RenderState(long bits) {
 		super(nextIndex++, bits);
 		drawPriority = drawPriority();
+		stateGroupKey = stateGroupKey();
+	}
+
+	private long stateGroupKey() {
+		long result = ((long) target.index) << 56;
+		result |= ((long) shader.programType.ordinal()) << 48;
+		result |= ((long) texture.index) << 32;
+		result |= ((long) transparency.index) << 28;
+		result |= ((long) depthTest.index) << 24;
+		result |= (fog ? 1L : 0L) << 23;
+		result |= (blur ? 1L : 0L) << 22;
+		result |= (cull ? 1L : 0L) << 21;
+		result |= (lines ? 1L : 0L) << 20;
+		result |= index;
+		return result;
 	}
 
+	/**
+	 * Draw order that is correct for a single target and minimizes state changes:
+	 * {@link #drawPriority} first, higher drawn first, then {@link #stateGroupKey}.
+	 */
+	public static final Comparator<RenderState> DRAW_ORDER = (a, b) -> {
+		// note reverse argument order - higher priority wins
+		final int result = Long.compare(b.drawPriority, a.drawPriority);
+		return result == 0 ? Long.compare(a.stateGroupKey, b.stateGroupKey) : result;
+	};
+
 	private long drawPriority() {
 		long result = SORT_BLUR.setValue(blur, 0);
 		result = SORT_DEPTH_TEST.setValue(depthTest.index, result);
@@ -95,23 +129,47 @@ public final class RenderState extends AbstractRenderState {
 		return result;
 	}
 
-	public void enable() {
-		enable(0, 0, 0);
+	public boolean enable() {
+		return enable(0, 0, 0);
 	}
 
-	public void enable(int x, int y, int z) {
+	/**
+	 * @return false if the shader program is still compiling or failed to load - caller should skip the draw
+	 */
+	public boolean enable(int x, int y, int z) {
 		if (SkyShadowRenderer.isActive()) {
-			enableDepthPass(x, y, z, SkyShadowRenderer.cascade());
+			return enableDepthPass(x, y, z, SkyShadowRenderer.cascade());
 		} else {
-			enableMaterial(x, y, z);
+			return enableMaterial(x, y, z);
 		}
 	}
 
-	private void enableDepthPass(int x, int y, int z, int cascade) {
+	/**
+	 * Like {@link #enable(int, int, int)} but the next multi-draw reads the model origin
+	 * of each draw from the draw origin buffer, starting at the given draw.
+	 *
+	 * @return false if the shader program is still compiling or failed to load - caller should skip the draw
+	 */
+	public boolean enableDrawOrigins(int drawOriginBase) {
+		if (!enable(0, 0, 0)) {
+			return false;
+		}
+
+		(SkyShadowRenderer.isActive() ? depthShader : shader).setDrawOriginBase(drawOriginBase);
+		return true;
+	}
+
+	private boolean enableDepthPass(int x, int y, int z, int cascade) {
+		if (!depthShader.activate()) {
+			return false;
+		}
+
+		++enableCount;
+
 		if (shadowActive == this) {
 			depthShader.setModelOrigin(x, y, z);
 			depthShader.setCascade(cascade);
-			return;
+			return true;
 		}
 
 		if (shadowActive == null) {
@@ -119,6 +177,7 @@ public final class RenderState extends AbstractRenderState {
 			Pipeline.skyShadowFbo.bind();
 		}
 
+		++stateChangeCount;
 		shadowActive = this;
 		active = null;
 		texture.materialIndexProvider().enable();
@@ -143,14 +202,21 @@ public final class RenderState extends AbstractRenderState {
 		GFX.enable(GFX.GL_POLYGON_OFFSET_FILL);
 		GFX.polygonOffset(Pipeline.shadowSlopeFactor, Pipeline.shadowBiasUnits);
 		//GL46.glCullFace(GL46.GL_FRONT);
+		return true;
 	}
 
-	private void enableMaterial(int x, int y, int z) {
+	private boolean enableMaterial(int x, int y, int z) {
 		final MaterialShaderImpl shader = MatrixState.get() == MatrixState.SCREEN ? guiShader : this.shader;
 
+		if (!shader.activate()) {
+			return false;
+		}
+
+		++enableCount;
+
 		if (active == this) {
 			shader.setModelOrigin(x, y, z);
-			return;
+			return true;
 		}
 
 		//		if (enablePrint) {
@@ -161,6 +227,7 @@ public final class RenderState extends AbstractRenderState {
 			target.enable();
 		}
 
+		++stateChangeCount;
 		active = this;
 		shadowActive = null;
 		texture.materialIndexProvider().enable();
@@ -200,6 +267,7 @@ public final class RenderState extends AbstractRenderState {
 
 		shader.updateContextInfo(texture.atlasInfo(), target.index);
 		shader.setModelOrigin(x, y, z);
+		return true;
 	}
 
 	private static final BinaryMaterialState CULL_STATE = new BinaryMaterialState(GFX::enableCull, GFX::disableCull);
@@ -229,8 +297,8 @@ public final class RenderState extends AbstractRenderState {
 		active = null;
 		shadowActive = null;
 
-		GFX.glDisable(GFX.GL_POLYGON_OFFSET_FILL);
-		GFX.glCullFace(GFX.GL_BACK);
+		GFX.disable(GFX.GL_POLYGON_OFFSET_FILL);
+		GFX.cullFace(GFX.GL_BACK);
 
 		GlProgram.deactivate();
 		MaterialDecal.disable();
@@ -271,5 +339,22 @@ public final class RenderState extends AbstractRenderState {
 		return STATES[index];
 	}
 
+	private static int enableCount = 0;
+	private static int stateChangeCount = 0;
+	private static int lastFrameEnableCount = 0;
+	private static int lastFrameStateChangeCount = 0;
+
+	/** Call at the start of each frame to roll current counts into the last-frame report. */
+	public static void startFrame() {
+		lastFrameEnableCount = enableCount;
+		lastFrameStateChangeCount = stateChangeCount;
+		enableCount = 0;
+		stateChangeCount = 0;
+	}
+
+	public static String debugString() {
+		return String.format("Render state enables: %d, changes: %d", lastFrameEnableCount, lastFrameStateChangeCount);
+	}
+
 	//	public static boolean enablePrint = false;
 }
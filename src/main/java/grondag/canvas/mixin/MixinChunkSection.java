@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.mixin;
+
+import java.lang.invoke.VarHandle;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.world.chunk.ChunkSection;
+
+import grondag.canvas.mixinterface.ChunkSectionExt;
+
+@Mixin(ChunkSection.class)
+public class MixinChunkSection implements ChunkSectionExt {
+	private volatile int canvas_modificationCount;
+
+	@Inject(method = "setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;", at = @At("HEAD"))
+	private void beforeSetBlockState(int x, int y, int z, BlockState state, boolean lock, CallbackInfoReturnable<BlockState> ci) {
+		canvas_beginModification();
+	}
+
+	@Inject(method = "setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;", at = @At("RETURN"))
+	private void afterSetBlockState(int x, int y, int z, BlockState state, boolean lock, CallbackInfoReturnable<BlockState> ci) {
+		++canvas_modificationCount;
+	}
+
+	@Inject(method = "fromPacket", at = @At("HEAD"))
+	private void beforeFromPacket(PacketByteBuf buf, CallbackInfo ci) {
+		canvas_beginModification();
+	}
+
+	@Inject(method = "fromPacket", at = @At("RETURN"))
+	private void afterFromPacket(PacketByteBuf buf, CallbackInfo ci) {
+		++canvas_modificationCount;
+	}
+
+	private void canvas_beginModification() {
+		++canvas_modificationCount;
+		// odd count must be visible before any section data changes
+		VarHandle.storeStoreFence();
+	}
+
+	@Override
+	public int canvas_modificationCount() {
+		return canvas_modificationCount;
+	}
+}
@@ -26,8 +26,16 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import net.minecraft.client.gui.hud.DebugHud;
 
 import grondag.canvas.buffer.GlBufferAllocator;
+import grondag.canvas.buffer.TerrainArena;
 import grondag.canvas.buffer.TransferBufferAllocator;
+import grondag.canvas.buffer.UploadRing;
 import grondag.canvas.buffer.encoding.ArrayVertexCollector;
+import grondag.canvas.buffer.encoding.CollectorArrayPool;
+import grondag.canvas.material.state.RenderState;
+import grondag.canvas.render.CanvasWorldRenderer;
+import grondag.canvas.shader.ProgramBinaryManager;
+import grondag.canvas.varia.GFX;
+import grondag.canvas.varia.GfxRecorder;
 
 @Mixin(DebugHud.class)
 public class MixinDebugHud {
@@ -41,6 +49,21 @@ public class MixinDebugHud {
 
 		list.add(TransferBufferAllocator.debugString());
 		list.add(GlBufferAllocator.debugString());
+		list.add(UploadRing.debugString());
+		list.add(TerrainArena.debugString());
 		list.add(ArrayVertexCollector.debugReport());
+		list.add(CollectorArrayPool.debugString());
+		list.add(RenderState.debugString());
+		list.add(ProgramBinaryManager.INSTANCE.debugString());
+
+		final CanvasWorldRenderer cwr = CanvasWorldRenderer.instance();
+
+		if (cwr != null) {
+			list.add(cwr.regionRebuildManager.debugString());
+		}
+
+		if (GFX.HEADLESS) {
+			list.add(GfxRecorder.debugString());
+		}
 	}
 }
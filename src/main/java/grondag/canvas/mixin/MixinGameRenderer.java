@@ -29,12 +29,15 @@ import net.minecraft.client.render.GameRenderer;
 import net.minecraft.client.util.math.MatrixStack;
 
 import grondag.canvas.config.Configurator;
+import grondag.canvas.material.state.RenderState;
 import grondag.canvas.mixinterface.GameRendererExt;
 import grondag.canvas.perf.Timekeeper;
 import grondag.canvas.pipeline.BufferDebug;
 import grondag.canvas.pipeline.PipelineManager;
 import grondag.canvas.render.CanvasWorldRenderer;
 import grondag.canvas.shader.data.ScreenRenderState;
+import grondag.canvas.varia.GFX;
+import grondag.canvas.varia.GfxRecorder;
 
 @Mixin(GameRenderer.class)
 public abstract class MixinGameRenderer implements GameRendererExt {
@@ -65,6 +68,11 @@ public abstract class MixinGameRenderer implements GameRendererExt {
 	@Inject(method = "renderWorld", require = 1, at = @At("HEAD"))
 	private void onRenderWorld(CallbackInfo ci) {
 		Timekeeper.instance.startFrame(Timekeeper.ProfilerGroup.GameRendererSetup, "GameRenderer_setup");
+		RenderState.startFrame();
+
+		if (GFX.HEADLESS) {
+			GfxRecorder.startFrame();
+		}
 	}
 
 	@Override
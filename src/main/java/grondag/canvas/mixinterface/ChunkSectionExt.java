@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.mixinterface;
+
+public interface ChunkSectionExt {
+	/**
+	 * Incremented before and after every modification, so the value is odd while
+	 * a modification is in progress. A reader on another thread that sees the same
+	 * even value before and after reading the section saw a consistent section.
+	 */
+	int canvas_modificationCount();
+}
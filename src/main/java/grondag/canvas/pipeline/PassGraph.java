@@ -0,0 +1,326 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.pipeline;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read/write graph of the passes in one frame, in the order they run.
+ *
+ * <p>Nodes are pipeline passes plus external nodes for work the pipeline doesn't
+ * control - world and hand rendering, presenting the default framebuffer. External
+ * nodes are always live and images they touch are never shared.
+ *
+ * <p>{@link #analyze()} finds:<ul>
+ * <li>Persistent images - read before every level is written in the frame, so the
+ * content comes from the previous frame.</li>
+ * <li>Live passes - external, or writing an image that a later live node reads or
+ * that is persistent. Everything else is culled.</li>
+ * <li>Aliases - transient images with the same format key whose lifetimes, from first
+ * to last use by a live node, don't overlap share one texture.</li>
+ * </ul>
+ *
+ * <p>Writes are not treated as replacing earlier content, so a pass is kept if any
+ * later node reads what it writes. That keeps a few passes a tighter analysis could
+ * drop, but never culls one whose output is used.
+ */
+public class PassGraph {
+	private final Object2ObjectOpenHashMap<String, ImageNode> images = new Object2ObjectOpenHashMap<>();
+	private final ObjectArrayList<Node> nodes = new ObjectArrayList<>();
+	private boolean analyzed = false;
+
+	/**
+	 * Declares an image passes can read or write. Unknown names in reads and writes are ignored.
+	 *
+	 * @param lod highest mip level of the image, zero if not mipmapped
+	 * @param formatKey images can share a texture only if their keys are equal, null if never
+	 */
+	public void addImage(String name, int lod, @Nullable String formatKey) {
+		images.putIfAbsent(name, new ImageNode(name, lod, formatKey));
+	}
+
+	/** Adds a pass that runs after every node added before it. */
+	public Node addPass(String name) {
+		return addNode(name, false);
+	}
+
+	/** Adds a node for rendering outside the pipeline passes. Never culled. */
+	public Node addExternal(String name) {
+		return addNode(name, true);
+	}
+
+	private Node addNode(String name, boolean isExternal) {
+		assert !analyzed;
+		final Node result = new Node(name, nodes.size(), isExternal);
+		nodes.add(result);
+		return result;
+	}
+
+	public void analyze() {
+		assert !analyzed;
+		analyzed = true;
+		findPersistent();
+		findLive();
+		findLifetimes();
+		assignAliases();
+	}
+
+	private void findPersistent() {
+		final Object2IntOpenHashMap<String> written = new Object2IntOpenHashMap<>();
+
+		for (final Node node : nodes) {
+			for (final String name : node.reads) {
+				final ImageNode img = images.get(name);
+
+				if (img != null && (written.getInt(name) & img.allLevels()) != img.allLevels()) {
+					img.isPersistent = true;
+				}
+			}
+
+			for (final Object2IntMap.Entry<String> e : node.writes.object2IntEntrySet()) {
+				written.put(e.getKey(), written.getInt(e.getKey()) | e.getIntValue());
+			}
+
+			if (node.isExternal) {
+				for (final String name : node.touched()) {
+					final ImageNode img = images.get(name);
+
+					if (img != null) {
+						img.isPinned = true;
+					}
+				}
+			}
+		}
+	}
+
+	private void findLive() {
+		final ObjectOpenHashSet<String> needed = new ObjectOpenHashSet<>();
+
+		for (final ImageNode img : images.values()) {
+			if (img.isPersistent) {
+				needed.add(img.name);
+			}
+		}
+
+		for (int i = nodes.size() - 1; i >= 0; --i) {
+			final Node node = nodes.get(i);
+			boolean isLive = node.isExternal;
+
+			if (!isLive) {
+				for (final String name : node.writes.keySet()) {
+					if (needed.contains(name)) {
+						isLive = true;
+						break;
+					}
+				}
+			}
+
+			if (isLive) {
+				node.isLive = true;
+				needed.addAll(node.reads);
+			}
+		}
+	}
+
+	private void findLifetimes() {
+		for (final Node node : nodes) {
+			if (node.isLive) {
+				for (final String name : node.touched()) {
+					final ImageNode img = images.get(name);
+
+					if (img != null) {
+						if (img.firstUse == -1) {
+							img.firstUse = node.index;
+						}
+
+						img.lastUse = node.index;
+					}
+				}
+			}
+		}
+	}
+
+	private void assignAliases() {
+		final ObjectArrayList<ImageNode> candidates = new ObjectArrayList<>();
+
+		for (final ImageNode img : images.values()) {
+			if (img.formatKey != null && !img.isPinned && !img.isPersistent) {
+				candidates.add(img);
+			}
+		}
+
+		// By first use, which makes greedy assignment optimal for each key. Images
+		// no live node uses go last and join the first compatible texture.
+		candidates.sort((a, b) -> {
+			final int result = Integer.compare(a.sortUse(), b.sortUse());
+			return result == 0 ? a.name.compareTo(b.name) : result;
+		});
+
+		final ObjectArrayList<ImageNode> owners = new ObjectArrayList<>();
+
+		for (final ImageNode img : candidates) {
+			for (final ImageNode owner : owners) {
+				// strictly before - an image read while the other is written would be a feedback loop
+				if (owner.formatKey.equals(img.formatKey) && (img.firstUse == -1 || owner.sharedLastUse < img.firstUse)) {
+					img.owner = owner;
+					owner.sharedLastUse = Math.max(owner.sharedLastUse, img.lastUse);
+					break;
+				}
+			}
+
+			if (img.owner == img) {
+				img.sharedLastUse = img.lastUse;
+				owners.add(img);
+			}
+		}
+	}
+
+	public ObjectArrayList<Node> nodes() {
+		return nodes;
+	}
+
+	public int liveCount() {
+		assert analyzed;
+		int result = 0;
+
+		for (final Node node : nodes) {
+			if (node.isLive && !node.isExternal) {
+				++result;
+			}
+		}
+
+		return result;
+	}
+
+	public int culledCount() {
+		assert analyzed;
+		int result = 0;
+
+		for (final Node node : nodes) {
+			if (!node.isLive) {
+				++result;
+			}
+		}
+
+		return result;
+	}
+
+	public boolean isPersistent(String imageName) {
+		assert analyzed;
+		final ImageNode img = images.get(imageName);
+		return img != null && img.isPersistent;
+	}
+
+	/**
+	 * Name of the image whose texture the given image should use.
+	 * The image's own name if it doesn't share or isn't declared.
+	 */
+	public String textureOwner(String imageName) {
+		assert analyzed;
+		final ImageNode img = images.get(imageName);
+		return img == null ? imageName : img.owner.name;
+	}
+
+	/** Count of declared images that use another image's texture. */
+	public int aliasCount() {
+		assert analyzed;
+		int result = 0;
+
+		for (final ImageNode img : images.values()) {
+			if (img.owner != img) {
+				++result;
+			}
+		}
+
+		return result;
+	}
+
+	public static class Node {
+		public final String name;
+		public final int index;
+		public final boolean isExternal;
+		private final ObjectArrayList<String> reads = new ObjectArrayList<>();
+		/** Bit mask of written mip levels by image name. */
+		private final Object2IntOpenHashMap<String> writes = new Object2IntOpenHashMap<>();
+		private boolean isLive = false;
+
+		private Node(String name, int index, boolean isExternal) {
+			this.name = name;
+			this.index = index;
+			this.isExternal = isExternal;
+		}
+
+		/** Sampling reads every level of the image. */
+		public Node reads(String imageName) {
+			reads.add(imageName);
+			return this;
+		}
+
+		public Node writes(String imageName, int lod) {
+			writes.put(imageName, writes.getInt(imageName) | (1 << lod));
+			return this;
+		}
+
+		/** For external nodes that draw over existing content. */
+		public Node readsAndWrites(String imageName, int lod) {
+			return reads(imageName).writes(imageName, lod);
+		}
+
+		/** Only meaningful after {@link PassGraph#analyze()}. */
+		public boolean isLive() {
+			return isLive;
+		}
+
+		private ObjectOpenHashSet<String> touched() {
+			final ObjectOpenHashSet<String> result = new ObjectOpenHashSet<>(reads);
+			result.addAll(writes.keySet());
+			return result;
+		}
+	}
+
+	private static class ImageNode {
+		final String name;
+		final int lod;
+		final String formatKey;
+		boolean isPersistent = false;
+		boolean isPinned = false;
+		int firstUse = -1;
+		int lastUse = -1;
+		ImageNode owner = this;
+		/** Last use of any image sharing this one's texture. Only kept on owners. */
+		int sharedLastUse = -1;
+
+		ImageNode(String name, int lod, String formatKey) {
+			this.name = name;
+			this.lod = lod;
+			this.formatKey = formatKey;
+		}
+
+		int sortUse() {
+			return firstUse == -1 ? Integer.MAX_VALUE : firstUse;
+		}
+
+		int allLevels() {
+			return (1 << (lod + 1)) - 1;
+		}
+	}
+}
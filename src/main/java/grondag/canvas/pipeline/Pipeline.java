@@ -19,6 +19,8 @@ package grondag.canvas.pipeline;
 import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.util.Identifier;
 
@@ -34,6 +36,7 @@ import grondag.canvas.pipeline.config.ProgramConfig;
 import grondag.canvas.pipeline.config.SkyShadowConfig;
 import grondag.canvas.pipeline.pass.Pass;
 import grondag.canvas.render.PrimaryFrameBuffer;
+import grondag.canvas.shader.GlProgramLoader;
 import grondag.canvas.shader.ProcessShader;
 
 public class Pipeline {
@@ -148,6 +151,7 @@ public class Pipeline {
 		}
 
 		if (!IMAGES.isEmpty()) {
+			// images sharing a texture appear more than once - close is idempotent
 			IMAGES.values().forEach(img -> img.close());
 			IMAGES.clear();
 		}
@@ -174,13 +178,26 @@ public class Pipeline {
 		final PipelineConfig config = PipelineConfigBuilder.build(new Identifier(Configurator.pipelineId));
 		Pipeline.config = config;
 
+		final PipelinePassGraph passGraph = Configurator.optimizePipelineGraph ? new PipelinePassGraph(config, width, height) : null;
+
 		for (final ImageConfig img : config.images) {
 			if (IMAGES.containsKey(img.name)) {
 				CanvasMod.LOG.warn(String.format("Duplicate pipeline image definition encountered with name %s. Duplicate was skipped.", img.name));
 				continue;
 			}
 
-			IMAGES.put(img.name, new Image(img, img.width > 0 ? img.width : width, img.height > 0 ? img.height : height));
+			if (passGraph == null || passGraph.graph.textureOwner(img.name).equals(img.name)) {
+				IMAGES.put(img.name, new Image(img, img.width > 0 ? img.width : width, img.height > 0 ? img.height : height));
+			}
+		}
+
+		// owners may be declared after the images that share their texture
+		if (passGraph != null) {
+			for (final ImageConfig img : config.images) {
+				if (!IMAGES.containsKey(img.name)) {
+					IMAGES.put(img.name, IMAGES.get(passGraph.graph.textureOwner(img.name)));
+				}
+			}
 		}
 
 		for (final ProgramConfig program : config.programs) {
@@ -241,6 +258,7 @@ public class Pipeline {
 		materialTextures = new ProgramTextureData(config.materialProgram.samplerImages);
 
 		isFabulous = config.fabulosity != null;
+		final ReferenceOpenHashSet<ProcessShader> liveShaders = new ReferenceOpenHashSet<>();
 
 		if (isFabulous) {
 			final FabulousConfig fc = config.fabulosity;
@@ -269,11 +287,7 @@ public class Pipeline {
 			fabTranslucentColor = getImage(b.config.colorAttachments[0].image.name).glId();
 			fabTranslucentDepth = getImage(b.config.depthAttachment.image.name).glId();
 
-			fabulous = new Pass[config.fabulous.length];
-
-			for (int i = 0; i < config.fabulous.length; ++i) {
-				fabulous[i] = Pass.create(config.fabulous[i]);
-			}
+			fabulous = buildPasses(config.fabulous, passGraph == null ? null : passGraph.fabulous, liveShaders);
 		} else {
 			fabEntityFbo = 0;
 			fabEntityColor = 0;
@@ -300,15 +314,33 @@ public class Pipeline {
 
 		BufferDebug.init(config);
 
-		onWorldRenderStart = buildPasses(config, config.onWorldStart);
-		afterRenderHand = buildPasses(config, config.afterRenderHand);
+		onWorldRenderStart = buildPasses(config.onWorldStart, passGraph == null ? null : passGraph.onWorldStart, liveShaders);
+		afterRenderHand = buildPasses(config.afterRenderHand, passGraph == null ? null : passGraph.afterRenderHand, liveShaders);
+
+		if (passGraph != null && Configurator.enableLifeCycleDebug) {
+			CanvasMod.LOG.info(String.format("Lifecycle Event: pipeline graph kept %d passes, culled %d, %d images share another image's texture",
+					passGraph.graph.liveCount(), passGraph.graph.culledCount(), passGraph.graph.aliasCount()));
+		}
+
+		// shader defines depend on the settings above
+		GlProgramLoader.loadPipelinePrograms(liveShaders);
 	}
 
-	private static Pass[] buildPasses(PipelineConfig cfg, PassConfig[] configs) {
+	/**
+	 * Passes the graph culled are skipped. Shaders of the passes kept are added to {@code shaders}.
+	 */
+	private static Pass[] buildPasses(PassConfig[] configs, @Nullable PassGraph.Node[] nodes, ReferenceOpenHashSet<ProcessShader> shaders) {
 		final ObjectArrayList<Pass> passes = new ObjectArrayList<>();
 
 		for (int i = 0; i < configs.length; ++i) {
-			passes.add(Pass.create(configs[i]));
+			if (nodes == null || nodes[i].isLive()) {
+				passes.add(Pass.create(configs[i]));
+				final ProcessShader shader = SHADERS.get(configs[i].program.name);
+
+				if (shader != null) {
+					shaders.add(shader);
+				}
+			}
 		}
 
 		return passes.toArray(new Pass[passes.size()]);
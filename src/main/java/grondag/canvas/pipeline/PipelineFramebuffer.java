@@ -78,10 +78,10 @@ public class PipelineFramebuffer {
 		GFX.bindFramebuffer(GFX.GL_FRAMEBUFFER, fboGlId);
 
 		if (config.colorAttachments.length == 0) {
-			GFX.glDrawBuffer(GFX.GL_NONE);
-			GFX.glReadBuffer(GFX.GL_NONE);
+			GFX.drawBuffer(GFX.GL_NONE);
+			GFX.readBuffer(GFX.GL_NONE);
 		} else {
-			GFX.glDrawBuffers(attachmentPoints);
+			GFX.drawBuffers(attachmentPoints);
 		}
 
 		// TODO: needs better handling of arrays, 3D and other target type
@@ -95,9 +95,9 @@ public class PipelineFramebuffer {
 				CanvasMod.LOG.warn(String.format("Framebuffer %s cannot be completely configured because color attachment %s was not found",
 						config.name, ac.image.name));
 			} else if (img.config.target == GFX.GL_TEXTURE_2D) {
-				GFX.glFramebufferTexture2D(GFX.GL_FRAMEBUFFER, GFX.GL_COLOR_ATTACHMENT0 + i, img.config.target, img.glId(), ac.lod);
+				GFX.framebufferTexture2D(GFX.GL_FRAMEBUFFER, GFX.GL_COLOR_ATTACHMENT0 + i, img.config.target, img.glId(), ac.lod);
 			} else if (img.config.target == GFX.GL_TEXTURE_2D_ARRAY || img.config.target == GFX.GL_TEXTURE_3D) {
-				GFX.glFramebufferTextureLayer(GFX.GL_FRAMEBUFFER, GFX.GL_COLOR_ATTACHMENT0 + i, img.glId(), ac.lod, 0);
+				GFX.framebufferTextureLayer(GFX.GL_FRAMEBUFFER, GFX.GL_COLOR_ATTACHMENT0 + i, img.glId(), ac.lod, 0);
 			}
 		}
 
@@ -108,9 +108,9 @@ public class PipelineFramebuffer {
 				CanvasMod.LOG.warn(String.format("Framebuffer %s cannot be completely configured because depth attachment %s was not found",
 						config.name, config.depthAttachment.image.name));
 			} else if (img.config.target == GFX.GL_TEXTURE_2D) {
-				GFX.glFramebufferTexture2D(GFX.GL_FRAMEBUFFER, GFX.GL_DEPTH_ATTACHMENT, img.config.target, img.glId(), 0);
+				GFX.framebufferTexture2D(GFX.GL_FRAMEBUFFER, GFX.GL_DEPTH_ATTACHMENT, img.config.target, img.glId(), 0);
 			} else if (img.config.target == GFX.GL_TEXTURE_2D_ARRAY || img.config.target == GFX.GL_TEXTURE_3D) {
-				GFX.glFramebufferTextureLayer(GFX.GL_FRAMEBUFFER, GFX.GL_DEPTH_ATTACHMENT, img.glId(), 0, 0);
+				GFX.framebufferTextureLayer(GFX.GL_FRAMEBUFFER, GFX.GL_DEPTH_ATTACHMENT, img.glId(), 0, 0);
 			}
 		}
 
@@ -149,19 +149,19 @@ public class PipelineFramebuffer {
 
 				for (int i = 0; i < count; ++i) {
 					if ((colorClearFlags & (1 << i)) != 0) {
-						GFX.glDrawBuffer(GFX.GL_COLOR_ATTACHMENT0 + i);
+						GFX.drawBuffer(GFX.GL_COLOR_ATTACHMENT0 + i);
 						GFX.clearColor(clearColor[i][R], clearColor[i][G], clearColor[i][B], clearColor[i][A]);
 						GFX.clear(GFX.GL_COLOR_BUFFER_BIT, MinecraftClient.IS_SYSTEM_MAC);
 					}
 				}
 
-				GFX.glDrawBuffers(attachmentPoints);
+				GFX.drawBuffers(attachmentPoints);
 			}
 		}
 	}
 
 	public void bind() {
-		GFX.glBindFramebuffer(GFX.GL_FRAMEBUFFER, fboGlId);
+		GFX.bindFramebuffer(GFX.GL_FRAMEBUFFER, fboGlId);
 	}
 
 	void close() {
@@ -35,6 +35,7 @@ import grondag.canvas.pipeline.pass.Pass;
 import grondag.canvas.render.CanvasTextureState;
 import grondag.canvas.render.PrimaryFrameBuffer;
 import grondag.canvas.shader.GlProgram;
+import grondag.canvas.shader.GlShader;
 import grondag.canvas.shader.ProcessShader;
 import grondag.canvas.varia.GFX;
 
@@ -94,7 +95,7 @@ public class PipelineManager {
 	}
 
 	public static void handleRecompile() {
-		boolean doIt = false;
+		boolean doIt = GlShader.takeDrawOriginsRecompile();
 
 		while (CanvasMod.RECOMPILE.wasPressed()) {
 			doIt = true;
@@ -181,17 +182,17 @@ public class PipelineManager {
 			CanvasTextureState.bindTexture(glId);
 		}
 
-		if (depth) {
-			if (array) {
-				debugDepthArrayShader.activate().size(w, h).lod(lod).layer(layer).projection(orthoMatrix);
-			} else {
-				debugDepthShader.activate().size(w, h).lod(0).projection(orthoMatrix);
+		final ProcessShader shader = depth ? (array ? debugDepthArrayShader : debugDepthShader) : debugShader;
+
+		// program may still be compiling after a pipeline reload
+		if (shader.activate().isReady()) {
+			if (depth && array) {
+				shader.layer(layer);
 			}
-		} else {
-			debugShader.activate().size(w, h).lod(lod).projection(orthoMatrix);
-		}
 
-		GFX.drawArrays(GFX.GL_TRIANGLES, 0, 6);
+			shader.size(w, h).lod(depth && !array ? 0 : lod).projection(orthoMatrix);
+			GFX.drawArrays(GFX.GL_TRIANGLES, 0, 6);
+		}
 
 		endFullFrameRender();
 	}
@@ -0,0 +1,195 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.pipeline;
+
+import java.util.Arrays;
+
+import grondag.canvas.pipeline.config.AttachmentConfig;
+import grondag.canvas.pipeline.config.DrawTargetsConfig;
+import grondag.canvas.pipeline.config.FabulousConfig;
+import grondag.canvas.pipeline.config.FramebufferConfig;
+import grondag.canvas.pipeline.config.ImageConfig;
+import grondag.canvas.pipeline.config.PassConfig;
+import grondag.canvas.pipeline.config.PipelineConfig;
+import grondag.canvas.pipeline.config.util.NamedDependency;
+import grondag.canvas.varia.GFX;
+
+/**
+ * {@link PassGraph} for one frame of a pipeline config, in the order {@link PipelineManager} runs it:
+ * before-world passes, world rendering, fabulous passes, hand rendering, after-hand passes, then
+ * presenting the default framebuffer.
+ */
+class PipelinePassGraph {
+	final PassGraph graph = new PassGraph();
+	final PassGraph.Node[] onWorldStart;
+	final PassGraph.Node[] fabulous;
+	final PassGraph.Node[] afterRenderHand;
+	private final int width;
+	private final int height;
+
+	PipelinePassGraph(PipelineConfig config, int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		for (final ImageConfig img : config.images) {
+			graph.addImage(img.name, img.lod, formatKey(img));
+		}
+
+		onWorldStart = addPasses(config.onWorldStart);
+		addWorld(config, "world");
+		fabulous = config.fabulosity == null ? new PassGraph.Node[0] : addPasses(config.fabulous);
+		// world rendering continues after the fabulous passes, hand rendering follows
+		addWorld(config, "hand");
+		afterRenderHand = addPasses(config.afterRenderHand);
+
+		final PassGraph.Node present = graph.addExternal("present");
+		final FramebufferConfig fb = config.defaultFramebuffer.value();
+
+		if (fb != null) {
+			for (final AttachmentConfig ac : fb.colorAttachments) {
+				present.reads(ac.image.name);
+			}
+
+			if (fb.depthAttachment != null) {
+				present.reads(fb.depthAttachment.image.name);
+			}
+		}
+
+		graph.analyze();
+	}
+
+	private PassGraph.Node[] addPasses(PassConfig[] configs) {
+		final PassGraph.Node[] result = new PassGraph.Node[configs.length];
+
+		for (int i = 0; i < configs.length; ++i) {
+			result[i] = addPass(configs[i]);
+		}
+
+		return result;
+	}
+
+	private PassGraph.Node addPass(PassConfig pass) {
+		final PassGraph.Node node = graph.addPass(pass.name);
+		final FramebufferConfig fb = pass.framebuffer.value();
+
+		if (fb == null) {
+			return node;
+		}
+
+		if (pass.program.name.equals(PassConfig.CLEAR_NAME)) {
+			for (final AttachmentConfig ac : fb.colorAttachments) {
+				if (ac.clear) {
+					node.writes(ac.image.name, ac.lod);
+				}
+			}
+
+			if (fb.depthAttachment != null && fb.depthAttachment.clear) {
+				node.writes(fb.depthAttachment.image.name, 0);
+			}
+		} else {
+			// depth test and depth writes are off while passes run - see PipelineManager.beginFullFrameRender
+			for (final AttachmentConfig ac : fb.colorAttachments) {
+				final ImageConfig img = ac.image.value();
+
+				// viewport is the screen size shifted by the pass lod - texels outside it keep prior content
+				if (img != null && ((width >> pass.lod) < (imageWidth(img) >> ac.lod) || (height >> pass.lod) < (imageHeight(img) >> ac.lod))) {
+					node.readsAndWrites(ac.image.name, ac.lod);
+				} else {
+					node.writes(ac.image.name, ac.lod);
+				}
+			}
+
+			for (final NamedDependency<ImageConfig> img : pass.samplerImages) {
+				node.reads(img.name);
+			}
+		}
+
+		return node;
+	}
+
+	/** Draw targets, shadow and fabulous framebuffers are drawn over, material programs sample their images. */
+	private void addWorld(PipelineConfig config, String name) {
+		final PassGraph.Node node = graph.addExternal(name);
+		addDrawnFramebuffer(node, config.defaultFramebuffer);
+
+		final DrawTargetsConfig dt = config.drawTargets;
+
+		if (dt != null) {
+			addDrawnFramebuffer(node, dt.solidTerrain);
+			addDrawnFramebuffer(node, dt.translucentTerrain);
+			addDrawnFramebuffer(node, dt.translucentEntity);
+			addDrawnFramebuffer(node, dt.weather);
+			addDrawnFramebuffer(node, dt.clouds);
+			addDrawnFramebuffer(node, dt.translucentParticles);
+		}
+
+		if (config.skyShadow != null) {
+			addDrawnFramebuffer(node, config.skyShadow.framebuffer);
+		}
+
+		final FabulousConfig fc = config.fabulosity;
+
+		if (fc != null) {
+			addDrawnFramebuffer(node, fc.entityFramebuffer);
+			addDrawnFramebuffer(node, fc.particleFramebuffer);
+			addDrawnFramebuffer(node, fc.weatherFramebuffer);
+			addDrawnFramebuffer(node, fc.cloudsFramebuffer);
+			addDrawnFramebuffer(node, fc.translucentFramebuffer);
+		}
+
+		for (final NamedDependency<ImageConfig> img : config.materialProgram.samplerImages) {
+			node.reads(img.name);
+		}
+	}
+
+	private static void addDrawnFramebuffer(PassGraph.Node node, NamedDependency<FramebufferConfig> framebuffer) {
+		final FramebufferConfig fb = framebuffer.value();
+
+		if (fb == null) {
+			return;
+		}
+
+		for (final AttachmentConfig ac : fb.colorAttachments) {
+			node.readsAndWrites(ac.image.name, ac.lod);
+		}
+
+		if (fb.depthAttachment != null) {
+			node.readsAndWrites(fb.depthAttachment.image.name, 0);
+		}
+	}
+
+	private int imageWidth(ImageConfig img) {
+		return img.width > 0 ? img.width : width;
+	}
+
+	private int imageHeight(ImageConfig img) {
+		return img.height > 0 ? img.height : height;
+	}
+
+	/**
+	 * Images with equal keys can share a texture. Null for array and 3D images
+	 * because framebuffers only attach their first layer, and for images sized
+	 * apart from the screen because passes may not cover them.
+	 */
+	private String formatKey(ImageConfig img) {
+		if (img.target != GFX.GL_TEXTURE_2D || imageWidth(img) != width || imageHeight(img) != height) {
+			return null;
+		}
+
+		return String.format("%d/%d/%d/%d/%dx%d/%s", img.internalFormat, img.pixelFormat, img.pixelDataType, img.lod, width, height, Arrays.toString(img.texParamPairs));
+	}
+}
@@ -62,9 +62,11 @@ class ProgramPass extends Pass {
 			CanvasTextureState.bindTexture(textures.texTargets[i], textures.texIds[i]);
 		}
 
-		shader.activate().lod(config.lod).size(width, height).projection(orthoMatrix);
-
-		GFX.drawArrays(GFX.GL_TRIANGLES, 0, 6);
+		// program may still be compiling after a pipeline reload
+		if (shader.activate().isReady()) {
+			shader.lod(config.lod).size(width, height).projection(orthoMatrix);
+			GFX.drawArrays(GFX.GL_TRIANGLES, 0, 6);
+		}
 	}
 
 	@Override
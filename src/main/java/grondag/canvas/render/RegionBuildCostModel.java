@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.render;
+
+import grondag.canvas.terrain.region.RenderRegion;
+
+/**
+ * Predicts render-thread cost of the work {@link RegionRebuildManager} does for a region:
+ * either a world capture for an off-thread build or a full on-thread rebuild.
+ *
+ * <p>Capture cost is nearly constant per region so it is a running average. Build cost blends
+ * the region's own last build time with a per-block model fitted to recent on-thread builds,
+ * with a separate multiplier for regions that had translucent content.
+ *
+ * <p>Not thread-safe. Render thread only.
+ */
+class RegionBuildCostModel {
+	/** Weight of each new observation in the running averages. */
+	private static final float ALPHA = 0.05f;
+
+	private float captureNanos = 40_000;
+	private float baseBuildNanos = 150_000;
+	private float nanosPerBlock = 600;
+	private float translucentFactor = 1.5f;
+
+	long predictCapture() {
+		return (long) captureNanos;
+	}
+
+	long predictBuild(RenderRegion region) {
+		final int blocks = region.lastRenderedBlockCount();
+
+		if (blocks < 0) {
+			// never built - assume a half-full region
+			return (long) (baseBuildNanos + nanosPerBlock * 2048);
+		}
+
+		final float model = modelBuild(blocks, region.lastHadTranslucent());
+		final int last = region.lastBuildNanos();
+		return last < 0 ? (long) model : (long) ((model + last) * 0.5f);
+	}
+
+	private float modelBuild(int blocks, boolean translucent) {
+		final float result = baseBuildNanos + nanosPerBlock * blocks;
+		return translucent ? result * translucentFactor : result;
+	}
+
+	void observeCapture(long nanos) {
+		captureNanos += (nanos - captureNanos) * ALPHA;
+	}
+
+	/** Call after an on-thread rebuild, with history already updated by the build. */
+	void observeBuild(RenderRegion region, long nanos) {
+		final int blocks = region.lastRenderedBlockCount();
+
+		if (blocks <= 0) {
+			baseBuildNanos += (nanos - baseBuildNanos) * ALPHA;
+		} else if (region.lastHadTranslucent()) {
+			final float ratio = nanos / modelBuild(blocks, false);
+			translucentFactor += (Math.max(1f, ratio) - translucentFactor) * ALPHA;
+		} else {
+			final float perBlock = Math.max(0f, nanos - baseBuildNanos) / blocks;
+			nanosPerBlock += (perBlock - nanosPerBlock) * ALPHA;
+		}
+	}
+
+	String debugString() {
+		return String.format("Rebuild cost model capture: %dus  build: %dus + %dns/block  translucent x%.2f",
+				(int) (captureNanos / 1000), (int) (baseBuildNanos / 1000), (int) nanosPerBlock, translucentFactor);
+	}
+}
@@ -16,14 +16,15 @@
 
 package grondag.canvas.render;
 
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.Set;
 
-import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import net.minecraft.util.Util;
 
+import grondag.canvas.config.Configurator;
 import grondag.canvas.terrain.region.RenderRegion;
 import grondag.fermion.sc.unordered.SimpleUnorderedArrayList;
 
@@ -32,9 +33,15 @@ import grondag.fermion.sc.unordered.SimpleUnorderedArrayList;
  *
  * <p>Handles regions for both camera and shadow views.  "Near" regions
  * are exclusively a camera-view concept.
+ *
+ * <p>Scheduled regions are processed most important first and only while
+ * their predicted cost fits within the frame deadline.
  */
 public class RegionRebuildManager {
-	private final Set<RenderRegion> regionsToRebuild = Sets.newLinkedHashSet();
+	private final Set<RenderRegion> regionsToRebuild = new ObjectOpenHashSet<>();
+	private final RegionBuildCostModel costModel = new RegionBuildCostModel();
+	private final ObjectArrayList<RenderRegion> sortedRegions = new ObjectArrayList<>();
+	private long[] sortKeys = new long[256];
 
 	/**
 	 * Region rebuild requests accumulated on main thread that may impact visibility
@@ -124,53 +131,101 @@ public class RegionRebuildManager {
 	}
 
 	/**
-	 * Iterates regions awaiting rebuild and rebuilds them on the calling
-	 * thread if they are urgent/near.  For non-urgent regions, necessary
+	 * Iterates regions awaiting rebuild in order of importance and rebuilds them on
+	 * the calling thread if they are urgent.  For non-urgent regions, necessary
 	 * world data are captured on the calling thread and packaged into a
 	 * rebuild task that runs off thread.
 	 *
+	 * <p>Each step is skipped if its predicted cost would overrun the deadline,
+	 * except that at least one region is always processed so the queue makes progress.
+	 *
 	 * <p>Not thread-safe and meant to be called from the main render thread.
 	 *
 	 * @param endNanos The max end time for this task. (NOT the duration.)
-	 * Processing will end when the system nanotime exceeds this value.
+	 * Processing will also end if {@link Configurator#regionRebuildBudgetMicros} is exceeded.
 	 */
 	void processScheduledRegions(long endNanos) {
 		final Set<RenderRegion> regionsToRebuild = this.regionsToRebuild;
 
-		//final long start = Util.getMeasuringTimeNano();
-		//int builtCount = 0;
+		if (regionsToRebuild.isEmpty()) {
+			return;
+		}
 
-		if (!regionsToRebuild.isEmpty()) {
-			final Iterator<RenderRegion> iterator = regionsToRebuild.iterator();
+		final long startNanos = Util.getMeasuringTimeNano();
+		final long deadline = Math.min(endNanos, startNanos + Configurator.regionRebuildBudgetMicros * 1000L);
+		final int count = regionsToRebuild.size();
+		final ObjectArrayList<RenderRegion> sortedRegions = this.sortedRegions;
+		long[] sortKeys = this.sortKeys;
 
-			while (iterator.hasNext()) {
-				final RenderRegion builtRegion = iterator.next();
+		if (sortKeys.length < count) {
+			sortKeys = new long[Integer.highestOneBit(count) << 1];
+			this.sortKeys = sortKeys;
+		}
 
-				if (builtRegion.needsImportantRebuild()) {
-					builtRegion.rebuildOnMainThread();
-				} else {
-					builtRegion.prepareAndExecuteRebuildTask();
-				}
+		int i = 0;
 
-				iterator.remove();
-
-				// this seemed excessive
-				//				++builtCount;
-				//
-				//				final long now = Util.getMeasuringTimeNano();
-				//				final long elapsed = now - start;
-				//				final long avg = elapsed / builtCount;
-				//				final long remaining = endNanos - now;
-				//
-				//				if (remaining < avg) {
-				//					break;
-				//				}
-
-				if (Util.getMeasuringTimeNano() >= endNanos) {
+		for (final RenderRegion region : regionsToRebuild) {
+			sortedRegions.add(region);
+			sortKeys[i] = ((long) importance(region) << 32) | i;
+			++i;
+		}
+
+		Arrays.sort(sortKeys, 0, count);
+
+		long now = startNanos;
+		int processedCount = 0;
+
+		for (int n = 0; n < count; ++n) {
+			final RenderRegion region = sortedRegions.get((int) sortKeys[n]);
+			final boolean isImportant = region.needsImportantRebuild();
+
+			if (processedCount > 0 && now + (isImportant ? costModel.predictBuild(region) : costModel.predictCapture()) > deadline) {
+				if (isImportant) {
+					// a capture is much cheaper and may still fit
+					continue;
+				} else {
 					break;
 				}
 			}
+
+			if (isImportant) {
+				region.rebuildOnMainThread();
+			} else {
+				region.prepareAndExecuteRebuildTask();
+			}
+
+			final long end = Util.getMeasuringTimeNano();
+
+			if (isImportant) {
+				costModel.observeBuild(region, end - now);
+			} else {
+				costModel.observeCapture(end - now);
+			}
+
+			now = end;
+			regionsToRebuild.remove(region);
+			++processedCount;
+		}
+
+		sortedRegions.clear();
+	}
+
+	/**
+	 * Lower values are built first. Urgent regions lead, then regions that may be
+	 * on screen, ordered by squared distance - a proxy for projected screen area.
+	 * Regions only visible to shadow maps or not currently visible come last.
+	 */
+	private static int importance(RenderRegion region) {
+		if (region.needsImportantRebuild()) {
+			return 0;
 		}
+
+		final int dist = region.origin.squaredCameraChunkDistance() + 1;
+		return region.origin.isPotentiallyVisibleFromCamera() ? dist : dist << 3;
+	}
+
+	public String debugString() {
+		return String.format("Regions awaiting rebuild: %d  ", regionsToRebuild.size()) + costModel.debugString();
 	}
 
 	public void clear() {
@@ -35,6 +35,22 @@ import grondag.canvas.terrain.region.RegionPosition;
 
 @Environment(EnvType.CLIENT)
 public class TerrainFrustum extends CanvasFrustum {
+	public static final int PLANE_LEFT = 1;
+	public static final int PLANE_RIGHT = 2;
+	public static final int PLANE_NEAR = 4;
+	public static final int PLANE_TOP = 8;
+	public static final int PLANE_BOTTOM = 16;
+	public static final int ALL_PLANES = PLANE_LEFT | PLANE_RIGHT | PLANE_NEAR | PLANE_TOP | PLANE_BOTTOM;
+
+	/** Result of {@link #intersectedPlanes} for boxes entirely outside at least one plane. */
+	public static final int OUTSIDE = -1;
+
+	/**
+	 * Slack in blocks for group classification so that a result for a group
+	 * still holds for each region in it despite float error in the region tests.
+	 */
+	private static final float GROUP_MARGIN = 0.5f;
+
 	// These are for maintaining a project matrix used by occluder.
 	// Updated every frame but not used directly by occlude because of concurrency
 	// Occluder uses a copy, below.
@@ -278,27 +294,80 @@ public class TerrainFrustum extends CanvasFrustum {
 		occlusionProjMat.multiply(Matrix4f.viewboxMatrix(fov + padding, client.getWindow().getFramebufferWidth() / (float) client.getWindow().getFramebufferHeight(), 0.05F, gr.getViewDistance() * 4.0F));
 	}
 
-	public boolean isRegionVisible(RegionPosition regionPosition) {
+	/**
+	 * Classifies a box containing a group of regions so the regions can skip plane tests.
+	 *
+	 * @return {@link #OUTSIDE} if the box is entirely outside any plane, otherwise flags for
+	 * the planes the box straddles. Zero means the box is entirely inside the frustum.
+	 */
+	public int intersectedPlanes(float cx, float cy, float cz, float hdx, float hdy, float hdz) {
+		final int left = classify(cx * leftX + cy * leftY + cz * leftZ + leftW, hdx * leftXe + hdy * leftYe + hdz * leftZe, PLANE_LEFT);
+
+		if (left == OUTSIDE) {
+			return OUTSIDE;
+		}
+
+		final int right = classify(cx * rightX + cy * rightY + cz * rightZ + rightW, hdx * rightXe + hdy * rightYe + hdz * rightZe, PLANE_RIGHT);
+
+		if (right == OUTSIDE) {
+			return OUTSIDE;
+		}
+
+		final int near = classify(cx * nearX + cy * nearY + cz * nearZ + nearW, hdx * nearXe + hdy * nearYe + hdz * nearZe, PLANE_NEAR);
+
+		if (near == OUTSIDE) {
+			return OUTSIDE;
+		}
+
+		final int top = classify(cx * topX + cy * topY + cz * topZ + topW, hdx * topXe + hdy * topYe + hdz * topZe, PLANE_TOP);
+
+		if (top == OUTSIDE) {
+			return OUTSIDE;
+		}
+
+		final int bottom = classify(cx * bottomX + cy * bottomY + cz * bottomZ + bottomW, hdx * bottomXe + hdy * bottomYe + hdz * bottomZe, PLANE_BOTTOM);
+
+		if (bottom == OUTSIDE) {
+			return OUTSIDE;
+		}
+
+		return left | right | near | top | bottom;
+	}
+
+	private static int classify(float dist, float extent, int planeFlag) {
+		if (dist - extent > GROUP_MARGIN) {
+			return OUTSIDE;
+		} else {
+			return dist + extent > -GROUP_MARGIN ? planeFlag : 0;
+		}
+	}
+
+	/**
+	 * Tests the region against the given planes only.
+	 *
+	 * @param planes flags for the planes to test, usually from {@link #intersectedPlanes} for a group containing the region.
+	 */
+	public boolean isRegionVisible(RegionPosition regionPosition, int planes) {
 		final float cx = regionPosition.cameraRelativeCenterX();
 		final float cy = regionPosition.cameraRelativeCenterY();
 		final float cz = regionPosition.cameraRelativeCenterZ();
 
-		if (cx * leftX + cy * leftY + cz * leftZ + leftRegionExtent > MIN_GAP) {
+		if ((planes & PLANE_LEFT) != 0 && cx * leftX + cy * leftY + cz * leftZ + leftRegionExtent > MIN_GAP) {
 			return false;
 		}
 
-		if (cx * rightX + cy * rightY + cz * rightZ + rightRegionExtent > MIN_GAP) {
+		if ((planes & PLANE_RIGHT) != 0 && cx * rightX + cy * rightY + cz * rightZ + rightRegionExtent > MIN_GAP) {
 			return false;
 		}
 
-		if (cx * nearX + cy * nearY + cz * nearZ + nearRegionExtent > MIN_GAP) {
+		if ((planes & PLANE_NEAR) != 0 && cx * nearX + cy * nearY + cz * nearZ + nearRegionExtent > MIN_GAP) {
 			return false;
 		}
 
-		if (cx * topX + cy * topY + cz * topZ + topRegionExtent > MIN_GAP) {
+		if ((planes & PLANE_TOP) != 0 && cx * topX + cy * topY + cz * topZ + topRegionExtent > MIN_GAP) {
 			return false;
 		}
 
-		return !(cx * bottomX + cy * bottomY + cz * bottomZ + bottomRegionExtent > MIN_GAP);
+		return (planes & PLANE_BOTTOM) == 0 || !(cx * bottomX + cy * bottomY + cz * bottomZ + bottomRegionExtent > MIN_GAP);
 	}
 }
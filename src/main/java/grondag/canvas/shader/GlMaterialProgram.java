@@ -43,6 +43,8 @@ public class GlMaterialProgram extends GlProgram {
 	private final UniformArray4fImpl modelOrigin;
 	private final UniformArrayiImpl contextInfo;
 	private final Uniform1iImpl modelOriginType;
+	private final Uniform1iImpl drawOriginBase;
+	private int lastDrawOriginBase = -1;
 	private final UniformMatrix4fImpl guiViewProjMatrix;
 	private final ObjectArrayList<UniformSamplerImpl> configuredSamplers;
 
@@ -55,6 +57,7 @@ public class GlMaterialProgram extends GlProgram {
 		modelOrigin = (UniformArray4fImpl) uniformArray4f("_cvu_model_origin", UniformRefreshFrequency.ON_LOAD, u -> u.setExternal(null), 2);
 		contextInfo = (UniformArrayiImpl) uniformArrayi("_cvu_context", UniformRefreshFrequency.ON_LOAD, u -> { }, 4);
 		modelOriginType = (Uniform1iImpl) uniform1i("_cvu_model_origin_type", UniformRefreshFrequency.ON_LOAD, u -> u.set(MatrixState.get().ordinal()));
+		drawOriginBase = (Uniform1iImpl) uniform1i("_cvu_draw_origin_base", UniformRefreshFrequency.ON_LOAD, u -> u.set(-1));
 		cascade = (Uniform1iImpl) uniform1i("frxu_cascade", UniformRefreshFrequency.ON_LOAD, u -> u.set(0));
 		configuredSamplers = new ObjectArrayList<>();
 		reloadConfigurableSamplers();
@@ -77,6 +80,20 @@ public class GlMaterialProgram extends GlProgram {
 
 		modelOrigin.setExternal(MODEL_ORIGIN);
 		modelOrigin.upload();
+		setDrawOriginBase(-1);
+	}
+
+	/**
+	 * Makes multi-draws read the model origin of each draw from the draw origin buffer,
+	 * starting at the given draw. -1 restores the model origin uniform.
+	 */
+	public void setDrawOriginBase(int base) {
+		// only skip redundant resets - program reloads set the uniform back to -1
+		if (base != -1 || lastDrawOriginBase != -1) {
+			drawOriginBase.set(base);
+			drawOriginBase.upload();
+			lastDrawOriginBase = base;
+		}
 	}
 
 	private void setRegionOrigin(int x, int y, int z) {
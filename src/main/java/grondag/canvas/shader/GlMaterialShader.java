@@ -57,7 +57,7 @@ public class GlMaterialShader extends GlShader {
 			starts = "\t// NOOP";
 			impl = "";
 		} else if (limit == 1) {
-			impl = loadShaderSource(resourceManager, MaterialShaderManager.FRAGMENT_INDEXER.fromHandle(shaders[0]));
+			impl = PREPROCESSOR.source(MaterialShaderManager.FRAGMENT_INDEXER.fromHandle(shaders[0]));
 
 			if (impl.contains("frx_startFragment")) {
 				starts = "\tfrx_startFragment(data);";
@@ -77,7 +77,7 @@ public class GlMaterialShader extends GlShader {
 				startsBuilder.append(index);
 				startsBuilder.append(": ");
 
-				String src = loadShaderSource(resourceManager, MaterialShaderManager.FRAGMENT_INDEXER.fromHandle(index));
+				String src = PREPROCESSOR.source(MaterialShaderManager.FRAGMENT_INDEXER.fromHandle(index));
 
 				if (src.contains("frx_startFragment")) {
 					startsBuilder.append("frx_startFragment");
@@ -103,7 +103,7 @@ public class GlMaterialShader extends GlShader {
 			? Pipeline.config().skyShadow.fragmentSource
 			: Pipeline.config().materialProgram.fragmentSource;
 
-		final String pipelineSource = loadShaderSource(resourceManager, sourceId);
+		final String pipelineSource = PREPROCESSOR.source(sourceId);
 		baseSource = StringUtils.replace(baseSource, ShaderStrings.API_TARGET, impl + pipelineSource);
 		baseSource = StringUtils.replace(baseSource, ShaderStrings.FRAGMENT_START, starts);
 		return baseSource;
@@ -120,7 +120,7 @@ public class GlMaterialShader extends GlShader {
 			starts = "\t// NOOP";
 			impl = "\t// NOOP";
 		} else if (limit == 1) {
-			impl = loadShaderSource(resourceManager, MaterialShaderManager.VERTEX_INDEXER.fromHandle(shaders[0]));
+			impl = PREPROCESSOR.source(MaterialShaderManager.VERTEX_INDEXER.fromHandle(shaders[0]));
 
 			// prevent abandoned endVertex calls from conflicting
 			impl = StringUtils.replace(impl, "frx_endVertex", "frx_endVertex_UNUSED");
@@ -139,7 +139,7 @@ public class GlMaterialShader extends GlShader {
 				startsBuilder.append(index);
 				startsBuilder.append(": ");
 
-				String src = loadShaderSource(resourceManager, MaterialShaderManager.VERTEX_INDEXER.fromHandle(index));
+				String src = PREPROCESSOR.source(MaterialShaderManager.VERTEX_INDEXER.fromHandle(index));
 
 				// prevent abandoned endVertex calls from conflicting
 				src = StringUtils.replace(src, "frx_endVertex", "frx_endVertex" + i + "_UNUSED");
@@ -168,7 +168,7 @@ public class GlMaterialShader extends GlShader {
 				? Pipeline.config().skyShadow.vertexSource
 				: Pipeline.config().materialProgram.vertexSource;
 
-		final String pipelineSource = loadShaderSource(resourceManager, sourceId);
+		final String pipelineSource = PREPROCESSOR.source(sourceId);
 		baseSource = StringUtils.replace(baseSource, ShaderStrings.API_TARGET, impl + pipelineSource);
 		baseSource = StringUtils.replace(baseSource, ShaderStrings.VERTEX_START, starts);
 		return baseSource;
@@ -35,6 +35,7 @@ import grondag.canvas.config.Configurator;
 import grondag.canvas.mixinterface.Matrix3fExt;
 import grondag.canvas.mixinterface.Matrix4fExt;
 import grondag.canvas.shader.data.ShaderUniforms;
+import grondag.canvas.varia.CanvasGlHelper;
 import grondag.canvas.varia.GFX;
 import grondag.frex.api.material.Uniform;
 import grondag.frex.api.material.Uniform.Uniform1f;
@@ -77,6 +78,9 @@ public class GlProgram {
 	private int progID = -1;
 	private boolean isErrored = false;
 	private boolean needsLoad = true;
+	private boolean linkPending = false;
+	/** Set while linking from source if the result should be saved to the binary cache. */
+	private String binaryKey = null;
 
 	GlProgram(Shader vertexShader, Shader fragmentShader, CanvasVertexFormat format, ProgramType programType) {
 		this.vertexShader = vertexShader;
@@ -175,20 +179,42 @@ public class GlProgram {
 		uniforms.remove(uniform);
 	}
 
-	public final void activate() {
-		if (needsLoad) {
-			load();
-			needsLoad = false;
-		}
-
-		if (isErrored) {
-			return;
+	/**
+	 * Binds this program, loading it first if needed.
+	 *
+	 * @return false if the program is still compiling or failed to load - caller should skip the draw
+	 */
+	public final boolean activate() {
+		if (!isReady()) {
+			return false;
 		}
 
 		if (activeProgram != this) {
 			activeProgram = this;
 			activateInner();
 		}
+
+		return !isErrored;
+	}
+
+	/**
+	 * Starts loading if needed and checks for completion without blocking when the
+	 * driver supports parallel compile. Without that support, waits for the link.
+	 *
+	 * @return true if the program is linked and usable
+	 */
+	public final boolean isReady() {
+		beginLoadIfNeeded();
+
+		if (linkPending) {
+			if (CanvasGlHelper.supportsParallelShaderCompile() && GFX.getProgramInfo(progID, GFX.GL_COMPLETION_STATUS_KHR) == GFX.GL_FALSE) {
+				return false;
+			}
+
+			finishLoad();
+		}
+
+		return !isErrored;
 	}
 
 	private void activateInner() {
@@ -253,7 +279,30 @@ public class GlProgram {
 		}
 	}
 
+	/** Loads synchronously. */
 	public void load() {
+		beginLoad();
+
+		if (linkPending) {
+			finishLoad();
+		}
+	}
+
+	/** Starts loading unless already loaded or loading. */
+	void beginLoadIfNeeded() {
+		if (needsLoad) {
+			beginLoad();
+		}
+	}
+
+	/**
+	 * Issues shader compiles and the program link without querying status so that
+	 * drivers can work on many programs at once. Status is checked by {@link #isReady()}.
+	 */
+	private void beginLoad() {
+		needsLoad = false;
+		linkPending = false;
+		binaryKey = null;
 		isErrored = true;
 
 		// prevent accumulation of uniforms in programs that aren't activated after
@@ -266,65 +315,108 @@ public class GlProgram {
 			}
 
 			progID = GFX.createProgram();
+			final ProgramBinaryCache cache = progID > 0 ? ProgramBinaryManager.INSTANCE.cache() : null;
+			boolean isLinked = false;
+
+			if (cache != null) {
+				final String key = cache.key(vertexShader.getSource(), fragmentShader.getSource(), vertexFormat.attributeBindings());
+				isLinked = cache.load(progID, key);
+
+				if (!isLinked) {
+					// program object may hold a rejected binary, so start clean
+					GFX.deleteProgram(progID);
+					progID = GFX.createProgram();
+					GFX.programParameter(progID, GFX.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GFX.GL_TRUE);
+					binaryKey = key;
+				}
+			}
 
-			isErrored = progID > 0 && !loadInner();
+			if (isLinked) {
+				// linked from the cached binary - shaders are not compiled
+				onLinked();
+				isErrored = false;
+			} else if (progID > 0 && vertexShader.attach(progID) && fragmentShader.attach(progID)) {
+				vertexFormat.bindProgramAttributes(progID);
+				GFX.linkProgram(progID);
+				linkPending = true;
+				isErrored = false;
+			} else {
+				// report compile errors
+				vertexShader.checkStatus();
+				fragmentShader.checkStatus();
+			}
 		} catch (final Exception e) {
+			CanvasMod.LOG.error(I18n.translate("error.canvas.program_link_failure"), e);
+		}
+
+		if (isErrored) {
 			if (progID > 0) {
 				GFX.deleteProgram(progID);
 			}
 
-			CanvasMod.LOG.error(I18n.translate("error.canvas.program_link_failure"), e);
 			progID = -1;
+		} else {
+			// tracked while pending so that reloads triggered before completion still apply
+			GlProgramManager.INSTANCE.add(this);
 		}
+	}
 
-		if (!isErrored) {
-			findActiveUniforms();
-			final int limit = activeUniforms.size();
+	private void finishLoad() {
+		linkPending = false;
 
-			for (int i = 0; i < limit; i++) {
-				activeUniforms.get(i).load(progID);
-			}
+		// shader status is final once the link is complete, check both to report all errors
+		final boolean shadersCompiled = vertexShader.checkStatus() & fragmentShader.checkStatus();
 
-			GlProgramManager.INSTANCE.add(this);
-		}
-	}
+		if (!shadersCompiled || GFX.getProgramInfo(progID, GFX.GL_LINK_STATUS) == GFX.GL_FALSE) {
+			if (shadersCompiled) {
+				CanvasMod.LOG.error(GFX.getProgramInfoLog(progID));
+			}
 
-	public final void unload() {
-		for (final UniformImpl<?> u : uniforms) {
-			u.unload();
-		}
+			if (programType != ProgramType.PROCESS) {
+				GlShader.onDrawOriginsFailed();
+			}
 
-		if (progID > 0) {
+			isErrored = true;
 			GFX.deleteProgram(progID);
 			progID = -1;
 			GlProgramManager.INSTANCE.remove(this);
+			return;
 		}
-	}
 
-	/**
-	 * Return true on success.
-	 */
-	private boolean loadInner() {
-		final int programID = progID;
+		if (binaryKey != null) {
+			final ProgramBinaryCache cache = ProgramBinaryManager.INSTANCE.cache();
 
-		if (programID <= 0) {
-			return false;
-		}
+			if (cache != null) {
+				cache.store(progID, binaryKey);
+			}
 
-		if (!vertexShader.attach(programID) || !fragmentShader.attach(programID)) {
-			return false;
+			binaryKey = null;
 		}
 
-		vertexFormat.bindProgramAttributes(programID);
+		onLinked();
+	}
 
-		GFX.linkProgram(programID);
+	private void onLinked() {
+		findActiveUniforms();
+		final int limit = activeUniforms.size();
 
-		if (GFX.getProgramInfo(programID, GFX.GL_LINK_STATUS) == GFX.GL_FALSE) {
-			CanvasMod.LOG.error(GFX.getProgramInfoLog(programID));
-			return false;
+		for (int i = 0; i < limit; i++) {
+			activeUniforms.get(i).load(progID);
+		}
+	}
+
+	public final void unload() {
+		for (final UniformImpl<?> u : uniforms) {
+			u.unload();
 		}
 
-		return true;
+		linkPending = false;
+
+		if (progID > 0) {
+			GFX.deleteProgram(progID);
+			progID = -1;
+			GlProgramManager.INSTANCE.remove(this);
+		}
 	}
 
 	public final void onRenderTick() {
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.util.Collection;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.config.Configurator;
+import grondag.canvas.pipeline.Pipeline;
+
+/**
+ * Loads the programs a pipeline needs as one batch instead of one at a time on first use.
+ *
+ * <p>Shader sources are assembled in parallel off the render thread. Then every program
+ * is loaded from the {@link ProgramBinaryCache} or its compiles and link are issued
+ * back-to-back with no status queries in between, so drivers with background
+ * compiler threads can work on all of them at once. Status is checked when
+ * each program is first activated - see {@link GlProgram#isReady()}.
+ */
+public final class GlProgramLoader {
+	private GlProgramLoader() { }
+
+	/** Call on the render thread after pipeline config, images and shadow settings are set - shader defines depend on them. */
+	public static void loadPipelinePrograms(Collection<ProcessShader> processShaders) {
+		final long start = System.nanoTime();
+		final ObjectArrayList<Shader> shaders = new ObjectArrayList<>();
+
+		MaterialProgramManager.INSTANCE.collectShaders(ProgramType.MATERIAL_COLOR, shaders);
+
+		if (Pipeline.shadowsEnabled()) {
+			MaterialProgramManager.INSTANCE.collectShaders(ProgramType.MATERIAL_DEPTH, shaders);
+		}
+
+		for (final ProcessShader shader : processShaders) {
+			shader.collectShaders(shaders);
+		}
+
+		prepare(shaders);
+		final long prepared = System.nanoTime();
+
+		// programs read prepared sources during setup to find sampler types
+		final ObjectArrayList<GlProgram> programs = new ObjectArrayList<>();
+		programs.add(MaterialProgramManager.INSTANCE.getOrCreateMaterialProgram(ProgramType.MATERIAL_COLOR));
+
+		if (Pipeline.shadowsEnabled()) {
+			programs.add(MaterialProgramManager.INSTANCE.getOrCreateMaterialProgram(ProgramType.MATERIAL_DEPTH));
+		}
+
+		for (final ProcessShader shader : processShaders) {
+			programs.add(shader.getOrCreateProgram());
+		}
+
+		// Shaders compile when first attached, so programs found in the binary cache
+		// never compile theirs. Programs still loaded from before, as after a resize,
+		// are left alone.
+		for (final GlProgram program : programs) {
+			program.beginLoadIfNeeded();
+		}
+
+		if (Configurator.enableLifeCycleDebug) {
+			CanvasMod.LOG.info(String.format("Lifecycle Event: prepared %d shaders in %dms, issued %d program links in %dms",
+					shaders.size(), (prepared - start) / 1000000, programs.size(), (System.nanoTime() - prepared) / 1000000));
+		}
+	}
+
+	/**
+	 * Assembles source for each distinct shader on the common fork-join pool and waits for all.
+	 * Shared shaders are prepared once.
+	 */
+	static void prepare(Collection<Shader> shaders) {
+		new ReferenceOpenHashSet<>(shaders).parallelStream().forEach(Shader::prepare);
+	}
+}
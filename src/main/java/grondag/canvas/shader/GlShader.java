@@ -26,12 +26,10 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.util.HashSet;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import com.google.common.io.CharStreams;
-import org.apache.commons.lang3.StringUtils;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.opengl.GL20C;
 import org.lwjgl.opengl.GL21;
@@ -50,21 +48,29 @@ import net.fabricmc.loader.api.FabricLoader;
 import grondag.canvas.CanvasMod;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.pipeline.Pipeline;
+import grondag.canvas.shader.ShaderPreprocessor.Defines;
+import grondag.canvas.varia.CanvasGlHelper;
 import grondag.canvas.varia.GFX;
+import grondag.canvas.varia.GfxRecorder;
 import grondag.frex.api.config.ShaderConfig;
 
 public class GlShader implements Shader {
-	static final Pattern PATTERN = Pattern.compile("^#include\\s+(\\\"*[\\w]+:[\\w/\\.]+)[ \\t]*.*", Pattern.MULTILINE);
-	private static final HashSet<String> INCLUDED = new HashSet<>();
+	/** Shared by all shaders. Cleared by {@link GlShaderManager#reload()}. */
+	static final ShaderPreprocessor PREPROCESSOR = new ShaderPreprocessor(id -> loadShaderSource(MinecraftClient.getInstance().getResourceManager(), id));
+	private static final ConcurrentHashMap<String, Pattern> UNIFORM_PATTERNS = new ConcurrentHashMap<>();
 	private static boolean isErrorNoticeComplete = false;
 	private static boolean needsClearDebugOutputWarning = true;
 	private static boolean needsDebugOutputWarning = true;
+	/** Set when a program built with draw origins fails, so rebuilt programs leave them out. */
+	private static boolean drawOriginsFailed = false;
+	private static boolean needsDrawOriginsRecompile = false;
 	private final Identifier shaderSourceId;
 	protected final int shaderType;
 	protected final ProgramType programType;
 	private String source = null;
 	private int glId = -1;
 	private boolean needsLoad = true;
+	private boolean statusPending = false;
 	private boolean isErrored = false;
 
 	public GlShader(Identifier shaderSource, int shaderType, ProgramType programType) {
@@ -78,6 +84,34 @@ public class GlShader implements Shader {
 		clearDebugSource();
 	}
 
+	/**
+	 * True when terrain programs are built with per-draw region origins and terrain
+	 * can be drawn with one multi-draw per state and buffer.
+	 */
+	public static boolean drawOriginsEnabled() {
+		return Configurator.multiDrawTerrain && CanvasGlHelper.supportsShaderDrawParameters() && !drawOriginsFailed;
+	}
+
+	/**
+	 * Called when a program built with draw origins fails to compile or link. Some drivers
+	 * report the shader draw parameters extension but reject it in practice, so draw origins
+	 * are turned off and all programs rebuilt without them on the next frame.
+	 */
+	static void onDrawOriginsFailed() {
+		if (drawOriginsEnabled()) {
+			drawOriginsFailed = true;
+			needsDrawOriginsRecompile = true;
+			CanvasMod.LOG.warn("Shader program failed to build with terrain multi-draw enabled. Multi-draw is disabled and shaders will be recompiled.");
+		}
+	}
+
+	/** True once after {@link #onDrawOriginsFailed()} disabled draw origins. */
+	public static boolean takeDrawOriginsRecompile() {
+		final boolean result = needsDrawOriginsRecompile;
+		needsDrawOriginsRecompile = false;
+		return result;
+	}
+
 	private static Path shaderDebugPath() {
 		final File gameDir = FabricLoader.getInstance().getGameDirectory();
 
@@ -117,23 +151,29 @@ public class GlShader implements Shader {
 		}
 	}
 
-	private int glId() {
-		if (needsLoad) {
-			load();
+	@Override
+	public void prepare() {
+		try {
+			getSource();
+		} catch (final Exception e) {
+			// reported when compiled
 		}
-
-		return isErrored ? -1 : glId;
 	}
 
-	private void load() {
+	@Override
+	public void compile() {
+		if (!needsLoad) {
+			return;
+		}
+
 		needsLoad = false;
 		isErrored = false;
-		String source = null;
+		statusPending = false;
 		String error = null;
 
 		try {
 			if (glId <= 0) {
-				glId = GFX.glCreateShader(shaderType);
+				glId = GFX.createShader(shaderType);
 
 				if (glId == 0) {
 					glId = -1;
@@ -142,43 +182,61 @@ public class GlShader implements Shader {
 				}
 			}
 
-			source = getSource();
+			safeShaderSource(glId, getSource());
+			GFX.compileShader(glId);
 
-			safeShaderSource(glId, source);
-			GFX.glCompileShader(glId);
+			// status is queried by checkStatus so the driver can compile in the background
+			statusPending = true;
+		} catch (final Exception e) {
+			isErrored = true;
+			error = e.getMessage();
+		}
 
-			if (GFX.glGetShaderi(glId, GFX.GL_COMPILE_STATUS) == GFX.GL_FALSE) {
+		if (isErrored) {
+			onError(error);
+		}
+	}
+
+	@Override
+	public boolean checkStatus() {
+		compile();
+
+		if (statusPending) {
+			statusPending = false;
+
+			if (GFX.getShader(glId, GFX.GL_COMPILE_STATUS) == GFX.GL_FALSE) {
 				isErrored = true;
-				error = GFX.getShaderInfoLog(glId);
+				String error = GFX.getShaderInfoLog(glId);
 
 				if (error.isEmpty()) {
 					error = "Unknown OpenGL Error.";
 				}
+
+				onError(error);
+			} else if (Configurator.shaderDebug) {
+				outputDebugSource(source, null);
 			}
-		} catch (final Exception e) {
-			isErrored = true;
-			error = e.getMessage();
 		}
 
-		if (isErrored) {
-			if (glId > 0) {
-				GFX.glDeleteShader(glId);
-				glId = -1;
-			}
+		return !isErrored;
+	}
 
-			if (Configurator.conciseErrors) {
-				if (!isErrorNoticeComplete) {
-					CanvasMod.LOG.error(I18n.translate("error.canvas.fail_create_any_shader"));
-					isErrorNoticeComplete = true;
-				}
-			} else {
-				CanvasMod.LOG.error(I18n.translate("error.canvas.fail_create_shader", shaderSourceId.toString(), programType.name, error));
-			}
+	private void onError(String error) {
+		if (glId > 0) {
+			GFX.deleteShader(glId);
+			glId = -1;
+		}
 
-			outputDebugSource(source, error);
-		} else if (Configurator.shaderDebug) {
-			outputDebugSource(source, null);
+		if (Configurator.conciseErrors) {
+			if (!isErrorNoticeComplete) {
+				CanvasMod.LOG.error(I18n.translate("error.canvas.fail_create_any_shader"));
+				isErrorNoticeComplete = true;
+			}
+		} else {
+			CanvasMod.LOG.error(I18n.translate("error.canvas.fail_create_shader", shaderSourceId.toString(), programType.name, error));
 		}
+
+		outputDebugSource(source, error);
 	}
 
 	/**
@@ -191,6 +249,11 @@ public class GlShader implements Shader {
 	 * <p>Hat tip to fewizz for the find and the fix.
 	 */
 	private static void safeShaderSource(@NativeType("GLuint") int glId, @NativeType("GLchar const **") CharSequence source) {
+		if (GFX.HEADLESS) {
+			GfxRecorder.record("glShaderSource");
+			return;
+		}
+
 		final MemoryStack stack = stackGet();
 		final int stackPointer = stack.getPointer();
 
@@ -245,53 +308,56 @@ public class GlShader implements Shader {
 		}
 	}
 
-	private String getSource() {
+	@Override
+	public String getSource() {
 		String result = source;
 
 		if (result == null) {
-			result = getCombinedShaderSource();
+			final String baseSource = preprocessSource(MinecraftClient.getInstance().getResourceManager(), PREPROCESSOR.source(shaderSourceId));
+			result = PREPROCESSOR.process(baseSource, defines());
+			source = result;
+		}
 
-			if (programType == ProgramType.MATERIAL_COLOR) {
-				result = StringUtils.replace(result, "#define PROGRAM_BY_UNIFORM", "//#define PROGRAM_BY_UNIFORM");
-			}
+		return result;
+	}
 
-			if (shaderType == GL21.GL_FRAGMENT_SHADER) {
-				result = StringUtils.replace(result, "#define VERTEX_SHADER", "#define FRAGMENT_SHADER");
-			}
+	private Defines defines() {
+		final Defines.Builder builder = Defines.builder();
 
-			if (!Configurator.wavyGrass) {
-				result = StringUtils.replace(result, "#define ANIMATED_FOLIAGE", "//#define ANIMATED_FOLIAGE");
-			}
+		if (programType == ProgramType.MATERIAL_COLOR) {
+			builder.disable("PROGRAM_BY_UNIFORM");
+		}
 
-			if (Pipeline.shadowsEnabled()) {
-				result = StringUtils.replace(result, "#define SHADOW_MAP_SIZE 1024", "#define SHADOW_MAP_SIZE " + Pipeline.skyShadowSize);
-			} else {
-				result = StringUtils.replace(result, "#define SHADOW_MAP_PRESENT", "//#define SHADOW_MAP_PRESENT");
-				result = StringUtils.replace(result, "#define SHADOW_MAP_SIZE 1024", "//#define SHADOW_MAP_SIZE 1024");
-			}
+		if (shaderType == GL21.GL_FRAGMENT_SHADER) {
+			builder.replace("VERTEX_SHADER", "#define FRAGMENT_SHADER");
+		}
 
-			result = StringUtils.replace(result, "#define _CV_MAX_SHADER_COUNT 0", "#define _CV_MAX_SHADER_COUNT " + MaterialShaderImpl.MAX_SHADERS);
+		if (!Configurator.wavyGrass) {
+			builder.disable("ANIMATED_FOLIAGE");
+		}
 
-			//if (Configurator.hdLightmaps()) {
-			//	result = StringUtils.replace(result, "#define VANILLA_LIGHTING", "//#define VANILLA_LIGHTING");
-			//
-			//	if (Configurator.lightmapNoise) {
-			//		result = StringUtils.replace(result, "//#define ENABLE_LIGHT_NOISE", "#define ENABLE_LIGHT_NOISE");
-			//	}
-			//}
+		if (Pipeline.shadowsEnabled()) {
+			builder.define("SHADOW_MAP_SIZE", Integer.toString(Pipeline.skyShadowSize));
+		} else {
+			builder.disable("SHADOW_MAP_PRESENT");
+			builder.disable("SHADOW_MAP_SIZE");
+		}
 
-			source = result;
+		builder.define("_CV_MAX_SHADER_COUNT", Integer.toString(MaterialShaderImpl.MAX_SHADERS));
+
+		if (programType == ProgramType.PROCESS || !drawOriginsEnabled()) {
+			builder.disable("_CV_DRAW_ORIGINS");
 		}
 
-		return result;
-	}
+		//if (Configurator.hdLightmaps()) {
+		//	builder.disable("VANILLA_LIGHTING");
+		//
+		//	if (Configurator.lightmapNoise) {
+		//		builder.define("ENABLE_LIGHT_NOISE", "");
+		//	}
+		//}
 
-	private String getCombinedShaderSource() {
-		final ResourceManager resourceManager = MinecraftClient.getInstance().getResourceManager();
-		INCLUDED.clear();
-		String result = loadShaderSource(resourceManager, shaderSourceId);
-		result = preprocessSource(resourceManager, result);
-		return processSourceIncludes(resourceManager, result);
+		return builder.build();
 	}
 
 	protected String preprocessSource(ResourceManager resourceManager, String baseSource) {
@@ -312,50 +378,32 @@ public class GlShader implements Shader {
 		}
 	}
 
-	private String processSourceIncludes(ResourceManager resourceManager, String source) {
-		final Matcher m = PATTERN.matcher(source);
-
-		while (m.find()) {
-			// allow quoted arguments to #include for nicer IDE support
-			final String id = StringUtils.replace(m.group(1), "\"", "");
-
-			if (INCLUDED.contains(id)) {
-				source = StringUtils.replace(source, m.group(0), "");
-			} else {
-				INCLUDED.add(id);
-				final String src = processSourceIncludes(resourceManager, loadShaderSource(resourceManager, new Identifier(id)));
-				source = StringUtils.replace(source, m.group(0), src, 1);
-			}
-		}
-
-		return source;
-	}
-
 	/**
 	 * Call after render / resource refresh to force shader reload.
 	 */
 	@Override
 	public final void forceReload() {
 		needsLoad = true;
+		statusPending = false;
 		source = null;
 	}
 
 	@Override
 	public boolean attach(int program) {
-		final int glId = glId();
+		compile();
 
-		if (glId <= 0) {
+		if (isErrored || glId <= 0) {
 			return false;
 		}
 
-		GL21.glAttachShader(program, glId);
+		GFX.attachShader(program, glId);
 		return true;
 	}
 
 	@Override
 	public boolean containsUniformSpec(String type, String name) {
-		final String regex = "(?m)^\\s*uniform\\s+" + type + "\\s+" + name + "\\s*;";
-		final Pattern pattern = Pattern.compile(regex);
+		final Pattern pattern = UNIFORM_PATTERNS.computeIfAbsent(type + " " + name,
+			k -> Pattern.compile("(?m)^\\s*uniform\\s+" + type + "\\s+" + name + "\\s*;"));
 		return pattern.matcher(getSource()).find();
 	}
 
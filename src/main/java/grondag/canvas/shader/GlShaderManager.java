@@ -71,6 +71,8 @@ public enum GlShaderManager {
 	}
 
 	public void reload() {
+		// sources may come from the pipeline config or changed resources
+		GlShader.PREPROCESSOR.clear();
 		fragmentShaders.values().forEach(s -> s.forceReload());
 		vertexShaders.values().forEach(s -> s.forceReload());
 	}
@@ -16,6 +16,8 @@
 
 package grondag.canvas.shader;
 
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
 import grondag.canvas.CanvasMod;
 import grondag.canvas.buffer.format.CanvasVertexFormats;
 import grondag.canvas.config.Configurator;
@@ -32,6 +34,25 @@ public enum MaterialProgramManager {
 	}
 
 	private final GlMaterialProgram[] materialPrograms = new GlMaterialProgram[ProgramType.values().length];
+	private final Shader[] vertexShaders = new Shader[ProgramType.values().length];
+	private final Shader[] fragmentShaders = new Shader[ProgramType.values().length];
+
+	/**
+	 * Adds the shaders for the program type to the list, creating them if needed.
+	 * Lets sources be prepared before the program is created - program setup reads them.
+	 */
+	void collectShaders(ProgramType programType, ObjectArrayList<Shader> shaders) {
+		assert programType != ProgramType.PROCESS;
+		final int key = programType.ordinal();
+
+		if (vertexShaders[key] == null) {
+			vertexShaders[key] = new GlMaterialShader(programType.vertexSource, GFX.GL_VERTEX_SHADER, programType);
+			fragmentShaders[key] = new GlMaterialShader(programType.fragmentSource, GFX.GL_FRAGMENT_SHADER, programType);
+		}
+
+		shaders.add(vertexShaders[key]);
+		shaders.add(fragmentShaders[key]);
+	}
 
 	GlMaterialProgram getOrCreateMaterialProgram(ProgramType programType) {
 		assert programType != ProgramType.PROCESS;
@@ -39,9 +60,11 @@ public enum MaterialProgramManager {
 		GlMaterialProgram result = materialPrograms[key];
 
 		if (result == null) {
-			final Shader vs = new GlMaterialShader(programType.vertexSource, GFX.GL_VERTEX_SHADER, programType);
-			final Shader fs = new GlMaterialShader(programType.fragmentSource, GFX.GL_FRAGMENT_SHADER, programType);
-			result = new GlMaterialProgram(vs, fs, CanvasVertexFormats.MATERIAL_FORMAT, programType);
+			if (vertexShaders[key] == null) {
+				collectShaders(programType, new ObjectArrayList<>());
+			}
+
+			result = new GlMaterialProgram(vertexShaders[key], fragmentShaders[key], CanvasVertexFormats.MATERIAL_FORMAT, programType);
 			ShaderUniforms.MATERIAL_UNIFORM_SETUP.accept(result);
 			materialPrograms[key] = result;
 		}
@@ -48,20 +48,36 @@ public final class MaterialShaderImpl {
 		return result;
 	}
 
+	/**
+	 * @return false if the program is not ready - caller should skip the draw
+	 */
+	public boolean activate() {
+		return getOrCreate().activate();
+	}
+
 	public void setModelOrigin(int x, int y, int z) {
-		getOrCreate().activate();
-		program.setModelOrigin(x, y, z);
+		if (activate()) {
+			program.setModelOrigin(x, y, z);
+		}
+	}
+
+	public void setDrawOriginBase(int base) {
+		if (activate()) {
+			program.setDrawOriginBase(base);
+		}
 	}
 
 	public void setCascade(int cascade) {
-		getOrCreate().activate();
-		program.cascade.set(cascade);
-		program.cascade.upload();
+		if (activate()) {
+			program.cascade.set(cascade);
+			program.cascade.upload();
+		}
 	}
 
 	public void updateContextInfo(SpriteIndex atlasInfo, int targetIndex) {
-		getOrCreate().activate();
-		program.updateContextInfo(atlasInfo, targetIndex);
+		if (activate()) {
+			program.updateContextInfo(atlasInfo, targetIndex);
+		}
 	}
 
 	public void reload() {
@@ -100,11 +100,17 @@ public enum MaterialShaderManager {
 	public static final int DEFAULT_VERTEX_INDEX = VERTEX_INDEXER.toHandle(ShaderStrings.DEFAULT_VERTEX_SOURCE);
 	public static final int DEFAULT_FRAGMENT_INDEX = FRAGMENT_INDEXER.toHandle(ShaderStrings.DEFAULT_FRAGMENT_SOURCE);
 
+	// locked because material sources may be prepared off-thread while materials are created
+
 	static int[] vertexIds(ProgramType programType) {
-		return programType.isDepth ? DEPTH_VERTEX_INDEXES.toIntArray() : VERTEX_INDEXES.toIntArray();
+		synchronized (INSTANCE) {
+			return programType.isDepth ? DEPTH_VERTEX_INDEXES.toIntArray() : VERTEX_INDEXES.toIntArray();
+		}
 	}
 
 	static int[] fragmentIds(ProgramType programType) {
-		return programType.isDepth ? DEPTH_FRAGMENT_INDEXES.toIntArray() : FRAGMENT_INDEXES.toIntArray();
+		synchronized (INSTANCE) {
+			return programType.isDepth ? DEPTH_FRAGMENT_INDEXES.toIntArray() : FRAGMENT_INDEXES.toIntArray();
+		}
 	}
 }
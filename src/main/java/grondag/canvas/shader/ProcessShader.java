@@ -16,6 +16,8 @@
 
 package grondag.canvas.shader;
 
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.Matrix4f;
 
@@ -61,7 +63,13 @@ public class ProcessShader {
 		return null;
 	}
 
-	public ProcessShader activate() {
+	/** Adds this shader's vertex and fragment shaders to the list so their sources can be prepared as a batch. */
+	void collectShaders(ObjectArrayList<Shader> shaders) {
+		shaders.add(GlShaderManager.INSTANCE.getOrCreateVertexShader(vertexId, ProgramType.PROCESS));
+		shaders.add(GlShaderManager.INSTANCE.getOrCreateFragmentShader(fragmentId, ProgramType.PROCESS));
+	}
+
+	GlProgram getOrCreateProgram() {
 		if (program == null) {
 			final Shader vs = GlShaderManager.INSTANCE.getOrCreateVertexShader(vertexId, ProgramType.PROCESS);
 			final Shader fs = GlShaderManager.INSTANCE.getOrCreateFragmentShader(fragmentId, ProgramType.PROCESS);
@@ -77,15 +85,21 @@ public class ProcessShader {
 				final String samplerType = SamplerTypeHelper.getSamplerType(program, samplerName);
 				program.uniformSampler(samplerType, samplerName, UniformRefreshFrequency.ON_LOAD, u -> u.set(n));
 			}
-
-			program.load();
 		}
 
-		program.activate();
+		return program;
+	}
 
+	public ProcessShader activate() {
+		getOrCreateProgram().activate();
 		return this;
 	}
 
+	/** True if the program is loaded and usable. Draws should be skipped otherwise. */
+	public boolean isReady() {
+		return program != null && program.isReady();
+	}
+
 	public ProcessShader size(int w, int h) {
 		if (program != null && GlProgram.activeProgram() == program) {
 			size.set(w, h);
@@ -0,0 +1,279 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Linked program binaries saved on disk so later launches can skip compiling from source.
+ *
+ * <p>Entries are keyed by a hash of the driver id and the fully assembled shader sources,
+ * which already include every define edit. A binary from another driver or an edited
+ * shader therefore never matches. When the driver id changes, all entries are removed.
+ *
+ * <p>Each entry file has a header and a checksum. Unreadable, truncated or corrupt entries
+ * are deleted and reported as misses. So are binaries the driver rejects - callers then
+ * compile from source as usual.
+ *
+ * <p>GL access goes through {@link Backend} so key and invalidation logic can be tested without a context.
+ */
+public class ProgramBinaryCache {
+	/** The GL calls the cache needs. */
+	public interface Backend {
+		/** Vendor, renderer and version strings. Binaries are only valid for the driver that made them. */
+		String driverId();
+
+		/** Loads the binary into the program. Returns true if the program is linked and usable. */
+		boolean programBinary(int program, int format, ByteBuffer binary);
+
+		/** Binary for a linked program, or null if the driver can't provide one. */
+		@Nullable ByteBuffer getProgramBinary(int program, int[] format);
+	}
+
+	static final int MAGIC = 0x43565042; // "CVPB"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	static final String DRIVER_FILE = "driver.txt";
+	static final String ENTRY_SUFFIX = ".bin";
+
+	private final Path directory;
+	private final Backend backend;
+	private final String driverId;
+	private boolean isReady = false;
+
+	private int hitCount;
+	private int missCount;
+	private int rejectCount;
+
+	public ProgramBinaryCache(Path directory, Backend backend) {
+		this.directory = directory;
+		this.backend = backend;
+		driverId = backend.driverId();
+	}
+
+	/** Creates the directory and clears entries from another driver. Done on first use. */
+	private boolean ensureReady() {
+		if (!isReady) {
+			try {
+				Files.createDirectories(directory);
+				final Path driverFile = directory.resolve(DRIVER_FILE);
+
+				if (!Files.exists(driverFile) || !driverId.equals(Files.readString(driverFile, StandardCharsets.UTF_8))) {
+					clear();
+					Files.writeString(driverFile, driverId, StandardCharsets.UTF_8);
+				}
+
+				isReady = true;
+			} catch (final IOException e) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Hash of the driver id and the given parts, as lower-case hex. Parts are length-prefixed
+	 * so moving text from one part to the next changes the key.
+	 */
+	public String key(String... parts) {
+		return deriveKey(driverId, parts);
+	}
+
+	static String deriveKey(String driverId, String... parts) {
+		final MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			// required on every Java platform
+			throw new IllegalStateException(e);
+		}
+
+		update(digest, driverId);
+
+		for (final String part : parts) {
+			update(digest, part);
+		}
+
+		final byte[] hash = digest.digest();
+		final StringBuilder result = new StringBuilder(hash.length * 2);
+
+		for (final byte b : hash) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return result.toString();
+	}
+
+	private static void update(MessageDigest digest, String part) {
+		final byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+		final int len = bytes.length;
+		digest.update(new byte[] {(byte) (len >>> 24), (byte) (len >>> 16), (byte) (len >>> 8), (byte) len});
+		digest.update(bytes);
+	}
+
+	Path entryPath(String key) {
+		return directory.resolve(key + ENTRY_SUFFIX);
+	}
+
+	/**
+	 * Loads the cached binary for the key into the program.
+	 *
+	 * @return true if the program is linked, false if it must be compiled from source
+	 */
+	public boolean load(int program, String key) {
+		if (!ensureReady()) {
+			++missCount;
+			return false;
+		}
+
+		final Path path = entryPath(key);
+		final ByteBuffer binary;
+		final int format;
+
+		try {
+			if (!Files.exists(path)) {
+				++missCount;
+				return false;
+			}
+
+			final ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+
+			if (file.remaining() < HEADER_BYTES || file.getInt() != MAGIC || file.getInt() != VERSION) {
+				invalidate(key);
+				++missCount;
+				return false;
+			}
+
+			format = file.getInt();
+			final int checksum = file.getInt();
+
+			if (checksum(file) != checksum) {
+				invalidate(key);
+				++missCount;
+				return false;
+			}
+
+			// drivers want direct memory
+			binary = ByteBuffer.allocateDirect(file.remaining());
+			binary.put(file).flip();
+		} catch (final IOException e) {
+			invalidate(key);
+			++missCount;
+			return false;
+		}
+
+		if (backend.programBinary(program, format, binary)) {
+			++hitCount;
+			return true;
+		} else {
+			// driver update with the same version strings, or a binary it can't use for some other reason
+			invalidate(key);
+			++rejectCount;
+			return false;
+		}
+	}
+
+	/** Saves the binary of a program linked from source. Failures are ignored - the program will compile again next time. */
+	public void store(int program, String key) {
+		if (!ensureReady()) {
+			return;
+		}
+
+		final int[] format = new int[1];
+		final ByteBuffer binary = backend.getProgramBinary(program, format);
+
+		if (binary == null || !binary.hasRemaining()) {
+			return;
+		}
+
+		final ByteBuffer file = ByteBuffer.allocate(HEADER_BYTES + binary.remaining());
+		file.putInt(MAGIC).putInt(VERSION).putInt(format[0]).putInt(checksum(binary.duplicate()));
+		file.put(binary).flip();
+
+		final Path path = entryPath(key);
+		final Path temp = directory.resolve(key + ".tmp");
+
+		try {
+			// move so a crash mid-write never leaves a partial entry under the real name
+			Files.write(temp, file.array());
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+		} catch (final IOException e) {
+			try {
+				Files.deleteIfExists(temp);
+			} catch (final IOException e1) {
+				// best effort
+			}
+		}
+	}
+
+	private static int checksum(ByteBuffer data) {
+		final CRC32 crc = new CRC32();
+		crc.update(data.duplicate());
+		return (int) crc.getValue();
+	}
+
+	public void invalidate(String key) {
+		try {
+			Files.deleteIfExists(entryPath(key));
+		} catch (final IOException e) {
+			// will be overwritten when stored again
+		}
+	}
+
+	/** Removes all entries. */
+	public void clear() throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+			for (final Path entry : entries) {
+				Files.deleteIfExists(entry);
+			}
+		}
+	}
+
+	public int hitCount() {
+		return hitCount;
+	}
+
+	public int missCount() {
+		return missCount;
+	}
+
+	public int rejectCount() {
+		return rejectCount;
+	}
+
+	public String debugString() {
+		return String.format("Program binary cache hits: %d, misses: %d, rejected: %d", hitCount, missCount, rejectCount);
+	}
+}
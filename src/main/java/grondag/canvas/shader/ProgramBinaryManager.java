@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.BufferUtils;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import grondag.canvas.config.Configurator;
+import grondag.canvas.varia.CanvasGlHelper;
+import grondag.canvas.varia.GFX;
+
+/**
+ * GL backend and shared instance of {@link ProgramBinaryCache}.
+ */
+public enum ProgramBinaryManager implements ProgramBinaryCache.Backend {
+	INSTANCE;
+
+	private ProgramBinaryCache cache;
+
+	/** Null if disabled in config or not supported by the driver. Render thread only. */
+	@Nullable ProgramBinaryCache cache() {
+		if (!Configurator.programBinaryCache || !CanvasGlHelper.supportsProgramBinary()) {
+			return null;
+		}
+
+		ProgramBinaryCache result = cache;
+
+		if (result == null) {
+			final Path path = FabricLoader.getInstance().getGameDirectory().toPath().normalize().resolve("canvas_program_cache");
+			result = new ProgramBinaryCache(path, this);
+			cache = result;
+		}
+
+		return result;
+	}
+
+	@Override
+	public String driverId() {
+		return GFX.getString(GFX.GL_VENDOR) + "\n" + GFX.getString(GFX.GL_RENDERER) + "\n" + GFX.getString(GFX.GL_VERSION);
+	}
+
+	@Override
+	public boolean programBinary(int program, int format, ByteBuffer binary) {
+		GFX.programBinary(program, format, binary);
+		return GFX.getProgramInfo(program, GFX.GL_LINK_STATUS) == GFX.GL_TRUE;
+	}
+
+	@Override
+	public @Nullable ByteBuffer getProgramBinary(int program, int[] format) {
+		final int length = GFX.getProgramInfo(program, GFX.GL_PROGRAM_BINARY_LENGTH);
+
+		if (length <= 0) {
+			return null;
+		}
+
+		final ByteBuffer binary = BufferUtils.createByteBuffer(length);
+		format[0] = GFX.getProgramBinary(program, binary);
+		return binary;
+	}
+
+	public String debugString() {
+		final ProgramBinaryCache cache = this.cache;
+		return cache == null ? "Program binary cache off" : cache.debugString();
+	}
+}
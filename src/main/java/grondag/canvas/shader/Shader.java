@@ -25,13 +25,36 @@ public interface Shader {
 	void forceReload();
 
 	/**
-	 * Binds this shader.
+	 * Assembles source text if needed. Safe to call off the render thread.
+	 */
+	void prepare();
+
+	/**
+	 * Issues the compile if needed but does not wait for or check the result.
+	 */
+	void compile();
+
+	/**
+	 * Binds this shader, compiling it first if needed. Compile errors are
+	 * not detected until {@link #checkStatus()}.
 	 *
 	 * @param program The program object to which this shader object will be attached
 	 * @return Was this successful
 	 */
 	boolean attach(int program);
 
+	/**
+	 * Waits for the compile if still in progress and reports any error.
+	 *
+	 * @return Did the shader compile successfully
+	 */
+	boolean checkStatus();
+
+	/**
+	 * @return Fully assembled source text, including define edits
+	 */
+	String getSource();
+
 	/**
 	 * @param type Uniform type
 	 * @param name Uniform name
@@ -0,0 +1,314 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+import net.minecraft.util.Identifier;
+
+/**
+ * Expands {@code #include} directives and applies {@code #define} edits to shader source.
+ *
+ * <p>Each resource is loaded and split into text, include and define tokens once.
+ * Fully expanded results are cached by root source and define set, so shaders that
+ * share a source and variant are only assembled once. Each resource is included at
+ * most once per result - repeat includes expand to nothing.
+ *
+ * <p>Thread-safe. Call {@link #clear()} when resources or the pipeline change.
+ */
+public class ShaderPreprocessor {
+	private static final Pattern INCLUDE = Pattern.compile("^#include\\s+(\\\"*[\\w]+:[\\w/\\.]+)[ \\t]*.*");
+	private static final Pattern DEFINE = Pattern.compile("^\\s*#define\\s+(\\w+).*");
+
+	private final Function<Identifier, String> loader;
+	private final ConcurrentHashMap<Identifier, Fragment> fragments = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<ExpansionKey, String> expansions = new ConcurrentHashMap<>();
+
+	/**
+	 * @param loader returns the raw source of a resource, never null
+	 */
+	public ShaderPreprocessor(Function<Identifier, String> loader) {
+		this.loader = loader;
+	}
+
+	/** Raw source of the resource, loaded once. */
+	public String source(Identifier id) {
+		return fragment(id).source;
+	}
+
+	/**
+	 * Expands includes in the given root source and applies the define edits
+	 * to it and everything it includes. Roots do not need to be resources.
+	 */
+	public String process(String rootSource, Defines defines) {
+		final ExpansionKey key = new ExpansionKey(rootSource, defines.key);
+		String result = expansions.get(key);
+
+		if (result == null) {
+			final StringBuilder builder = new StringBuilder(rootSource.length() * 4);
+			expand(parse(rootSource), defines, new HashSet<>(), builder);
+			result = builder.toString();
+			final String prior = expansions.putIfAbsent(key, result);
+
+			if (prior != null) {
+				result = prior;
+			}
+		}
+
+		return result;
+	}
+
+	public void clear() {
+		fragments.clear();
+		expansions.clear();
+	}
+
+	public int fragmentCount() {
+		return fragments.size();
+	}
+
+	public int expansionCount() {
+		return expansions.size();
+	}
+
+	private Fragment fragment(Identifier id) {
+		Fragment result = fragments.get(id);
+
+		if (result == null) {
+			final String source = loader.apply(id);
+			result = new Fragment(source, parse(source));
+			final Fragment prior = fragments.putIfAbsent(id, result);
+
+			if (prior != null) {
+				result = prior;
+			}
+		}
+
+		return result;
+	}
+
+	private void expand(Token[] tokens, Defines defines, HashSet<String> included, StringBuilder builder) {
+		for (final Token t : tokens) {
+			switch (t.kind) {
+				case Token.INCLUDE:
+					if (included.add(t.name)) {
+						expand(fragment(new Identifier(t.name)).tokens, defines, included, builder);
+					}
+
+					break;
+				case Token.DEFINE:
+					if (!defines.edits.containsKey(t.name)) {
+						builder.append(t.text);
+					} else {
+						final String edit = defines.edits.get(t.name);
+						// null edit means disabled
+						builder.append(edit == null ? "//" + t.text : edit);
+					}
+
+					break;
+				default:
+					builder.append(t.text);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Splits source into tokens. Include and define tokens cover one line without its
+	 * terminator. Everything else is merged into text tokens.
+	 */
+	private static Token[] parse(String source) {
+		final ArrayList<Token> tokens = new ArrayList<>();
+		final Matcher include = INCLUDE.matcher("");
+		final Matcher define = DEFINE.matcher("");
+		final int length = source.length();
+		int textStart = 0;
+		int lineStart = 0;
+
+		while (lineStart < length) {
+			int lineEnd = source.indexOf('\n', lineStart);
+
+			if (lineEnd == -1) {
+				lineEnd = length;
+			}
+
+			// leave any CR with the line terminator
+			final int contentEnd = lineEnd > lineStart && source.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+			if (firstNonBlank(source, lineStart, contentEnd) == '#') {
+				final String line = source.substring(lineStart, contentEnd);
+				Token directive = null;
+
+				if (include.reset(line).matches()) {
+					// allow quoted arguments to #include for nicer IDE support
+					directive = new Token(Token.INCLUDE, line, StringUtils.replace(include.group(1), "\"", ""));
+				} else if (define.reset(line).matches()) {
+					directive = new Token(Token.DEFINE, line, define.group(1));
+				}
+
+				if (directive != null) {
+					if (lineStart > textStart) {
+						tokens.add(new Token(Token.TEXT, source.substring(textStart, lineStart), null));
+					}
+
+					tokens.add(directive);
+					textStart = contentEnd;
+				}
+			}
+
+			lineStart = lineEnd + 1;
+		}
+
+		if (length > textStart) {
+			tokens.add(new Token(Token.TEXT, source.substring(textStart), null));
+		}
+
+		return tokens.toArray(new Token[tokens.size()]);
+	}
+
+	private static char firstNonBlank(String source, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			final char c = source.charAt(i);
+
+			if (c != ' ' && c != '\t') {
+				return c;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Edits applied to {@code #define} lines by name. Immutable once built.
+	 * A null edit comments out the line.
+	 */
+	public static class Defines {
+		public static final Defines NONE = builder().build();
+
+		private final Map<String, String> edits;
+		private final String key;
+
+		private Defines(TreeMap<String, String> edits) {
+			this.edits = edits;
+			final StringBuilder key = new StringBuilder();
+
+			for (final Map.Entry<String, String> e : edits.entrySet()) {
+				key.append(e.getKey()).append('=').append(e.getValue() == null ? "//" : e.getValue()).append('\n');
+			}
+
+			this.key = key.toString();
+		}
+
+		public static Builder builder() {
+			return new Builder();
+		}
+
+		@Override
+		public String toString() {
+			return key;
+		}
+
+		public static class Builder {
+			private final TreeMap<String, String> edits = new TreeMap<>();
+
+			/** Comments out the define. */
+			public Builder disable(String name) {
+				edits.put(name, null);
+				return this;
+			}
+
+			/** Replaces the define with {@code #define name value}. */
+			public Builder define(String name, String value) {
+				edits.put(name, "#define " + name + " " + value);
+				return this;
+			}
+
+			/** Replaces the whole define line. */
+			public Builder replace(String name, String line) {
+				edits.put(name, line);
+				return this;
+			}
+
+			public Defines build() {
+				return new Defines(new TreeMap<>(edits));
+			}
+		}
+	}
+
+	private static class Token {
+		static final int TEXT = 0;
+		static final int INCLUDE = 1;
+		static final int DEFINE = 2;
+
+		final int kind;
+		final String text;
+		/** Include id or define name. */
+		final String name;
+
+		Token(int kind, String text, String name) {
+			this.kind = kind;
+			this.text = text;
+			this.name = name;
+		}
+	}
+
+	private static class Fragment {
+		final String source;
+		final Token[] tokens;
+
+		Fragment(String source, Token[] tokens) {
+			this.source = source;
+			this.tokens = tokens;
+		}
+	}
+
+	private static class ExpansionKey {
+		final String root;
+		final String defines;
+		final int hash;
+
+		ExpansionKey(String root, String defines) {
+			this.root = root;
+			this.defines = defines;
+			hash = root.hashCode() * 31 + defines.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof ExpansionKey) {
+				final ExpansionKey other = (ExpansionKey) obj;
+				return hash == other.hash && defines.equals(other.defines) && root.equals(other.root);
+			}
+
+			return false;
+		}
+	}
+}
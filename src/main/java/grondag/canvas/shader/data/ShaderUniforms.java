@@ -38,6 +38,8 @@ public class ShaderUniforms {
 		//program.uniformSampler2d("frxs_hdLightmap", UniformRefreshFrequency.ON_LOAD, u -> u.set(TextureData.HD_LIGHTMAP - GL21.GL_TEXTURE0));
 
 		program.uniformSampler("isamplerBuffer", "_cvu_materialInfo", UniformRefreshFrequency.ON_LOAD, u -> u.set(TextureData.MATERIAL_INFO - GL21.GL_TEXTURE0));
+
+		program.uniformSampler("samplerBuffer", "_cvu_draw_origins", UniformRefreshFrequency.ON_LOAD, u -> u.set(TextureData.DRAW_ORIGINS - GL21.GL_TEXTURE0));
 	};
 
 	public static final Consumer<GlProgram> COMMON_UNIFORM_SETUP = program -> {
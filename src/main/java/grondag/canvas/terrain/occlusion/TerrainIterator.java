@@ -45,6 +45,18 @@ import grondag.canvas.terrain.util.TerrainExecutor.TerrainExecutorTask;
 import grondag.fermion.sc.unordered.SimpleUnorderedArrayList;
 import grondag.fermion.varia.Useful;
 
+/**
+ * Computes camera and shadow visibility for terrain.
+ *
+ * <p>When both are needed, the shadow pass runs on another terrain worker while
+ * the iterating thread runs the camera pass. Regions needing update are merged
+ * camera first, so results do not depend on which pass finishes first.
+ *
+ * <p>Each pass visits its distance rings in order on a single thread. Occluder
+ * tests must see every nearer region already drawn, and the bitraster occluders
+ * keep per-region transform state that cannot be shared between threads. For
+ * both reasons, each visible list is built in traversal order by one thread.
+ */
 public class TerrainIterator implements TerrainExecutorTask {
 	public static final int IDLE = 0;
 	public static final int READY = 1;
@@ -55,6 +67,9 @@ public class TerrainIterator implements TerrainExecutorTask {
 	public final ShadowOccluder shadowOccluder = new ShadowOccluder();
 	private final RegionBoundingSphere regionBoundingSphere = new RegionBoundingSphere();
 	public final SimpleUnorderedArrayList<RenderRegion> updateRegions = new SimpleUnorderedArrayList<>();
+	/** Regions needing update found by the shadow pass. Kept apart so the passes can run concurrently. */
+	private final SimpleUnorderedArrayList<RenderRegion> shadowUpdateRegions = new SimpleUnorderedArrayList<>();
+	private final ShadowPass shadowPass = new ShadowPass();
 	public final VisibleRegionList visibleRegions = new VisibleRegionList();
 	public final VisibleRegionList[] shadowVisibleRegions = new VisibleRegionList[ShadowMatrixData.CASCADE_COUNT];
 	private final AtomicInteger state = new AtomicInteger(IDLE);
@@ -146,17 +161,32 @@ public class TerrainIterator implements TerrainExecutorTask {
 		final boolean redrawShadowOccluder = Pipeline.shadowsEnabled() ? shadowOccluder.prepareScene() : false;
 
 		updateRegions.clear();
+		shadowUpdateRegions.clear();
 
-		if (includeCamera) {
+		if (includeCamera && includeShadow) {
+			// Camera and shadow passes share no occluder or PVS state, so
+			// another worker can take the shadow pass while we do the camera.
+			shadowPass.start(redrawShadowOccluder);
 			primeCameraRegions();
 			iterateTerrain(redrawOccluder);
-		}
-
-		if (includeShadow) {
+			shadowPass.join();
+		} else if (includeCamera) {
+			primeCameraRegions();
+			iterateTerrain(redrawOccluder);
+		} else if (includeShadow) {
 			iterateShadows(redrawShadowOccluder);
 			//classifyVisibleShadowRegions();
 		}
 
+		// camera first, then shadow, regardless of which pass finished first
+		final int shadowUpdateCount = shadowUpdateRegions.size();
+
+		for (int i = 0; i < shadowUpdateCount; ++i) {
+			updateRegions.add(shadowUpdateRegions.get(i));
+		}
+
+		shadowUpdateRegions.clear();
+
 		if (cancelled) {
 			state.set(IDLE);
 			visibleRegions.clear();
@@ -236,20 +266,26 @@ public class TerrainIterator implements TerrainExecutorTask {
 				updateRegions.add(builtRegion);
 			}
 
+			// Only continue through faces joined by open space to a face we came in by.
+			// Empty regions connect all faces. Without chunk culling we go everywhere.
+			final int exitFaceFlags = chunkCullingEnabled
+					? builtRegion.occlusionState.cameraExitFaceFlags(regionData.getFaceConnectivity())
+					: RegionOcclusionCalculator.ALL_FACE_FLAGS;
+
 			// for empty regions, check neighbors if visible but don't add to visible set
 			if (!regionData.canOcclude()) {
 				if (Configurator.cullEntityRender) {
 					// reuse prior test results
 					if (!builtRegion.occlusionState.isCameraOcclusionResultCurrent(occlusionResultVersion)) {
 						if (!chunkCullingEnabled || builtRegion.origin.isNear() || cameraOccluder.isEmptyRegionVisible(builtRegion.origin)) {
-							builtRegion.neighbors.enqueueUnvistedCameraNeighbors();
+							builtRegion.neighbors.enqueueUnvistedCameraNeighbors(exitFaceFlags);
 							builtRegion.occlusionState.setCameraOccluderResult(true, occlusionResultVersion);
 						} else {
 							builtRegion.occlusionState.setCameraOccluderResult(false, occlusionResultVersion);
 						}
 					}
 				} else {
-					builtRegion.neighbors.enqueueUnvistedCameraNeighbors();
+					builtRegion.neighbors.enqueueUnvistedCameraNeighbors(exitFaceFlags);
 					builtRegion.occlusionState.setCameraOccluderResult(false, occlusionResultVersion);
 				}
 
@@ -257,7 +293,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 			}
 
 			if (!chunkCullingEnabled || builtRegion.origin.isNear()) {
-				builtRegion.neighbors.enqueueUnvistedCameraNeighbors();
+				builtRegion.neighbors.enqueueUnvistedCameraNeighbors(exitFaceFlags);
 				visibleRegions.add(builtRegion);
 
 				if (redrawOccluder || !builtRegion.occlusionState.isCameraOcclusionResultCurrent(occlusionResultVersion)) {
@@ -269,7 +305,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 			} else if (builtRegion.occlusionState.isCameraOcclusionResultCurrent(occlusionResultVersion)) {
 				// reuse prior test results
 				if (builtRegion.occlusionState.cameraOccluderResult()) {
-					builtRegion.neighbors.enqueueUnvistedCameraNeighbors();
+					builtRegion.neighbors.enqueueUnvistedCameraNeighbors(exitFaceFlags);
 					visibleRegions.add(builtRegion);
 
 					// will already have been drawn if occluder view version hasn't changed
@@ -283,7 +319,7 @@ public class TerrainIterator implements TerrainExecutorTask {
 				final int[] visData = regionData.getOcclusionData();
 
 				if (cameraOccluder.isBoxVisible(visData[RegionOcclusionCalculator.OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX])) {
-					builtRegion.neighbors.enqueueUnvistedCameraNeighbors();
+					builtRegion.neighbors.enqueueUnvistedCameraNeighbors(exitFaceFlags);
 					visibleRegions.add(builtRegion);
 					builtRegion.occlusionState.setCameraOccluderResult(true, occlusionResultVersion);
 
@@ -342,13 +378,13 @@ public class TerrainIterator implements TerrainExecutorTask {
 
 			// If never built then don't do anything with it
 			if (regionData == RegionBuildState.UNBUILT) {
-				updateRegions.add(builtRegion);
+				shadowUpdateRegions.add(builtRegion);
 				continue;
 			}
 
 			// If get to here has been built - if needs rebuilt we can use existing data this frame
 			if (builtRegion.needsRebuild()) {
-				updateRegions.add(builtRegion);
+				shadowUpdateRegions.add(builtRegion);
 			}
 
 			// for empty regions, check neighbors if visible but don't add to visible set
@@ -461,4 +497,58 @@ public class TerrainIterator implements TerrainExecutorTask {
 	public int priority() {
 		return -1;
 	}
+
+	private static final int PASS_IDLE = 0;
+	private static final int PASS_QUEUED = 1;
+	private static final int PASS_RUNNING = 2;
+
+	/**
+	 * Runs {@link #iterateShadows(boolean)} on a terrain worker while the iterating thread
+	 * does the camera pass. Whichever thread claims the pass first runs it, so the iterating
+	 * thread never waits on a pass that no worker has picked up - this matters when the
+	 * iterator itself is running on the only free worker.
+	 */
+	private class ShadowPass implements TerrainExecutorTask {
+		private final AtomicInteger passState = new AtomicInteger(PASS_IDLE);
+		private boolean redrawOccluder;
+
+		void start(boolean redrawOccluder) {
+			assert passState.get() == PASS_IDLE;
+			this.redrawOccluder = redrawOccluder;
+			passState.set(PASS_QUEUED);
+			cwr.regionBuilder().executor.execute(this);
+		}
+
+		/** Runs the pass here if no worker has claimed it yet, otherwise waits for it to finish. */
+		void join() {
+			if (passState.compareAndSet(PASS_QUEUED, PASS_RUNNING)) {
+				runClaimed();
+			} else {
+				while (passState.get() != PASS_IDLE) {
+					Thread.onSpinWait();
+				}
+			}
+		}
+
+		@Override
+		public void run(TerrainRenderContext ignored) {
+			// Stale if the iterating thread already claimed the pass
+			if (passState.compareAndSet(PASS_QUEUED, PASS_RUNNING)) {
+				runClaimed();
+			}
+		}
+
+		private void runClaimed() {
+			try {
+				iterateShadows(redrawOccluder);
+			} finally {
+				passState.set(PASS_IDLE);
+			}
+		}
+
+		@Override
+		public int priority() {
+			return -1;
+		}
+	}
 }
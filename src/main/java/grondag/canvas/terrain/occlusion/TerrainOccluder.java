@@ -69,8 +69,13 @@ public class TerrainOccluder extends BoxOccluder {
 		return occlusionFrustum.lastCameraPos();
 	}
 
-	public boolean isRegionVisible(RegionPosition regionPosition) {
-		return occlusionFrustum.isRegionVisible(regionPosition);
+	/** See {@link TerrainFrustum#intersectedPlanes(float, float, float, float, float, float)}. */
+	public int frustumPlanes(float cx, float cy, float cz, float hdx, float hdy, float hdz) {
+		return occlusionFrustum.intersectedPlanes(cx, cy, cz, hdx, hdy, hdz);
+	}
+
+	public boolean isRegionVisible(RegionPosition regionPosition, int planes) {
+		return occlusionFrustum.isRegionVisible(regionPosition, planes);
 	}
 
 	public void prepareRegion(RegionPosition origin) {
@@ -0,0 +1,350 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_STATE_COUNT;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+
+/**
+ * Open-space flood fill over the 16x16x16 interior of a render region.
+ *
+ * <p>Bits use the interior index layout (x | y << 4 | z << 8) so each long holds
+ * four 16-block x rows of one z layer, one row per 16-bit lane. Marks visited every seed,
+ * every open position reachable from an open seed through open positions, and every
+ * position adjacent to one of those - the closed positions that form the visible surface.
+ * Visited bits are expected to be clear on entry.
+ *
+ * <p>{@link #fillWords} moves whole rows per operation and for typical terrain converges
+ * in two or three passes over the 64 words. {@link #fillScalar} is the original
+ * block-at-a-time search and gives identical results.
+ */
+public final class RegionFloodFill {
+	/** Bit for x = 0 in each row. */
+	private static final long ROW_LOW = 0x0001000100010001L;
+	/** Bit for x = 15 in each row. */
+	private static final long ROW_HIGH = 0x8000800080008000L;
+
+	/**
+	 * Interior positions on each face of the region, indexed by face index
+	 * (down, up, north, south, west, east - same order as ModelHelper.toFaceIndex).
+	 */
+	private static final long[][] FACE_MASKS = new long[6][INTERIOR_CACHE_WORDS];
+
+	static {
+		for (int i = 0; i < INTERIOR_STATE_COUNT; ++i) {
+			final int x = i & 15;
+			final int y = (i >> 4) & 15;
+			final int z = i >> 8;
+			final long bit = 1L << (i & 63);
+			final int w = i >> 6;
+
+			if (y == 0) FACE_MASKS[0][w] |= bit;
+			if (y == 15) FACE_MASKS[1][w] |= bit;
+			if (z == 0) FACE_MASKS[2][w] |= bit;
+			if (z == 15) FACE_MASKS[3][w] |= bit;
+			if (x == 0) FACE_MASKS[4][w] |= bit;
+			if (x == 15) FACE_MASKS[5][w] |= bit;
+		}
+	}
+
+	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	private final long[] reached = new long[INTERIOR_CACHE_WORDS];
+
+	/**
+	 * Finds which faces of the region are joined by open space. Bit (from * 6 + to)
+	 * of the result is set when open positions on face from reach open positions on
+	 * face to without leaving the region. Runs one word-parallel fill per face.
+	 *
+	 * @param bits array holding closed bits
+	 * @param closedOffset word index of the first closed word in bits
+	 */
+	public long faceConnectivity(long[] bits, int closedOffset) {
+		final long[] reached = this.reached;
+		long result = 0;
+
+		for (int from = 0; from < 6; ++from) {
+			final long[] fromMask = FACE_MASKS[from];
+			long any = 0;
+
+			for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+				final long open = ~bits[w + closedOffset];
+				final long r = spread(fromMask[w] & open, open);
+				reached[w] = r;
+				any |= r;
+			}
+
+			if (any == 0) {
+				continue;
+			}
+
+			propagate(bits, closedOffset);
+
+			for (int to = 0; to < 6; ++to) {
+				final long[] toMask = FACE_MASKS[to];
+
+				for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+					if ((reached[w] & toMask[w]) != 0) {
+						result |= 1L << (from * 6 + to);
+						break;
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Word-parallel fill.
+	 *
+	 * @param bits array holding closed and visited bits
+	 * @param closedOffset word index of the first closed word in bits
+	 * @param visitedOffset word index of the first visited word in bits
+	 * @param seeds interior positions to start from, one bit per position
+	 */
+	public void fillWords(long[] bits, int closedOffset, int visitedOffset, long[] seeds) {
+		final long[] reached = this.reached;
+		long any = 0;
+
+		for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+			final long open = ~bits[w + closedOffset];
+			final long r = spread(seeds[w] & open, open);
+			reached[w] = r;
+			any |= r;
+		}
+
+		if (any != 0) {
+			propagate(bits, closedOffset);
+		}
+
+		for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+			final long r = reached[w];
+			long v = seeds[w] | r | ((r << 1) & ~ROW_LOW) | ((r >>> 1) & ~ROW_HIGH) | (r << 16) | (r >>> 16);
+
+			if ((w & 3) != 0) {
+				v |= reached[w - 1] >>> 48;
+			}
+
+			if ((w & 3) != 3) {
+				v |= reached[w + 1] << 48;
+			}
+
+			if (w >= 4) {
+				v |= reached[w - 4];
+			}
+
+			if (w < INTERIOR_CACHE_WORDS - 4) {
+				v |= reached[w + 4];
+			}
+
+			bits[w + visitedOffset] |= v;
+		}
+	}
+
+	/**
+	 * Grows the reached set through open positions until it stops changing.
+	 * Alternates ascending and descending sweeps so that growth toward either
+	 * end of the region carries through the whole sweep instead of one step per pass.
+	 */
+	private void propagate(long[] bits, int closedOffset) {
+		final long[] reached = this.reached;
+		boolean changed;
+
+		do {
+			changed = false;
+
+			for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+				long in = 0;
+
+				if ((w & 3) != 0) {
+					in |= reached[w - 1] >>> 48;
+				}
+
+				if (w >= 4) {
+					in |= reached[w - 4];
+				}
+
+				changed |= grow(w, in, ~bits[w + closedOffset]);
+			}
+
+			for (int w = INTERIOR_CACHE_WORDS - 1; w >= 0; --w) {
+				long in = 0;
+
+				if ((w & 3) != 3) {
+					in |= reached[w + 1] << 48;
+				}
+
+				if (w < INTERIOR_CACHE_WORDS - 4) {
+					in |= reached[w + 4];
+				}
+
+				changed |= grow(w, in, ~bits[w + closedOffset]);
+			}
+		} while (changed);
+	}
+
+	/** Adds open positions in the incoming set to word w and spreads them within the word. */
+	private boolean grow(int w, long in, long open) {
+		final long before = reached[w];
+		long r = before | (in & open);
+
+		if (r == before) {
+			return false;
+		}
+
+		reached[w] = spread(r, open);
+		return true;
+	}
+
+	/** Grows reached positions through open positions within a single word until it stops changing. */
+	private static long spread(long reached, long open) {
+		long prev;
+
+		do {
+			prev = reached;
+			reached = fillRows(reached, open);
+			reached |= ((reached << 16) | (reached >>> 16)) & open;
+		} while (reached != prev);
+
+		return reached;
+	}
+
+	/**
+	 * Extends each reached position to the ends of its run of open positions
+	 * within the same row, in both directions. Shifts of 1, 2, 4 and 8 cover
+	 * all 16 lanes and the masks keep them from crossing row boundaries.
+	 */
+	static long fillRows(long reached, long open) {
+		long up = reached;
+		long p = open & ~ROW_LOW;
+		up |= p & (up << 1);
+		p &= p << 1;
+		up |= p & (up << 2);
+		p &= p << 2;
+		up |= p & (up << 4);
+		p &= p << 4;
+		up |= p & (up << 8);
+
+		long down = reached;
+		p = open & ~ROW_HIGH;
+		down |= p & (down >>> 1);
+		p &= p >>> 1;
+		down |= p & (down >>> 2);
+		p &= p >>> 2;
+		down |= p & (down >>> 4);
+		p &= p >>> 4;
+		down |= p & (down >>> 8);
+
+		return up | down;
+	}
+
+	/**
+	 * Block-at-a-time breadth-first fill. Same parameters and result as {@link #fillWords}.
+	 */
+	public void fillScalar(long[] bits, int closedOffset, int visitedOffset, long[] seeds) {
+		for (int w = 0; w < INTERIOR_CACHE_WORDS; ++w) {
+			long s = seeds[w];
+
+			while (s != 0) {
+				final int index = (w << 6) | Long.numberOfTrailingZeros(s);
+				s &= s - 1;
+
+				if (setVisited(bits, closedOffset, visitedOffset, index)) {
+					visit(bits, closedOffset, visitedOffset, index);
+
+					while (!queue.isEmpty()) {
+						visit(bits, closedOffset, visitedOffset, queue.dequeueInt());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the position is interior and not already visited.
+	 * If the position is interior and not already visited, marks it visited
+	 * and returns a boolean indicating opacity.
+	 *
+	 * @return True if position met the conditions for visiting AND was not opaque.
+	 */
+	private static boolean setVisited(long[] bits, int closedOffset, int visitedOffset, int index) {
+		// interior only
+		if (index >= INTERIOR_STATE_COUNT) {
+			return false;
+		}
+
+		final int wordIndex = index >> 6;
+		final long mask = 1L << (index & 63);
+
+		if ((bits[wordIndex + visitedOffset] & mask) == 0) {
+			// not already visited
+
+			// mark visited
+			bits[wordIndex + visitedOffset] |= mask;
+
+			// return opacity result
+			return (bits[wordIndex + closedOffset] & mask) == 0;
+		} else {
+			// already visited
+			return false;
+		}
+	}
+
+	private void visit(long[] bits, int closedOffset, int visitedOffset, int xyz4) {
+		final int x = xyz4 & 0xF;
+
+		if (x == 0) {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 + 1);
+		} else if (x == 15) {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 - 1);
+		} else {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 - 1);
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 + 1);
+		}
+
+		final int y = xyz4 & 0xF0;
+
+		if (y == 0) {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 + 0x10);
+		} else if (y == 0xF0) {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 - 0x10);
+		} else {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 - 0x10);
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 + 0x10);
+		}
+
+		final int z = xyz4 & 0xF00;
+
+		if (z == 0) {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 + 0x100);
+		} else if (z == 0xF00) {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 - 0x100);
+		} else {
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 - 0x100);
+			enqueIfUnvisited(bits, closedOffset, visitedOffset, xyz4 + 0x100);
+		}
+	}
+
+	private void enqueIfUnvisited(long[] bits, int closedOffset, int visitedOffset, int xyz4) {
+		if (setVisited(bits, closedOffset, visitedOffset, xyz4)) {
+			queue.enqueue(xyz4);
+		}
+	}
+}
@@ -22,7 +22,8 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_CACHE_W
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
 
-import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import java.util.Arrays;
+
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import net.minecraft.block.BlockRenderType;
@@ -37,6 +38,18 @@ public abstract class RegionOcclusionCalculator {
 	public static final int OCCLUSION_RESULT_FIRST_BOX_INDEX = 1;
 	public static final int[] EMPTY_OCCLUSION_RESULT = {PackedBox.EMPTY_BOX};
 
+	/** Face flags with a bit set for each face index. */
+	public static final int ALL_FACE_FLAGS = 0b111111;
+
+	/**
+	 * Face connectivity of a region with no interior occluders: every face sees every other face.
+	 * Connectivity masks have bit (from * 6 + to) set when open space inside the region joins the two faces.
+	 */
+	public static final long ALL_FACES_CONNECTED = (1L << 36) - 1;
+
+	/** Face connectivity of a region with no open interior positions. */
+	public static final long NO_FACES_CONNECTED = 0;
+
 	private static final int RENDERABLE_OFFSET = TOTAL_CACHE_WORDS;
 	private static final int EXTERIOR_VISIBLE_OFFSET = RENDERABLE_OFFSET + TOTAL_CACHE_WORDS;
 	private static final int WORD_COUNT = EXTERIOR_VISIBLE_OFFSET + TOTAL_CACHE_WORDS;
@@ -56,9 +69,11 @@ public abstract class RegionOcclusionCalculator {
 	}
 
 	public final BoxFinder boxFinder = new BoxFinder(new AreaFinder());
-	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	private final RegionFloodFill floodFill = new RegionFloodFill();
 	private final long[] bits = new long[WORD_COUNT];
+	private final long[] fillSeeds = new long[INTERIOR_CACHE_WORDS];
 	private int openCount;
+	private long faceConnectivity;
 	private int minRenderableX;
 	private int minRenderableY;
 	private int minRenderableZ;
@@ -77,6 +92,25 @@ public abstract class RegionOcclusionCalculator {
 
 	protected abstract boolean closedAtRelativePos(BlockState blockState, int regionIndex);
 
+	/** Has a block model or a fluid. */
+	protected static final int RENDERABLE = 1;
+	/** Occludes - only meaningful with {@link #RENDERABLE}. */
+	protected static final int CLOSED = 2;
+
+	/**
+	 * {@link #RENDERABLE} and {@link #CLOSED} flags for the block at the given index.
+	 * Override to answer from precomputed per-state data instead of inspecting the state.
+	 */
+	protected int visibilityFlags(int regionIndex) {
+		final BlockState blockState = blockStateAtIndex(regionIndex);
+
+		if (blockState.getRenderType() == BlockRenderType.INVISIBLE && blockState.getFluidState().isEmpty()) {
+			return 0;
+		}
+
+		return closedAtRelativePos(blockState, regionIndex) ? RENDERABLE | CLOSED : RENDERABLE;
+	}
+
 	public boolean isClosed(int index) {
 		return (bits[(index >> 6)] & (1L << (index & 63))) != 0;
 	}
@@ -100,10 +134,10 @@ public abstract class RegionOcclusionCalculator {
 	}
 
 	private void captureInteriorVisibility(int regionIndex) {
-		final BlockState blockState = blockStateAtIndex(regionIndex);
+		final int flags = visibilityFlags(regionIndex);
 
-		if (blockState.getRenderType() != BlockRenderType.INVISIBLE || !blockState.getFluidState().isEmpty()) {
-			final boolean closed = closedAtRelativePos(blockState, regionIndex) || (Configurator.renderWhiteGlassAsOccluder && blockState.getBlock() == Blocks.WHITE_STAINED_GLASS);
+		if (flags != 0) {
+			final boolean closed = (flags & CLOSED) != 0 || (Configurator.renderWhiteGlassAsOccluder && blockStateAtIndex(regionIndex).getBlock() == Blocks.WHITE_STAINED_GLASS);
 			setVisibility(regionIndex, true, closed);
 		}
 	}
@@ -221,9 +255,7 @@ public abstract class RegionOcclusionCalculator {
 	}
 
 	private void captureExteriorVisibility(int regionIndex) {
-		final BlockState blockState = blockStateAtIndex(regionIndex);
-
-		if ((blockState.getRenderType() != BlockRenderType.INVISIBLE || !blockState.getFluidState().isEmpty()) && closedAtRelativePos(blockState, regionIndex)) {
+		if ((visibilityFlags(regionIndex) & CLOSED) != 0) {
 			setVisibility(regionIndex, false, true);
 		}
 	}
@@ -238,37 +270,6 @@ public abstract class RegionOcclusionCalculator {
 		}
 	}
 
-	/**
-	 * Checks if the position is interior and not already visited.
-	 * If the position is interior and not already visited, marks it visited
-	 * and returns a boolean indicating opacity.
-	 *
-	 * @param index
-	 * @return True if position met the conditions for visiting AND was not opaque.
-	 */
-	private boolean setVisited(int index) {
-		// interior only
-		if (index >= INTERIOR_STATE_COUNT) {
-			return false;
-		}
-
-		final int wordIndex = index >> 6;
-		final long mask = 1L << (index & 63);
-
-		if ((bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0) {
-			// not already visited
-
-			// mark visited
-			bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] |= mask;
-
-			// return opacity result
-			return (bits[wordIndex] & mask) == 0;
-		} else {
-			// already visited
-			return false;
-		}
-	}
-
 	private void clearInteriorRenderable(int interiorIndex) {
 		bits[(interiorIndex >> 6) + RENDERABLE_OFFSET] &= ~(1L << (interiorIndex & 63));
 	}
@@ -531,49 +532,25 @@ public abstract class RegionOcclusionCalculator {
 		maxRenderableZ = maxZ < minZ ? minZ : maxZ;
 	}
 
-	private void visitSurfaceIfPossible(int index) {
-		if (setVisited(index)) {
-			fill(index);
-		}
-	}
-
 	private int[] computeOcclusion(boolean isNear) {
 		// Determine which blocks are visible by visiting exterior blocks
 		// that aren't occluded by neighboring regions and doing a fill from there.
 
+		final long[] seeds = fillSeeds;
+		Arrays.fill(seeds, 0);
+
 		for (int i = 0; i < COVERING_INDEX_COUNT; ++i) {
 			if (!isClosed(COVERING_INDEXES[i])) {
-				visitSurfaceIfPossible(COVERED_INDEXES[i]);
+				final int index = COVERED_INDEXES[i];
+				seeds[index >> 6] |= 1L << (index & 63);
 			}
 		}
 
-		//		for (int i = 0; i < 16; i++) {
-		//			for (int j = 0; j < 16; j++) {
-		//				if (!isClosed(regionIndex(-1, i, j))) {
-		//					visitSurfaceIfPossible(0, i, j);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(16, i, j))) {
-		//					visitSurfaceIfPossible(15, i, j);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, j, -1))) {
-		//					visitSurfaceIfPossible(i, j, 0);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, j, 16))) {
-		//					visitSurfaceIfPossible(i, j, 15);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, -1, j))) {
-		//					visitSurfaceIfPossible(i, 0, j);
-		//				}
-		//
-		//				if (!isClosed(regionIndex(i, 16, j))) {
-		//					visitSurfaceIfPossible(i, 15, j);
-		//				}
-		//			}
-		//		}
+		if (Configurator.scalarOcclusionFill) {
+			floodFill.fillScalar(bits, 0, EXTERIOR_VISIBLE_OFFSET, seeds);
+		} else {
+			floodFill.fillWords(bits, 0, EXTERIOR_VISIBLE_OFFSET, seeds);
+		}
 
 		// don't hide inside position if we may be inside the chunk!
 		if (!isNear) {
@@ -629,60 +606,35 @@ public abstract class RegionOcclusionCalculator {
 
 			// entire region acts as an occluder
 			result[OCCLUSION_RESULT_FIRST_BOX_INDEX] = PackedBox.FULL_BOX;
+			faceConnectivity = NO_FACES_CONNECTED;
 			return result;
 		} else {
+			// must run before computeOcclusion marks hidden interior positions closed
+			faceConnectivity = openCount == INTERIOR_STATE_COUNT ? ALL_FACES_CONNECTED : floodFill.faceConnectivity(bits, 0);
 			return computeOcclusion(isNear);
 		}
 	}
 
-	private void fill(int xyz4) {
-		final int faceBits = 0;
-		visit(xyz4, faceBits);
-
-		while (!queue.isEmpty()) {
-			final int nextXyz4 = queue.dequeueInt();
-			visit(nextXyz4, faceBits);
-		}
+	/**
+	 * Which faces are joined by open space inside the region, as of the last call to {@link #build(boolean)}.
+	 * Bit (from * 6 + to) is set when open space connects the two faces.
+	 */
+	public long faceConnectivity() {
+		return faceConnectivity;
 	}
 
-	private void visit(int xyz4, int faceBits) {
-		final int x = xyz4 & 0xF;
-
-		if (x == 0) {
-			enqueIfUnvisited(xyz4 + 1);
-		} else if (x == 15) {
-			enqueIfUnvisited(xyz4 - 1);
-		} else {
-			enqueIfUnvisited(xyz4 - 1);
-			enqueIfUnvisited(xyz4 + 1);
-		}
-
-		final int y = xyz4 & 0xF0;
-
-		if (y == 0) {
-			enqueIfUnvisited(xyz4 + 0x10);
-		} else if (y == 0xF0) {
-			enqueIfUnvisited(xyz4 - 0x10);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x10);
-			enqueIfUnvisited(xyz4 + 0x10);
-		}
-
-		final int z = xyz4 & 0xF00;
+	/**
+	 * Faces through which a view entering the region by any of the given faces can leave it.
+	 */
+	public static int exitFaceFlags(long faceConnectivity, int entryFaceFlags) {
+		int result = 0;
 
-		if (z == 0) {
-			enqueIfUnvisited(xyz4 + 0x100);
-		} else if (z == 0xF00) {
-			enqueIfUnvisited(xyz4 - 0x100);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x100);
-			enqueIfUnvisited(xyz4 + 0x100);
+		while (entryFaceFlags != 0) {
+			final int face = Integer.numberOfTrailingZeros(entryFaceFlags);
+			entryFaceFlags &= entryFaceFlags - 1;
+			result |= (int) (faceConnectivity >>> (face * 6)) & ALL_FACE_FLAGS;
 		}
-	}
 
-	private void enqueIfUnvisited(int xyz4) {
-		if (setVisited(xyz4)) {
-			queue.enqueue(xyz4);
-		}
+		return result;
 	}
 }
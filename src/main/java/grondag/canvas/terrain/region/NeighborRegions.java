@@ -25,6 +25,7 @@ import net.minecraft.util.math.Direction;
 import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
 
 import grondag.canvas.apiimpl.util.FaceConstants;
+import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 import grondag.canvas.varia.BlockPosHelper;
 
 /** Caches directly adjacent regions for fast access and provides visitor operations for terrain iteration. */
@@ -100,18 +101,35 @@ public class NeighborRegions {
 		neighbors[closedFaceIndex] = null;
 	}
 
-	public void enqueueUnvistedCameraNeighbors() {
-		getNeighbor(FaceConstants.EAST_INDEX).occlusionState.addToCameraPvsIfValid();
-		getNeighbor(FaceConstants.WEST_INDEX).occlusionState.addToCameraPvsIfValid();
-		getNeighbor(FaceConstants.NORTH_INDEX).occlusionState.addToCameraPvsIfValid();
-		getNeighbor(FaceConstants.SOUTH_INDEX).occlusionState.addToCameraPvsIfValid();
+	/**
+	 * Enqueues neighbors adjacent to the given faces of the owning region,
+	 * recording in each neighbor the face through which it was reached.
+	 *
+	 * @param exitFaceFlags bit flags by face index, see {@link RegionOcclusionCalculator#ALL_FACE_FLAGS}
+	 */
+	public void enqueueUnvistedCameraNeighbors(int exitFaceFlags) {
+		if ((exitFaceFlags & (1 << FaceConstants.EAST_INDEX)) != 0) {
+			getNeighbor(FaceConstants.EAST_INDEX).occlusionState.addToCameraPvsIfValid(1 << FaceConstants.WEST_INDEX);
+		}
 
-		if (!isTop) {
-			getNeighbor(FaceConstants.UP_INDEX).occlusionState.addToCameraPvsIfValid();
+		if ((exitFaceFlags & (1 << FaceConstants.WEST_INDEX)) != 0) {
+			getNeighbor(FaceConstants.WEST_INDEX).occlusionState.addToCameraPvsIfValid(1 << FaceConstants.EAST_INDEX);
 		}
 
-		if (!isBottom) {
-			getNeighbor(FaceConstants.DOWN_INDEX).occlusionState.addToCameraPvsIfValid();
+		if ((exitFaceFlags & (1 << FaceConstants.NORTH_INDEX)) != 0) {
+			getNeighbor(FaceConstants.NORTH_INDEX).occlusionState.addToCameraPvsIfValid(1 << FaceConstants.SOUTH_INDEX);
+		}
+
+		if ((exitFaceFlags & (1 << FaceConstants.SOUTH_INDEX)) != 0) {
+			getNeighbor(FaceConstants.SOUTH_INDEX).occlusionState.addToCameraPvsIfValid(1 << FaceConstants.NORTH_INDEX);
+		}
+
+		if (!isTop && (exitFaceFlags & (1 << FaceConstants.UP_INDEX)) != 0) {
+			getNeighbor(FaceConstants.UP_INDEX).occlusionState.addToCameraPvsIfValid(1 << FaceConstants.DOWN_INDEX);
+		}
+
+		if (!isBottom && (exitFaceFlags & (1 << FaceConstants.DOWN_INDEX)) != 0) {
+			getNeighbor(FaceConstants.DOWN_INDEX).occlusionState.addToCameraPvsIfValid(1 << FaceConstants.UP_INDEX);
 		}
 	}
 
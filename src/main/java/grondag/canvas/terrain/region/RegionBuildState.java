@@ -38,10 +38,18 @@ public class RegionBuildState {
 
 	final ObjectArrayList<BlockEntity> blockEntities = new ObjectArrayList<>();
 	int[] occlusionData = RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT;
+	long faceConnectivity = RegionOcclusionCalculator.ALL_FACES_CONNECTED;
 
 	@Nullable
 	int[] translucentState;
 
+	/**
+	 * Quad draw order uploaded by the last index-only resort, relative to {@link #translucentState}.
+	 * Null when quads are drawn in buffer order.
+	 */
+	@Nullable
+	int[] translucentOrder;
+
 	public List<BlockEntity> getBlockEntities() {
 		return blockEntities;
 	}
@@ -59,10 +67,23 @@ public class RegionBuildState {
 		return occlusionData;
 	}
 
+	/**
+	 * Which faces are joined by open space inside the region.
+	 * See {@link RegionOcclusionCalculator#faceConnectivity()}.
+	 */
+	public long getFaceConnectivity() {
+		return faceConnectivity;
+	}
+
 	public void complete(int[] occlusionData) {
 		this.occlusionData = occlusionData;
 	}
 
+	public void complete(int[] occlusionData, long faceConnectivity) {
+		this.occlusionData = occlusionData;
+		this.faceConnectivity = faceConnectivity;
+	}
+
 	public boolean canOcclude() {
 		return occlusionData != RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT;
 	}
@@ -21,6 +21,7 @@ import grondag.canvas.terrain.occlusion.CameraPotentiallyVisibleRegionSet;
 import grondag.canvas.terrain.occlusion.OcclusionInputManager;
 import grondag.canvas.terrain.occlusion.OcclusionResultManager;
 import grondag.canvas.terrain.occlusion.ShadowPotentiallyVisibleRegionSet;
+import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 
 public class RegionOcclusionState {
 	/** Region for which we track visibility information. Provides access to world render state. */
@@ -45,6 +46,12 @@ public class RegionOcclusionState {
 
 	private int lastSeenCameraPvsVersion;
 
+	/**
+	 * Faces of this region through which the camera iteration reached it in the current camera PVS.
+	 * Only meaningful when {@link #lastSeenCameraPvsVersion} matches the current version.
+	 */
+	private int cameraEntryFaceFlags;
+
 	/**
 	 * Occlusion data version that was in effect last time drawn to camera occluder.
 	 * If this does not match the current data version and the camera occluder has not
@@ -106,7 +113,23 @@ public class RegionOcclusionState {
 		return cameraOcclusionResultVersion == occluderResultVersion;
 	}
 
+	/**
+	 * Adds the region to the camera PVS as if it could be seen through every face.
+	 * Used for the camera region and for regions primed when the camera is outside the world.
+	 */
 	public void addToCameraPvsIfValid() {
+		addToCameraPvsIfValid(RegionOcclusionCalculator.ALL_FACE_FLAGS);
+	}
+
+	/**
+	 * Adds the region to the camera PVS if not already present and records the faces
+	 * through which it was reached.
+	 *
+	 * <p>Entries are accumulated until iteration visits this region. Regions are visited
+	 * nearest first and a line of sight from the camera only ever steps to regions that are
+	 * farther away, so every entry that matters arrives before the region is visited.
+	 */
+	public void addToCameraPvsIfValid(int entryFaceFlags) {
 		// Previously checked for r.squaredChunkDistance > squaredChunkDistance
 		// but some progression patterns seem to require it or chunks are missed.
 		// This is probably because a nearer path has an occlude chunk and so it
@@ -117,10 +140,21 @@ public class RegionOcclusionState {
 
 		if (lastSeenCameraPvsVersion != pvsVersion) {
 			lastSeenCameraPvsVersion = pvsVersion;
+			cameraEntryFaceFlags = entryFaceFlags;
 			cameraPVS.add(owner);
+		} else {
+			cameraEntryFaceFlags |= entryFaceFlags;
 		}
 	}
 
+	/**
+	 * Faces through which camera iteration can continue from this region, given
+	 * the faces it was entered through and the open space connecting them.
+	 */
+	public int cameraExitFaceFlags(long faceConnectivity) {
+		return RegionOcclusionCalculator.exitFaceFlags(faceConnectivity, cameraEntryFaceFlags);
+	}
+
 	/**
 	 * Same as {@link #setCameraOccluderResult(boolean, int)} except for shadow occlusion.
 	 */
@@ -21,6 +21,7 @@ import net.minecraft.util.math.Vec3d;
 
 import grondag.bitraster.PackedBox;
 import grondag.canvas.pipeline.Pipeline;
+import grondag.canvas.render.frustum.TerrainFrustum;
 import grondag.canvas.terrain.occlusion.TerrainOccluder;
 
 public class RegionPosition extends BlockPos {
@@ -124,8 +125,13 @@ public class RegionPosition extends BlockPos {
 				}
 			}
 
-			//  PERF: implement hierarchical tests with propagation of per-plane inside test results
-			isPotentiallyVisibleFromCamera = isInsideRenderDistance() && cameraOccluder.isRegionVisible(this);
+			if (isInsideRenderDistance()) {
+				// Column result lets us skip planes the whole column is inside, or the region test entirely
+				final int planes = owner.renderChunk.cameraFrustumPlanes();
+				isPotentiallyVisibleFromCamera = planes == 0 || (planes != TerrainFrustum.OUTSIDE && cameraOccluder.isRegionVisible(this, planes));
+			} else {
+				isPotentiallyVisibleFromCamera = false;
+			}
 		}
 	}
 
@@ -167,10 +173,9 @@ public class RegionPosition extends BlockPos {
 	/**
 	 * True when region is within render distance and also within the camera frustum.
 	 *
-	 * <p>NB: tried a crude hierarchical scheme of checking chunk columns first
-	 * but didn't pay off.  Would probably  need to propagate per-plane results
-	 * over a more efficient region but that might not even help. Is already
-	 * quite fast and typically only one or a few regions per chunk must be tested.
+	 * <p>Each chunk column is classified against the frustum first, see
+	 * {@link RenderChunk#cameraFrustumPlanes()}, and regions test only
+	 * the planes their column straddles.
 	 */
 	public boolean isPotentiallyVisibleFromCamera() {
 		return isPotentiallyVisibleFromCamera;
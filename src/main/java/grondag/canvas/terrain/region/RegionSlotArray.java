@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.terrain.region;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Fixed-size array of lazily created elements that opens on first creation and closes as a unit.
+ * Holds the regions of a {@link RenderChunk}.
+ *
+ * <p>Lookups are lock-free. Open slots live in a volatile {@link AtomicReferenceArray}, so a reader
+ * sees either no element or a fully constructed one. Creation, close and iteration take this
+ * object's monitor. Each element is created at most once per open cycle, so the lock is rarely
+ * contended, and it keeps close and reuse simple: nothing can be created into an array that is
+ * being closed and close sees every element created before it.
+ *
+ * <p>A reader that loaded the slots before a concurrent close may still return an element
+ * that is being closed. Callers that care must check the element's own state.
+ */
+public class RegionSlotArray<T> {
+	@FunctionalInterface
+	public interface Factory<T> {
+		/**
+		 * Creates the element for the given index. Runs while holding the array monitor.
+		 *
+		 * @param opened true when this creation opened the array, so per-open setup should run first
+		 */
+		T create(int index, boolean opened);
+	}
+
+	private final int size;
+	private volatile AtomicReferenceArray<T> slots;
+
+	public RegionSlotArray(int size) {
+		this.size = size;
+	}
+
+	/** Element at the index, or null if not created or the array is closed. Lock-free. */
+	@Nullable
+	public T get(int index) {
+		final AtomicReferenceArray<T> slots = this.slots;
+		return slots == null ? null : slots.get(index);
+	}
+
+	/** Existing element at the index, or a new one from the factory, opening the array if needed. */
+	public T getOrCreate(int index, Factory<T> factory) {
+		final AtomicReferenceArray<T> slots = this.slots;
+
+		if (slots != null) {
+			final T result = slots.get(index);
+
+			if (result != null) {
+				return result;
+			}
+		}
+
+		return create(index, factory);
+	}
+
+	private synchronized T create(int index, Factory<T> factory) {
+		AtomicReferenceArray<T> slots = this.slots;
+		boolean opened = false;
+
+		if (slots == null) {
+			slots = new AtomicReferenceArray<>(size);
+			this.slots = slots;
+			opened = true;
+		}
+
+		T result = slots.get(index);
+
+		if (result == null) {
+			result = factory.create(index, opened);
+			slots.set(index, result);
+		}
+
+		return result;
+	}
+
+	public boolean isOpen() {
+		return slots != null;
+	}
+
+	/**
+	 * Applies the action to every element while holding the monitor.
+	 *
+	 * @return false if the array was closed, in which case the action did not run
+	 */
+	public synchronized boolean forEach(Consumer<T> action) {
+		final AtomicReferenceArray<T> slots = this.slots;
+
+		if (slots == null) {
+			return false;
+		}
+
+		for (int i = 0; i < size; ++i) {
+			final T element = slots.get(i);
+
+			if (element != null) {
+				action.accept(element);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Empties and closes the array, passing every element to onClose exactly once.
+	 * The next creation reopens it.
+	 */
+	public synchronized void close(Consumer<T> onClose) {
+		final AtomicReferenceArray<T> slots = this.slots;
+
+		if (slots != null) {
+			this.slots = null;
+
+			for (int i = 0; i < size; ++i) {
+				final T element = slots.getAndSet(i, null);
+
+				if (element != null) {
+					onClose.accept(element);
+				}
+			}
+		}
+	}
+}
@@ -18,20 +18,33 @@ package grondag.canvas.terrain.region;
 
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.chunk.ChunkStatus;
 
+import grondag.canvas.terrain.occlusion.TerrainOccluder;
+
 public class RenderChunk {
+	/** Vertical center and half height of the box holding every region this chunk can contain. */
+	private static final float COLUMN_HALF_HEIGHT = RenderRegionIndexer.MAX_Y_REGIONS * 8;
+	private static final float COLUMN_CENTER_Y = COLUMN_HALF_HEIGHT - RenderRegionIndexer.Y_BLOCKPOS_OFFSET;
+
 	final RenderRegionStorage storage;
 
 	private int chunkX;
 	private int chunkZ;
-	private RenderRegion[] regions = null;
+	private final RegionSlotArray<RenderRegion> regions = new RegionSlotArray<>(RenderRegionIndexer.MAX_Y_REGIONS);
 	private boolean areCornersLoadedCache = false;
 
 	private long cameraRegionOrigin = -1;
 
 	int horizontalSquaredDistance;
 
+	/**
+	 * Frustum view version in the high 32 bits and plane flags in the low 32 bits. One volatile
+	 * value because the camera and shadow passes can both reach {@link #cameraFrustumPlanes()}.
+	 */
+	private volatile long cameraFrustumPlanesAndVersion = -1;
+
 	public RenderChunk(RenderRegionStorage storage) {
 		this.storage = storage;
 	}
@@ -39,22 +52,14 @@ public class RenderChunk {
 	private void open(int chunkX, int chunkZ) {
 		this.chunkX = chunkX;
 		this.chunkZ = chunkZ;
-		regions = new RenderRegion[RenderRegionIndexer.MAX_Y_REGIONS];
 		areCornersLoadedCache = false;
 		cameraRegionOrigin = -1;
+		cameraFrustumPlanesAndVersion = -1;
 		computeChunkDistanceMetrics();
 	}
 
-	public synchronized void close() {
-		if (regions != null) {
-			for (final RenderRegion region : regions) {
-				if (region != null) {
-					region.close();
-				}
-			}
-
-			regions = null;
-		}
+	public void close() {
+		regions.close(RenderRegion::close);
 	}
 
 	public boolean areCornersLoaded() {
@@ -74,23 +79,11 @@ public class RenderChunk {
 		return result;
 	}
 
-	synchronized void updatePositionAndVisibility() {
+	void updatePositionAndVisibility() {
 		computeChunkDistanceMetrics();
 
-		final RenderRegion[] regions = this.regions;
-
-		if (regions != null) {
-			for (int i = 0; i < RenderRegionIndexer.MAX_Y_REGIONS; ++i) {
-				final RenderRegion r = regions[i];
-
-				if (r != null) {
-					r.updatePositionAndVisibility();
-				}
-			}
-
-			if (horizontalSquaredDistance > storage.cwr.maxSquaredChunkRetentionDistance()) {
-				storage.scheduleClose(this);
-			}
+		if (regions.forEach(RenderRegion::updatePositionAndVisibility) && horizontalSquaredDistance > storage.cwr.maxSquaredChunkRetentionDistance()) {
+			storage.scheduleClose(this);
 		}
 	}
 
@@ -105,40 +98,66 @@ public class RenderChunk {
 		}
 	}
 
-	synchronized RenderRegion getOrCreateRegion(int x, int y, int z) {
+	/**
+	 * Camera frustum planes straddled by the column of all regions in this chunk,
+	 * or {@link grondag.canvas.render.frustum.TerrainFrustum#OUTSIDE} if the column is outside.
+	 * Computed once per frustum view version and shared by every region in the column.
+	 */
+	int cameraFrustumPlanes() {
+		final TerrainOccluder cameraOccluder = storage.cwr.terrainIterator.cameraOccluder;
+		final int viewVersion = cameraOccluder.frustumViewVersion();
+		final long packed = cameraFrustumPlanesAndVersion;
+
+		if ((int) (packed >>> 32) == viewVersion) {
+			return (int) packed;
+		}
+
+		final Vec3d cameraPos = cameraOccluder.frustumCameraPos();
+
+		final int planes = cameraOccluder.frustumPlanes(
+				(float) ((chunkX << 4) + 8 - cameraPos.x),
+				(float) (COLUMN_CENTER_Y - cameraPos.y),
+				(float) ((chunkZ << 4) + 8 - cameraPos.z),
+				8, COLUMN_HALF_HEIGHT, 8);
+
+		// racing writers compute the same value for the same version
+		cameraFrustumPlanesAndVersion = ((long) viewVersion << 32) | (planes & 0xFFFFFFFFL);
+		return planes;
+	}
+
+	RenderRegion getOrCreateRegion(int x, int y, int z) {
 		final int i = (y + RenderRegionIndexer.Y_BLOCKPOS_OFFSET) >> 4;
 
 		if (i < 0 || i >= RenderRegionIndexer.MAX_Y_REGIONS) {
 			return null;
 		}
 
-		RenderRegion[] regions = this.regions;
+		final RenderRegion r = regions.get(i);
 
-		if (regions == null) {
-			open(x >> 4, z >> 4);
-			regions = this.regions;
+		if (r != null && !r.isClosed) {
+			return r;
 		}
 
-		RenderRegion r = regions[i];
-
-		if (r == null) {
-			r = new RenderRegion(this, RenderRegionIndexer.blockPosToRegionOrigin(x, y, z));
-			r.updatePositionAndVisibility();
-			regions[i] = r;
-		}
+		return regions.getOrCreate(i, (index, opened) -> {
+			if (opened) {
+				open(x >> 4, z >> 4);
+			}
 
-		return r;
+			final RenderRegion region = new RenderRegion(this, RenderRegionIndexer.blockPosToRegionOrigin(x, y, z));
+			region.updatePositionAndVisibility();
+			return region;
+		});
 	}
 
-	synchronized RenderRegion getRegionIfExists(int x, int y, int z) {
+	RenderRegion getRegionIfExists(int x, int y, int z) {
 		final int i = (y + RenderRegionIndexer.Y_BLOCKPOS_OFFSET) >> 4;
 
 		if (i < 0 || i >= RenderRegionIndexer.MAX_Y_REGIONS) {
 			return null;
 		}
 
-		final RenderRegion[] regions = this.regions;
-		return regions == null ? null : regions[i];
+		final RenderRegion r = regions.get(i);
+		return r == null || r.isClosed ? null : r;
 	}
 
 	public long cameraRegionOrigin() {
@@ -27,7 +27,6 @@ import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import net.minecraft.block.Block;
-import net.minecraft.block.BlockRenderType;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
@@ -35,7 +34,7 @@ import net.minecraft.client.render.block.BlockRenderManager;
 import net.minecraft.client.render.block.entity.BlockEntityRenderer;
 import net.minecraft.client.render.model.BakedModel;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.fluid.FluidState;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Matrix3f;
 import net.minecraft.util.math.Matrix4f;
@@ -46,9 +45,12 @@ import net.fabricmc.api.Environment;
 import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
 
 import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+import grondag.canvas.buffer.QuadIndexBuffer;
 import grondag.canvas.buffer.encoding.ArrayVertexCollector;
 import grondag.canvas.buffer.encoding.VertexCollectorList;
+import grondag.canvas.config.Configurator;
 import grondag.canvas.material.state.RenderLayerHelper;
+import grondag.canvas.material.state.RenderState;
 import grondag.canvas.perf.ChunkRebuildCounters;
 import grondag.canvas.render.CanvasWorldRenderer;
 import grondag.canvas.terrain.occlusion.PotentiallyVisibleRegion;
@@ -58,6 +60,7 @@ import grondag.canvas.terrain.region.input.InputRegion;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
 import grondag.canvas.terrain.region.input.SignalInputRegion;
 import grondag.canvas.terrain.render.DrawableChunk;
+import grondag.canvas.terrain.render.DrawableDelegate;
 import grondag.canvas.terrain.render.UploadableChunk;
 import grondag.canvas.terrain.util.RenderRegionStateIndexer;
 import grondag.canvas.terrain.util.TerrainExecutor.TerrainExecutorTask;
@@ -100,11 +103,25 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 	 * IS the task.  Rescheduling for a region already scheduled simply updates the input data.
 	 */
 	private boolean needsRebuild;
+
+	/** Set by a worker whose concurrent capture kept failing. The next capture is done on the main thread. */
+	private volatile boolean captureOnMainThread;
 	private boolean needsImportantRebuild;
 	private DrawableChunk translucentDrawable = DrawableChunk.EMPTY_DRAWABLE;
+	/** Build that produced the current translucent drawable. Index-only resorts must target the same build. */
+	private RegionBuildState translucentBuildState = RegionBuildState.UNBUILT;
 	private DrawableChunk solidDrawable = DrawableChunk.EMPTY_DRAWABLE;
 
-	boolean isClosed = false;
+	/** Volatile because region lookups are lock-free and may run while the render thread closes the region. */
+	volatile boolean isClosed = false;
+
+	/**
+	 * Build history for rebuild scheduling. Written by whichever thread built the region last.
+	 * Negative until the region has been built at least once.
+	 */
+	private volatile int lastBuildNanos = -1;
+	private volatile int lastRenderedBlockCount = -1;
+	private volatile boolean lastHadTranslucent;
 
 	public RenderRegion(RenderChunk chunk, long packedPos) {
 		cwr = chunk.storage.cwr;
@@ -168,6 +185,7 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 
 		translucentDrawable.close();
 		translucentDrawable = DrawableChunk.EMPTY_DRAWABLE;
+		translucentBuildState = RegionBuildState.UNBUILT;
 	}
 
 	public void markForBuild(boolean isImportant) {
@@ -193,13 +211,26 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 	}
 
 	public void prepareAndExecuteRebuildTask() {
-		final PackedInputRegion region = PackedInputRegion.claim(cwr.getWorld(), origin);
+		// With off-thread capture the worker copies block states when it runs the build
+		final PackedInputRegion region;
+
+		if (Configurator.captureOffThread && !captureOnMainThread) {
+			region = PackedInputRegion.claimDeferred(cwr.getWorld(), origin);
+		} else {
+			captureOnMainThread = false;
+			region = PackedInputRegion.claim(cwr.getWorld(), origin);
+		}
+
+		final PackedInputRegion priorRegion = inputState.getAndSet(region);
 
 		// Idle region is signal to reschedule
 		// If region is something other than idle, we are already in the queue
 		// and we only need to update the input protoRegion (which we do here.)
-		if (inputState.getAndSet(region) == SignalInputRegion.IDLE) {
+		if (priorRegion == SignalInputRegion.IDLE) {
 			renderRegionBuilder.executor.execute(this);
+		} else if (priorRegion != region) {
+			// superseded capture was never consumed
+			priorRegion.release();
 		}
 
 		markBuilt();
@@ -244,15 +275,62 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 		return origin.squaredCameraChunkDistance();
 	}
 
+	/** Nanoseconds taken by the last full build, on any thread, or -1 if never built. */
+	public int lastBuildNanos() {
+		return lastBuildNanos;
+	}
+
+	/** Blocks and fluids rendered by the last full build, or -1 if never built. */
+	public int lastRenderedBlockCount() {
+		return lastRenderedBlockCount;
+	}
+
+	public boolean lastHadTranslucent() {
+		return lastHadTranslucent;
+	}
+
+	/**
+	 * Closed regions and regions with no pending input (already built by an
+	 * earlier queue entry, or cancelled and not since re-dirtied) have nothing to do.
+	 */
+	@Override
+	public boolean isCancelled() {
+		return isClosed || inputState.get() == SignalInputRegion.IDLE;
+	}
+
 	@Override
 	public void run(TerrainRenderContext context) {
 		final AtomicReference<PackedInputRegion> runningState = inputState;
-		final PackedInputRegion protoRegion = runningState.getAndSet(SignalInputRegion.IDLE);
+		PackedInputRegion protoRegion = runningState.getAndSet(SignalInputRegion.IDLE);
 
 		if (protoRegion == null || protoRegion == SignalInputRegion.INVALID) {
 			return;
 		}
 
+		if (protoRegion.needsSectionCapture()) {
+			if (cwr.getWorld() == null) {
+				protoRegion.release();
+				return;
+			}
+
+			final PackedInputRegion capturedRegion = protoRegion.captureSectionsConcurrently();
+
+			if (capturedRegion == SignalInputRegion.INVALID) {
+				// Every attempt saw a section being modified. A section can also stay marked as modified if
+				// an update to it threw, so don't retry here - have the main thread capture it next time.
+				protoRegion.release();
+
+				if (runningState.get() == SignalInputRegion.IDLE) {
+					captureOnMainThread = true;
+					markForBuild(false);
+				}
+
+				return;
+			}
+
+			protoRegion = capturedRegion;
+		}
+
 		if (protoRegion == SignalInputRegion.EMPTY) {
 			final RegionBuildState chunkData = new RegionBuildState();
 			chunkData.complete(RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT);
@@ -297,14 +375,17 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 				final VertexCollectorList collectors = context.collectors;
 				final ArrayVertexCollector collector = collectors.get(RenderLayerHelper.TRANSLUCENT_TERRAIN);
 				final Vec3d sortPos = cwr.cameraVisibleRegions.lastSortPos();
+				final float x = (float) (sortPos.x - origin.getX());
+				final float y = (float) (sortPos.y - origin.getY());
+				final float z = (float) (sortPos.z - origin.getZ());
 				collector.loadState(state);
 
-				if (collector.sortQuads(
-					(float) (sortPos.x - origin.getX()),
-					(float) (sortPos.y - origin.getY()),
-					(float) (sortPos.z - origin.getZ()))
-				) {
+				if (Configurator.indexedTranslucentSort) {
+					resortIndices(collector, regionData, x, y, z);
+				} else if (collector.sortQuads(x, y, z)) {
 					regionData.translucentState = collector.saveState(state);
+					// vertex data now in sorted order
+					regionData.translucentOrder = null;
 
 					if (runningState.get() != SignalInputRegion.INVALID) {
 						final UploadableChunk upload = collectors.toUploadableChunk(true);
@@ -329,6 +410,7 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 				collectors.clear();
 			}
 		} else {
+			final long buildStart = Util.getMeasuringTimeNano();
 			context.prepareForRegion(protoRegion);
 			final RegionBuildState chunkData = captureBuildState(context, origin.isNear());
 
@@ -341,6 +423,7 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 			}
 
 			buildTerrain(context, chunkData);
+			lastBuildNanos = (int) Math.min(Integer.MAX_VALUE, Util.getMeasuringTimeNano() - buildStart);
 
 			if (runningState.get() != SignalInputRegion.INVALID) {
 				final UploadableChunk solidUpload = collectors.toUploadableChunk(false);
@@ -355,6 +438,7 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 						releaseDrawables();
 						solidDrawable = solidUpload.produceDrawable();
 						translucentDrawable = translucentUpload.produceDrawable();
+						translucentBuildState = chunkData;
 
 						if (ChunkRebuildCounters.ENABLED) {
 							ChunkRebuildCounters.completeUpload();
@@ -368,15 +452,62 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 		}
 	}
 
+	/**
+	 * Resorts translucent quads by uploading only a new quad draw order.
+	 * Vertex data stays in the order it was uploaded by the last build.
+	 */
+	private void resortIndices(ArrayVertexCollector collector, RegionBuildState regionData, float x, float y, float z) {
+		final int quadCount = collector.quadCount();
+		int[] quadOrder = regionData.translucentOrder;
+
+		if (quadOrder == null) {
+			quadOrder = new int[quadCount];
+
+			for (int i = 0; i < quadCount; ++i) {
+				quadOrder[i] = i;
+			}
+
+			regionData.translucentOrder = quadOrder;
+		}
+
+		if (collector.sortQuadOrder(x, y, z, quadOrder) && runningState.get() != SignalInputRegion.INVALID) {
+			final QuadIndexBuffer indexBuffer = new QuadIndexBuffer(quadOrder, quadCount);
+			final RenderState renderState = collector.renderState;
+
+			renderRegionBuilder.scheduleUpload(() -> {
+				// drawable may have been replaced by a newer build or closed since the sort
+				final DrawableDelegate delegate = translucentBuildState == regionData ? translucentDrawable.delegate(renderState) : null;
+
+				if (delegate == null) {
+					indexBuffer.close();
+					return;
+				}
+
+				if (ChunkRebuildCounters.ENABLED) {
+					ChunkRebuildCounters.startUpload();
+				}
+
+				indexBuffer.upload();
+				delegate.setIndexBuffer(indexBuffer);
+
+				if (ChunkRebuildCounters.ENABLED) {
+					ChunkRebuildCounters.completeUpload();
+				}
+			});
+		}
+	}
+
 	private RegionBuildState captureBuildState(TerrainRenderContext context, boolean isNear) {
 		final RegionBuildState newBuildState = new RegionBuildState();
-		newBuildState.complete(context.region.occlusion.build(isNear));
+		final RegionOcclusionCalculator occlusion = context.region.occlusion;
+		newBuildState.complete(occlusion.build(isNear), occlusion.faceConnectivity());
 		handleBlockEntities(newBuildState, context);
 
 		// don't rebuild occlusion if occlusion did not change
 		final RegionBuildState oldBuildState = buildState.getAndSet(newBuildState);
 
-		if (oldBuildState == RegionBuildState.UNBUILT || !Arrays.equals(newBuildState.occlusionData, oldBuildState.occlusionData)) {
+		if (oldBuildState == RegionBuildState.UNBUILT || newBuildState.faceConnectivity != oldBuildState.faceConnectivity
+				|| !Arrays.equals(newBuildState.occlusionData, oldBuildState.occlusionData)) {
 			occlusionState.notifyOfOcclusionChange();
 		}
 
@@ -403,47 +534,51 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 
 		final BlockRenderManager blockRenderManager = MinecraftClient.getInstance().getBlockRenderManager();
 		final RegionOcclusionCalculator occlusionRegion = region.occlusion;
+		int renderedBlockCount = 0;
 
 		for (int i = 0; i < RenderRegionStateIndexer.INTERIOR_STATE_COUNT; i++) {
-			if (occlusionRegion.shouldRender(i)) {
+			// palette flags rule out air and other invisible states without touching the state
+			final int flags = region.stateFlags(i);
+			final boolean hasFluid = (flags & InputRegion.FLAG_HAS_FLUID) != 0;
+			final boolean hasBlock = (flags & InputRegion.FLAG_HAS_MODEL) != 0;
+
+			if ((hasFluid || hasBlock) && occlusionRegion.shouldRender(i)) {
 				final BlockState blockState = region.getLocalBlockState(i);
-				final FluidState fluidState = blockState.getFluidState();
 				final int x = i & 0xF;
 				final int y = (i >> 4) & 0xF;
 				final int z = (i >> 8) & 0xF;
 				searchPos.set(xOrigin + x, yOrigin + y, zOrigin + z);
 
-				final boolean hasFluid = !fluidState.isEmpty();
-				final boolean hasBlock = blockState.getRenderType() != BlockRenderType.INVISIBLE;
+				++renderedBlockCount;
 
-				if (hasFluid || hasBlock) {
-					// Vanilla does a push/pop for each block but that creates needless allocation spam.
-					modelMatrix.loadIdentity();
-					modelMatrix.multiplyByTranslation(x, y, z);
-					normalMatrix.loadIdentity();
+				// Vanilla does a push/pop for each block but that creates needless allocation spam.
+				modelMatrix.loadIdentity();
+				modelMatrix.multiplyByTranslation(x, y, z);
+				normalMatrix.loadIdentity();
 
-					if (hasFluid) {
-						context.renderFluid(blockState, searchPos, false, FluidQuadSupplier.get(fluidState.getFluid()), matrixStack);
-					}
+				if (hasFluid) {
+					context.renderFluid(blockState, searchPos, false, FluidQuadSupplier.get(blockState.getFluidState().getFluid()), matrixStack);
+				}
 
-					if (hasBlock) {
-						if (blockState.getBlock().getOffsetType() != Block.OffsetType.NONE) {
-							final Vec3d vec3d = blockState.getModelOffset(region, searchPos);
+				if (hasBlock) {
+					if (blockState.getBlock().getOffsetType() != Block.OffsetType.NONE) {
+						final Vec3d vec3d = blockState.getModelOffset(region, searchPos);
 
-							if (vec3d != Vec3d.ZERO) {
-								modelMatrix.multiplyByTranslation((float) vec3d.x, (float) vec3d.y, (float) vec3d.z);
-							}
+						if (vec3d != Vec3d.ZERO) {
+							modelMatrix.multiplyByTranslation((float) vec3d.x, (float) vec3d.y, (float) vec3d.z);
 						}
-
-						final BakedModel model = blockRenderManager.getModel(blockState);
-						context.renderBlock(blockState, searchPos, model.useAmbientOcclusion(), (FabricBakedModel) model, matrixStack);
 					}
+
+					final BakedModel model = blockRenderManager.getModel(blockState);
+					context.renderBlock(blockState, searchPos, model.useAmbientOcclusion(), (FabricBakedModel) model, matrixStack);
 				}
 			}
 		}
 
 		final Vec3d sortPos = cwr.cameraVisibleRegions.lastSortPos();
 		regionData.endBuffering((float) (sortPos.x - xOrigin), (float) (sortPos.y - yOrigin), (float) (sortPos.z - zOrigin), collectors);
+		lastRenderedBlockCount = renderedBlockCount;
+		lastHadTranslucent = regionData.translucentState != null;
 
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.completeChunk();
@@ -507,10 +642,12 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 				occlusionState.notifyOfOcclusionChange();
 			}
 		} else {
+			final long buildStart = Util.getMeasuringTimeNano();
 			final TerrainRenderContext context = renderRegionBuilder.mainThreadContext.prepareForRegion(region);
 			final RegionBuildState regionData = captureBuildState(context, origin.isNear());
 
 			buildTerrain(context, regionData);
+			lastBuildNanos = (int) Math.min(Integer.MAX_VALUE, Util.getMeasuringTimeNano() - buildStart);
 
 			if (ChunkRebuildCounters.ENABLED) {
 				ChunkRebuildCounters.startUpload();
@@ -523,6 +660,7 @@ public class RenderRegion implements TerrainExecutorTask, PotentiallyVisibleRegi
 			releaseDrawables();
 			solidDrawable = solidUpload.produceDrawable();
 			translucentDrawable = translucentUpload.produceDrawable();
+			translucentBuildState = regionData;
 
 			if (ChunkRebuildCounters.ENABLED) {
 				ChunkRebuildCounters.completeUpload();
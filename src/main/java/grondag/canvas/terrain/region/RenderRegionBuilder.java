@@ -22,6 +22,7 @@ import com.google.common.collect.Queues;
 import com.mojang.blaze3d.systems.RenderSystem;
 
 import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+import grondag.canvas.buffer.UploadRing;
 import grondag.canvas.terrain.util.TerrainExecutor;
 
 public class RenderRegionBuilder {
@@ -31,12 +32,13 @@ public class RenderRegionBuilder {
 	TerrainRenderContext mainThreadContext = new TerrainRenderContext();
 
 	public String getDebugString() {
-		return String.format("not available");
+		return executor.debugString();
 	}
 
 	public boolean upload() {
 		assert RenderSystem.isOnRenderThread();
 
+		UploadRing.beginUploads();
 		Runnable task = uploadQueue.poll();
 
 		final boolean didRun = task != null;
@@ -46,6 +48,7 @@ public class RenderRegionBuilder {
 			task = uploadQueue.poll();
 		}
 
+		UploadRing.endUploads();
 		return didRun;
 	}
 
@@ -29,6 +29,8 @@ import net.minecraft.world.chunk.WorldChunk;
 abstract class AbstractInputRegion {
 	// larger than needed to speed up indexing
 	protected final WorldChunk[] chunks = new WorldChunk[16];
+	/** Section arrays of the chunks above, captured separately so regions can be packed without a world. */
+	protected final ChunkSection[][] sectionArrays = new ChunkSection[16][];
 	protected int originX;
 	protected int originY;
 	protected int originZ;
@@ -57,8 +59,8 @@ abstract class AbstractInputRegion {
 			return null;
 		}
 
-		final ChunkSection[] sections = chunks[x | (z << 2)].getSectionArray();
-		return index >= sections.length ? null : sections[index];
+		final ChunkSection[] sections = sectionArrays[x | (z << 2)];
+		return sections == null || index >= sections.length ? null : sections[index];
 	}
 
 	protected WorldChunk getChunk(int cx, int cz) {
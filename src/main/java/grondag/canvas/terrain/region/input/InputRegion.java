@@ -26,16 +26,21 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndexTo
 import java.util.Arrays;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
 import org.jetbrains.annotations.Nullable;
 
+import net.minecraft.block.BlockRenderType;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.client.render.LightmapTextureManager;
 import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.fluid.FluidState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
+import net.minecraft.util.registry.BuiltinRegistries;
 import net.minecraft.world.LightType;
+import net.minecraft.world.biome.BiomeKeys;
 import net.minecraft.world.chunk.light.LightingProvider;
 import net.minecraft.world.level.ColorResolver;
 
@@ -47,6 +52,7 @@ import grondag.canvas.terrain.util.ChunkColorCache;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
 
 // FIX: should not allow direct world access, esp from non-main threads
+// Lighting and states inside the padded region come from the packed snapshot; only out-of-region lookups reach the world.
 public class InputRegion extends AbstractInputRegion implements RenderAttachedBlockView {
 	private static final int[] EMPTY_AO_CACHE = new int[TOTAL_STATE_COUNT];
 	private static final int[] EMPTY_LIGHT_CACHE = new int[TOTAL_STATE_COUNT];
@@ -58,16 +64,49 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		Arrays.fill(EMPTY_LIGHT_CACHE, Integer.MAX_VALUE);
 	}
 
+	/** Block state has a model to render. */
+	public static final int FLAG_HAS_MODEL = 1;
+	/** Block state has a non-empty fluid state. */
+	public static final int FLAG_HAS_FLUID = 2;
+	/** Block state is an opaque full cube wherever it is. */
+	private static final int FLAG_CLOSED = 4;
+	/** Block state has dynamic bounds - opacity must be checked at each position. */
+	private static final int FLAG_CLOSED_BY_POSITION = 8;
+
 	public final BlockEntity[] blockEntities = new BlockEntity[INTERIOR_STATE_COUNT];
 	public final TerrainRenderContext terrainContext;
 	protected final BlockPos.Mutable searchPos = new BlockPos.Mutable();
 	protected final Object[] renderData = new Object[INTERIOR_STATE_COUNT];
-	private final BlockState[] states = new BlockState[TOTAL_STATE_COUNT];
+	/** Index into {@link #palette} for every position in the padded region, by region index. */
+	private final short[] stateIndexes = new short[TOTAL_STATE_COUNT];
+	private final Reference2IntOpenHashMap<BlockState> paletteMap = new Reference2IntOpenHashMap<>();
+	private BlockState[] palette = new BlockState[64];
+	/** Precomputed FLAG_ values for each palette entry. */
+	private int[] paletteFlags = new int[64];
+	private int paletteSize;
+	private BlockState lastPaletteState;
+	private int lastPaletteIndex;
+	/** See {@link PackedInputRegion#light}. */
+	private final byte[] light = new byte[TOTAL_STATE_COUNT];
 
 	public final RegionOcclusionCalculator occlusion = new RegionOcclusionCalculator() {
 		@Override
 		protected BlockState blockStateAtIndex(int regionIndex) {
-			return states[regionIndex];
+			return palette[stateIndexes[regionIndex]];
+		}
+
+		@Override
+		protected int visibilityFlags(int regionIndex) {
+			final int paletteIndex = stateIndexes[regionIndex];
+			final int flags = paletteFlags[paletteIndex];
+
+			if ((flags & (FLAG_HAS_MODEL | FLAG_HAS_FLUID)) == 0) {
+				return 0;
+			} else if ((flags & FLAG_CLOSED_BY_POSITION) != 0) {
+				return closedAtRelativePos(palette[paletteIndex], regionIndex) ? RENDERABLE | CLOSED : RENDERABLE;
+			} else {
+				return (flags & FLAG_CLOSED) != 0 ? RENDERABLE | CLOSED : RENDERABLE;
+			}
 		}
 
 		@Override
@@ -86,6 +125,7 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 
 	public InputRegion(TerrainRenderContext terrainContext) {
 		this.terrainContext = terrainContext;
+		paletteMap.defaultReturnValue(-1);
 	}
 
 	public void prepare(PackedInputRegion packedRegion) {
@@ -105,25 +145,86 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		baseSectionIndex = packedRegion.baseSectionIndex;
 		chunkBaseZ = packedRegion.chunkBaseZ;
 
+		clearPalette();
 		final PaletteCopy pc = packedRegion.takePaletteCopy();
 
 		for (int x = 0; x < 16; x++) {
 			for (int y = 0; y < 16; y++) {
 				for (int z = 0; z < 16; z++) {
-					states[interiorIndex(x, y, z)] = pc.apply(x | (y << 8) | (z << 4));
+					stateIndexes[interiorIndex(x, y, z)] = (short) paletteIndex(pc.apply(x | (y << 8) | (z << 4)));
 				}
 			}
 		}
 
 		pc.release();
 
-		System.arraycopy(packedRegion.states, 0, states, INTERIOR_STATE_COUNT, EXTERIOR_STATE_COUNT);
+		final BlockState[] exteriorStates = packedRegion.states;
+
+		for (int i = 0; i < EXTERIOR_STATE_COUNT; ++i) {
+			stateIndexes[INTERIOR_STATE_COUNT + i] = (short) paletteIndex(exteriorStates[i]);
+		}
+
+		System.arraycopy(packedRegion.light, 0, light, 0, TOTAL_STATE_COUNT);
 
 		copyBeData(packedRegion);
 
 		occlusion.prepare();
 	}
 
+	private void clearPalette() {
+		paletteMap.clear();
+		Arrays.fill(palette, 0, paletteSize, null);
+		paletteSize = 0;
+		lastPaletteState = null;
+	}
+
+	private int paletteIndex(BlockState state) {
+		if (state == lastPaletteState) {
+			return lastPaletteIndex;
+		}
+
+		int result = paletteMap.getInt(state);
+
+		if (result == -1) {
+			result = addToPalette(state);
+		}
+
+		lastPaletteState = state;
+		lastPaletteIndex = result;
+		return result;
+	}
+
+	private int addToPalette(BlockState state) {
+		final int result = paletteSize++;
+
+		if (result == palette.length) {
+			palette = Arrays.copyOf(palette, result * 2);
+			paletteFlags = Arrays.copyOf(paletteFlags, result * 2);
+		}
+
+		int flags = 0;
+
+		if (state.getRenderType() != BlockRenderType.INVISIBLE) {
+			flags |= FLAG_HAS_MODEL;
+		}
+
+		if (!state.getFluidState().isEmpty()) {
+			flags |= FLAG_HAS_FLUID;
+		}
+
+		// without dynamic bounds the state has a shape cache and opacity doesn't depend on position
+		if (state.getBlock().hasDynamicBounds()) {
+			flags |= FLAG_CLOSED_BY_POSITION;
+		} else if (state.isOpaqueFullCube(this, BlockPos.ORIGIN)) {
+			flags |= FLAG_CLOSED;
+		}
+
+		palette[result] = state;
+		paletteFlags[result] = flags;
+		paletteMap.put(state, result);
+		return result;
+	}
+
 	private void copyBeData(PackedInputRegion protoRegion) {
 		final ShortArrayList blockEntityPos = protoRegion.blockEntityPos;
 
@@ -156,7 +257,7 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 			return world.getBlockState(pos);
 		}
 
-		return states[i];
+		return palette[stateIndexes[i]];
 	}
 
 	public BlockState getBlockState(int x, int y, int z) {
@@ -166,14 +267,21 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 			return world.getBlockState(searchPos.set(x, y, z));
 		}
 
-		return states[i];
+		return palette[stateIndexes[i]];
+	}
+
+	/**
+	 * FLAG_ values for the block state at the given region index.
+	 */
+	public int stateFlags(int regionIndex) {
+		return paletteFlags[stateIndexes[regionIndex]];
 	}
 
 	/**
 	 * Assumes values 0-15.
 	 */
 	public BlockState getLocalBlockState(int interiorIndex) {
-		return states[interiorIndex];
+		return palette[stateIndexes[interiorIndex]];
 	}
 
 	@Override
@@ -189,7 +297,13 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 
 	@Override
 	public int getLightLevel(LightType type, BlockPos pos) {
-		return world.getLightLevel(type, pos);
+		final int i = blockIndex(pos.getX(), pos.getY(), pos.getZ());
+
+		if (i == -1) {
+			return world.getLightLevel(type, pos);
+		}
+
+		return type == LightType.SKY ? (light[i] >> 4) & 0xF : light[i] & 0xF;
 	}
 
 	@Override
@@ -205,12 +319,12 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		int result = lightCache[cacheIndex];
 
 		if (result == Integer.MAX_VALUE) {
-			final BlockState state = states[cacheIndex];
+			final BlockState state = palette[stateIndexes[cacheIndex]];
 			final int packedXyz5 = regionIndexToXyz5(cacheIndex);
 			final int x = (packedXyz5 & 31) - 2 + originX;
 			final int y = ((packedXyz5 >> 5) & 31) - 2 + originY;
 			final int z = (packedXyz5 >> 10) - 2 + originZ;
-			result = WorldRenderer.getLightmapCoordinates(world, state, searchPos.set(x, y, z));
+			result = packedBrightness(cacheIndex, state, searchPos.set(x, y, z));
 			lightCache[cacheIndex] = result;
 		}
 
@@ -225,7 +339,25 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 	}
 
 	public int directBrightness(BlockPos pos) {
-		return WorldRenderer.getLightmapCoordinates(world, getBlockState(pos), pos);
+		final int i = blockIndex(pos.getX(), pos.getY(), pos.getZ());
+
+		if (i == -1) {
+			return WorldRenderer.getLightmapCoordinates(world, getBlockState(pos), pos);
+		}
+
+		return packedBrightness(i, palette[stateIndexes[i]], pos);
+	}
+
+	/** Same result as {@link WorldRenderer#getLightmapCoordinates}, from the light snapshot. */
+	private int packedBrightness(int regionIndex, BlockState state, BlockPos pos) {
+		if (state.hasEmissiveLighting(this, pos)) {
+			return LightmapTextureManager.MAX_LIGHT_COORDINATE;
+		}
+
+		final int packed = light[regionIndex];
+		final int sky = (packed >> 4) & 0xF;
+		final int block = Math.max(packed & 0xF, state.getLuminance());
+		return sky << 20 | block << 4;
 	}
 
 	// TODO: do anything with this?
@@ -239,7 +371,7 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		int result = aoCache[cacheIndex];
 
 		if (result == Integer.MAX_VALUE) {
-			final BlockState state = states[cacheIndex];
+			final BlockState state = palette[stateIndexes[cacheIndex]];
 
 			if (state.getLuminance() == 0) {
 				final int packedXyz5 = regionIndexToXyz5(cacheIndex);
@@ -267,6 +399,11 @@ public class InputRegion extends AbstractInputRegion implements RenderAttachedBl
 		final int x = blockPos.getX();
 		final int z = blockPos.getZ();
 
+		// regions captured without a world have no biomes
+		if (world == null) {
+			return colorResolver.getColor(BuiltinRegistries.BIOME.getOrThrow(BiomeKeys.PLAINS), x, z);
+		}
+
 		final int result = ChunkColorCache.get(getChunk(x >> 4, z >> 4)).getColor(x, blockPos.getY(), z, colorResolver);
 
 		return result;
@@ -59,24 +59,35 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Y0
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Y2;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Z0;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Z2;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
 
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.ChunkNibbleArray;
 import net.minecraft.world.chunk.ChunkSection;
 import net.minecraft.world.chunk.WorldChunk;
+import net.minecraft.world.chunk.light.ChunkLightingView;
+import net.minecraft.world.chunk.light.LightingProvider;
 
 import net.fabricmc.fabric.api.rendering.data.v1.RenderAttachmentBlockEntity;
 
+import grondag.canvas.mixinterface.ChunkSectionExt;
 import grondag.canvas.perf.ChunkRebuildCounters;
 import grondag.canvas.terrain.util.ChunkPaletteCopier;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
@@ -90,20 +101,126 @@ import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
 public class PackedInputRegion extends AbstractInputRegion {
 	private static final BlockState AIR = Blocks.AIR.getDefaultState();
 	private static final ArrayBlockingQueue<PackedInputRegion> POOL = new ArrayBlockingQueue<>(256);
+	private static final int MAX_CONCURRENT_CAPTURE_ATTEMPTS = 4;
+	private static final ThreadLocal<SectionStamp> STAMPS = ThreadLocal.withInitial(SectionStamp::new);
+	/** Padded region width in blocks, which is also the number of padded columns along x or z. */
+	private static final int COLUMN_WIDTH = 20;
 
 	public final ObjectArrayList<BlockEntity> blockEntities = new ObjectArrayList<>();
 
 	final BlockState[] states = new BlockState[EXTERIOR_STATE_COUNT];
+
+	/**
+	 * Sky light in high nibble, block light in low nibble, for every position in
+	 * the padded region, by region index. Captured here so workers never read world lighting.
+	 */
+	final byte[] light = new byte[TOTAL_STATE_COUNT];
+
+	/** Light of the 27 sections around the region, x + z * 3 + y * 9, until packed into {@link #light}. Null where the world has none. */
+	private final ChunkNibbleArray[] blockLightSections = new ChunkNibbleArray[27];
+	private final ChunkNibbleArray[] skyLightSections = new ChunkNibbleArray[27];
+
+	/** Sky light for padded columns whose top sections have no sky data, by {@link #columnIndex(int, int)}. */
+	private final byte[] columnSkyLight = new byte[COLUMN_WIDTH * COLUMN_WIDTH];
+	private boolean hasSkyLight;
+	private final BlockPos.Mutable searchPos = new BlockPos.Mutable();
 	final ShortArrayList renderDataPos = new ShortArrayList();
 	final ObjectArrayList<Object> renderData = new ObjectArrayList<>();
 	final ShortArrayList blockEntityPos = new ShortArrayList();
 	PaletteCopy mainSectionCopy;
+	private boolean needsSectionCapture;
 
 	public static PackedInputRegion claim(ClientWorld world, BlockPos origin) {
 		final PackedInputRegion result = POOL.poll();
 		return (result == null ? new PackedInputRegion() : result).prepare(world, origin);
 	}
 
+	/**
+	 * Captures from a source other than the client world, for benchmarks and tests.
+	 * See {@link RegionSectionSource} for what is not available on the result.
+	 */
+	public static PackedInputRegion claim(RegionSectionSource source, BlockPos origin) {
+		final PackedInputRegion result = POOL.poll();
+		return (result == null ? new PackedInputRegion() : result).prepare(source, origin);
+	}
+
+	/**
+	 * Starts a capture that will be finished by a terrain worker with {@link #captureSectionsConcurrently()}.
+	 * Block entities and light sections are copied here, on the main thread, because neither has a modification
+	 * count that a worker could validate. Block states and per-block light values are left for the worker.
+	 *
+	 * @return {@link SignalInputRegion#EMPTY} without capturing anything if the center section is empty
+	 */
+	public static PackedInputRegion claimDeferred(ClientWorld world, BlockPos origin) {
+		final PackedInputRegion result = POOL.poll();
+		return (result == null ? new PackedInputRegion() : result).prepareDeferred(world, origin);
+	}
+
+	/** True for regions from {@link #claimDeferred(ClientWorld, BlockPos)} whose block states are not yet captured. */
+	public boolean needsSectionCapture() {
+		return needsSectionCapture;
+	}
+
+	/**
+	 * Completes a capture started by {@link #claimDeferred(ClientWorld, BlockPos)} and can be called from
+	 * terrain workers while the render thread modifies the world. Section modification counts are recorded
+	 * before the copy and checked after it, and the copy is retried if any section changed.
+	 *
+	 * @return this region if complete, {@link SignalInputRegion#EMPTY} if the center section is empty (and this
+	 * region has been released) or {@link SignalInputRegion#INVALID} if the world kept changing. In the last case
+	 * this region still holds its main-thread data and the caller must either try again later or release it.
+	 */
+	public PackedInputRegion captureSectionsConcurrently() {
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.startCopy();
+		}
+
+		final ClientWorld world = (ClientWorld) this.world;
+		final SectionStamp stamp = STAMPS.get();
+		PackedInputRegion result = SignalInputRegion.INVALID;
+
+		for (int attempt = 0; attempt < MAX_CONCURRENT_CAPTURE_ATTEMPTS; ++attempt) {
+			if (!stamp.stamp(world, chunkBaseX, baseSectionIndex, chunkBaseZ)) {
+				Thread.onSpinWait();
+				continue;
+			}
+
+			final boolean hasBlocks;
+
+			try {
+				hasBlocks = captureSections(world);
+			} catch (final RuntimeException e) {
+				// reads of a section being resized can fail - the stamp check would reject it anyway
+				releaseSections();
+				continue;
+			}
+
+			if (!stamp.isCurrent(world, chunkBaseX, baseSectionIndex, chunkBaseZ)) {
+				releaseSections();
+				continue;
+			}
+
+			if (hasBlocks) {
+				needsSectionCapture = false;
+				packLight();
+				result = this;
+			} else {
+				release();
+				result = SignalInputRegion.EMPTY;
+			}
+
+			break;
+		}
+
+		stamp.clear();
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.completeCopy();
+		}
+
+		return result;
+	}
+
 	private static void release(PackedInputRegion region) {
 		POOL.offer(region);
 	}
@@ -119,54 +236,122 @@ public class PackedInputRegion extends AbstractInputRegion {
 		}
 
 		this.world = world;
+		setOrigin(origin, world.getBottomY());
 
-		final int originX = origin.getX();
-		final int originY = origin.getY();
-		final int originZ = origin.getZ();
+		final PackedInputRegion result;
 
-		this.originX = originX;
-		this.originY = originY;
-		this.originZ = originZ;
+		if (captureSections(world)) {
+			captureBlockEntities(chunks[1 | (1 << 2)].getBlockEntities());
+			// nothing changes the world until we return, so the live sections can be read directly
+			captureLight(world, false);
+			packLight();
+			result = this;
+		} else {
+			release();
+			result = SignalInputRegion.EMPTY;
+		}
 
-		final int chunkBaseX = (originX >> 4) - 1;
-		final int chunkBaseZ = (originZ >> 4) - 1;
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.completeCopy();
+		}
 
-		this.chunkBaseX = chunkBaseX;
-		baseSectionIndex = ((originY - world.getBottomY()) >> 4) - 1;
-		this.chunkBaseZ = chunkBaseZ;
+		return result;
+	}
+
+	private PackedInputRegion prepareDeferred(ClientWorld world, BlockPos origin) {
+		final WorldChunk mainChunk = world.getChunk((origin.getX() >> 4), (origin.getZ() >> 4));
+
+		// same early out as a main-thread capture, before anything is copied
+		if (ChunkPaletteCopier.isAir(mainChunk, origin.getY())) {
+			release();
+			return SignalInputRegion.EMPTY;
+		}
 
+		this.world = world;
+		setOrigin(origin, world.getBottomY());
+		captureBlockEntities(mainChunk.getBlockEntities());
+		captureLight(world, true);
+		needsSectionCapture = true;
+		return this;
+	}
+
+	/**
+	 * Copies the center section and block states of the padded region.
+	 *
+	 * @return false if the center section is empty, in which case nothing else is captured
+	 */
+	private boolean captureSections(ClientWorld world) {
 		final WorldChunk mainChunk = world.getChunk(chunkBaseX + 1, chunkBaseZ + 1);
 		mainSectionCopy = ChunkPaletteCopier.captureCopy(mainChunk, originY);
 
-		final PackedInputRegion result;
+		if (mainSectionCopy == ChunkPaletteCopier.AIR_COPY) {
+			return false;
+		}
+
+		chunks[1 | (1 << 2)] = mainChunk;
+		chunks[0 | (0 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 0);
+		chunks[0 | (1 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 1);
+		chunks[0 | (2 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 2);
+		chunks[1 | (0 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 0);
+		chunks[1 | (2 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 2);
+		chunks[2 | (0 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 0);
+		chunks[2 | (1 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 1);
+		chunks[2 | (2 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 2);
+
+		for (int x = 0; x < 3; x++) {
+			for (int z = 0; z < 3; z++) {
+				final int i = x | (z << 2);
+				sectionArrays[i] = chunks[i].getSectionArray();
+			}
+		}
+
+		captureCorners();
+		captureEdges();
+		captureFaces();
+		return true;
+	}
+
+	private PackedInputRegion prepare(RegionSectionSource source, BlockPos origin) {
+		world = null;
+		setOrigin(origin, source.bottomY());
+
+		mainSectionCopy = ChunkPaletteCopier.captureCopy(source.sectionArray(chunkBaseX + 1, chunkBaseZ + 1), baseSectionIndex + 1);
 
 		if (mainSectionCopy == ChunkPaletteCopier.AIR_COPY) {
 			release();
-			result = SignalInputRegion.EMPTY;
-		} else {
-			captureBlockEntities(mainChunk);
-			chunks[1 | (1 << 2)] = mainChunk;
-			chunks[0 | (0 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 0);
-			chunks[0 | (1 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 1);
-			chunks[0 | (2 << 2)] = world.getChunk(chunkBaseX + 0, chunkBaseZ + 2);
-			chunks[1 | (0 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 0);
-			chunks[1 | (2 << 2)] = world.getChunk(chunkBaseX + 1, chunkBaseZ + 2);
-			chunks[2 | (0 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 0);
-			chunks[2 | (1 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 1);
-			chunks[2 | (2 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 2);
-
-			captureCorners();
-			captureEdges();
-			captureFaces();
-
-			result = this;
+			return SignalInputRegion.EMPTY;
 		}
 
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.completeCopy();
+		captureBlockEntities(source.blockEntities(chunkBaseX + 1, chunkBaseZ + 1));
+
+		for (int x = 0; x < 3; x++) {
+			for (int z = 0; z < 3; z++) {
+				sectionArrays[x | (z << 2)] = source.sectionArray(chunkBaseX + x, chunkBaseZ + z);
+			}
 		}
 
-		return result;
+		captureCorners();
+		captureEdges();
+		captureFaces();
+
+		// no lighting in section sources - full sky light everywhere
+		Arrays.fill(light, (byte) 0xF0);
+
+		return this;
+	}
+
+	private void setOrigin(BlockPos origin, int bottomY) {
+		final int originX = origin.getX();
+		final int originY = origin.getY();
+		final int originZ = origin.getZ();
+
+		this.originX = originX;
+		this.originY = originY;
+		this.originZ = originZ;
+
+		chunkBaseX = (originX >> 4) - 1;
+		baseSectionIndex = ((originY - bottomY) >> 4) - 1;
+		chunkBaseZ = (originZ >> 4) - 1;
 	}
 
 	PaletteCopy takePaletteCopy() {
@@ -175,14 +360,14 @@ public class PackedInputRegion extends AbstractInputRegion {
 		return result;
 	}
 
-	private void captureBlockEntities(WorldChunk mainChunk) {
+	private void captureBlockEntities(Map<BlockPos, BlockEntity> chunkBlockEntities) {
 		renderDataPos.clear();
 		renderData.clear();
 		blockEntityPos.clear();
 		blockEntities.clear();
 		final int yCheck = (originY >> 4);
 
-		for (final Map.Entry<BlockPos, BlockEntity> entry : mainChunk.getBlockEntities().entrySet()) {
+		for (final Map.Entry<BlockPos, BlockEntity> entry : chunkBlockEntities.entrySet()) {
 			final BlockPos pos = entry.getKey();
 
 			// only those in this chunk
@@ -316,7 +501,124 @@ public class PackedInputRegion extends AbstractInputRegion {
 		captureCorner(CORNER_INDEX_222 - INTERIOR_STATE_COUNT, XYZ == null ? AIR_FUNCTION : (i, j, k) -> XYZ.getBlockState(i, j, k));
 	}
 
-	public void release() {
+	/**
+	 * Collects the light sections around the region for {@link #packLight()}.
+	 *
+	 * @param copy true to snapshot each section, for packing after the world may have changed
+	 */
+	private void captureLight(ClientWorld world, boolean copy) {
+		final LightingProvider lighting = world.getLightingProvider();
+		final ChunkLightingView blockView = lighting.get(LightType.BLOCK);
+		final ChunkLightingView skyView = world.getDimension().hasSkyLight() ? lighting.get(LightType.SKY) : null;
+		final int sectionBaseY = (originY >> 4) - 1;
+		hasSkyLight = skyView != null;
+
+		for (int sx = 0; sx < 3; ++sx) {
+			for (int sz = 0; sz < 3; ++sz) {
+				int topSkySection = -1;
+
+				for (int sy = 0; sy < 3; ++sy) {
+					final int i = sx + sz * 3 + sy * 9;
+					final ChunkSectionPos sectionPos = ChunkSectionPos.from(chunkBaseX + sx, sectionBaseY + sy, chunkBaseZ + sz);
+					blockLightSections[i] = snapshot(blockView.getLightSection(sectionPos), copy);
+
+					if (skyView != null) {
+						skyLightSections[i] = snapshot(skyView.getLightSection(sectionPos), copy);
+
+						if (skyLightSections[i] != null) {
+							topSkySection = sy;
+						}
+					}
+				}
+
+				if (skyView != null && topSkySection < 2) {
+					// sections above the last one with sky data take one value per column from further up
+					captureColumnSkyLight(skyView, ChunkSectionPos.from(chunkBaseX + sx, sectionBaseY + topSkySection + 1, chunkBaseZ + sz), sx, sz);
+				}
+			}
+		}
+	}
+
+	private static ChunkNibbleArray snapshot(@Nullable ChunkNibbleArray lightSection, boolean copy) {
+		return copy && lightSection != null ? lightSection.copy() : lightSection;
+	}
+
+	private void captureColumnSkyLight(ChunkLightingView skyView, ChunkSectionPos sectionPos, int sx, int sz) {
+		final int minX = sx == 0 ? 14 : 0;
+		final int maxX = sx == 2 ? 1 : 15;
+		final int minZ = sz == 0 ? 14 : 0;
+		final int maxZ = sz == 2 ? 1 : 15;
+		final int offsetX = (sx - 1) << 4;
+		final int offsetZ = (sz - 1) << 4;
+
+		for (int x = minX; x <= maxX; ++x) {
+			for (int z = minZ; z <= maxZ; ++z) {
+				final int sky = skyView.getLightLevel(searchPos.set(sectionPos.getMinX() + x, sectionPos.getMinY(), sectionPos.getMinZ() + z));
+				columnSkyLight[columnIndex(offsetX + x, offsetZ + z)] = (byte) sky;
+			}
+		}
+	}
+
+	/** Index of a padded column, region-relative x and z from -2 to 17. */
+	private static int columnIndex(int x, int z) {
+		return (x + 2) + (z + 2) * COLUMN_WIDTH;
+	}
+
+	/** Fills {@link #light} from the sections collected by {@link #captureLight(ClientWorld, boolean)} and lets them go. */
+	private void packLight() {
+		for (int sx = 0; sx < 3; ++sx) {
+			for (int sz = 0; sz < 3; ++sz) {
+				for (int sy = 0; sy < 3; ++sy) {
+					packSectionLight(sx, sy, sz);
+				}
+			}
+		}
+
+		Arrays.fill(blockLightSections, null);
+		Arrays.fill(skyLightSections, null);
+	}
+
+	private void packSectionLight(int sx, int sy, int sz) {
+		final ChunkNibbleArray blockLight = blockLightSections[sx + sz * 3 + sy * 9];
+		final ChunkNibbleArray skyLight = skyLightSections[sx + sz * 3 + sy * 9];
+		ChunkNibbleArray skyAbove = null;
+
+		if (skyLight == null && hasSkyLight) {
+			// sections without sky data read the bottom layer of the next section above that has it
+			for (int above = sy + 1; above < 3 && skyAbove == null; ++above) {
+				skyAbove = skyLightSections[sx + sz * 3 + above * 9];
+			}
+		}
+
+		// only the two layers nearest the center section are in the padded region
+		final int minX = sx == 0 ? 14 : 0;
+		final int maxX = sx == 2 ? 1 : 15;
+		final int minY = sy == 0 ? 14 : 0;
+		final int maxY = sy == 2 ? 1 : 15;
+		final int minZ = sz == 0 ? 14 : 0;
+		final int maxZ = sz == 2 ? 1 : 15;
+		final int offsetX = (sx - 1) << 4;
+		final int offsetY = (sy - 1) << 4;
+		final int offsetZ = (sz - 1) << 4;
+
+		for (int x = minX; x <= maxX; ++x) {
+			for (int z = minZ; z <= maxZ; ++z) {
+				int columnSky = 0;
+
+				if (skyLight == null && hasSkyLight) {
+					columnSky = skyAbove == null ? columnSkyLight[columnIndex(offsetX + x, offsetZ + z)] : skyAbove.get(x, 0, z);
+				}
+
+				for (int y = minY; y <= maxY; ++y) {
+					final int block = blockLight == null ? 0 : blockLight.get(x, y, z);
+					final int sky = skyLight == null ? columnSky : skyLight.get(x, y, z);
+					light[regionIndex(offsetX + x, offsetY + y, offsetZ + z)] = (byte) ((sky << 4) | block);
+				}
+			}
+		}
+	}
+
+	private void releaseSections() {
 		if (mainSectionCopy != null) {
 			mainSectionCopy.release();
 			mainSectionCopy = null;
@@ -325,12 +627,82 @@ public class PackedInputRegion extends AbstractInputRegion {
 		for (int x = 0; x < 3; x++) {
 			for (int z = 0; z < 3; z++) {
 				chunks[x | (z << 2)] = null;
+				sectionArrays[x | (z << 2)] = null;
 			}
 		}
+	}
 
+	public void release() {
+		releaseSections();
+		Arrays.fill(blockLightSections, null);
+		Arrays.fill(skyLightSections, null);
 		blockEntities.clear();
 		renderData.clear();
+		needsSectionCapture = false;
 
 		release(this);
 	}
+
+	/** Identity and modification count of the 27 sections of a region, for validating concurrent captures. */
+	private static class SectionStamp {
+		private final ChunkSection[] sections = new ChunkSection[27];
+		private final int[] counts = new int[27];
+
+		/** False if any section is being modified right now. */
+		private boolean stamp(ClientWorld world, int chunkBaseX, int baseSectionIndex, int chunkBaseZ) {
+			for (int x = 0; x < 3; ++x) {
+				for (int z = 0; z < 3; ++z) {
+					final ChunkSection[] chunkSections = world.getChunk(chunkBaseX + x, chunkBaseZ + z).getSectionArray();
+
+					for (int y = 0; y < 3; ++y) {
+						final int i = x + z * 3 + y * 9;
+						final ChunkSection section = section(chunkSections, baseSectionIndex + y);
+						sections[i] = section;
+
+						if (section != null) {
+							final int count = ((ChunkSectionExt) section).canvas_modificationCount();
+
+							if ((count & 1) != 0) {
+								return false;
+							}
+
+							counts[i] = count;
+						}
+					}
+				}
+			}
+
+			return true;
+		}
+
+		private boolean isCurrent(ClientWorld world, int chunkBaseX, int baseSectionIndex, int chunkBaseZ) {
+			// section data reads must not move after the count reads below
+			VarHandle.acquireFence();
+
+			for (int x = 0; x < 3; ++x) {
+				for (int z = 0; z < 3; ++z) {
+					final ChunkSection[] chunkSections = world.getChunk(chunkBaseX + x, chunkBaseZ + z).getSectionArray();
+
+					for (int y = 0; y < 3; ++y) {
+						final int i = x + z * 3 + y * 9;
+						final ChunkSection section = section(chunkSections, baseSectionIndex + y);
+
+						if (section != sections[i] || (section != null && ((ChunkSectionExt) section).canvas_modificationCount() != counts[i])) {
+							return false;
+						}
+					}
+				}
+			}
+
+			return true;
+		}
+
+		private static ChunkSection section(ChunkSection[] chunkSections, int index) {
+			return index < 0 || index >= chunkSections.length ? null : chunkSections[index];
+		}
+
+		private void clear() {
+			Arrays.fill(sections, null);
+		}
+	}
 }
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.terrain.region.input;
+
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ChunkSection;
+
+/**
+ * Chunk sections and block entities by chunk column, for capture by
+ * {@link PackedInputRegion#claim(RegionSectionSource, BlockPos)} without a live world.
+ *
+ * <p>Regions captured this way have no world or chunk references, so only block states,
+ * block entities and occlusion are available on them - not lighting. Biome colors are
+ * those of plains.
+ */
+public interface RegionSectionSource {
+	/** Lowest block y of the source, same meaning as {@code World.getBottomY()}. */
+	int bottomY();
+
+	/** Section array for the column, indexed from {@link #bottomY()}, or null if the column is absent. */
+	@Nullable ChunkSection[] sectionArray(int chunkX, int chunkZ);
+
+	Map<BlockPos, BlockEntity> blockEntities(int chunkX, int chunkZ);
+}
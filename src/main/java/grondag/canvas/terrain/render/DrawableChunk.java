@@ -20,6 +20,7 @@ import java.nio.IntBuffer;
 import java.util.function.Predicate;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import grondag.canvas.buffer.VboBuffer;
 import grondag.canvas.buffer.encoding.ArrayVertexCollector;
@@ -42,6 +43,28 @@ public class DrawableChunk {
 		return delegates;
 	}
 
+	/**
+	 * The delegate that draws the given render state, or null if none.
+	 */
+	@Nullable
+	public DrawableDelegate delegate(RenderState renderState) {
+		final ObjectArrayList<DrawableDelegate> delegates = delegates();
+
+		if (!isClosed && delegates != null) {
+			final int limit = delegates.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final DrawableDelegate d = delegates.get(i);
+
+				if (d.renderState() == renderState) {
+					return d;
+				}
+			}
+		}
+
+		return null;
+	}
+
 	protected void closeInner() {
 		assert delegates != null;
 		clearDelegateList(delegates);
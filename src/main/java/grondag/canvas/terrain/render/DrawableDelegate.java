@@ -19,7 +19,9 @@ package grondag.canvas.terrain.render;
 import java.util.concurrent.ArrayBlockingQueue;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import org.jetbrains.annotations.Nullable;
 
+import grondag.canvas.buffer.QuadIndexBuffer;
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.varia.GFX;
 
@@ -29,6 +31,9 @@ public class DrawableDelegate {
 	private int vertexOffset;
 	private int vertexCount;
 	private boolean isReleased = false;
+	/** Quad draw order from the latest resort, or null to draw quads in buffer order. */
+	@Nullable
+	private QuadIndexBuffer indexBuffer;
 
 	private DrawableDelegate() {
 		super();
@@ -58,16 +63,25 @@ public class DrawableDelegate {
 	/**
 	 * Assumes pipeline has already been activated and buffer has already been bound
 	 * via {@link #bind()}.
+	 *
+	 * @param bufferBaseVertex first vertex of the drawable within the bound buffer
 	 */
-	public void draw() {
+	public void draw(int bufferBaseVertex) {
 		assert !isReleased;
 
 		final int triVertexCount = vertexCount / 4 * 6;
+
+		if (this.indexBuffer != null) {
+			this.indexBuffer.bind();
+			GFX.drawElementsBaseVertex(renderState.primitive.mode, triVertexCount, GFX.GL_UNSIGNED_INT, 0L, bufferBaseVertex + vertexOffset);
+			return;
+		}
+
 		final RenderSystem.IndexBuffer indexBuffer = RenderSystem.getSequentialBuffer(renderState.primitive, triVertexCount);
 		final int elementType = indexBuffer.getElementFormat().count; // "count" appears to be a yarn defect
 		GFX.bindBuffer(GFX.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getId());
 		//GFX.drawElements(materialState.primitive.mode, triVertexCount, elementType, 0);
-		GFX.drawElementsBaseVertex(renderState.primitive.mode, triVertexCount, elementType, 0L, vertexOffset);
+		GFX.drawElementsBaseVertex(renderState.primitive.mode, triVertexCount, elementType, 0L, bufferBaseVertex + vertexOffset);
 		//GlStateManager.drawArrays(GL11.GL_QUADS, vertexOffset, vertexCount);
 	}
 
@@ -77,6 +91,12 @@ public class DrawableDelegate {
 		if (!isReleased) {
 			isReleased = true;
 			renderState = null;
+
+			if (indexBuffer != null) {
+				indexBuffer.close();
+				indexBuffer = null;
+			}
+
 			store.offer(this);
 		}
 	}
@@ -84,4 +104,29 @@ public class DrawableDelegate {
 	public int vertexCount() {
 		return vertexCount;
 	}
+
+	/** First vertex of this delegate within its drawable. */
+	public int vertexOffset() {
+		return vertexOffset;
+	}
+
+	/** True if quads draw in buffer order with the shared sequential index buffer, so this can join a multi-draw. */
+	public boolean isSequential() {
+		return indexBuffer == null;
+	}
+
+	/**
+	 * Replaces the quad draw order with an uploaded index buffer, closing any prior one.
+	 * Render thread only.
+	 */
+	public void setIndexBuffer(QuadIndexBuffer indexBuffer) {
+		assert !isReleased;
+		assert indexBuffer.quadCount * 4 == vertexCount;
+
+		if (this.indexBuffer != null) {
+			this.indexBuffer.close();
+		}
+
+		this.indexBuffer = indexBuffer;
+	}
 }
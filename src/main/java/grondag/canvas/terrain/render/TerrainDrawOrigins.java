@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.render;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.BufferUtils;
+
+import grondag.canvas.render.CanvasTextureState;
+import grondag.canvas.shader.data.ShaderDataManager;
+import grondag.canvas.texture.TextureData;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Model origins of terrain draws, read by material shaders as {@code _cvu_draw_origins}
+ * so that one multi-draw can cover many regions. Each draw has two texels laid
+ * out like the model origin uniform: world origin, then origin relative to the camera.
+ *
+ * <p>Render thread only.
+ */
+class TerrainDrawOrigins {
+	private static final int BYTES_PER_DRAW = 32;
+
+	private static ByteBuffer data = BufferUtils.createByteBuffer(BYTES_PER_DRAW * 4096);
+	private static int count = 0;
+	private static int bufferId = 0;
+	private static int textureId = 0;
+
+	/**
+	 * Appends the origin of the next draw.
+	 */
+	static void add(int x, int y, int z) {
+		final int base = count * BYTES_PER_DRAW;
+
+		if (base == data.capacity()) {
+			final ByteBuffer newData = BufferUtils.createByteBuffer(base * 2);
+			data.clear();
+			newData.put(data);
+			data = newData;
+		}
+
+		data.putFloat(base, x);
+		data.putFloat(base + 4, y);
+		data.putFloat(base + 8, z);
+		data.putFloat(base + 12, 0);
+
+		// same math as the model origin uniform so batched and single draws match exactly
+		data.putFloat(base + 16, (float) (x - ShaderDataManager.cameraXd));
+		data.putFloat(base + 20, (float) (y - ShaderDataManager.cameraYd));
+		data.putFloat(base + 24, (float) (z - ShaderDataManager.cameraZd));
+		data.putFloat(base + 28, 0);
+
+		++count;
+	}
+
+	/**
+	 * Sends the origins added since the last upload and binds them for drawing.
+	 */
+	static void upload() {
+		final boolean isNew = bufferId == 0;
+
+		if (isNew) {
+			bufferId = GFX.genBuffer();
+			textureId = GFX.genTexture();
+		}
+
+		data.position(0);
+		data.limit(count * BYTES_PER_DRAW);
+
+		// respecifying the whole store lets the driver keep the prior contents for draws still in flight
+		GFX.bindBuffer(GFX.GL_TEXTURE_BUFFER, bufferId);
+		GFX.bufferData(GFX.GL_TEXTURE_BUFFER, data, GFX.GL_STREAM_DRAW);
+		GFX.bindBuffer(GFX.GL_TEXTURE_BUFFER, 0);
+
+		data.clear();
+		count = 0;
+
+		CanvasTextureState.activeTextureUnit(TextureData.DRAW_ORIGINS);
+		CanvasTextureState.bindTexture(GFX.GL_TEXTURE_BUFFER, textureId);
+
+		if (isNew) {
+			// buffer must have been bound once before it can back a texture
+			GFX.texBuffer(GFX.GL_RGBA32F, bufferId);
+		}
+
+		CanvasTextureState.activeTextureUnit(TextureData.MC_SPRITE_ATLAS);
+	}
+}
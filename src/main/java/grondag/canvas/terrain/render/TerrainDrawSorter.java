@@ -0,0 +1,281 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.render;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.PointerBuffer;
+
+import net.minecraft.util.math.BlockPos;
+
+import grondag.canvas.buffer.TerrainArena;
+import grondag.canvas.material.state.RenderState;
+import grondag.canvas.render.SkyShadowRenderer;
+import grondag.canvas.shader.GlShader;
+import grondag.canvas.shader.data.MatrixState;
+import grondag.canvas.terrain.occlusion.VisibleRegionList;
+import grondag.canvas.terrain.region.RenderRegion;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Draws the solid terrain of every visible region in one pass ordered by
+ * {@link RenderState#DRAW_ORDER} instead of region by region. Each state is
+ * enabled once per frame and draws for all regions that use it follow, so
+ * {@link RenderState#enable(int, int, int)} only changes the model origin.
+ *
+ * <p>When shaders can read gl_DrawIDARB, the draws of each state that share a
+ * {@link TerrainArena} become one multi-draw, and shaders read each region's
+ * origin from {@link TerrainDrawOrigins}. Otherwise each draw sets the origin uniform.
+ *
+ * <p>Regions keep their visible-list order within each state and arena. Not for
+ * translucent terrain, which must stay back to front by region.
+ *
+ * <p>Render thread only. Storage is reused across frames.
+ */
+public class TerrainDrawSorter {
+	private static DrawableDelegate[] delegates = new DrawableDelegate[4096];
+	private static DrawableChunk[] drawables = new DrawableChunk[4096];
+	private static RenderRegion[] regions = new RenderRegion[4096];
+	private static long[] keys = new long[4096];
+	private static int count = 0;
+
+	/** Distinct states gathered this pass, sorted to assign ranks. */
+	private static final ObjectArrayList<RenderState> states = new ObjectArrayList<>();
+	private static final int[] stateRank = new int[RenderState.MAX_COUNT];
+	private static final int[] statePass = new int[RenderState.MAX_COUNT];
+	private static int pass = 0;
+
+	private static IntBuffer multiCounts = BufferUtils.createIntBuffer(1024);
+	private static IntBuffer multiBaseVertices = BufferUtils.createIntBuffer(1024);
+	/** Index buffer offsets - always zero. */
+	private static PointerBuffer multiIndices = BufferUtils.createPointerBuffer(1024);
+
+	public static void render(final VisibleRegionList visibleRegions) {
+		gather(visibleRegions);
+
+		if (count == 0) {
+			return;
+		}
+
+		sort();
+
+		if (GlShader.drawOriginsEnabled() && MatrixState.get() == MatrixState.REGION) {
+			drawBatched();
+		} else {
+			drawEach();
+		}
+
+		// don't retain delegates after they could be released
+		Arrays.fill(delegates, 0, count, null);
+		Arrays.fill(drawables, 0, count, null);
+		Arrays.fill(regions, 0, count, null);
+		TerrainDrawSorter.count = 0;
+	}
+
+	private static void drawEach() {
+		final long[] keys = TerrainDrawSorter.keys;
+		final int count = TerrainDrawSorter.count;
+
+		for (int k = 0; k < count; ++k) {
+			final int i = (int) keys[k];
+			final DrawableChunk drawable = drawables[i];
+			final BlockPos modelOrigin = regions[i].origin;
+
+			// regions sharing a terrain arena share a VAO, so this is often a no-op
+			drawable.vboBuffer.bind();
+			final DrawableDelegate d = delegates[i];
+
+			if (d.renderState().enable(modelOrigin.getX(), modelOrigin.getY(), modelOrigin.getZ())) {
+				d.draw(drawable.vboBuffer.baseVertex());
+			}
+		}
+	}
+
+	/**
+	 * Runs of entries with the same state and arena become one multi-draw. Draw origins
+	 * are uploaded for every entry in sorted order, so a run starting at entry k uses base k.
+	 */
+	private static void drawBatched() {
+		final long[] keys = TerrainDrawSorter.keys;
+		final int count = TerrainDrawSorter.count;
+
+		for (int k = 0; k < count; ++k) {
+			final BlockPos modelOrigin = regions[(int) keys[k]].origin;
+			TerrainDrawOrigins.add(modelOrigin.getX(), modelOrigin.getY(), modelOrigin.getZ());
+		}
+
+		TerrainDrawOrigins.upload();
+
+		int k = 0;
+
+		while (k < count) {
+			final int i = (int) keys[k];
+			final DrawableDelegate d = delegates[i];
+			final RenderState state = d.renderState();
+			final TerrainArena arena = drawables[i].vboBuffer.arena();
+			int end = k + 1;
+
+			if (arena != null && d.isSequential()) {
+				while (end < count && canJoin((int) keys[end], state, arena)) {
+					++end;
+				}
+			}
+
+			if (end - k == 1) {
+				final BlockPos modelOrigin = regions[i].origin;
+				drawables[i].vboBuffer.bind();
+
+				if (state.enable(modelOrigin.getX(), modelOrigin.getY(), modelOrigin.getZ())) {
+					d.draw(drawables[i].vboBuffer.baseVertex());
+				}
+			} else if (state.enableDrawOrigins(k)) {
+				arena.bind();
+				multiDraw(state, k, end);
+			}
+
+			k = end;
+		}
+	}
+
+	private static boolean canJoin(int i, RenderState state, TerrainArena arena) {
+		final DrawableDelegate d = delegates[i];
+		return d.renderState() == state && d.isSequential() && drawables[i].vboBuffer.arena() == arena;
+	}
+
+	/** Draws sorted entries from start (inclusive) to end (exclusive), which must share state and arena. */
+	private static void multiDraw(RenderState state, int start, int end) {
+		final int drawCount = end - start;
+
+		if (multiCounts.capacity() < drawCount) {
+			final int newSize = Math.max(drawCount, multiCounts.capacity() * 2);
+			multiCounts = BufferUtils.createIntBuffer(newSize);
+			multiBaseVertices = BufferUtils.createIntBuffer(newSize);
+			multiIndices = BufferUtils.createPointerBuffer(newSize);
+		}
+
+		final IntBuffer counts = multiCounts;
+		final IntBuffer baseVertices = multiBaseVertices;
+		counts.clear();
+		baseVertices.clear();
+		int maxTriVertexCount = 0;
+
+		for (int k = start; k < end; ++k) {
+			final int i = (int) keys[k];
+			final DrawableDelegate d = delegates[i];
+			final int triVertexCount = d.vertexCount() / 4 * 6;
+			counts.put(triVertexCount);
+			baseVertices.put(drawables[i].vboBuffer.baseVertex() + d.vertexOffset());
+			maxTriVertexCount = Math.max(maxTriVertexCount, triVertexCount);
+		}
+
+		counts.flip();
+		baseVertices.flip();
+		multiIndices.position(0);
+		multiIndices.limit(drawCount);
+
+		// one sequential buffer large enough for every draw, so all share its element type
+		final RenderSystem.IndexBuffer indexBuffer = RenderSystem.getSequentialBuffer(state.primitive, maxTriVertexCount);
+		final int elementType = indexBuffer.getElementFormat().count; // "count" appears to be a yarn defect
+		GFX.bindBuffer(GFX.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getId());
+		GFX.multiDrawElementsBaseVertex(state.primitive.mode, counts, elementType, multiIndices, baseVertices);
+	}
+
+	private static void gather(final VisibleRegionList visibleRegions) {
+		final int visibleRegionCount = visibleRegions.size();
+		final boolean notShadowPass = !SkyShadowRenderer.isActive();
+		states.clear();
+		++pass;
+
+		for (int regionIndex = 0; regionIndex < visibleRegionCount; ++regionIndex) {
+			final RenderRegion builtRegion = visibleRegions.get(regionIndex);
+
+			if (builtRegion == null) {
+				continue;
+			}
+
+			final DrawableChunk drawable = builtRegion.solidDrawable();
+
+			if (drawable.isClosed()) {
+				continue;
+			}
+
+			final ObjectArrayList<DrawableDelegate> regionDelegates = drawable.delegates();
+
+			if (regionDelegates == null) {
+				continue;
+			}
+
+			final int limit = regionDelegates.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final DrawableDelegate d = regionDelegates.get(i);
+				final RenderState mat = d.renderState();
+
+				if ((!mat.condition.affectBlocks || mat.condition.compute()) && (notShadowPass || mat.castShadows)) {
+					add(d, drawable, builtRegion);
+
+					if (statePass[mat.index] != pass) {
+						statePass[mat.index] = pass;
+						states.add(mat);
+					}
+				}
+			}
+		}
+	}
+
+	private static void add(DrawableDelegate delegate, DrawableChunk drawable, RenderRegion region) {
+		if (count == delegates.length) {
+			final int newSize = count * 2;
+			delegates = Arrays.copyOf(delegates, newSize);
+			drawables = Arrays.copyOf(drawables, newSize);
+			regions = Arrays.copyOf(regions, newSize);
+			keys = new long[newSize];
+		}
+
+		delegates[count] = delegate;
+		drawables[count] = drawable;
+		regions[count] = region;
+		++count;
+	}
+
+	/** Few distinct states per frame, so sort those and then sort entries by state rank and arena as primitives. */
+	private static void sort() {
+		states.sort(RenderState.DRAW_ORDER);
+		final int stateCount = states.size();
+
+		for (int i = 0; i < stateCount; ++i) {
+			stateRank[states.get(i).index] = i;
+		}
+
+		final long[] keys = TerrainDrawSorter.keys;
+		final int count = TerrainDrawSorter.count;
+
+		// arena id groups draws that can share a multi-draw
+		// entry index in the low bits keeps region order within each state and arena
+		for (int i = 0; i < count; ++i) {
+			final TerrainArena arena = drawables[i].vboBuffer.arena();
+			final long arenaBits = arena == null ? 0 : arena.id & 0xFFFF;
+			keys[i] = ((long) stateRank[delegates[i].renderState().index] << 48) | (arenaBits << 32) | i;
+		}
+
+		Arrays.sort(keys, 0, count);
+	}
+}
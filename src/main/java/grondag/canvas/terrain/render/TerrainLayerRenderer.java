@@ -21,6 +21,7 @@ import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.util.math.BlockPos;
 
+import grondag.canvas.config.Configurator;
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.render.SkyShadowRenderer;
 import grondag.canvas.terrain.occlusion.VisibleRegionList;
@@ -40,10 +41,6 @@ public class TerrainLayerRenderer {
 
 		mc.getProfiler().push(profileString);
 
-		final int startIndex = isTranslucent ? visibleRegionCount - 1 : 0;
-		final int endIndex = isTranslucent ? -1 : visibleRegionCount;
-		final int step = isTranslucent ? -1 : 1;
-
 		//if (Configurator.hdLightmaps()) {
 		//	LightmapHdTexture.instance().enable();
 		//	DitherTexture.instance().enable();
@@ -53,6 +50,32 @@ public class TerrainLayerRenderer {
 		//		final MaterialVertexFormat format = h.format;
 		//		h.setup();
 
+		if (!isTranslucent && Configurator.sortTerrainDrawsByState) {
+			TerrainDrawSorter.render(visibleRegions);
+		} else {
+			renderByRegion(visibleRegions, isTranslucent);
+		}
+
+		mc.getProfiler().pop();
+
+		RenderState.disable();
+
+		// Important this happens BEFORE anything that could affect vertex state
+		GFX.bindVertexArray(0);
+
+		//if (Configurator.hdLightmaps()) {
+		//	LightmapHdTexture.instance().disable();
+		//	DitherTexture.instance().disable();
+		//}
+
+		GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, 0);
+	}
+
+	private static void renderByRegion(final VisibleRegionList visibleRegions, boolean isTranslucent) {
+		final int visibleRegionCount = visibleRegions.size();
+		final int startIndex = isTranslucent ? visibleRegionCount - 1 : 0;
+		final int endIndex = isTranslucent ? -1 : visibleRegionCount;
+		final int step = isTranslucent ? -1 : 1;
 		int ox = 0, oy = 0, oz = 0;
 
 		for (int regionIndex = startIndex; regionIndex != endIndex; regionIndex += step) {
@@ -73,7 +96,9 @@ public class TerrainLayerRenderer {
 					oy = modelOrigin.getY();
 					oz = modelOrigin.getZ();
 
+					// regions sharing a terrain arena share a VAO, so this is often a no-op
 					drawable.vboBuffer.bind();
+					final int baseVertex = drawable.vboBuffer.baseVertex();
 
 					final int limit = delegates.size();
 					final boolean notShadowPass = !SkyShadowRenderer.isActive();
@@ -83,30 +108,13 @@ public class TerrainLayerRenderer {
 						final RenderState mat = d.renderState();
 
 						if (!mat.condition.affectBlocks || mat.condition.compute()) {
-							if (notShadowPass || mat.castShadows) {
-								mat.enable(ox, oy, oz);
-								d.draw();
+							if ((notShadowPass || mat.castShadows) && mat.enable(ox, oy, oz)) {
+								d.draw(baseVertex);
 							}
 						}
 					}
-
-					GFX.bindVertexArray(0);
 				}
 			}
 		}
-
-		mc.getProfiler().pop();
-
-		RenderState.disable();
-
-		// Important this happens BEFORE anything that could affect vertex state
-		GFX.glBindVertexArray(0);
-
-		//if (Configurator.hdLightmaps()) {
-		//	LightmapHdTexture.instance().disable();
-		//	DitherTexture.instance().disable();
-		//}
-
-		GFX.bindBuffer(GFX.GL_ARRAY_BUFFER, 0);
 	}
 }
@@ -31,7 +31,7 @@ public class UploadableChunk {
 	protected final DrawableChunk drawable;
 
 	public UploadableChunk(VertexCollectorList collectorList, boolean sorted, int bytes) {
-		vboBuffer = new VboBuffer(bytes, CanvasVertexFormats.MATERIAL_FORMAT);
+		vboBuffer = new VboBuffer(bytes, CanvasVertexFormats.TERRAIN_FORMAT, true);
 		drawable = DrawableChunk.pack(collectorList, vboBuffer, sorted);
 	}
 
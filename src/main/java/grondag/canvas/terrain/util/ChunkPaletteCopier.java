@@ -37,15 +37,28 @@ public class ChunkPaletteCopier {
 			return AIR_COPY;
 		}
 
-		final int sectionIndex = (y - chunk.getBottomY()) >> 4;
+		return captureCopy(chunk.getSectionArray(), (y - chunk.getBottomY()) >> 4);
+	}
 
-		if (sectionIndex < 0) {
-			return AIR_COPY;
+	/** True when {@link #captureCopy(WorldChunk, int)} would return {@link #AIR_COPY}, without copying anything. */
+	public static boolean isAir(WorldChunk chunk, int y) {
+		if (chunk == null) {
+			return true;
 		}
 
 		final ChunkSection[] sections = chunk.getSectionArray();
+		final int sectionIndex = (y - chunk.getBottomY()) >> 4;
+
+		if (sectionIndex < 0 || sectionIndex >= sections.length) {
+			return true;
+		}
+
+		final ChunkSection sec = sections[sectionIndex];
+		return sec == null || (sec.isEmpty() && sec.getBlockState(0, 0, 0) == AIR);
+	}
 
-		if (sections == null || sectionIndex >= sections.length) {
+	public static PaletteCopy captureCopy(ChunkSection[] sections, int sectionIndex) {
+		if (sections == null || sectionIndex < 0 || sectionIndex >= sections.length) {
 			return AIR_COPY;
 		}
 
@@ -60,7 +73,12 @@ public class ChunkPaletteCopier {
 			return filler == AIR ? AIR_COPY : i -> filler;
 		}
 
-		return ((PalettedContainerExt) sec.getContainer()).canvas_paletteCopy();
+		if (sec.getContainer() instanceof PalettedContainerExt) {
+			return ((PalettedContainerExt) sec.getContainer()).canvas_paletteCopy();
+		}
+
+		// mixins not applied - only expected for sections read outside the game, like benchmark fixtures
+		return new ArrayCopy(sec);
 	}
 
 	/**
@@ -82,6 +100,21 @@ public class ChunkPaletteCopier {
 		}
 	}
 
+	private static class ArrayCopy implements PaletteCopy {
+		private final BlockState[] states = new BlockState[4096];
+
+		private ArrayCopy(ChunkSection sec) {
+			for (int i = 0; i < 4096; ++i) {
+				states[i] = sec.getBlockState(i & 15, i >> 8, (i >> 4) & 15);
+			}
+		}
+
+		@Override
+		public BlockState apply(int index) {
+			return states[index];
+		}
+	}
+
 	private static class PaletteCopyImpl implements PaletteCopy {
 		public final BlockState emptyVal;
 		private final IntArrayList data;
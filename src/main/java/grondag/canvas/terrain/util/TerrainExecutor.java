@@ -17,7 +17,11 @@
 package grondag.canvas.terrain.util;
 
 import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.ImmutableList;
 
@@ -27,18 +31,39 @@ import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
 import grondag.fermion.sc.Sc;
 
 /**
- * Simple executor service with ability to submit privileged tasks
+ * Executor service with ability to submit privileged tasks
  * that run before non-privileged tasks that have not yet started, plus
  * distance-sorted execution.  Privilege is indicated by distance == -1
  * and privileged tasks run in order of submission.
+ *
+ * <p>Non-privileged tasks are dealt round-robin to per-worker queues so workers
+ * don't contend on a single queue. A worker with an empty queue steals the
+ * nearest task from the other workers before going idle.
+ *
+ * <p>A task already waiting in a queue is not queued again - re-submission
+ * coalesces with the waiting entry. Tasks that report {@link TerrainExecutorTask#isCancelled()}
+ * when they reach the head of a queue are dropped without running.
  */
 public class TerrainExecutor {
-	private final PriorityBlockingQueue<TerrainExecutorTask> queue = new PriorityBlockingQueue<>(1024, new Comparator<TerrainExecutorTask>() {
+	private static final Comparator<TerrainExecutorTask> COMPARATOR = new Comparator<TerrainExecutorTask>() {
 		@Override
 		public int compare(TerrainExecutorTask o1, TerrainExecutorTask o2) {
 			return Integer.compare(o1.priority(), o2.priority());
 		}
-	});
+	};
+
+	private final PriorityBlockingQueue<TerrainExecutorTask> privilegedQueue = new PriorityBlockingQueue<>(64, COMPARATOR);
+
+	/** Tasks currently waiting in any queue, for coalescing. */
+	private final Set<TerrainExecutorTask> queued = ConcurrentHashMap.newKeySet();
+
+	/** One permit per queued task. */
+	private final Semaphore available = new Semaphore(0);
+
+	private final AtomicInteger nextWorker = new AtomicInteger();
+	private final AtomicInteger stealCount = new AtomicInteger();
+	private final AtomicInteger cancelCount = new AtomicInteger();
+	private final AtomicInteger coalesceCount = new AtomicInteger();
 
 	private final int poolSize = threadCount();
 
@@ -48,17 +73,16 @@ public class TerrainExecutor {
 		final ImmutableList.Builder<Worker> builder = ImmutableList.builder();
 
 		for (int i = 0; i < poolSize; i++) {
-			final Worker w = new Worker();
-			builder.add(w);
+			builder.add(new Worker(i));
+		}
 
-			final Thread thread = new Thread(
-					new Worker(),
-					"Canvas Render Thread - " + i);
+		workers = builder.build();
+
+		for (final Worker w : workers) {
+			final Thread thread = new Thread(w, "Canvas Render Thread - " + w.index);
 			thread.setDaemon(true);
 			thread.start();
 		}
-
-		workers = builder.build();
 	}
 
 	private static int threadCount() {
@@ -72,20 +96,91 @@ public class TerrainExecutor {
 	}
 
 	public void execute(TerrainExecutorTask task) {
-		queue.add(task);
+		if (!queued.add(task)) {
+			coalesceCount.incrementAndGet();
+			return;
+		}
+
+		if (task.priority() == -1) {
+			privilegedQueue.add(task);
+		} else {
+			workers.get((nextWorker.getAndIncrement() & 0x7FFFFFFF) % poolSize).queue.add(task);
+		}
+
+		available.release();
 	}
 
+	/**
+	 * Drops waiting tasks one at a time so each one leaves the queued set and gives back its permit.
+	 * A task submitted concurrently either survives intact or is dropped the same way. A permit
+	 * released after its task was dropped is discarded by the worker that takes it.
+	 */
 	public void clear() {
-		queue.clear();
+		drain(privilegedQueue);
 
 		for (final Worker w : workers) {
-			w.context.close();
-			w.context = new TerrainRenderContext();
+			drain(w.queue);
+			// context may be in use, so worker replaces it before its next task
+			w.resetContext = true;
+		}
+	}
+
+	private void drain(PriorityBlockingQueue<TerrainExecutorTask> queue) {
+		TerrainExecutorTask t = queue.poll();
+
+		while (t != null) {
+			queued.remove(t);
+			available.tryAcquire();
+			t = queue.poll();
 		}
 	}
 
 	public boolean isEmpty() {
-		return queue.isEmpty();
+		return queued.isEmpty();
+	}
+
+	public String debugString() {
+		return String.format("Terrain executor queued: %d  steals: %d  cancelled: %d  coalesced: %d",
+				queued.size(), stealCount.get(), cancelCount.get(), coalesceCount.get());
+	}
+
+	/** Privileged tasks first, then own queue, then nearest task from other workers. */
+	private TerrainExecutorTask next(Worker worker) {
+		TerrainExecutorTask result = privilegedQueue.poll();
+
+		if (result != null) {
+			return result;
+		}
+
+		result = worker.queue.poll();
+
+		if (result != null) {
+			return result;
+		}
+
+		Worker victim = null;
+		int bestPriority = Integer.MAX_VALUE;
+
+		for (final Worker w : workers) {
+			if (w != worker) {
+				final TerrainExecutorTask head = w.queue.peek();
+
+				if (head != null && head.priority() < bestPriority) {
+					bestPriority = head.priority();
+					victim = w;
+				}
+			}
+		}
+
+		if (victim != null) {
+			result = victim.queue.poll();
+
+			if (result != null) {
+				stealCount.incrementAndGet();
+			}
+		}
+
+		return result;
 	}
 
 	public interface TerrainExecutorTask {
@@ -95,18 +190,56 @@ public class TerrainExecutor {
 		 * Normally squared chunk distance. Use -1 for privileged execution.
 		 */
 		int priority();
+
+		/**
+		 * True if the task has nothing to do and can be dropped instead of run.
+		 * Checked when the task is taken from a queue.
+		 */
+		default boolean isCancelled() {
+			return false;
+		}
 	}
 
 	private class Worker implements Runnable {
+		private final int index;
+		private final PriorityBlockingQueue<TerrainExecutorTask> queue = new PriorityBlockingQueue<>(256, COMPARATOR);
+		private volatile boolean resetContext = false;
 		private TerrainRenderContext context = new TerrainRenderContext();
 
+		private Worker(int index) {
+			this.index = index;
+		}
+
 		@Override
 		public void run() {
 			while (true) {
 				try {
-					final TerrainExecutorTask t = queue.take();
+					available.acquire();
+
+					if (resetContext) {
+						resetContext = false;
+						context.close();
+						context = new TerrainRenderContext();
+					}
+
+					final TerrainExecutorTask t = next(this);
+
+					if (t == null) {
+						// A steal scan can miss a waiting task while other workers are polling,
+						// so hand the permit back for the next acquire. Nothing is waiting when
+						// the permit outlived a task dropped by clear().
+						if (!queued.isEmpty()) {
+							available.release();
+						}
+
+						continue;
+					}
+
+					queued.remove(t);
 
-					if (t != null) {
+					if (t.isCancelled()) {
+						cancelCount.incrementAndGet();
+					} else {
 						t.run(context);
 					}
 				} catch (final InterruptedException e) {
@@ -16,8 +16,9 @@
 
 package grondag.canvas.texture;
 
+import java.util.function.IntFunction;
+
 import it.unimi.dsi.fastutil.Hash;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
@@ -26,6 +27,7 @@ import net.minecraft.client.texture.Sprite;
 import net.minecraft.util.Identifier;
 
 import grondag.canvas.material.state.RenderMaterialImpl;
+import grondag.canvas.varia.DenseIntIndexMap;
 
 public abstract class MaterialIndexProvider {
 	public abstract MaterialIndexer getIndexer(RenderMaterialImpl mat);
@@ -58,7 +60,7 @@ public abstract class MaterialIndexProvider {
 		}
 	}
 
-	private static class AtlasIndexProvider extends MaterialIndexProvider {
+	static class AtlasIndexProvider extends MaterialIndexProvider {
 		@SuppressWarnings("unused")
 		private final Identifier atlasId;
 
@@ -70,37 +72,59 @@ public abstract class MaterialIndexProvider {
 		private final Long2ObjectOpenHashMap<Indexer> materialMap = new Long2ObjectOpenHashMap<>(64, Hash.VERY_FAST_LOAD_FACTOR);
 		private final MaterialIndexTexture tex = new MaterialIndexTexture(true);
 
-		// PERF: find ways to reduce/avoid locking here and in MaterialIndexImage
+		/** Serializes index assignment for all indexers of this atlas. Lookups of existing sprites don't take it. */
 		private final Object sync = new Object();
 
 		private class Indexer implements MaterialIndexer {
-			private Indexer(RenderMaterialImpl mat) {
-				this.mat = mat;
+			private Indexer(int vertexShaderIndex, int fragmentShaderIndex, int shaderFlags, int conditionIndex, IntFunction<Sprite> sprites) {
+				this.vertexShaderIndex = vertexShaderIndex;
+				this.fragmentShaderIndex = fragmentShaderIndex;
+				this.shaderFlags = shaderFlags;
+				this.conditionIndex = conditionIndex;
+				this.sprites = sprites;
 			}
 
-			private final RenderMaterialImpl mat;
-			private final Int2IntOpenHashMap spriteMap = new Int2IntOpenHashMap(64, Hash.VERY_FAST_LOAD_FACTOR);
+			private final int vertexShaderIndex;
+			private final int fragmentShaderIndex;
+			private final int shaderFlags;
+			private final int conditionIndex;
+			private final IntFunction<Sprite> sprites;
+			// sprite ids are dense atlas indices
+			private final DenseIntIndexMap spriteMap = new DenseIntIndexMap(64);
 
 			@Override
 			public int index(int spriteId) {
+				final int result = spriteMap.get(spriteId);
+				return result == DenseIntIndexMap.ABSENT ? addSprite(spriteId) : result;
+			}
+
+			private int addSprite(int spriteId) {
 				synchronized (sync) {
-					return spriteMap.computeIfAbsent(spriteId, k -> {
-						final int i = nextIndex++;
-						final Sprite sprite = mat.texture.atlasInfo().fromId(k);
-						tex.set(i, mat.vertexShaderIndex, mat.fragmentShaderIndex, mat.shaderFlags, mat.condition.index, sprite);
-						return i;
-					});
+					int result = spriteMap.get(spriteId);
+
+					if (result == DenseIntIndexMap.ABSENT) {
+						result = nextIndex++;
+						tex.set(result, vertexShaderIndex, fragmentShaderIndex, shaderFlags, conditionIndex, sprites.apply(spriteId));
+						spriteMap.put(spriteId, result);
+					}
+
+					return result;
 				}
 			}
 		}
 
 		@Override
 		public MaterialIndexer getIndexer(RenderMaterialImpl mat) {
-			final long key = mat.vertexShaderIndex | (mat.fragmentShaderIndex << 16) | (((long) mat.shaderFlags) << 32) | (((long) mat.condition.index) << 48);
+			return getIndexer(mat.vertexShaderIndex, mat.fragmentShaderIndex, mat.shaderFlags, mat.condition.index, mat.texture.atlasInfo()::fromId);
+		}
+
+		/** Sprites are looked up by id only when first indexed. Also lets benchmarks supply sprites without a loaded atlas. */
+		MaterialIndexer getIndexer(int vertexShaderIndex, int fragmentShaderIndex, int shaderFlags, int conditionIndex, IntFunction<Sprite> sprites) {
+			final long key = vertexShaderIndex | (fragmentShaderIndex << 16) | (((long) shaderFlags) << 32) | (((long) conditionIndex) << 48);
 
 			synchronized (sync) {
 				return materialMap.computeIfAbsent(key, k -> {
-					return new Indexer(mat);
+					return new Indexer(vertexShaderIndex, fragmentShaderIndex, shaderFlags, conditionIndex, sprites);
 				});
 			}
 		}
@@ -29,18 +29,54 @@ import grondag.canvas.CanvasMod;
 import grondag.canvas.config.Configurator;
 
 public class CanvasGlHelper {
+	private static boolean supportsParallelShaderCompile = false;
+	private static boolean supportsProgramBinary = false;
+	private static boolean supportsShaderDrawParameters = false;
+
 	public static void init() {
 		if (Configurator.enableLifeCycleDebug) {
 			CanvasMod.LOG.info("Lifecycle Event: CanvasGlHelper static init");
 		}
 
+		if (GFX.HEADLESS) {
+			// headless recorder reports every program complete, so exercise the polling path
+			supportsParallelShaderCompile = true;
+			supportsProgramBinary = false;
+			supportsShaderDrawParameters = false;
+			return;
+		}
+
 		final GLCapabilities caps = GL.getCapabilities();
+		supportsParallelShaderCompile = caps.GL_KHR_parallel_shader_compile || caps.GL_ARB_parallel_shader_compile;
+		// some drivers have the entry points but no binary formats
+		supportsProgramBinary = (caps.OpenGL41 || caps.GL_ARB_get_program_binary) && GFX.getInteger(GFX.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+		supportsShaderDrawParameters = caps.GL_ARB_shader_draw_parameters;
 
 		if (Configurator.logMachineInfo) {
 			logMachineInfo(caps);
 		}
 	}
 
+	/**
+	 * True when program completion can be polled without blocking, so programs
+	 * can be drawn with as soon as each one is ready.
+	 */
+	public static boolean supportsParallelShaderCompile() {
+		return supportsParallelShaderCompile;
+	}
+
+	public static boolean supportsProgramBinary() {
+		return supportsProgramBinary;
+	}
+
+	/**
+	 * True when vertex shaders can read gl_DrawIDARB, so terrain from many regions
+	 * can share one multi-draw with per-draw model origins.
+	 */
+	public static boolean supportsShaderDrawParameters() {
+		return supportsShaderDrawParameters;
+	}
+
 	private static void logMachineInfo(GLCapabilities caps) {
 		final Logger log = CanvasMod.LOG;
 		final MinecraftClient client = MinecraftClient.getInstance();
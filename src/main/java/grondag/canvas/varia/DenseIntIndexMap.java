@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.varia;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Int to int map for small, dense, non-negative keys that are read far more
+ * often than they are added. Lookups never lock.
+ *
+ * <p>Writes are NOT synchronized here. Callers serialize {@link #put(int, int)}
+ * with their own lock, usually one that also guards whatever assigns the values,
+ * and repeat the lookup inside that lock before adding. Readers that miss fall
+ * through to that same slow path.
+ */
+public class DenseIntIndexMap {
+	public static final int ABSENT = -1;
+
+	private volatile AtomicIntegerArray values;
+
+	public DenseIntIndexMap(int initialCapacity) {
+		values = newArray(Math.max(1, initialCapacity));
+	}
+
+	/** Value for the key, or {@link #ABSENT}. Safe from any thread. */
+	public int get(int key) {
+		assert key >= 0;
+		final AtomicIntegerArray values = this.values;
+		return key < values.length() ? values.get(key) : ABSENT;
+	}
+
+	/** Caller must hold the lock that serializes all writers. */
+	public void put(int key, int value) {
+		assert key >= 0;
+		assert value != ABSENT;
+		AtomicIntegerArray values = this.values;
+
+		if (key >= values.length()) {
+			final int oldLength = values.length();
+			final AtomicIntegerArray grown = newArray(Math.max(oldLength * 2, Integer.highestOneBit(key) << 1));
+
+			for (int i = 0; i < oldLength; ++i) {
+				grown.set(i, values.get(i));
+			}
+
+			this.values = grown;
+			values = grown;
+		}
+
+		values.set(key, value);
+	}
+
+	private static AtomicIntegerArray newArray(int length) {
+		final AtomicIntegerArray result = new AtomicIntegerArray(length);
+
+		for (int i = 0; i < length; ++i) {
+			result.set(i, ABSENT);
+		}
+
+		return result;
+	}
+}
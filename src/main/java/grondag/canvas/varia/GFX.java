@@ -22,6 +22,7 @@ import java.nio.IntBuffer;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import org.jetbrains.annotations.Nullable;
+import org.lwjgl.PointerBuffer;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL46C;
 
@@ -30,12 +31,25 @@ import grondag.canvas.config.Configurator;
 import grondag.canvas.pipeline.GlSymbolLookup;
 
 public class GFX extends GL46C {
+	/**
+	 * When true, calls are recorded by {@link GfxRecorder} and never reach the driver.
+	 * Enable with {@code -Dcanvas.headlessGfx=true} to profile without a GPU or GL context.
+	 */
+	public static final boolean HEADLESS = Boolean.getBoolean("canvas.headlessGfx");
+
+	/** Program and shader query from KHR_parallel_shader_compile, same value as the ARB extension. */
+	public static final int GL_COMPLETION_STATUS_KHR = 0x91B1;
+
 	public static boolean checkError() {
-		return glGetError() == 0;
+		return HEADLESS || glGetError() == 0;
 	}
 
 	/** Always returns true with intention of using only when assertions are enabled. */
 	public static boolean logError(String message) {
+		if (HEADLESS) {
+			return true;
+		}
+
 		if (!RenderSystem.isOnRenderThread()) {
 			throw new IllegalStateException("GFX called outside render thread.");
 		}
@@ -59,56 +73,106 @@ public class GFX extends GL46C {
 
 	public static void disableVertexAttribArray(int index) {
 		VaoTracker.disable(index);
+
+		if (HEADLESS) {
+			GfxRecorder.record("glDisableVertexAttribArray");
+			return;
+		}
+
 		glDisableVertexAttribArray(index);
 		assert logError(String.format("glDisableVertexAttribArray(%d)", index));
 	}
 
 	public static void enableVertexAttribArray(int index) {
 		VaoTracker.enable(index);
+
+		if (HEADLESS) {
+			GfxRecorder.record("glEnableVertexAttribArray");
+			return;
+		}
+
 		glEnableVertexAttribArray(index);
 		assert logError(String.format("glEnableVertexAttribArray(%d)", index));
 	}
 
 	public static void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glVertexAttribPointer");
+			return;
+		}
+
 		glVertexAttribPointer(index, size, type, normalized, stride, pointer);
 		assert logError("glVertexAttribPointer");
 	}
 
 	public static void bindAttribLocation(int program, int index, CharSequence name) {
+		if (HEADLESS) {
+			GfxRecorder.record("glBindAttribLocation");
+			return;
+		}
+
 		glBindAttribLocation(program, index, name);
 		assert logError(String.format("glBindAttribLocation(%d, %d, %s)", program, index, name));
 	}
 
 	public static int getAttribLocation(int program, CharSequence name) {
+		if (HEADLESS) {
+			return GfxRecorder.getLocation("glGetAttribLocation");
+		}
+
 		final int result = glGetAttribLocation(program, name);
 		assert logError(String.format("glGetAttribLocation(%d, %s)", program, name));
 		return result;
 	}
 
 	public static String getProgramInfoLog(int program) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetProgramInfoLog");
+			return "";
+		}
+
 		final String result = glGetProgramInfoLog(program, glGetProgrami(program, GL_INFO_LOG_LENGTH));
 		assert logError(String.format("glGetProgramInfoLog(%d)", program));
 		return result;
 	}
 
 	public static String getShaderInfoLog(int shader) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetShaderInfoLog");
+			return "";
+		}
+
 		final String result = glGetShaderInfoLog(shader, glGetShaderi(shader, GL_INFO_LOG_LENGTH));
 		assert logError(String.format("glGetShaderInfoLog(%d)", shader));
 		return result;
 	}
 
 	public static int getProgramInfo(int program, int paramName) {
+		if (HEADLESS) {
+			return GfxRecorder.getParameter("glGetProgrami", paramName);
+		}
+
 		final int result = glGetProgrami(program, paramName);
 		assert logError(String.format("glGetProgrami(%d, %s)", program, GlSymbolLookup.reverseLookup(paramName)));
 		return result;
 	}
 
 	public static void clearDepth(double depth) {
+		if (HEADLESS) {
+			GfxRecorder.record("glClearDepth");
+			return;
+		}
+
 		glClearDepth(depth);
 		assert logError("clearDepth");
 	}
 
 	public static void clear(int mask, boolean getError) {
+		if (HEADLESS) {
+			GfxRecorder.record("glClear");
+			return;
+		}
+
 		glClear(mask);
 
 		if (getError) {
@@ -117,64 +181,122 @@ public class GFX extends GL46C {
 	}
 
 	public static void clearColor(float red, float green, float blue, float alpha) {
+		if (HEADLESS) {
+			GfxRecorder.record("glClearColor");
+			return;
+		}
+
 		glClearColor(red, green, blue, alpha);
 		assert logError("clearColor");
 	}
 
 	public static int getUniformLocation(int program, CharSequence name) {
+		if (HEADLESS) {
+			return GfxRecorder.getLocation("glGetUniformLocation");
+		}
+
 		final int result = glGetUniformLocation(program, name);
 		assert logError(String.format("glGetUniformLocation(%d, %s)", program, name));
 		return result;
 	}
 
 	public static void cullFace(int mode) {
+		if (HEADLESS) {
+			GfxRecorder.record("glCullFace");
+			return;
+		}
+
 		glCullFace(mode);
 		assert logError(String.format("glCullFace(%s)", GlSymbolLookup.reverseLookup(mode)));
 	}
 
 	public static void polygonOffset(float factor, float units) {
+		if (HEADLESS) {
+			GfxRecorder.record("glPolygonOffset");
+			return;
+		}
+
 		glPolygonOffset(factor, units);
 		assert logError(String.format("glPolygonOffset(%f, %f)", factor, units));
 	}
 
 	public static void disable(int target) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDisable");
+			return;
+		}
+
 		glDisable(target);
 		assert logError(String.format("glDisable(%s)", GlSymbolLookup.reverseLookup(target)));
 	}
 
 	public static void enable(int target) {
+		if (HEADLESS) {
+			GfxRecorder.record("glEnable");
+			return;
+		}
+
 		glEnable(target);
 		assert logError(String.format("glEnable(%s)", GlSymbolLookup.reverseLookup(target)));
 	}
 
 	public static void bindBuffer(int target, int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.bindBuffer("glBindBuffer", target, buffer);
+			return;
+		}
+
 		glBindBuffer(target, buffer);
 		assert logError(String.format("glBindBuffer(%s, %d)", GlSymbolLookup.reverseLookup(target), buffer));
 	}
 
 	public static int genFramebuffer() {
+		if (HEADLESS) {
+			return GfxRecorder.genId("glGenFramebuffers");
+		}
+
 		final int result = glGenFramebuffers();
 		assert logError("genFramebuffer");
 		return result;
 	}
 
 	public static int checkFramebufferStatus(int target) {
+		if (HEADLESS) {
+			GfxRecorder.record("glCheckFramebufferStatus");
+			return GL_FRAMEBUFFER_COMPLETE;
+		}
+
 		final int result = glCheckFramebufferStatus(target);
 		assert logError(String.format("glCheckFramebufferStatus(%s)", GlSymbolLookup.reverseLookup(target)));
 		return result;
 	}
 
 	public static void bindFramebuffer(int target, int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glBindFramebuffer");
+			return;
+		}
+
 		glBindFramebuffer(target, buffer);
 		assert logError(String.format("glBindFramebuffer(%s, %d)", GlSymbolLookup.reverseLookup(target), buffer));
 	}
 
 	public static void deleteFramebuffer(int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDeleteFramebuffers");
+			return;
+		}
+
 		glDeleteFramebuffers(buffer);
 		assert logError(String.format("glDeleteFramebuffers(%d)", buffer));
 	}
 
 	public static void framebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+		if (HEADLESS) {
+			GfxRecorder.record("glFramebufferTexture2D");
+			return;
+		}
+
 		glFramebufferTexture2D(target, attachment, textarget, texture, level);
 		assert logError(String.format("glFramebufferTexture2D(%s, %s, %s, %d, %d)",
 				GlSymbolLookup.reverseLookup(target),
@@ -183,6 +305,11 @@ public class GFX extends GL46C {
 	}
 
 	public static void framebufferTextureLayer(int target, int attachment, int texture, int level, int layer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glFramebufferTextureLayer");
+			return;
+		}
+
 		glFramebufferTextureLayer(target, attachment, texture, level, layer);
 		assert logError(String.format("glFramebufferTextureLayer(%s, %s, %d, %d, %d)",
 				GlSymbolLookup.reverseLookup(target), GlSymbolLookup.reverseLookup(attachment),
@@ -190,38 +317,77 @@ public class GFX extends GL46C {
 	}
 
 	public static void drawBuffer(int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDrawBuffer");
+			return;
+		}
+
 		glDrawBuffer(buffer);
 		assert logError(String.format("glDrawBuffer(%s)", GlSymbolLookup.reverseLookup(buffer)));
 	}
 
 	public static void readBuffer(int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glReadBuffer");
+			return;
+		}
+
 		glReadBuffer(buffer);
 		assert logError(String.format("glReadBuffer(%s)", GlSymbolLookup.reverseLookup(buffer)));
 	}
 
 	public static void drawBuffers(int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDrawBuffers");
+			return;
+		}
+
 		glDrawBuffers(buffer);
 		assert logError(String.format("glDrawBuffers(%s)", GlSymbolLookup.reverseLookup(buffer)));
 	}
 
+	public static void drawBuffers(int[] buffers) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDrawBuffers");
+			return;
+		}
+
+		glDrawBuffers(buffers);
+		assert logError("glDrawBuffers");
+	}
+
 	public static void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1, int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+		if (HEADLESS) {
+			GfxRecorder.record("glBlitFramebuffer");
+			return;
+		}
+
 		glBlitFramebuffer(srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
 		assert logError(String.format("glBlitFramebuffer(%d, %d, %d, %d, %d, %d, %d, %d, %d, %d)", srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter));
 	}
 
 	public static void genBuffers(IntBuffer buffers) {
+		if (HEADLESS) {
+			GfxRecorder.genIds("glGenBuffers", buffers);
+			return;
+		}
+
 		glGenBuffers(buffers);
 		assert logError("glGenBuffers");
 	}
 
 	public static int genBuffer() {
+		if (HEADLESS) {
+			return GfxRecorder.genId("glGenBuffers");
+		}
+
 		final int result = glGenBuffers();
 		assert logError("glGenBuffers");
 		return result;
 	}
 
 	public static int genVertexArray() {
-		final int result = glGenVertexArrays();
+		final int result = HEADLESS ? GfxRecorder.genId("glGenVertexArrays") : glGenVertexArrays();
 		VaoTracker.gen(result);
 		assert logError("glGenVertexArrays");
 		return result;
@@ -229,21 +395,52 @@ public class GFX extends GL46C {
 
 	public static void deleteVertexArray(int array) {
 		VaoTracker.del(array);
+
+		if (HEADLESS) {
+			GfxRecorder.record("glDeleteVertexArrays");
+			return;
+		}
+
 		glDeleteVertexArrays(array);
 		assert logError(String.format("glDeleteVertexArrays(%d)", array));
 	}
 
 	public static void deleteBuffers(int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.deleteBuffer("glDeleteBuffers", buffer);
+			return;
+		}
+
 		glDeleteBuffers(buffer);
 		assert logError(String.format("glDeleteBuffers(%d)", buffer));
 	}
 
 	public static void bufferData(int target, ByteBuffer buffer, int usage) {
+		if (HEADLESS) {
+			GfxRecorder.bufferData("glBufferData", target, buffer.remaining());
+			return;
+		}
+
 		glBufferData(target, buffer, usage);
 		assert logError(String.format("glBufferData(%s, %d)", GlSymbolLookup.reverseLookup(target), usage));
 	}
 
+	public static void bufferSubData(int target, long offset, ByteBuffer data) {
+		if (HEADLESS) {
+			GfxRecorder.record("glBufferSubData");
+			return;
+		}
+
+		glBufferSubData(target, offset, data);
+		assert logError(String.format("glBufferSubData(%s, %d)", GlSymbolLookup.reverseLookup(target), offset));
+	}
+
 	public static void bufferData(int target, long size, int usage) {
+		if (HEADLESS) {
+			GfxRecorder.bufferData("glBufferData", target, size);
+			return;
+		}
+
 		glBufferData(target, size, usage);
 		assert logError(String.format("glBufferData(%s, %d, %d)", GlSymbolLookup.reverseLookup(target), size, usage));
 	}
@@ -257,44 +454,85 @@ public class GFX extends GL46C {
 
 		currentVertexArray = array;
 		VaoTracker.bind(array);
+
+		if (HEADLESS) {
+			GfxRecorder.record("glBindVertexArray");
+			return;
+		}
+
 		glBindVertexArray(array);
 		assert logError(String.format("glBindVertexArray(%d)", array));
 	}
 
 	public static void bindTexture(int target, int texture) {
+		if (HEADLESS) {
+			GfxRecorder.record("glBindTexture");
+			return;
+		}
+
 		glBindTexture(target, texture);
 		assert logError(String.format("glBindTexture(%s, %d)", GlSymbolLookup.reverseLookup(target), texture));
 	}
 
 	public static void deleteTexture(int texture) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDeleteTextures");
+			return;
+		}
+
 		glDeleteTextures(texture);
 		assert logError(String.format("glDeleteTextures(%d)", texture));
 	}
 
 	public static void activeTexture(int texture) {
+		if (HEADLESS) {
+			GfxRecorder.record("glActiveTexture");
+			return;
+		}
+
 		glActiveTexture(texture);
 		assert logError(String.format("glActiveTexture(%d)", texture));
 	}
 
 	public static void texParameter(int target, int pname, int param) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexParameteri");
+			return;
+		}
+
 		glTexParameteri(target, pname, param);
 		assert logError(String.format("glTexParameteri(%s, %s, %s)",
 				GlSymbolLookup.reverseLookup(target), GlSymbolLookup.reverseLookup(pname), GlSymbolLookup.reverseLookup(param)));
 	}
 
 	public static void texParameter(int target, int pname, float param) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexParameterf");
+			return;
+		}
+
 		glTexParameterf(target, pname, param);
 		assert logError(String.format("glTexParameteri(%s, %s, %f)",
 				GlSymbolLookup.reverseLookup(target), GlSymbolLookup.reverseLookup(pname), param));
 	}
 
 	public static void pixelStore(int pname, int param) {
+		if (HEADLESS) {
+			GfxRecorder.record("glPixelStorei");
+			return;
+		}
+
 		glPixelStorei(pname, param);
 		assert logError(String.format("glPixelStorei(%s, %d)",
 				GlSymbolLookup.reverseLookup(pname), param));
 	}
 
 	public static void texImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, @Nullable IntBuffer pixels) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexImage2D");
+			return;
+		}
+
 		glTexImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
 		assert logError(String.format("glTexImage2D(%s, %d, %s, %d, %d, %d, %s, %s)",
 				GlSymbolLookup.reverseLookup(target), level,
@@ -303,6 +541,11 @@ public class GFX extends GL46C {
 	}
 
 	public static void texImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, @Nullable ByteBuffer pixels) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexImage2D");
+			return;
+		}
+
 		glTexImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
 		assert logError(String.format("glTexImage2D(%s, %d, %s, %d, %d, %d, %s, %s)",
 				GlSymbolLookup.reverseLookup(target), level,
@@ -311,6 +554,11 @@ public class GFX extends GL46C {
 	}
 
 	public static void texImage3D(int target, int level, int internalFormat, int width, int height, int depth, int border, int format, int type, @Nullable ByteBuffer pixels) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexImage3D");
+			return;
+		}
+
 		glTexImage3D(target, level, internalFormat, width, height, depth, border, format, type, pixels);
 		assert logError(String.format("glTexImage3D(%s, %d, %s, %d, %d, %d, %d, %s, %s)",
 				GlSymbolLookup.reverseLookup(target), level,
@@ -319,6 +567,11 @@ public class GFX extends GL46C {
 	}
 
 	public static void texImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, long pixels) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexImage2D");
+			return;
+		}
+
 		glTexImage2D(target, level, internalFormat, width, height, border, format, type, pixels);
 		assert logError(String.format("glTexImage2D(%s, %d, %s, %d, %d, %d, %s, %s)",
 				GlSymbolLookup.reverseLookup(target), level,
@@ -327,6 +580,11 @@ public class GFX extends GL46C {
 	}
 
 	public static void texSubImage2D(int target, int level, int offsetX, int offsetY, int width, int height, int format, int type, long pixels) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexSubImage2D");
+			return;
+		}
+
 		glTexSubImage2D(target, level, offsetX, offsetY, width, height, format, type, pixels);
 		assert logError(String.format("glTexSubImage2D(%s, %d, %d, %d, %d, %d, %s, %s)",
 				GlSymbolLookup.reverseLookup(target), level, offsetX, offsetY, width, height,
@@ -334,6 +592,11 @@ public class GFX extends GL46C {
 	}
 
 	public static void texBuffer(int format, int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glTexBuffer");
+			return;
+		}
+
 		glTexBuffer(GFX.GL_TEXTURE_BUFFER, format, buffer);
 		assert logError(String.format("glTexBuffer(GL_TEXTURE_BUFFER, %s, %d)", GlSymbolLookup.reverseLookup(format), buffer));
 	}
@@ -346,6 +609,12 @@ public class GFX extends GL46C {
 			maskGreen = green;
 			maskBlue = blue;
 			maskAlpha = alpha;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glColorMask");
+				return;
+			}
+
 			glColorMask(red, green, blue, alpha);
 			assert logError("glColorMask");
 		}
@@ -372,6 +641,12 @@ public class GFX extends GL46C {
 	public static void depthFunc(int func) {
 		if (func != depthFunc) {
 			depthFunc = func;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glDepthFunc");
+				return;
+			}
+
 			glDepthFunc(func);
 			assert logError("glDepthFunc");
 		}
@@ -382,6 +657,12 @@ public class GFX extends GL46C {
 	public static void depthMask(boolean mask) {
 		if (mask != depthMask) {
 			depthMask = mask;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glDepthMask");
+				return;
+			}
+
 			glDepthMask(mask);
 			assert logError("glDepthMask");
 		}
@@ -415,6 +696,12 @@ public class GFX extends GL46C {
 			_dstFactorRGB = dstFactorRGB;
 			_srcFactorAlpha = srcFactorAlpha;
 			_dstFactorAlpha = dstFactorAlpha;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glBlendFuncSeparate");
+				return;
+			}
+
 			glBlendFuncSeparate(srcFactorRGB, dstFactorRGB, srcFactorAlpha, dstFactorAlpha);
 		}
 
@@ -425,6 +712,12 @@ public class GFX extends GL46C {
 		if (srcFactor != _srcFactorRGB || dstFactor != _dstFactorRGB) {
 			_srcFactorRGB = srcFactor;
 			_dstFactorRGB = dstFactor;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glBlendFunc");
+				return;
+			}
+
 			glBlendFunc(srcFactor, dstFactor);
 		}
 
@@ -456,16 +749,30 @@ public class GFX extends GL46C {
 	}
 
 	public static void viewport(int x, int y, int width, int height) {
+		if (HEADLESS) {
+			GfxRecorder.record("glViewport");
+			return;
+		}
+
 		glViewport(x, y, width, height);
 		assert logError(String.format("glViewport(%d, %d, %d, %d)", x, y, width, height));
 	}
 
 	public static void deleteProgram(int program) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDeleteProgram");
+			return;
+		}
+
 		glDeleteProgram(program);
 		assert logError(String.format("glDeleteProgram(%d)", program));
 	}
 
 	public static int createProgram() {
+		if (HEADLESS) {
+			return GfxRecorder.genId("glCreateProgram");
+		}
+
 		final int result = glCreateProgram();
 		assert logError("glCreateProgram");
 		return result;
@@ -475,112 +782,271 @@ public class GFX extends GL46C {
 	 * Clears error state prior to run and does not clear it after.
 	 */
 	public static void useProgram(int program) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUseProgram");
+			return;
+		}
+
 		glGetError();
 		glUseProgram(program);
 	}
 
 	public static void linkProgram(int program) {
+		if (HEADLESS) {
+			GfxRecorder.record("glLinkProgram");
+			return;
+		}
+
 		glLinkProgram(program);
 		assert logError(String.format("glLinkProgram(%d)", program));
 	}
 
+	public static void programParameter(int program, int pname, int value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glProgramParameteri");
+			return;
+		}
+
+		glProgramParameteri(program, pname, value);
+		assert logError(String.format("glProgramParameteri(%d)", program));
+	}
+
+	/**
+	 * Binary must have room for {@link #GL_PROGRAM_BINARY_LENGTH} bytes.
+	 * Returns the binary format and leaves the binary limit at the length written.
+	 */
+	public static int getProgramBinary(int program, ByteBuffer binary) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetProgramBinary");
+			binary.limit(binary.position());
+			return 0;
+		}
+
+		final int[] length = new int[1];
+		final int[] format = new int[1];
+		glGetProgramBinary(program, length, format, binary);
+		binary.limit(binary.position() + length[0]);
+		assert logError(String.format("glGetProgramBinary(%d)", program));
+		return format[0];
+	}
+
+	public static void programBinary(int program, int format, ByteBuffer binary) {
+		if (HEADLESS) {
+			GfxRecorder.record("glProgramBinary");
+			return;
+		}
+
+		glProgramBinary(program, format, binary);
+		// errors are expected for stale binaries and are reported by link status
+		glGetError();
+	}
+
 	public static void uniform1fv(int location, FloatBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform1fv");
+			return;
+		}
+
 		glUniform1fv(location, value);
 		assert logError(String.format("glUniform1fv(%d)", location));
 	}
 
 	public static void uniform2fv(int location, FloatBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform2fv");
+			return;
+		}
+
 		glUniform2fv(location, value);
 		assert logError(String.format("glUniform2fv(%d)", location));
 	}
 
 	public static void uniform3fv(int location, FloatBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform3fv");
+			return;
+		}
+
 		glUniform3fv(location, value);
 		assert logError(String.format("glUniform3fv(%d)", location));
 	}
 
 	public static void uniform4fv(int location, FloatBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform4fv");
+			return;
+		}
+
 		glUniform4fv(location, value);
 		assert logError(String.format("glUniform4fv(%d)", location));
 	}
 
 	public static void uniform1iv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform1iv");
+			return;
+		}
+
 		glUniform1iv(location, value);
 		assert logError(String.format("glUniform1iv(%d)", location));
 	}
 
 	public static void uniform1i(int location, int value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform1i");
+			return;
+		}
+
 		glUniform1i(location, value);
 		assert logError(String.format("glUniform1i(%d)", location));
 	}
 
 	public static void uniform2iv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform2iv");
+			return;
+		}
+
 		glUniform2iv(location, value);
 		assert logError(String.format("glUniform2iv(%d)", location));
 	}
 
 	public static void uniform3iv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform3iv");
+			return;
+		}
+
 		glUniform3iv(location, value);
 		assert logError(String.format("glUniform3iv(%d)", location));
 	}
 
 	public static void uniform4iv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform4iv");
+			return;
+		}
+
 		glUniform4iv(location, value);
 		assert logError(String.format("glUniform4iv(%d)", location));
 	}
 
 	public static void uniform1uiv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform1uiv");
+			return;
+		}
+
 		glUniform1uiv(location, value);
 		assert logError(String.format("glUniform1uiv(%d)", location));
 	}
 
 	public static void uniform2uiv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform2uiv");
+			return;
+		}
+
 		glUniform2uiv(location, value);
 		assert logError(String.format("glUniform2uiv(%d)", location));
 	}
 
 	public static void uniform3uiv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform3uiv");
+			return;
+		}
+
 		glUniform3uiv(location, value);
 		assert logError(String.format("glUniform3uiv(%d)", location));
 	}
 
 	public static void uniform4uiv(int location, IntBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniform4uiv");
+			return;
+		}
+
 		glUniform4uiv(location, value);
 		assert logError(String.format("glUniform4uiv(%d)", location));
 	}
 
 	public static void uniformMatrix4fv(int location, boolean transpose, FloatBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniformMatrix4fv");
+			return;
+		}
+
 		glUniformMatrix4fv(location, transpose, value);
 		assert logError(String.format("glUniformMatrix4fv(%d)", location));
 	}
 
 	public static void uniformMatrix2fv(int location, boolean transpose, FloatBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniformMatrix2fv");
+			return;
+		}
+
 		glUniformMatrix2fv(location, transpose, value);
 		assert logError(String.format("glUniformMatrix2fv(%d)", location));
 	}
 
 	public static void uniformMatrix3fv(int location, boolean transpose, FloatBuffer value) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUniformMatrix3fv");
+			return;
+		}
+
 		glUniformMatrix3fv(location, transpose, value);
 		assert logError(String.format("glUniformMatrix3fv(%d)", location));
 	}
 
 	public static void drawArrays(int mode, int first, int count) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDrawArrays");
+			return;
+		}
+
 		glDrawArrays(mode, first, count);
 		assert logError(String.format("glDrawArrays(%s, %d, %d)", GlSymbolLookup.reverseLookup(mode), first, count));
 	}
 
 	public static void drawElements(int mode, int count, int type, long indices) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDrawElements");
+			return;
+		}
+
 		glDrawElements(mode, count, type, indices);
 		assert logError(String.format("glDrawElements(%s, %d, %s, %d)",
 				GlSymbolLookup.reverseLookup(mode), count, GlSymbolLookup.reverseLookup(type), indices));
 	}
 
 	public static void drawElementsBaseVertex(int mode, int count, int type, long indices, int baseVertex) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDrawElementsBaseVertex");
+			return;
+		}
+
 		glDrawElementsBaseVertex(mode, count, type, indices, baseVertex);
 		assert logError(String.format("glDrawElementsBaseVertex(%s, %d, %s, %d, %d)",
 				GlSymbolLookup.reverseLookup(mode), count, GlSymbolLookup.reverseLookup(type), indices, baseVertex));
 	}
 
+	/**
+	 * Draw count is the remaining size of {@code counts}. The other buffers must have at least as many remaining.
+	 */
+	public static void multiDrawElementsBaseVertex(int mode, IntBuffer counts, int type, PointerBuffer indices, IntBuffer baseVertices) {
+		if (HEADLESS) {
+			GfxRecorder.record("glMultiDrawElementsBaseVertex");
+			return;
+		}
+
+		glMultiDrawElementsBaseVertex(mode, counts, type, indices, baseVertices);
+		assert logError(String.format("glMultiDrawElementsBaseVertex(%s, %d draws, %s)",
+				GlSymbolLookup.reverseLookup(mode), counts.remaining(), GlSymbolLookup.reverseLookup(type)));
+	}
+
 	private static boolean scissorTest = false;
 	public static void disableScissorTest() {
 		if (scissorTest) {
@@ -597,114 +1063,214 @@ public class GFX extends GL46C {
 	}
 
 	public static void scissor(int x, int y, int width, int height) {
+		if (HEADLESS) {
+			GfxRecorder.record("glScissor");
+			return;
+		}
+
 		glScissor(x, y, width, height);
 		assert logError("glScissor");
 	}
 
 	public static void blendEquation(int mode) {
+		if (HEADLESS) {
+			GfxRecorder.record("glBlendEquation");
+			return;
+		}
+
 		glBlendEquation(mode);
 		assert logError(String.format("glDeleteProgram(%s)", GlSymbolLookup.reverseLookup(mode)));
 	}
 
 	public static int getProgrami(int program, int pname) {
+		if (HEADLESS) {
+			return GfxRecorder.getParameter("glGetProgrami", pname);
+		}
+
 		final int result = glGetProgrami(program, pname);
 		assert logError("glGetProgrami");
 		return result;
 	}
 
 	public static void attachShader(int program, int shader) {
+		if (HEADLESS) {
+			GfxRecorder.record("glAttachShader");
+			return;
+		}
+
 		glAttachShader(program, shader);
 		assert logError("glAttachShader");
 	}
 
 	public static void deleteShader(int shader) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDeleteShader");
+			return;
+		}
+
 		glDeleteShader(shader);
 		assert logError("glDeleteShader");
 	}
 
 	public static int createShader(int type) {
+		if (HEADLESS) {
+			return GfxRecorder.genId("glCreateShader");
+		}
+
 		final int result = glCreateShader(type);
 		assert logError("glCreateShader");
 		return result;
 	}
 
 	public static void shaderSource(int shader, CharSequence[] source) {
+		if (HEADLESS) {
+			GfxRecorder.record("glShaderSource");
+			return;
+		}
+
 		glShaderSource(shader, source);
 		assert logError("glShaderSource");
 	}
 
 	public static void compileShader(int shader) {
+		if (HEADLESS) {
+			GfxRecorder.record("glCompileShader");
+			return;
+		}
+
 		glCompileShader(shader);
 		assert logError("glCompileShader");
 	}
 
 	public static int getShader(int shader, int pname) {
+		if (HEADLESS) {
+			return GfxRecorder.getParameter("glGetShaderi", pname);
+		}
+
 		final int result = glGetShaderi(shader, pname);
 		assert logError("glGetShaderi");
 		return result;
 	}
 
 	public static @Nullable ByteBuffer mapBuffer(int target, int access) {
+		if (HEADLESS) {
+			return GfxRecorder.mapBuffer("glMapBuffer", target);
+		}
+
 		final ByteBuffer result = glMapBuffer(target, access);
 		assert logError("glMapBuffer");
 		return result;
 	}
 
 	public static void unmapBuffer(int target) {
+		if (HEADLESS) {
+			GfxRecorder.record("glUnmapBuffer");
+			return;
+		}
+
 		glUnmapBuffer(target);
 		assert logError("unmapBuffer");
 	}
 
 	public static void copyTexSubImage2D(int i, int j, int k, int l, int m, int n, int o, int p) {
+		if (HEADLESS) {
+			GfxRecorder.record("glCopyTexSubImage2D");
+			return;
+		}
+
 		glCopyTexSubImage2D(i, j, k, l, m, n, o, p);
 		assert logError("glCopyTexSubImage2D");
 	}
 
 	public static void bindRenderbuffer(int target, int renderBuffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glBindRenderbuffer");
+			return;
+		}
+
 		glBindRenderbuffer(target, renderBuffer);
 		assert logError("glBindRenderbuffer");
 	}
 
 	public static void deleteRenderbuffer(int buffer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDeleteRenderbuffers");
+			return;
+		}
+
 		glDeleteRenderbuffers(buffer);
 		assert logError("glDeleteRenderbuffers");
 	}
 
 	public static int genRenderbuffer() {
+		if (HEADLESS) {
+			return GfxRecorder.genId("glGenRenderbuffers");
+		}
+
 		final int result = glGenRenderbuffers();
 		assert logError("glGenRenderbuffers");
 		return result;
 	}
 
 	public static void renderbufferStorage(int target, int internalformat, int width, int height) {
+		if (HEADLESS) {
+			GfxRecorder.record("glRenderbufferStorage");
+			return;
+		}
+
 		glRenderbufferStorage(target, internalformat, width, height);
 		assert logError("glRenderbufferStorage");
 	}
 
 	public static void framebufferRenderbuffer(int i, int j, int k, int l) {
+		if (HEADLESS) {
+			GfxRecorder.record("glFramebufferRenderbuffer");
+			return;
+		}
+
 		glFramebufferRenderbuffer(i, j, k, l);
 		assert logError("glFramebufferRenderbuffer");
 	}
 
 	public static int getInteger(int pname) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetInteger");
+			return 0;
+		}
+
 		final int result = glGetInteger(pname);
 		assert logError("glGetInteger");
 		return result;
 	}
 
 	public static String getShaderInfoLog(int shader, int maxLength) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetShaderInfoLog");
+			return "";
+		}
+
 		final String result = glGetShaderInfoLog(shader, maxLength);
 		assert logError("glGetShaderInfoLog");
 		return result;
 	}
 
 	public static String getProgramInfoLog(int program, int maxLength) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetProgramInfoLog");
+			return "";
+		}
+
 		final String result = glGetProgramInfoLog(program, maxLength);
 		assert logError("glGetProgramInfoLog");
 		return result;
 	}
 
 	public static void polygonMode(int face, int mode) {
+		if (HEADLESS) {
+			GfxRecorder.record("glPolygonMode");
+			return;
+		}
+
 		glPolygonMode(face, mode);
 		assert logError("glPolygonMode");
 	}
@@ -746,29 +1312,54 @@ public class GFX extends GL46C {
 	public static void logicOp(int op) {
 		if (op != logicOp) {
 			logicOp = op;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glLogicOp");
+				return;
+			}
+
 			glLogicOp(op);
 			assert logError("glLogicOp");
 		}
 	}
 
 	public static int getTexLevelParameter(int target, int level, int pname) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetTexLevelParameteri");
+			return 0;
+		}
+
 		final int result = glGetTexLevelParameteri(target, level, pname);
 		assert logError("glGetTexLevelParameteri");
 		return result;
 	}
 
 	public static int genTexture() {
+		if (HEADLESS) {
+			return GfxRecorder.genId("glGenTextures");
+		}
+
 		final int result = glGenTextures();
 		assert logError("glGenTextures");
 		return result;
 	}
 
 	public static void genTextures(int[] is) {
+		if (HEADLESS) {
+			GfxRecorder.genIds("glGenTextures", is);
+			return;
+		}
+
 		glGenTextures(is);
 		assert logError("glGenTextures");
 	}
 
 	public static void getTexImage(int target, int level, int format, int type, long pixels) {
+		if (HEADLESS) {
+			GfxRecorder.record("glGetTexImage");
+			return;
+		}
+
 		glGetTexImage(target, level, format, type, pixels);
 		assert logError("glGetTexImage");
 	}
@@ -780,6 +1371,12 @@ public class GFX extends GL46C {
 			stencilFunc = func;
 			stencilRef = ref;
 			stencilMask = mask;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glStencilFunc");
+				return;
+			}
+
 			glStencilFunc(func, ref, mask);
 			assert logError("glStencilFunc");
 		}
@@ -788,6 +1385,12 @@ public class GFX extends GL46C {
 	public static void stencilMask(int mask) {
 		if (mask != stencilMask) {
 			stencilMask = mask;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glStencilMask");
+				return;
+			}
+
 			glStencilMask(mask);
 			assert logError("glStencilMask");
 		}
@@ -800,55 +1403,154 @@ public class GFX extends GL46C {
 			stencil_sfail = sfail;
 			stencil_dpfail = dpfail;
 			stencil_dppass = dppass;
+
+			if (HEADLESS) {
+				GfxRecorder.record("glStencilOp");
+				return;
+			}
+
 			glStencilOp(sfail, dpfail, dppass);
 			assert logError("glStencilOp");
 		}
 	}
 
 	public static void clearStencil(int stencil) {
+		if (HEADLESS) {
+			GfxRecorder.record("glClearStencil");
+			return;
+		}
+
 		glClearStencil(stencil);
 		assert logError("glClearStencil");
 	}
 
 	public static void drawPixels(int i, int j, int k, int l, long m) {
 		// NON-CORE???
+
+		if (HEADLESS) {
+			GfxRecorder.record("glDrawPixels");
+			return;
+		}
+
 		GL11.glDrawPixels(i, j, k, l, m);
 		assert logError("glDrawPixels");
 	}
 
 	public static void vertexAttribIPointer(int index, int size, int type, int stride, long pointer) {
+		if (HEADLESS) {
+			GfxRecorder.record("glVertexAttribIPointer");
+			return;
+		}
+
 		glVertexAttribIPointer(index, size, type, stride, pointer);
 		assert logError("vertexAttribIPointer");
 	}
 
 	public static void readPixels(int x, int y, int width, int height, int format, int type, ByteBuffer pixels) {
+		if (HEADLESS) {
+			GfxRecorder.record("glReadPixels");
+			return;
+		}
+
 		glReadPixels(x, y, width, height, format, type, pixels);
 		assert logError("glReadPixels");
 	}
 
 	public static void readPixels(int i, int j, int k, int l, int m, int n, long o) {
+		if (HEADLESS) {
+			GfxRecorder.record("glReadPixels");
+			return;
+		}
+
 		glReadPixels(i, j, k, l, m, n, o);
 		assert logError("glReadPixels");
 	}
 
 	public static int getError() {
-		return glGetError();
+		return HEADLESS ? GL_NO_ERROR : glGetError();
 	}
 
 	public static String getString(int name) {
+		if (HEADLESS) {
+			return GfxRecorder.getString("glGetString", name);
+		}
+
 		final String result = glGetString(name);
 		assert logError("glGetString");
 		return result;
 	}
 
 	public static @Nullable ByteBuffer mapBufferRange(int target, long offset, long length, int access) {
+		if (HEADLESS) {
+			return GfxRecorder.mapBufferRange("glMapBufferRange", length);
+		}
+
 		final ByteBuffer result = glMapBufferRange(target, offset, length, access);
 		assert logError("glMapBufferRange");
 		return result;
 	}
 
 	public static void flushMappedBufferRange(int target, long offset, long length) {
+		if (HEADLESS) {
+			GfxRecorder.record("glFlushMappedBufferRange");
+			return;
+		}
+
 		glFlushMappedBufferRange(target, offset, length);
 		assert logError("glFlushMappedBufferRange");
 	}
+
+	public static void bufferStorage(int target, long size, int flags) {
+		if (HEADLESS) {
+			GfxRecorder.bufferData("glBufferStorage", target, size);
+			return;
+		}
+
+		glBufferStorage(target, size, flags);
+		assert logError(String.format("glBufferStorage(%s, %d, %d)", GlSymbolLookup.reverseLookup(target), size, flags));
+	}
+
+	public static void copyBufferSubData(int readTarget, int writeTarget, long readOffset, long writeOffset, long size) {
+		if (HEADLESS) {
+			GfxRecorder.record("glCopyBufferSubData");
+			return;
+		}
+
+		glCopyBufferSubData(readTarget, writeTarget, readOffset, writeOffset, size);
+		assert logError(String.format("glCopyBufferSubData(%s, %s, %d, %d, %d)",
+				GlSymbolLookup.reverseLookup(readTarget), GlSymbolLookup.reverseLookup(writeTarget), readOffset, writeOffset, size));
+	}
+
+	/** Headless fences are signaled as soon as they are created. */
+	public static long fenceSync(int condition, int flags) {
+		if (HEADLESS) {
+			GfxRecorder.record("glFenceSync");
+			return 1L;
+		}
+
+		final long result = glFenceSync(condition, flags);
+		assert logError("glFenceSync");
+		return result;
+	}
+
+	public static int clientWaitSync(long sync, int flags, long timeout) {
+		if (HEADLESS) {
+			GfxRecorder.record("glClientWaitSync");
+			return GL_ALREADY_SIGNALED;
+		}
+
+		final int result = glClientWaitSync(sync, flags, timeout);
+		assert logError("glClientWaitSync");
+		return result;
+	}
+
+	public static void deleteSync(long sync) {
+		if (HEADLESS) {
+			GfxRecorder.record("glDeleteSync");
+			return;
+		}
+
+		glDeleteSync(sync);
+		assert logError("glDeleteSync");
+	}
 }
@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.varia;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import grondag.canvas.CanvasMod;
+
+/**
+ * Stand-in for the GL driver used by {@link GFX} when {@link GFX#HEADLESS} is true.
+ *
+ * <p>Counts every call by name, hands out fake object ids for buffers, textures,
+ * VAOs, shaders and programs and reports per-frame call counts. Lets frame setup
+ * code run and be timed in a plain JVM with no GL context.
+ */
+public class GfxRecorder {
+	private static final Object2IntOpenHashMap<String> FRAME_CALLS = new Object2IntOpenHashMap<>();
+	private static final Object2IntOpenHashMap<String> LAST_FRAME_CALLS = new Object2IntOpenHashMap<>();
+	private static final Int2IntOpenHashMap BOUND_BUFFERS = new Int2IntOpenHashMap();
+	private static final Int2IntOpenHashMap BUFFER_SIZES = new Int2IntOpenHashMap();
+
+	private static int nextId = 1;
+	private static int nextLocation = 0;
+	private static int frameCallCount = 0;
+	private static int lastFrameCallCount = 0;
+	private static int frameCount = 0;
+	private static ByteBuffer mapScratch = ByteBuffer.allocateDirect(0x10000).order(ByteOrder.nativeOrder());
+
+	public static void record(String call) {
+		FRAME_CALLS.addTo(call, 1);
+		++frameCallCount;
+	}
+
+	/** Records the call and returns a new, never-reused object id. */
+	public static int genId(String call) {
+		record(call);
+		return nextId++;
+	}
+
+	public static void genIds(String call, IntBuffer ids) {
+		record(call);
+
+		for (int i = ids.position(); i < ids.limit(); ++i) {
+			ids.put(i, nextId++);
+		}
+	}
+
+	public static void genIds(String call, int[] ids) {
+		record(call);
+
+		for (int i = 0; i < ids.length; ++i) {
+			ids[i] = nextId++;
+		}
+	}
+
+	/** Every uniform and attribute appears to exist, each at a distinct location. */
+	public static int getLocation(String call) {
+		record(call);
+		return nextLocation++;
+	}
+
+	/** Compile, link, validate and completion status queries always succeed; everything else is zero. */
+	public static int getParameter(String call, int pname) {
+		record(call);
+
+		switch (pname) {
+			case GFX.GL_COMPILE_STATUS:
+			case GFX.GL_LINK_STATUS:
+			case GFX.GL_VALIDATE_STATUS:
+			case GFX.GL_COMPLETION_STATUS_KHR:
+				return GFX.GL_TRUE;
+			default:
+				return 0;
+		}
+	}
+
+	public static String getString(String call, int name) {
+		record(call);
+
+		switch (name) {
+			case GFX.GL_VENDOR:
+				return "Canvas";
+			case GFX.GL_RENDERER:
+				return "Canvas Headless Recorder";
+			case GFX.GL_VERSION:
+				return "4.6 Canvas Headless";
+			default:
+				return "";
+		}
+	}
+
+	public static void bindBuffer(String call, int target, int buffer) {
+		record(call);
+		BOUND_BUFFERS.put(target, buffer);
+	}
+
+	public static void bufferData(String call, int target, long size) {
+		record(call);
+		BUFFER_SIZES.put(BOUND_BUFFERS.get(target), (int) size);
+	}
+
+	public static void deleteBuffer(String call, int buffer) {
+		record(call);
+		BUFFER_SIZES.remove(buffer);
+	}
+
+	/** Mapped writes land in a shared scratch buffer and are discarded. */
+	public static ByteBuffer mapBuffer(String call, int target) {
+		return mapBufferRange(call, BUFFER_SIZES.get(BOUND_BUFFERS.get(target)));
+	}
+
+	public static ByteBuffer mapBufferRange(String call, long length) {
+		record(call);
+
+		if (mapScratch.capacity() < length) {
+			mapScratch = ByteBuffer.allocateDirect(Integer.highestOneBit((int) length) << 1).order(ByteOrder.nativeOrder());
+		}
+
+		mapScratch.clear();
+		mapScratch.limit((int) length);
+		return mapScratch;
+	}
+
+	/** Call at the start of each frame to roll current counts into the last-frame report. */
+	public static void startFrame() {
+		LAST_FRAME_CALLS.clear();
+		LAST_FRAME_CALLS.putAll(FRAME_CALLS);
+		lastFrameCallCount = frameCallCount;
+		FRAME_CALLS.clear();
+		frameCallCount = 0;
+		++frameCount;
+	}
+
+	public static int lastFrameCallCount() {
+		return lastFrameCallCount;
+	}
+
+	public static int lastFrameCallCount(String call) {
+		return LAST_FRAME_CALLS.getInt(call);
+	}
+
+	public static int frameCount() {
+		return frameCount;
+	}
+
+	public static void reset() {
+		FRAME_CALLS.clear();
+		LAST_FRAME_CALLS.clear();
+		BOUND_BUFFERS.clear();
+		BUFFER_SIZES.clear();
+		frameCallCount = 0;
+		lastFrameCallCount = 0;
+		frameCount = 0;
+	}
+
+	public static String debugString() {
+		return String.format("Headless GFX calls last frame: %d", lastFrameCallCount);
+	}
+
+	public static void logLastFrame() {
+		CanvasMod.LOG.info(String.format("Headless GFX frame %d: %d calls", frameCount, lastFrameCallCount));
+
+		for (final Object2IntMap.Entry<String> e : LAST_FRAME_CALLS.object2IntEntrySet()) {
+			CanvasMod.LOG.info(String.format("  %s: %d", e.getKey(), e.getIntValue()));
+		}
+	}
+}
@@ -19,7 +19,7 @@ void _cv_startVertex(inout frx_VertexData data, in int cv_programId) {
 
 void main() {
 	frx_VertexData data = frx_VertexData(
-		vec4(in_vertex, 1.0),
+		vec4(in_vertex.xyz / in_vertex.w, 1.0),
 		in_uv,
 		in_color,
 		in_normal
@@ -28,6 +28,10 @@ void main() {
 	_cv_setupProgram();
 	_cvv_flags = uint(_cvu_program.z);
 
+#ifdef _CV_DRAW_ORIGINS
+	_cvv_draw_origin = _cv_drawOrigin();
+#endif
+
 	// material shaders go first
 	_cv_startVertex(data, _cv_vertexProgramId());
 
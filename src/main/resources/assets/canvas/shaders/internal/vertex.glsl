@@ -5,7 +5,8 @@
 ******************************************************/
 
 #ifdef VERTEX_SHADER
-in vec3 in_vertex;
+// w is the fixed-point scale for region-relative terrain positions, 1.0 for float formats
+in vec4 in_vertex;
 in vec4 in_color;
 in vec2 in_uv;
 in int in_material;
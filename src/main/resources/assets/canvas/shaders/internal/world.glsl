@@ -95,6 +95,39 @@ uniform int _cvu_model_origin_type;
 uniform mat3 _cvu_normal_model_matrix;
 uniform vec2 _cvu_fog_info;
 
+#ifdef _CV_DRAW_ORIGINS
+// model origins for terrain multi-draws, two texels per draw in the same order as _cvu_model_origin
+uniform samplerBuffer _cvu_draw_origins;
+// first draw of the current multi-draw in _cvu_draw_origins, or -1 to use _cvu_model_origin
+uniform int _cvu_draw_origin_base;
+
+#ifdef VERTEX_SHADER
+flat out int _cvv_draw_origin;
+
+int _cv_drawOrigin() {
+	return _cvu_draw_origin_base < 0 ? -1 : _cvu_draw_origin_base + gl_DrawIDARB;
+}
+#else
+flat in int _cvv_draw_origin;
+
+int _cv_drawOrigin() {
+	return _cvv_draw_origin;
+}
+#endif
+#endif
+
+vec4 _cv_modelOrigin(int index) {
+#ifdef _CV_DRAW_ORIGINS
+	int drawOrigin = _cv_drawOrigin();
+
+	if (drawOrigin >= 0) {
+		return texelFetch(_cvu_draw_origins, drawOrigin * 2 + index);
+	}
+#endif
+
+	return _cvu_model_origin[index];
+}
+
 #define _CV_MAT_VIEW 0
 #define _CV_MAT_VIEW_INVERSE 1
 #define _CV_MAT_VIEW_LAST 2
@@ -1,3 +1,10 @@
 #version 150
 
 #define VERTEX_SHADER
+
+// disabled for process programs and drivers without shader draw parameters
+#define _CV_DRAW_ORIGINS
+
+#if defined(_CV_DRAW_ORIGINS) && defined(VERTEX_SHADER)
+#extension GL_ARB_shader_draw_parameters : require
+#endif
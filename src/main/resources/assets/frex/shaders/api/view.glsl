@@ -79,7 +79,7 @@ vec3 frx_lastCameraPos() {
  * ease of use.
  */
 vec4 frx_modelToWorld() {
-	return _cvu_model_origin[_CV_MODEL_TO_WORLD];
+	return _cv_modelOrigin(_CV_MODEL_TO_WORLD);
 }
 
 /*
@@ -107,7 +107,7 @@ vec3 frx_modelOriginWorldPos() {
  * ease of use.
  */
 vec4 frx_modelToCamera() {
-	return _cvu_model_origin[_CV_MODEL_TO_CAMERA];
+	return _cv_modelOrigin(_CV_MODEL_TO_CAMERA);
 }
 
 /*
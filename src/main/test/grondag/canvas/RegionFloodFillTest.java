@@ -0,0 +1,230 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.occlusion.geometry.RegionFloodFill;
+
+class RegionFloodFillTest {
+	static final int WORDS = 64;
+	static final int CLOSED = 0;
+	static final int VISITED = WORDS;
+
+	final RegionFloodFill fill = new RegionFloodFill();
+	final long[] closed = new long[WORDS];
+	final long[] seeds = new long[WORDS];
+	final long[] scalarBits = new long[WORDS * 2];
+	final long[] wordBits = new long[WORDS * 2];
+
+	@Test
+	void emptyRegion() {
+		clear();
+		seedSurface(1f, new Random(1));
+		check();
+
+		// every position is either a seed or reachable
+		for (int i = 0; i < WORDS; ++i) {
+			assert wordBits[VISITED + i] == -1L;
+		}
+	}
+
+	@Test
+	void solidRegion() {
+		clear();
+		Arrays.fill(closed, -1L);
+		seedSurface(1f, new Random(2));
+		check();
+
+		// only the seeds themselves are visited
+		for (int i = 0; i < WORDS; ++i) {
+			assert wordBits[VISITED + i] == seeds[i];
+		}
+	}
+
+	@Test
+	void noSeeds() {
+		clear();
+		check();
+
+		for (int i = 0; i < WORDS; ++i) {
+			assert wordBits[VISITED + i] == 0;
+		}
+	}
+
+	@Test
+	void randomDensity() {
+		final Random r = new Random(42);
+
+		for (int n = 0; n < 500; ++n) {
+			clear();
+			final float density = r.nextFloat();
+
+			for (int i = 0; i < 4096; ++i) {
+				if (r.nextFloat() < density) {
+					set(closed, i);
+				}
+			}
+
+			seedSurface(r.nextFloat(), r);
+			check();
+		}
+	}
+
+	/** Winding single-block tunnel through solid stone - worst case for pass count. */
+	@Test
+	void serpentine() {
+		clear();
+		Arrays.fill(closed, -1L);
+
+		for (int z = 1; z < 15; z += 2) {
+			for (int y = 1; y < 15; y += 2) {
+				for (int x = 1; x < 15; ++x) {
+					clear(closed, index(x, y, z));
+				}
+
+				final int turnX = ((y >> 1) & 1) == 0 ? 14 : 1;
+
+				if (y < 13) {
+					clear(closed, index(turnX, y + 1, z));
+				}
+			}
+
+			if (z < 13) {
+				clear(closed, index(((z >> 1) & 1) == 0 ? 1 : 14, 13, z + 1));
+			}
+		}
+
+		clear(closed, index(0, 1, 1));
+		set(seeds, index(0, 1, 1));
+		check();
+
+		// far end of the tunnel is reached
+		assert (wordBits[VISITED + (index(1, 13, 13) >> 6)] & (1L << (index(1, 13, 13) & 63))) != 0
+				|| (wordBits[VISITED + (index(14, 13, 13) >> 6)] & (1L << (index(14, 13, 13) & 63))) != 0;
+	}
+
+	/** Open caves separated by walls one block thick, with gaps at row and word boundaries. */
+	@Test
+	void walls() {
+		final Random r = new Random(7);
+
+		for (int n = 0; n < 100; ++n) {
+			clear();
+
+			for (int i = 0; i < 4096; ++i) {
+				final int x = i & 15;
+				final int y = (i >> 4) & 15;
+				final int z = i >> 8;
+
+				if (x == 7 || y == 3 || y == 4 || z == 8) {
+					set(closed, i);
+				}
+			}
+
+			for (int g = 0; g < 4; ++g) {
+				clear(closed, r.nextInt(4096));
+			}
+
+			seedSurface(r.nextFloat() * 0.05f, r);
+			check();
+		}
+	}
+
+	@Test
+	void faceConnectivity() {
+		// face indices: down, up, north, south, west, east
+		clear();
+		assert fill.faceConnectivity(closed, 0) == (1L << 36) - 1;
+
+		// wall across x = 7 separates west from east but not from the other faces
+		for (int i = 0; i < 4096; ++i) {
+			if ((i & 15) == 7) {
+				set(closed, i);
+			}
+		}
+
+		long connectivity = fill.faceConnectivity(closed, 0);
+		assert (connectivity & (1L << (4 * 6 + 5))) == 0;
+		assert (connectivity & (1L << (5 * 6 + 4))) == 0;
+		assert (connectivity & (1L << (4 * 6 + 0))) != 0;
+		assert (connectivity & (1L << (5 * 6 + 1))) != 0;
+
+		// single tunnel from down to north through solid stone
+		Arrays.fill(closed, -1L);
+
+		for (int y = 0; y < 8; ++y) {
+			clear(closed, index(8, y, 8));
+		}
+
+		for (int z = 0; z < 8; ++z) {
+			clear(closed, index(8, 7, z));
+		}
+
+		connectivity = fill.faceConnectivity(closed, 0);
+		assert connectivity == ((1L << (0 * 6 + 0)) | (1L << (0 * 6 + 2)) | (1L << (2 * 6 + 0)) | (1L << (2 * 6 + 2)));
+
+		Arrays.fill(closed, -1L);
+		assert fill.faceConnectivity(closed, 0) == 0;
+	}
+
+	void check() {
+		System.arraycopy(closed, 0, scalarBits, CLOSED, WORDS);
+		System.arraycopy(closed, 0, wordBits, CLOSED, WORDS);
+		Arrays.fill(scalarBits, VISITED, VISITED + WORDS, 0);
+		Arrays.fill(wordBits, VISITED, VISITED + WORDS, 0);
+
+		fill.fillScalar(scalarBits, CLOSED, VISITED, seeds);
+		fill.fillWords(wordBits, CLOSED, VISITED, seeds);
+
+		assert Arrays.equals(scalarBits, wordBits);
+	}
+
+	void clear() {
+		Arrays.fill(closed, 0);
+		Arrays.fill(seeds, 0);
+	}
+
+	/** Seeds a random fraction of positions on the region surface. */
+	void seedSurface(float chance, Random r) {
+		for (int i = 0; i < 4096; ++i) {
+			final int x = i & 15;
+			final int y = (i >> 4) & 15;
+			final int z = i >> 8;
+
+			if ((x == 0 || x == 15 || y == 0 || y == 15 || z == 0 || z == 15) && r.nextFloat() < chance) {
+				set(seeds, i);
+			}
+		}
+	}
+
+	static int index(int x, int y, int z) {
+		return x | (y << 4) | (z << 8);
+	}
+
+	static void set(long[] words, int index) {
+		words[index >> 6] |= 1L << (index & 63);
+	}
+
+	static void clear(long[] words, int index) {
+		words[index >> 6] &= ~(1L << (index & 63));
+	}
+}
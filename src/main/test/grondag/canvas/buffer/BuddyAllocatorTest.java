@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BuddyAllocatorTest {
+	static final int ORDER = 10;
+	static final int CAPACITY = 1 << ORDER;
+
+	@Test
+	void roundTrip() {
+		final BuddyAllocator alloc = new BuddyAllocator(ORDER);
+		final int[] offsets = new int[64];
+
+		for (int i = 0; i < offsets.length; ++i) {
+			offsets[i] = alloc.allocate(1 + (i % 13));
+			assert offsets[i] >= 0;
+		}
+
+		assert alloc.blockCount() == offsets.length;
+
+		for (final int offset : offsets) {
+			alloc.free(offset);
+		}
+
+		assert alloc.isEmpty();
+		assert alloc.usedUnits() == 0;
+		assert alloc.largestFreeBlock() == CAPACITY;
+		assert alloc.fragmentation() == 0;
+	}
+
+	@Test
+	void exhaustion() {
+		final BuddyAllocator alloc = new BuddyAllocator(ORDER);
+		assert alloc.allocate(CAPACITY + 1) == -1;
+		assert alloc.allocate(CAPACITY) == 0;
+		assert alloc.allocate(1) == -1;
+		alloc.free(0);
+		assert alloc.allocate(CAPACITY / 2 + 1) == 0;
+		assert alloc.allocate(1) == -1;
+	}
+
+	@Test
+	void randomNoOverlap() {
+		final BuddyAllocator alloc = new BuddyAllocator(ORDER);
+		final int[] owner = new int[CAPACITY];
+		final ArrayList<Integer> live = new ArrayList<>();
+		final Random r = new Random(42);
+
+		for (int i = 0; i < 20000; ++i) {
+			if (!live.isEmpty() && (r.nextInt(3) == 0 || alloc.freeUnits() < 64)) {
+				final int offset = live.remove(r.nextInt(live.size()));
+				final int size = alloc.blockSize(offset);
+
+				for (int j = 0; j < size; ++j) {
+					assert owner[offset + j] == offset + 1;
+					owner[offset + j] = 0;
+				}
+
+				alloc.free(offset);
+			} else {
+				final int units = 1 + r.nextInt(40);
+				final int offset = alloc.allocate(units);
+
+				if (offset == -1) {
+					assert alloc.largestFreeBlock() < units;
+					continue;
+				}
+
+				final int size = alloc.blockSize(offset);
+				assert size >= units && size < units * 2;
+				assert (offset & (size - 1)) == 0;
+
+				for (int j = 0; j < size; ++j) {
+					assert owner[offset + j] == 0;
+					owner[offset + j] = offset + 1;
+				}
+
+				live.add(offset);
+			}
+		}
+
+		int used = 0;
+
+		for (final int o : owner) {
+			if (o != 0) ++used;
+		}
+
+		assert used == alloc.usedUnits();
+	}
+
+	@Test
+	void fragmentationAndCompaction() {
+		final BuddyAllocator alloc = new BuddyAllocator(ORDER);
+
+		for (int i = 0; i < CAPACITY; ++i) {
+			assert alloc.allocate(1) == i;
+		}
+
+		// free every other unit - half the space is free but none of it merges
+		for (int i = 0; i < CAPACITY; i += 2) {
+			alloc.free(i);
+		}
+
+		assert alloc.freeUnits() == CAPACITY / 2;
+		assert alloc.largestFreeBlock() == 1;
+		assert alloc.fragmentation() > 0.99f;
+		assert alloc.allocate(2) == -1;
+
+		final int moved = alloc.compact((from, to, units) -> {
+			assert units == 1;
+			assert (from & 1) == 1;
+		});
+
+		assert moved == CAPACITY / 2;
+		assert alloc.blockCount() == CAPACITY / 2;
+		assert alloc.fragmentation() == 0;
+		assert alloc.largestFreeBlock() == CAPACITY / 2;
+		assert alloc.allocate(CAPACITY / 2) == CAPACITY / 2;
+	}
+
+	@Test
+	void compactionPreservesContents() {
+		final BuddyAllocator alloc = new BuddyAllocator(ORDER);
+		final int[] memory = new int[CAPACITY];
+		final ArrayList<Integer> live = new ArrayList<>();
+		final Random r = new Random(7);
+
+		for (int i = 0; i < 3000; ++i) {
+			if (!live.isEmpty() && r.nextBoolean()) {
+				alloc.free(live.remove(r.nextInt(live.size())));
+			} else {
+				final int offset = alloc.allocate(1 + r.nextInt(24));
+
+				if (offset >= 0) {
+					live.add(offset);
+					final int size = alloc.blockSize(offset);
+
+					for (int j = 0; j < size; ++j) {
+						memory[offset + j] = offset * 31 + j;
+					}
+				}
+			}
+		}
+
+		final int used = alloc.usedUnits();
+		final int blocks = alloc.blockCount();
+		final int[] compacted = new int[CAPACITY];
+		final int[] newOffsetOf = new int[CAPACITY];
+
+		for (final int offset : live) {
+			newOffsetOf[offset] = offset;
+		}
+
+		// like the GL arenas, copy into fresh storage so overlapping moves are harmless
+		System.arraycopy(memory, 0, compacted, 0, CAPACITY);
+
+		alloc.compact((from, to, units) -> {
+			assert alloc.blockSize(to) == units;
+			System.arraycopy(memory, from, compacted, to, units);
+			newOffsetOf[from] = to;
+		});
+
+		assert alloc.usedUnits() == used;
+		assert alloc.blockCount() == blocks;
+		assert alloc.fragmentation() == 0;
+		int end = 0;
+
+		for (final int offset : live) {
+			final int to = newOffsetOf[offset];
+			final int size = alloc.blockSize(to);
+			end = Math.max(end, to + size);
+
+			for (int j = 0; j < size; ++j) {
+				assert compacted[to + j] == offset * 31 + j;
+			}
+		}
+
+		// live blocks form a packed prefix
+		assert end == used;
+	}
+
+	@Test
+	void packedLayoutDoesNotMove() {
+		final BuddyAllocator alloc = new BuddyAllocator(ORDER);
+		alloc.allocate(256);
+		alloc.allocate(128);
+		alloc.allocate(128);
+		alloc.allocate(16);
+		alloc.allocate(1);
+
+		assert alloc.compact((from, to, units) -> {
+			assert false;
+		}) == 0;
+	}
+}
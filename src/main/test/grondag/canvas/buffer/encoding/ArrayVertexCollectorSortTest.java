@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.encoding;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks the radix sort and quad permutation against a stable {@link Arrays#sort} reference. */
+class ArrayVertexCollectorSortTest {
+	static final int QUAD_STRIDE = 3;
+
+	@Test
+	void randomKeys() {
+		final Random r = new Random(42);
+
+		for (int n = 1; n <= 600; n += 37) {
+			final int[] dists = new int[n];
+
+			for (int i = 0; i < n; ++i) {
+				dists[i] = r.nextInt();
+			}
+
+			check(dists);
+		}
+	}
+
+	@Test
+	void duplicateKeys() {
+		final Random r = new Random(7);
+		final int[] dists = new int[500];
+
+		for (int i = 0; i < dists.length; ++i) {
+			// few distinct values spread over every byte, sign bit included
+			dists[i] = 0x81020304 * (1 + r.nextInt(5));
+		}
+
+		check(dists);
+	}
+
+	/** Every key has the same value in each of the upper three bytes, so those passes are skipped. */
+	@Test
+	void skippedPasses() {
+		final Random r = new Random(11);
+		final int[] dists = new int[300];
+
+		for (int i = 0; i < dists.length; ++i) {
+			dists[i] = 0xA5C30000 | r.nextInt(256);
+		}
+
+		check(dists);
+	}
+
+	/** Every pass is skipped and the keys come back unchanged. */
+	@Test
+	void identicalKeys() {
+		final int[] dists = new int[64];
+		Arrays.fill(dists, 0x12345678);
+		check(dists);
+	}
+
+	static void check(int[] dists) {
+		final int n = dists.length;
+		final long[] keys = new long[n];
+		final int[] counts = new int[1024];
+		final Long[] reference = new Long[n];
+
+		for (int j = 0; j < n; ++j) {
+			keys[j] = ((long) dists[j] << 32) | j;
+			ArrayVertexCollector.countKeyBytes(counts, dists[j]);
+			reference[j] = keys[j];
+		}
+
+		// object sort is stable, so equal distances stay in index order
+		Arrays.sort(reference, (a, b) -> Integer.compareUnsigned((int) (a >>> 32), (int) (b >>> 32)));
+
+		final long[] sorted = ArrayVertexCollector.sortKeys(keys, new long[n], counts, n);
+		boolean isIdentity = true;
+
+		for (int k = 0; k < n; ++k) {
+			assert sorted[k] == reference[k] : "key " + k;
+			isIdentity &= (int) sorted[k] == k;
+		}
+
+		final int[] data = new int[n * QUAD_STRIDE];
+
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = i;
+		}
+
+		assert ArrayVertexCollector.permute(sorted, n, data, QUAD_STRIDE, new int[QUAD_STRIDE]) == !isIdentity;
+
+		for (int k = 0; k < n; ++k) {
+			final int quad = (int) (long) reference[k];
+
+			for (int i = 0; i < QUAD_STRIDE; ++i) {
+				assert data[k * QUAD_STRIDE + i] == quad * QUAD_STRIDE + i : "quad " + k;
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.format;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RegionRelativePositionTest {
+	@Test
+	void gridPositionsAreExact() {
+		// block corners and common model fractions
+		for (int i = -64; i <= 16 * 16 + 64; ++i) {
+			final float v = i / 16f;
+			assert RegionRelativePosition.decode(RegionRelativePosition.encode(v)) == v;
+		}
+
+		for (int i = 0; i <= 16 * RegionRelativePosition.SCALE; ++i) {
+			final float v = i * RegionRelativePosition.INV_SCALE;
+			assert RegionRelativePosition.decode(RegionRelativePosition.encode(v)) == v;
+		}
+	}
+
+	@Test
+	void randomPositionsWithinPrecision() {
+		final Random r = new Random(42);
+
+		for (int i = 0; i < 100000; ++i) {
+			final float v = -8 + r.nextFloat() * 32;
+			final float err = Math.abs(RegionRelativePosition.decode(RegionRelativePosition.encode(v)) - v);
+			// small allowance for float rounding of the scaled input
+			assert err <= RegionRelativePosition.PRECISION * 1.001f : v;
+		}
+	}
+
+	@Test
+	void outOfRangeIsClamped() {
+		assert RegionRelativePosition.decode(RegionRelativePosition.encode(1000)) == RegionRelativePosition.MAX;
+		assert RegionRelativePosition.decode(RegionRelativePosition.encode(-1000)) == RegionRelativePosition.MIN;
+		assert RegionRelativePosition.decode(RegionRelativePosition.encode(RegionRelativePosition.MAX)) == RegionRelativePosition.MAX;
+		assert RegionRelativePosition.decode(RegionRelativePosition.encode(RegionRelativePosition.MIN)) == RegionRelativePosition.MIN;
+		assert RegionRelativePosition.MIN <= -32 && RegionRelativePosition.MAX > 31.99f;
+	}
+
+	@Test
+	void packedWordsRoundTrip() {
+		final Random r = new Random(7);
+
+		for (int i = 0; i < 10000; ++i) {
+			final float x = -1 + r.nextFloat() * 18;
+			final float y = -1 + r.nextFloat() * 18;
+			final float z = -1 + r.nextFloat() * 18;
+			final int xy = RegionRelativePosition.packXY(x, y);
+			final int zw = RegionRelativePosition.packZW(z);
+
+			assert RegionRelativePosition.unpackX(xy) == RegionRelativePosition.decode(RegionRelativePosition.encode(x));
+			assert RegionRelativePosition.unpackY(xy) == RegionRelativePosition.decode(RegionRelativePosition.encode(y));
+			assert RegionRelativePosition.unpackZ(zw) == RegionRelativePosition.decode(RegionRelativePosition.encode(z));
+			assert (zw >>> 16) == RegionRelativePosition.SCALE;
+		}
+	}
+
+	@Test
+	void negativeValuesDoNotBleedIntoNeighbor() {
+		final int xy = RegionRelativePosition.packXY(-0.5f, 3f);
+		assert RegionRelativePosition.unpackX(xy) == -0.5f;
+		assert RegionRelativePosition.unpackY(xy) == 3f;
+
+		final int xy2 = RegionRelativePosition.packXY(3f, -0.5f);
+		assert RegionRelativePosition.unpackX(xy2) == 3f;
+		assert RegionRelativePosition.unpackY(xy2) == -0.5f;
+
+		final int zw = RegionRelativePosition.packZW(-16.25f);
+		assert RegionRelativePosition.unpackZ(zw) == -16.25f;
+		assert (zw >>> 16) == RegionRelativePosition.SCALE;
+	}
+
+	/** What the shader computes: xyz / w from the four shorts as laid out in little-endian memory. */
+	@Test
+	void shaderDecodeMatches() {
+		final float x = 15.75f, y = -0.125f, z = 16.5f;
+		final int xy = RegionRelativePosition.packXY(x, y);
+		final int zw = RegionRelativePosition.packZW(z);
+		final short[] shorts = {(short) xy, (short) (xy >> 16), (short) zw, (short) (zw >> 16)};
+		final float w = shorts[3];
+
+		assert shorts[0] / w == x;
+		assert shorts[1] / w == y;
+		assert shorts[2] / w == z;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.pipeline;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import blue.endless.jankson.Jankson;
+import blue.endless.jankson.JsonArray;
+import blue.endless.jankson.JsonElement;
+import blue.endless.jankson.JsonObject;
+import blue.endless.jankson.JsonPrimitive;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Each fixture declares images, then nodes in frame order, then the expected analysis.
+ * Writes are image names for level zero or objects with image and lod.
+ */
+class PassGraphTest {
+	static final Path FIXTURES = Paths.get("src/main/test/grondag/canvas/pipeline/fixtures");
+
+	@Test
+	void culling() throws Exception {
+		check("culling.json");
+	}
+
+	@Test
+	void history() throws Exception {
+		check("history.json");
+	}
+
+	@Test
+	void aliasing() throws Exception {
+		check("aliasing.json");
+	}
+
+	@Test
+	void mipLevels() throws Exception {
+		check("mip_levels.json");
+	}
+
+	/** Partial writes are recorded as read and write, so content not covered survives and the texture isn't shared. */
+	@Test
+	void partialWrite() throws Exception {
+		check("partial_write.json");
+	}
+
+	static void check(String fixture) throws Exception {
+		final JsonObject json = Jankson.builder().build().load(Files.readString(FIXTURES.resolve(fixture)));
+		final PassGraph graph = new PassGraph();
+		final HashSet<String> imageNames = new HashSet<>();
+
+		for (final JsonElement e : json.get(JsonArray.class, "images")) {
+			final JsonObject img = (JsonObject) e;
+			final String name = img.get(String.class, "name");
+			imageNames.add(name);
+			graph.addImage(name, img.getInt("lod", 0), img.get(String.class, "format"));
+		}
+
+		for (final JsonElement e : json.get(JsonArray.class, "nodes")) {
+			final JsonObject obj = (JsonObject) e;
+			final String name = obj.get(String.class, "name");
+			final PassGraph.Node node = obj.getBoolean("external", false) ? graph.addExternal(name) : graph.addPass(name);
+
+			for (final String image : strings(obj.get(JsonArray.class, "reads"))) {
+				node.reads(image);
+			}
+
+			final JsonArray writes = obj.get(JsonArray.class, "writes");
+
+			if (writes != null) {
+				for (final JsonElement w : writes) {
+					if (w instanceof JsonObject) {
+						node.writes(((JsonObject) w).get(String.class, "image"), ((JsonObject) w).getInt("lod", 0));
+					} else {
+						node.writes(((JsonPrimitive) w).asString(), 0);
+					}
+				}
+			}
+		}
+
+		graph.analyze();
+
+		final JsonObject expected = json.get(JsonObject.class, "expected");
+		final HashSet<String> culled = strings(expected.get(JsonArray.class, "culled"));
+		final HashSet<String> persistent = strings(expected.get(JsonArray.class, "persistent"));
+		final JsonObject ownerJson = expected.get(JsonObject.class, "textureOwners");
+		final HashMap<String, String> owners = new HashMap<>();
+
+		for (final String key : ownerJson.keySet()) {
+			owners.put(key, ownerJson.get(String.class, key));
+		}
+
+		int culledCount = 0;
+
+		for (final PassGraph.Node node : graph.nodes()) {
+			assert node.isLive() == !culled.contains(node.name) : fixture + ": " + node.name + (node.isLive() ? " kept" : " culled");
+
+			if (!node.isLive()) {
+				++culledCount;
+			}
+		}
+
+		assert graph.culledCount() == culledCount;
+
+		for (final String name : imageNames) {
+			assert graph.isPersistent(name) == persistent.contains(name) : fixture + ": " + name + " persistent " + graph.isPersistent(name);
+			final String owner = graph.textureOwner(name);
+			assert owner.equals(owners.getOrDefault(name, name)) : fixture + ": " + name + " uses texture of " + owner;
+		}
+
+		assert graph.aliasCount() == owners.size();
+	}
+
+	static HashSet<String> strings(JsonArray array) {
+		final HashSet<String> result = new HashSet<>();
+
+		if (array != null) {
+			for (final JsonElement e : array) {
+				result.add(((JsonPrimitive) e).asString());
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+class ProgramBinaryCacheTest {
+	static final int FORMAT = 0x1234;
+
+	/** Programs are ints, binaries are the driver id plus program text. Rejects binaries from other drivers. */
+	static class FakeBackend implements ProgramBinaryCache.Backend {
+		final String driverId;
+		final HashMap<Integer, String> linked = new HashMap<>();
+		boolean rejectAll = false;
+		int binaryLoads = 0;
+
+		FakeBackend(String driverId) {
+			this.driverId = driverId;
+		}
+
+		@Override
+		public String driverId() {
+			return driverId;
+		}
+
+		@Override
+		public boolean programBinary(int program, int format, ByteBuffer binary) {
+			++binaryLoads;
+			final byte[] bytes = new byte[binary.remaining()];
+			binary.get(bytes);
+			final String text = new String(bytes, StandardCharsets.UTF_8);
+
+			if (rejectAll || format != FORMAT || !text.startsWith(driverId + ":")) {
+				return false;
+			}
+
+			linked.put(program, text.substring(driverId.length() + 1));
+			return true;
+		}
+
+		@Override
+		public ByteBuffer getProgramBinary(int program, int[] format) {
+			final String text = linked.get(program);
+
+			if (text == null) {
+				return null;
+			}
+
+			format[0] = FORMAT;
+			return ByteBuffer.wrap((driverId + ":" + text).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void keyDerivation() throws IOException {
+		final Path dir = Files.createTempDirectory("canvas-binary-test");
+
+		try {
+			final ProgramBinaryCache cache = new ProgramBinaryCache(dir, new FakeBackend("vendor\nrenderer\n4.6"));
+			final String key = cache.key("vertex", "fragment", "in_vertex;");
+
+			assert key.length() == 64;
+			assert key.matches("[0-9a-f]+");
+			assert key.equals(cache.key("vertex", "fragment", "in_vertex;"));
+			assert key.equals(ProgramBinaryCache.deriveKey("vendor\nrenderer\n4.6", "vertex", "fragment", "in_vertex;"));
+
+			// every input changes the key
+			assert !key.equals(cache.key("vertex2", "fragment", "in_vertex;"));
+			assert !key.equals(cache.key("vertex", "fragment2", "in_vertex;"));
+			assert !key.equals(cache.key("vertex", "fragment", "in_vertex;in_color;"));
+			assert !key.equals(ProgramBinaryCache.deriveKey("vendor\nrenderer\n4.5", "vertex", "fragment", "in_vertex;"));
+
+			// define edits are part of the assembled source
+			assert !cache.key("#define SHADOW_MAP_SIZE 1024\n", "f", "a").equals(cache.key("#define SHADOW_MAP_SIZE 2048\n", "f", "a"));
+
+			// text moved across part boundaries is a different key
+			assert !cache.key("ab", "c", "").equals(cache.key("a", "bc", ""));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	void roundTrip() throws IOException {
+		final Path dir = Files.createTempDirectory("canvas-binary-test");
+
+		try {
+			final FakeBackend backend = new FakeBackend("driverA");
+			final ProgramBinaryCache cache = new ProgramBinaryCache(dir, backend);
+			final String key = cache.key("v", "f", "a");
+
+			assert !cache.load(1, key);
+			assert cache.missCount() == 1;
+			assert backend.binaryLoads == 0;
+
+			backend.linked.put(1, "program one");
+			cache.store(1, key);
+			assert Files.exists(cache.entryPath(key));
+
+			// a new launch with the same driver
+			final FakeBackend backend2 = new FakeBackend("driverA");
+			final ProgramBinaryCache cache2 = new ProgramBinaryCache(dir, backend2);
+			assert cache2.load(7, key);
+			assert cache2.hitCount() == 1;
+			assert "program one".equals(backend2.linked.get(7));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	void corruptEntries() throws IOException {
+		final Path dir = Files.createTempDirectory("canvas-binary-test");
+
+		try {
+			final FakeBackend backend = new FakeBackend("driverA");
+			final ProgramBinaryCache cache = new ProgramBinaryCache(dir, backend);
+			backend.linked.put(1, "program one");
+
+			// flipped bit in the binary fails the checksum
+			final String key = cache.key("v", "f", "a");
+			cache.store(1, key);
+			final Path path = cache.entryPath(key);
+			final byte[] bytes = Files.readAllBytes(path);
+			bytes[bytes.length - 1] ^= 1;
+			Files.write(path, bytes);
+
+			assert !cache.load(2, key);
+			assert !Files.exists(path);
+			assert backend.binaryLoads == 0;
+
+			// truncated header
+			cache.store(1, key);
+			Files.write(path, new byte[] {1, 2, 3});
+			assert !cache.load(2, key);
+			assert !Files.exists(path);
+
+			// wrong version
+			cache.store(1, key);
+			final ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+			buf.putInt(4, ProgramBinaryCache.VERSION + 1);
+			Files.write(path, buf.array());
+			assert !cache.load(2, key);
+			assert !Files.exists(path);
+
+			assert cache.missCount() == 3;
+			assert cache.rejectCount() == 0;
+
+			// source compile then stores a good entry again
+			cache.store(1, key);
+			assert cache.load(2, key);
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	void driverChange() throws IOException {
+		final Path dir = Files.createTempDirectory("canvas-binary-test");
+
+		try {
+			final FakeBackend backendA = new FakeBackend("driverA");
+			final ProgramBinaryCache cacheA = new ProgramBinaryCache(dir, backendA);
+			backendA.linked.put(1, "program one");
+			final String keyA = cacheA.key("v", "f", "a");
+			cacheA.store(1, keyA);
+
+			final ProgramBinaryCache cacheB = new ProgramBinaryCache(dir, new FakeBackend("driverB"));
+			final String keyB = cacheB.key("v", "f", "a");
+			assert !keyA.equals(keyB);
+			assert !cacheB.load(1, keyB);
+
+			// entries from the old driver are cleared on first use
+			assert !Files.exists(cacheA.entryPath(keyA));
+			assert "driverB".equals(Files.readString(dir.resolve(ProgramBinaryCache.DRIVER_FILE)));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	void rejectedBinary() throws IOException {
+		final Path dir = Files.createTempDirectory("canvas-binary-test");
+
+		try {
+			final FakeBackend backend = new FakeBackend("driverA");
+			final ProgramBinaryCache cache = new ProgramBinaryCache(dir, backend);
+			backend.linked.put(1, "program one");
+			final String key = cache.key("v", "f", "a");
+			cache.store(1, key);
+
+			// driver updated without changing its version strings
+			backend.rejectAll = true;
+			assert !cache.load(2, key);
+			assert cache.rejectCount() == 1;
+			assert !Files.exists(cache.entryPath(key));
+
+			// next attempt is a plain miss and never reaches the driver
+			assert !cache.load(2, key);
+			assert backend.binaryLoads == 1;
+			assert cache.missCount() == 1;
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	void unavailableBinaryNotStored() throws IOException {
+		final Path dir = Files.createTempDirectory("canvas-binary-test");
+
+		try {
+			final ProgramBinaryCache cache = new ProgramBinaryCache(dir, new FakeBackend("driverA"));
+			final String key = cache.key("v", "f", "a");
+
+			// program 1 was never linked, backend has no binary
+			cache.store(1, key);
+			assert !Files.exists(cache.entryPath(key));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+
+package grondag.canvas.terrain.region;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class RegionSlotArrayTest {
+	static final int SIZE = 24;
+
+	static class Element {
+		final int index;
+		final int openCycle;
+		final AtomicInteger closeCount = new AtomicInteger();
+
+		Element(int index, int openCycle) {
+			this.index = index;
+			this.openCycle = openCycle;
+		}
+	}
+
+	final RegionSlotArray<Element> slots = new RegionSlotArray<>(SIZE);
+	final ConcurrentLinkedQueue<Element> created = new ConcurrentLinkedQueue<>();
+	final AtomicInteger openCount = new AtomicInteger();
+	final AtomicInteger closeCycles = new AtomicInteger();
+	final AtomicInteger[] live = new AtomicInteger[SIZE];
+	final AtomicReference<String> failure = new AtomicReference<>();
+
+	{
+		for (int i = 0; i < SIZE; ++i) {
+			live[i] = new AtomicInteger();
+		}
+	}
+
+	Element create(int index, boolean opened) {
+		if (opened) {
+			openCount.incrementAndGet();
+		}
+
+		// creation runs under the monitor so there can never be two live elements for one slot
+		check(live[index].incrementAndGet() == 1, "two live elements for slot " + index);
+
+		final Element result = new Element(index, openCount.get());
+		created.add(result);
+		return result;
+	}
+
+	void close(Element e) {
+		check(e.closeCount.incrementAndGet() == 1, "element closed twice");
+		live[e.index].decrementAndGet();
+	}
+
+	void check(boolean condition, String message) {
+		if (!condition) {
+			failure.compareAndSet(null, message);
+		}
+	}
+
+	@Test
+	void singleThreaded() {
+		assert slots.get(3) == null;
+		assert !slots.isOpen();
+
+		final Element a = slots.getOrCreate(3, this::create);
+		assert slots.isOpen();
+		assert openCount.get() == 1;
+		assert slots.get(3) == a;
+		assert slots.getOrCreate(3, this::create) == a;
+
+		final Element b = slots.getOrCreate(7, this::create);
+		assert b != a && openCount.get() == 1;
+
+		final List<Element> seen = new ArrayList<>();
+		assert slots.forEach(seen::add);
+		assert seen.size() == 2;
+
+		slots.close(this::close);
+		assert !slots.isOpen();
+		assert slots.get(3) == null;
+		assert a.closeCount.get() == 1 && b.closeCount.get() == 1;
+		assert !slots.forEach(seen::add);
+
+		// closing again is harmless
+		slots.close(this::close);
+		assert a.closeCount.get() == 1;
+
+		final Element c = slots.getOrCreate(3, this::create);
+		assert c != a;
+		assert openCount.get() == 2;
+
+		slots.close(this::close);
+		assert failure.get() == null : failure.get();
+	}
+
+	/**
+	 * Readers and creators hammer random slots while another thread keeps closing
+	 * and iterating the array. Checks that every element ever created is closed exactly once,
+	 * that a slot never holds two live elements, and that lookups only return elements
+	 * created for the slot asked for.
+	 */
+	@Test
+	void concurrentStress() throws InterruptedException {
+		final int workerCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+		final int iterations = 1_000_000;
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> workers = new ArrayList<>();
+
+		for (int t = 0; t < workerCount; ++t) {
+			final Thread worker = new Thread(() -> {
+				awaitQuietly(start);
+				final ThreadLocalRandom rand = ThreadLocalRandom.current();
+
+				for (int n = 0; n < iterations; ++n) {
+					final int index = rand.nextInt(SIZE);
+
+					if (rand.nextBoolean()) {
+						final Element e = slots.getOrCreate(index, this::create);
+						check(e != null, "getOrCreate returned null");
+						check(e.index == index, "getOrCreate returned element for wrong slot");
+					} else {
+						final Element e = slots.get(index);
+						check(e == null || e.index == index, "get returned element for wrong slot");
+					}
+				}
+			}, "slot-worker-" + t);
+
+			workers.add(worker);
+			worker.start();
+		}
+
+		final Thread closer = new Thread(() -> {
+			awaitQuietly(start);
+
+			while (running.get()) {
+				slots.forEach(e -> check(e.closeCount.get() == 0, "iterated a closed element"));
+				slots.close(this::close);
+				closeCycles.incrementAndGet();
+			}
+		}, "slot-closer");
+
+		closer.start();
+		start.countDown();
+
+		for (final Thread worker : workers) {
+			worker.join();
+		}
+
+		running.set(false);
+		closer.join();
+		slots.close(this::close);
+
+		assert failure.get() == null : failure.get();
+		assert closeCycles.get() > 0;
+
+		int createdCount = 0;
+
+		for (final Element e : created) {
+			++createdCount;
+			assert e.closeCount.get() == 1 : "element leaked or closed twice";
+		}
+
+		for (int i = 0; i < SIZE; ++i) {
+			assert live[i].get() == 0;
+		}
+
+		assert openCount.get() > 0;
+		assert createdCount >= openCount.get();
+	}
+
+	static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}